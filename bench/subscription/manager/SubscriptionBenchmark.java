@@ -0,0 +1,575 @@
+package subscription.manager;
+
+import subscription.Subscriber;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+/**
+ * Benchmark harness measuring the main operations of the subscription manager program at different numbers of subscribers and meal types.
+ * <p>For every combination of sizes an input file is generated and the following benchmarks are run:
+ * <ul>
+ *     <li>
+ *         readIn - loading the input file with an {@link InputDataLoader}, ms/op
+ *     </li>
+ *     <li>
+ *         insertSort - sorting a shuffled {@link SortedLinkedList} of subscribers with insertSort(), ms/op,
+ *         skipped for more subscribers than "--insert-sort-limit" as it takes hours at 100k subscribers
+ *     </li>
+ *     <li>
+ *         isSubscriber, isMeal, isEnoughMeal - validations of the {@link SubscriptionEngine}, ns/op
+ *     </li>
+ *     <li>
+ *         addMealSubscription, removeMealSubscription - adding one meal to subscriptions of distinct random subscribers and removing it again, ns/op,
+ *         selected together as "addRemoveMealSubscription"
+ *     </li>
+ *     <li>
+ *         listMeals, listSubscribers - rendering of the "m" and "s" listings to a stream discarding the output, ms/op,
+ *         1% of the subscribers (at most 10000) have a subscription while the listings are rendered
+ *     </li>
+ * </ul>
+ * <p>Every benchmark runs warmup iterations first and reports mean and standard deviation of the measured iterations.
+ * Operations taking nanoseconds are repeated for the whole iteration time, operations taking milliseconds run once per iteration.
+ * <p>Every benchmark runs in a fresh JVM forked for it, started with the class path and JVM options of this one, so code compiled and garbage left by one benchmark
+ * don't change the results of the next, the way JMH forks. "--forks n" runs every benchmark in n JVMs one after another, each reporting its own line,
+ * "--forks 0" runs all benchmarks in this JVM. A forked JVM runs one benchmark at one size, selected with "--only".
+ * <p>Usage, from the project directory after compiling src and bench into out:
+ * <pre>
+ * java -cp out subscription.manager.SubscriptionBenchmark [--subscribers 1000,100000,1000000] [--meals 10,1000,100000]
+ *      [--warmup 2] [--iterations 5] [--iteration-time 500] [--insert-sort-limit 2000] [--forks 1] [--only isSubscriber]
+ * </pre>
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class SubscriptionBenchmark {
+    //Fields
+    /**
+     * Results of benchmarked operations are added here so the JIT compiler can't remove the operations.
+     */
+    private static volatile long sink;
+    /**
+     * Names of the benchmarks, in the order they run, a forked JVM runs one of them.
+     */
+    private static final String[] BENCHMARKS = {"readIn", "insertSort", "isSubscriber", "isMeal", "isEnoughMeal", "addRemoveMealSubscription", "listMeals", "listSubscribers"};
+    /**
+     * Numbers of subscribers to benchmark with.
+     */
+    private int[] subscriberCounts = {1_000, 100_000, 1_000_000};
+    /**
+     * Numbers of meal types to benchmark with.
+     */
+    private int[] mealCounts = {10, 1_000, 100_000};
+    /**
+     * Number of warmup iterations of every benchmark.
+     */
+    private int warmupIterations = 2;
+    /**
+     * Number of measured iterations of every benchmark.
+     */
+    private int iterations = 5;
+    /**
+     * Duration of one iteration of benchmarks repeating an operation, in milliseconds.
+     */
+    private int iterationMillis = 500;
+    /**
+     * Largest number of subscribers insertSort is benchmarked with.
+     */
+    private int insertSortLimit = 2_000;
+    /**
+     * Number of JVMs forked for every benchmark, 0 to run all benchmarks in this JVM.
+     */
+    private int forks = 1;
+    /**
+     * Name of the only benchmark run, null to run all of them.
+     */
+    private String only = null;
+    /**
+     * Random number generator with a fixed seed, so every run uses the same data.
+     */
+    private final Random random = new Random(8012);
+
+    /**
+     * An operation repeated by a benchmark, returns a value that is added to the sink.
+     */
+    private interface Operation {
+        /**
+         * Runs the operation once.
+         * @param i number of the run
+         * @return long any value depending on the result of the operation
+         * @throws Exception when the operation fails
+         */
+        long run(int i) throws Exception;
+    }
+
+    /**
+     * Runs the benchmarks.
+     * @param args command line options, see class description
+     * @throws Exception when a benchmark fails
+     */
+    public static void main(String[] args) throws Exception
+    {
+        SubscriptionBenchmark benchmark = new SubscriptionBenchmark();
+        benchmark.parseArgs(args);
+        benchmark.runAll();
+    }
+
+    /**
+     * Reads command line options.
+     * @param args command line options
+     * @throws IllegalArgumentException when an option is unknown
+     */
+    private void parseArgs(String[] args)
+    {
+        for (int i = 0; i + 1 < args.length; i += 2)
+        {
+            switch (args[i])
+            {
+                case "--subscribers":
+                    subscriberCounts = parseList(args[i + 1]);
+                    break;
+                case "--meals":
+                    mealCounts = parseList(args[i + 1]);
+                    break;
+                case "--warmup":
+                    warmupIterations = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--iteration-time":
+                    iterationMillis = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--insert-sort-limit":
+                    insertSortLimit = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--forks":
+                    forks = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--only":
+                    only = args[i + 1];
+                    if (!Arrays.asList(BENCHMARKS).contains(only))
+                    {
+                        throw new IllegalArgumentException("Unknown benchmark \"" + only + "\", benchmarks are " + String.join(", ", BENCHMARKS) + ".");
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option \"" + args[i] + "\".");
+            }
+        }
+        if (args.length % 2 != 0)
+        {
+            throw new IllegalArgumentException("Option \"" + args[args.length - 1] + "\" needs a value.");
+        }
+    }
+
+    /**
+     * Parses a comma separated list of numbers.
+     * @param list comma separated list
+     * @return int array of the numbers
+     */
+    private static int[] parseList(String list)
+    {
+        String[] parts = list.split(",");
+        int[] numbers = new int[parts.length];
+        for (int i = 0; i < parts.length; i++)
+        {
+            numbers[i] = Integer.parseInt(parts[i].trim());
+        }
+        return numbers;
+    }
+
+    /**
+     * Runs all benchmarks for every combination of numbers of subscribers and meal types, in forked JVMs unless "--forks 0" is given.
+     * A forked JVM, started with "--only", prints only the lines of its results.
+     * @throws Exception when a benchmark fails
+     */
+    private void runAll() throws Exception
+    {
+        boolean fork = forks > 0 && only == null;
+        if (only == null)
+        {
+            System.out.printf(Locale.ROOT, "%-24s %11s %8s %16s %14s %s%n", "Benchmark", "Subscribers", "Meals", "Score", "Error", "Units");
+        }
+        for (int subscribers : subscriberCounts)
+        {
+            for (int meals : mealCounts)
+            {
+                if (fork)
+                {
+                    runForked(subscribers, meals);
+                }
+                else
+                {
+                    runSizes(subscribers, meals);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs every benchmark for one number of subscribers and meal types in JVMs forked for it, one after another.
+     * Results printed by the forked JVMs go straight to the output of this one.
+     * @param noOfSubscribers number of subscribers
+     * @param noOfMeals number of meal types
+     * @throws IOException when a JVM can't be started
+     * @throws InterruptedException when waiting for a JVM is interrupted
+     * @throws IllegalStateException when a forked JVM fails
+     */
+    private void runForked(int noOfSubscribers, int noOfMeals) throws IOException, InterruptedException
+    {
+        for (String benchmark : BENCHMARKS)
+        {
+            for (int fork = 0; fork < forks; fork++)
+            {
+                List<String> command = new ArrayList<String>();
+                command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+                //the same heap size and other JVM options as this JVM
+                command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+                command.addAll(List.of("-cp", System.getProperty("java.class.path"), SubscriptionBenchmark.class.getName(),
+                        "--subscribers", String.valueOf(noOfSubscribers), "--meals", String.valueOf(noOfMeals),
+                        "--warmup", String.valueOf(warmupIterations), "--iterations", String.valueOf(iterations),
+                        "--iteration-time", String.valueOf(iterationMillis), "--insert-sort-limit", String.valueOf(insertSortLimit),
+                        "--only", benchmark));
+                Process process = new ProcessBuilder(command).inheritIO().start();
+                int exitCode = process.waitFor();
+                if (exitCode != 0)
+                {
+                    throw new IllegalStateException("Benchmark " + benchmark + " with " + noOfSubscribers + " subscribers and " + noOfMeals
+                            + " meals failed in a forked JVM, exit code " + exitCode + ".");
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if a benchmark runs in this JVM.
+     * @param benchmark name of the benchmark
+     * @return boolean true if all benchmarks run or the benchmark was selected with "--only"
+     */
+    private boolean selected(String benchmark)
+    {
+        return only == null || only.equals(benchmark);
+    }
+
+    /**
+     * Runs all benchmarks for one number of subscribers and meal types.
+     * @param noOfSubscribers number of subscribers
+     * @param noOfMeals number of meal types
+     * @throws Exception when a benchmark fails
+     */
+    private void runSizes(int noOfSubscribers, int noOfMeals) throws Exception
+    {
+        Path input = Files.createTempFile("benchmark_input", ".txt");
+        try
+        {
+            writeInput(input, noOfSubscribers, noOfMeals);
+
+            //readIn
+            if (selected("readIn"))
+            {
+                measureOnce("readIn", noOfSubscribers, noOfMeals, () -> {
+                    SubscriptionRegistry registry = new SubscriptionRegistry();
+                    new InputDataLoader(input).load(registry);
+                    return registry.getSubscribers().size();
+                });
+            }
+
+            SubscriptionRegistry registry = new SubscriptionRegistry();
+            new InputDataLoader(input).load(registry);
+            SubscriptionEngine engine = new SubscriptionEngine(registry);
+            ArrayList<Subscriber> subscribers = new ArrayList<Subscriber>(registry.getSubscribers());
+            String[] mealNames = new String[noOfMeals];
+            for (int i = 0; i < noOfMeals; i++)
+            {
+                mealNames[i] = mealName(i);
+            }
+
+            //insertSort
+            if (selected("insertSort") && noOfSubscribers <= insertSortLimit)
+            {
+                ArrayList<Subscriber> shuffled = new ArrayList<Subscriber>(subscribers);
+                measureOnce("insertSort", noOfSubscribers, noOfMeals, () -> {
+                    Collections.shuffle(shuffled, random);
+                    SortedLinkedList<Subscriber> list = new SortedLinkedList<Subscriber>();
+                    list.addAll(shuffled);
+                    list.insertSort(list);
+                    return list.getFirst().hashCode();
+                });
+            }
+            else if (selected("insertSort"))
+            {
+                System.out.printf(Locale.ROOT, "%-24s %11d %8d %16s%n", "insertSort", noOfSubscribers, noOfMeals, "skipped");
+            }
+
+            //random subscribers and meals used by the repeated operations, chosen up front
+            int[] order = randomIndexes(1 << 16, noOfSubscribers);
+            int[] mealOrder = randomIndexes(1 << 16, noOfMeals);
+            int mask = (1 << 16) - 1;
+
+            if (selected("isSubscriber"))
+            {
+                measureRepeated("isSubscriber", noOfSubscribers, noOfMeals, i -> {
+                    Subscriber s = subscribers.get(order[i & mask]);
+                    return engine.isSubscriber(s.getFirstName(), s.getSurname()) ? 1 : 0;
+                });
+            }
+            if (selected("isMeal"))
+            {
+                measureRepeated("isMeal", noOfSubscribers, noOfMeals, i -> engine.isMeal(mealNames[mealOrder[i & mask]]) ? 1 : 0);
+            }
+            if (selected("isEnoughMeal"))
+            {
+                measureRepeated("isEnoughMeal", noOfSubscribers, noOfMeals, i -> engine.isEnoughMeal(mealNames[mealOrder[i & mask]], 1) ? 1 : 0);
+            }
+
+            //every add is undone by a remove of the same meal, so the limit of 3 meal types and the balances are never reached
+            if (selected("addRemoveMealSubscription"))
+            {
+                int pairs = Math.min(noOfSubscribers, 10_000);
+                measurePairs(noOfSubscribers, noOfMeals, pairs, engine, subscribers, mealNames, mealOrder);
+            }
+            if (!selected("listMeals") && !selected("listSubscribers"))
+            {
+                return;
+            }
+
+            //listings with 1% of subscribers subscribed
+            int subscribed = Math.min(noOfSubscribers / 100, 10_000);
+            for (int i = 0; i < subscribed; i++)
+            {
+                Subscriber s = subscribers.get(order[i & mask]);
+                if (registry.countSubscriptions(s.getFirstName(), s.getSurname()) == 0)
+                {
+                    engine.addMealSubscription(s.getFirstName(), s.getSurname(), mealNames[mealOrder[i & mask]], 1);
+                }
+            }
+            PrintStream discard = new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8);
+            if (selected("listMeals"))
+            {
+                measureOnce("listMeals", noOfSubscribers, noOfMeals, () -> {
+                    MainProgram.printMeals(registry, discard);
+                    return 1;
+                });
+            }
+            if (selected("listSubscribers"))
+            {
+                measureOnce("listSubscribers", noOfSubscribers, noOfMeals, () -> {
+                    MainProgram.printSubscribers(engine, discard);
+                    return 1;
+                });
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(input);
+        }
+    }
+
+    /**
+     * Measures addMealSubscription and removeMealSubscription, every iteration adds one meal to subscriptions of distinct random subscribers and removes it again.
+     * The subscribers of every iteration are chosen before it is timed.
+     * @param noOfSubscribers number of subscribers
+     * @param noOfMeals number of meal types
+     * @param pairs number of adds and removes per iteration, at most the number of subscribers
+     * @param engine engine the operations are applied with
+     * @param subscribers registered subscribers
+     * @param mealNames registered meal type names
+     * @param mealOrder random indexes of meals
+     * @throws Exception when an operation fails
+     */
+    private void measurePairs(int noOfSubscribers, int noOfMeals, int pairs, SubscriptionEngine engine, ArrayList<Subscriber> subscribers,
+                              String[] mealNames, int[] mealOrder) throws Exception
+    {
+        int mask = mealOrder.length - 1;
+        double[] addScores = new double[iterations];
+        double[] removeScores = new double[iterations];
+        int[] chosen = new int[subscribers.size()];
+        for (int i = 0; i < chosen.length; i++)
+        {
+            chosen[i] = i;
+        }
+        Subscriber[] sample = new Subscriber[pairs];
+        for (int iteration = -warmupIterations; iteration < iterations; iteration++)
+        {
+            //distinct subscribers, so each add creates a new subscription, the first pairs indexes of a partial Fisher-Yates shuffle
+            for (int i = 0; i < pairs; i++)
+            {
+                int j = i + random.nextInt(chosen.length - i);
+                int swap = chosen[i];
+                chosen[i] = chosen[j];
+                chosen[j] = swap;
+                sample[i] = subscribers.get(chosen[i]);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < pairs; i++)
+            {
+                Subscriber s = sample[i];
+                engine.addMealSubscription(s.getFirstName(), s.getSurname(), mealNames[mealOrder[i & mask]], 1);
+            }
+            long added = System.nanoTime();
+            for (int i = 0; i < pairs; i++)
+            {
+                Subscriber s = sample[i];
+                engine.removeMealSubscription(s.getFirstName(), s.getSurname(), mealNames[mealOrder[i & mask]], 1);
+            }
+            long removed = System.nanoTime();
+            if (iteration >= 0)
+            {
+                addScores[iteration] = (added - start) / (double) pairs;
+                removeScores[iteration] = (removed - added) / (double) pairs;
+            }
+        }
+        report("addMealSubscription", noOfSubscribers, noOfMeals, addScores, "ns/op");
+        report("removeMealSubscription", noOfSubscribers, noOfMeals, removeScores, "ns/op");
+    }
+
+    /**
+     * Measures an operation that runs once per iteration.
+     * @param name name of the benchmark
+     * @param noOfSubscribers number of subscribers
+     * @param noOfMeals number of meal types
+     * @param operation operation to be measured
+     * @throws Exception when the operation fails
+     */
+    private void measureOnce(String name, int noOfSubscribers, int noOfMeals, Callable<Integer> operation) throws Exception
+    {
+        double[] scores = new double[iterations];
+        for (int iteration = -warmupIterations; iteration < iterations; iteration++)
+        {
+            long start = System.nanoTime();
+            sink += operation.call();
+            long time = System.nanoTime() - start;
+            if (iteration >= 0)
+            {
+                scores[iteration] = time / 1_000_000.0;
+            }
+        }
+        report(name, noOfSubscribers, noOfMeals, scores, "ms/op");
+    }
+
+    /**
+     * Measures an operation repeated for the whole iteration time, time is checked after every 1024 runs.
+     * @param name name of the benchmark
+     * @param noOfSubscribers number of subscribers
+     * @param noOfMeals number of meal types
+     * @param operation operation to be measured
+     * @throws Exception when the operation fails
+     */
+    private void measureRepeated(String name, int noOfSubscribers, int noOfMeals, Operation operation) throws Exception
+    {
+        double[] scores = new double[iterations];
+        long iterationNanos = iterationMillis * 1_000_000L;
+        for (int iteration = -warmupIterations; iteration < iterations; iteration++)
+        {
+            long result = 0;
+            int runs = 0;
+            long start = System.nanoTime();
+            long time;
+            do
+            {
+                for (int i = 0; i < 1024; i++)
+                {
+                    result += operation.run(runs++);
+                }
+                time = System.nanoTime() - start;
+            } while (time < iterationNanos);
+            sink += result;
+            if (iteration >= 0)
+            {
+                scores[iteration] = time / (double) runs;
+            }
+        }
+        report(name, noOfSubscribers, noOfMeals, scores, "ns/op");
+    }
+
+    /**
+     * Prints mean and standard deviation of the measured iterations.
+     * @param name name of the benchmark
+     * @param noOfSubscribers number of subscribers
+     * @param noOfMeals number of meal types
+     * @param scores score of every measured iteration
+     * @param units units of the scores
+     */
+    private static void report(String name, int noOfSubscribers, int noOfMeals, double[] scores, String units)
+    {
+        double mean = 0;
+        for (double score : scores)
+        {
+            mean += score;
+        }
+        mean /= scores.length;
+        double variance = 0;
+        for (double score : scores)
+        {
+            variance += (score - mean) * (score - mean);
+        }
+        double error = scores.length > 1 ? Math.sqrt(variance / (scores.length - 1)) : 0;
+        System.out.printf(Locale.ROOT, "%-24s %11d %8d %16.3f %14s %s%n", name, noOfSubscribers, noOfMeals, mean, "+- " + String.format(Locale.ROOT, "%.3f", error), units);
+    }
+
+    /**
+     * Chooses random indexes.
+     * @param count number of indexes
+     * @param bound indexes are smaller than bound
+     * @return int array of random indexes
+     */
+    private int[] randomIndexes(int count, int bound)
+    {
+        int[] indexes = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            indexes[i] = random.nextInt(bound);
+        }
+        return indexes;
+    }
+
+    /**
+     * Name of a generated meal type.
+     * @param i number of the meal type
+     * @return String name of the meal type
+     */
+    private static String mealName(int i)
+    {
+        return "Meal " + i;
+    }
+
+    /**
+     * Writes an input file with generated subscribers in random order and meals with large balances, see {@link InputDataLoader} for the format.
+     * @param input path of the file
+     * @param noOfSubscribers number of subscribers
+     * @param noOfMeals number of meal types
+     * @throws IOException when the file can't be written
+     */
+    private void writeInput(Path input, int noOfSubscribers, int noOfMeals) throws IOException
+    {
+        try (BufferedWriter out = Files.newBufferedWriter(input, StandardCharsets.UTF_8))
+        {
+            out.write(noOfSubscribers + "\n");
+            for (int i = 0; i < noOfSubscribers; i++)
+            {
+                //unique surnames in random order
+                int surname = (int) ((i * 2654435761L) % noOfSubscribers);
+                out.write("First" + random.nextInt(1000) + " Surname" + surname + "\n");
+            }
+            out.write(noOfMeals + "\n");
+            for (int i = 0; i < noOfMeals; i++)
+            {
+                out.write(mealName(i) + "\n1000000\n");
+            }
+        }
+    }
+}
@@ -1,9 +1,17 @@
 package subscription;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * A Meal is read from the input file and has a name of the meal type and changeable balance of available meals of the particular meal type.
- * <p>Meal implements Comparable interface with overridden compareTo(Meal m) to allow for lexicographic sorting if meals are stored in the {@link subscription.manager.SortedLinkedList sorted linked list}.
- * <p>Balance of particular meal type can be changed with setMealBalance method which is called in the MainProgram class when subscribing or unsubscribing to meals.
+ * <p>Meal implements Comparable interface with overridden compareTo(Meal m) to allow for lexicographic sorting if meals are stored in the {@link subscription.manager.SortedLinkedList sorted linked list} or the {@link subscription.manager.SortedSkipList sorted skip list}.
+ * <p>Balance of particular meal type is changed with {@link #tryReserve(int)} when meals are subscribed to, with {@link #release(int)} when they are unsubscribed from
+ * and with {@link #restock(int)} when meals are delivered or withdrawn.
+ * All of them are atomic and lock-free, the balance is changed with compare-and-set of a VarHandle and the change is retried when another clerk changed the balance in the meantime,
+ * so many clerks can subscribe to a popular meal type at the same time and the balance never goes negative.
+ * The number of retries is counted for every meal and shows how much clerks compete for the meal, see {@link #getReserveRetries()}.
  * @author Robert Petecki
  * @version 1.0 Date created: 01/11/2023
  */
@@ -14,9 +22,29 @@ public class Meal implements Comparable<Meal> {
      */
     private final String mealName;
     /**
-     * Balance of the meals available.
+     * Balance of the meals available, volatile so clerks working in other threads always see the latest balance.
+     */
+    private volatile int mealBalance;
+    /**
+     * Number of compare-and-set retries of balance changes, contention metric of the meal.
+     */
+    private final LongAdder reserveRetries = new LongAdder();
+    /**
+     * VarHandle for atomic compare-and-set of the mealBalance field.
      */
-    private int mealBalance;
+    private static final VarHandle MEAL_BALANCE;
+
+    static
+    {
+        try
+        {
+            MEAL_BALANCE = MethodHandles.lookup().findVarHandle(Meal.class, "mealBalance", int.class);
+        }
+        catch (ReflectiveOperationException exception)
+        {
+            throw new ExceptionInInitializerError(exception);
+        }
+    }
 
     //Constructors
 
@@ -43,7 +71,7 @@ public class Meal implements Comparable<Meal> {
     //Methods
     //setter
     /**
-     * Changes balance of available meals.
+     * Changes balance of available meals, used when the balance is read from the input file, use {@link #tryReserve(int)} and {@link #release(int)} to take and return meals.
      * @param balance new balance of the meals available
      */
     public void setMealBalance(int balance)
@@ -51,6 +79,67 @@ public class Meal implements Comparable<Meal> {
         mealBalance = balance;
     }
 
+    //atomic changes of balance
+    /**
+     * Atomically takes meals from the balance of available meals if there is enough of them, the balance never goes negative.
+     * @param quantity quantity of meals to take, greater than 0
+     * @return boolean true if the meals were taken, false if there is not enough meals and the balance is unchanged
+     */
+    public boolean tryReserve(int quantity)
+    {
+        int balance = mealBalance;
+        while (balance >= quantity)
+        {
+            if (MEAL_BALANCE.compareAndSet(this, balance, balance - quantity))
+            {
+                return true;
+            }
+            //another clerk changed the balance, retry with the new balance
+            reserveRetries.increment();
+            balance = mealBalance;
+        }
+        return false;
+    }
+
+    /**
+     * Atomically returns meals to the balance of available meals. The balance is kept at most Integer.MAX_VALUE,
+     * like {@link #restock(int)} keeps it, meals returned to a full balance are dropped instead of turning the balance negative.
+     * @param quantity quantity of meals to return, greater than 0
+     */
+    public void release(int quantity)
+    {
+        int balance = mealBalance;
+        while (!MEAL_BALANCE.compareAndSet(this, balance, (int) Math.min((long) balance + quantity, Integer.MAX_VALUE)))
+        {
+            //another clerk changed the balance, retry with the new balance
+            reserveRetries.increment();
+            balance = mealBalance;
+        }
+    }
+
+    /**
+     * Atomically restocks meals, i.e. adds meals delivered to the balance of available meals or withdraws meals from it, alongside clerks reserving and releasing meals.
+     * A withdrawal takes at most the meals available, the balance never goes negative.
+     * @param delta meals added to the balance, negative for meals withdrawn
+     * @return int meals actually added, negative for meals actually withdrawn
+     */
+    public int restock(int delta)
+    {
+        int balance = mealBalance;
+        while (true)
+        {
+            //a withdrawal of more meals than available takes all of them
+            int applied = (int) Math.max(Math.min((long) delta, Integer.MAX_VALUE - (long) balance), -balance);
+            if (MEAL_BALANCE.compareAndSet(this, balance, balance + applied))
+            {
+                return applied;
+            }
+            //a clerk changed the balance, retry with the new balance
+            reserveRetries.increment();
+            balance = mealBalance;
+        }
+    }
+
     //getters
     /**
      * Getter for the name of the meal type.
@@ -70,6 +159,15 @@ public class Meal implements Comparable<Meal> {
         return mealBalance;
     }
 
+    /**
+     * Getter for the number of compare-and-set retries of {@link #tryReserve(int)} and {@link #release(int)}, the higher the number the more clerks compete for the meal.
+     * @return long number of retries since the meal was created
+     */
+    public long getReserveRetries()
+    {
+        return reserveRetries.sum();
+    }
+
     //compareTo
     /**
      * Overriden to compare Meal objects based on their mealName field, used for lexicographic ordering.
@@ -105,4 +203,15 @@ public class Meal implements Comparable<Meal> {
         Meal other = (Meal) otherObject;
         return mealName.equals(other.mealName);
     }
+
+    //hashCode
+    /**
+     * Overriden to be consistent with {@link #equals(Object)}, the hash code is based on the mealName only.
+     * Allows Meal objects to be used as keys in hash based collections, see {@link subscription.manager.SubscriptionRegistry}.
+     * @return int hash code of the meal type name
+     */
+    @Override
+    public int hashCode() {
+        return mealName.hashCode();
+    }
 }
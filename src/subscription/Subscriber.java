@@ -2,7 +2,7 @@ package subscription;
 
 /**
  * Subscriber class - representing a subscriber that has a first name and a last name.
- * <p>Subscriber class implements Comparable interface with overridden compareTo(Subscriber s) to allow for lexicographic sorting in a SortedLinkedList, see
+ * <p>Subscriber class implements Comparable interface with overridden compareTo(Subscriber s) to allow for lexicographic sorting in a SortedLinkedList or a SortedSkipList, see {@link subscription.manager.SortedSkipList}.
  * <p>Subscriber's first name and surname are read from the input file once the program is started using MainProgram driver class and cannot be changed in the program.
  * @author Robert Petecki
  * @version 1.0 Date created: 01/11/2023
@@ -89,4 +89,15 @@ public class Subscriber implements Comparable<Subscriber> {
         return firstName.equals(other.firstName)
                 && surname.equals(other.surname);
     }
+
+    //hashCode
+    /**
+     * Overriden to be consistent with {@link #equals(Object)}, the hash code is based on the firstName and surname.
+     * Allows Subscriber objects to be used as keys in hash based collections, see {@link subscription.manager.SubscriptionRegistry}.
+     * @return int hash code of the full name of the subscriber
+     */
+    @Override
+    public int hashCode() {
+        return 31 * surname.hashCode() + firstName.hashCode();
+    }
 }
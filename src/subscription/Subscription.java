@@ -3,21 +3,41 @@ package subscription;
 /**
  * A Subscription can be created by clerk's interaction with the program and has subscriber's full name,
  * subscribed meal name, and quantity of the specified meal.
+ * <p>The registry doesn't keep Subscription objects, it stores subscriptions compactly as ids of the subscriber and the meal with the quantity,
+ * see {@link subscription.manager.SubscriptionRegistry}. A Subscription is a copy of one stored subscription created when subscriptions are listed,
+ * it refers to the registered {@link Subscriber} instead of keeping its own copies of the names.
  * @author Robert Petecki
  * @version 1.0 Date created: 01/11/2023
  */
-public class Subscription extends Subscriber {
+public class Subscription {
 
+    /**
+     * the subscriber of the subscription
+     */
+    private final Subscriber subscriber;
     /**
      * name of the meal type in the subscription
      */
     private final String mealSubscribed;
     /**
-     * quantity of the meals of a particular meal type in the subscription
+     * quantity of the meals of a particular meal type in the subscription at the time the copy was made
      */
-    private int mealSubscribedBalance;
+    private final int mealSubscribedBalance;
+
+    //Constructors
+    /**
+     * Subscription constructor specifying the subscriber, meal type and it's quantity in the subscription.
+     * @param subscriber the subscriber
+     * @param mealName name of the meal type subscribed to
+     * @param mealQuantity quantity of meals of that meal type subscribed to
+     */
+    public Subscription(Subscriber subscriber, String mealName, int mealQuantity)
+    {
+        this.subscriber = subscriber;
+        mealSubscribed = mealName;
+        mealSubscribedBalance = mealQuantity;
+    }
 
-    //Constructor
     /**
      * Subscription constructor specifying subscriber's full name, meal type and it's quantity in the subscription.
      * @param firstName first name of the subscriber
@@ -27,13 +47,38 @@ public class Subscription extends Subscriber {
      */
     public Subscription(String firstName, String surname, String mealName, int mealQuantity)
     {
-        super(firstName, surname);
-        mealSubscribed = mealName;
-        mealSubscribedBalance = mealQuantity;
+        this(new Subscriber(firstName, surname), mealName, mealQuantity);
     }
 
     //Methods
     //getters
+    /**
+     * Getter for the subscriber of the subscription.
+     * @return Subscriber of the subscription
+     */
+    public Subscriber getSubscriber()
+    {
+        return subscriber;
+    }
+
+    /**
+     * Getter for the first name of the subscriber.
+     * @return String with first name of the subscriber
+     */
+    public String getFirstName()
+    {
+        return subscriber.getFirstName();
+    }
+
+    /**
+     * Getter for the last name of the subscriber.
+     * @return String with surname of the subscriber
+     */
+    public String getSurname()
+    {
+        return subscriber.getSurname();
+    }
+
     /**
      * Getter for the name of the meal type.
      * @return String name of the meal type
@@ -51,15 +96,6 @@ public class Subscription extends Subscriber {
         return mealSubscribedBalance;
     }
 
-    //setter
-    /**
-     * Changes quantity of meals subscribed to.
-     * @param mealQuantity new quantity of meals subscribed to.
-     */
-    public void setMealSubscribedBalance(int mealQuantity) {
-        mealSubscribedBalance = mealQuantity;
-    }
-
     //toString
     /**
      * Returns full name of the subscriber, meal type name and the quantity of meals of that type in the subscription.
@@ -80,8 +116,18 @@ public class Subscription extends Subscriber {
     @Override
     public boolean equals(Object otherObject) {
         Subscription other = (Subscription) otherObject;
-        return getFirstName().equals(other.getFirstName())
-                && getSurname().equals(other.getSurname())
+        return subscriber.equals(other.subscriber)
                 && mealSubscribed.equals(other.mealSubscribed);
     }
+
+    //hashCode
+    /**
+     * Overriden to be consistent with {@link #equals(Object)}, the hash code is based on the subscriber's full name and meal type name.
+     * Allows Subscription objects to be used as keys in hash based collections.
+     * @return int hash code of the subscriber's full name and meal type name
+     */
+    @Override
+    public int hashCode() {
+        return 31 * subscriber.hashCode() + mealSubscribed.hashCode();
+    }
 }
@@ -0,0 +1,593 @@
+package subscription.manager;
+
+import subscription.*;
+import subscription.manager.exceptions.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A BatchProcessor applies a file of subscription changes without the interactive menu of the {@link MainProgram main program}.
+ * <p>Every line of the file is one operation, blank lines and lines starting with "#" are skipped:
+ * <ul>
+ *     <li>
+ *         a First Surname|Meal type|quantity - add meals to a registered subscriber's subscription, e.g. "a Anna Smith|Curry|3"
+ *     </li>
+ *     <li>
+ *         r First Surname|Meal type|quantity - remove meals from a registered subscriber's subscription, e.g. "r Ted Smith|Fish|1"
+ *     </li>
+ *     <li>
+ *         l text - look up subscribers by the beginning of the surname, or of the first name and surname, and meals by the beginning of the name, e.g. "l Smi" or "l An Smi",
+ *         the matches are written to the log, see {@link SearchIndex}
+ *     </li>
+ * </ul>
+ * <p>Operations go through the same {@link SubscriptionEngine business rules} and validations as the clerk's keyboard input,
+ * and a letter is sent to the subscriber when there is not enough meals or the limit of meal types is reached, and when meals are removed, see {@link SubscriptionDesk}.
+ * Rules are checked with {@link ValidationResult results} of the engine, so rejected operations don't create exceptions.
+ * The file is streamed line by line and the result of every operation is written to a log in format "line OK" or "line FAIL RESULT: message",
+ * look ups are written as "line OK # subscribers: ...; # meals: ...",
+ * operations not following the format are logged as "line FAIL Exception: message",
+ * counts and throughput of the whole batch are available with {@link #getSummary()}.
+ * <p>With more than one clerk the operations are applied by several clerk threads at the same time.
+ * The file is read by one thread and every operation is handed to the clerk chosen by the subscriber's name,
+ * so operations of one subscriber are still applied in the order of the file, while operations of different subscribers run in parallel.
+ * Results are then written to the log in the order they finish, every result starts with the line number of the operation.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class BatchProcessor {
+    //Fields
+    /**
+     * Size of the buffer the operations file is read with.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * Number of operations waiting for each clerk thread before the reading thread waits for the clerk.
+     */
+    private static final int QUEUE_CAPACITY = 1024;
+    /**
+     * Marks the end of operations in the queue of a clerk thread.
+     */
+    private static final Operation END = new Operation(0, "");
+    /**
+     * The SubscriptionEngine operations are applied with.
+     */
+    private final SubscriptionEngine engine;
+    /**
+     * SubscriptionDesk adds and removes meals and sends the letters.
+     */
+    private final SubscriptionDesk desk;
+    /**
+     * Number of clerk threads applying operations.
+     */
+    private final int clerks;
+    /**
+     * Number of operations processed.
+     */
+    private final LongAdder operations = new LongAdder();
+    /**
+     * Number of operations that failed.
+     */
+    private final LongAdder failed = new LongAdder();
+    /**
+     * Maximum number of subscribers and of meals written to the log for a look up.
+     */
+    private static final int LOOKUP_LIMIT = 10;
+    /**
+     * SearchIndex look ups are done with, built on the first look up when not specified.
+     */
+    private volatile SearchIndex searchIndex;
+    /**
+     * Time taken by processing in nanoseconds.
+     */
+    private long nanos;
+
+    //Constructor
+    /**
+     * BatchProcessor constructor specifying the engine operations are applied with and the LetterService for letters.
+     * @param engine SubscriptionEngine operations are applied with
+     * @param letterService LetterService letters to subscribers are sent with
+     */
+    public BatchProcessor(SubscriptionEngine engine, LetterService letterService)
+    {
+        this(engine, letterService, 1);
+    }
+
+    /**
+     * BatchProcessor constructor specifying the engine operations are applied with, the LetterService for letters and the number of clerk threads.
+     * @param engine SubscriptionEngine operations are applied with
+     * @param letterService LetterService letters to subscribers are sent with
+     * @param clerks number of clerk threads applying operations, 1 applies operations in the reading thread
+     * @throws IllegalArgumentException when the number of clerks is smaller than 1
+     */
+    public BatchProcessor(SubscriptionEngine engine, LetterService letterService, int clerks)
+    {
+        if (clerks < 1)
+        {
+            throw new IllegalArgumentException("Number of clerks needs to be at least 1, found " + clerks + ".");
+        }
+        this.engine = engine;
+        desk = new SubscriptionDesk(engine, letterService);
+        this.clerks = clerks;
+    }
+
+    /**
+     * BatchProcessor constructor specifying the engine operations are applied with, the LetterService for letters, the number of clerk threads
+     * and the SearchIndex look ups are done with.
+     * @param engine SubscriptionEngine operations are applied with
+     * @param letterService LetterService letters to subscribers are sent with
+     * @param clerks number of clerk threads applying operations, 1 applies operations in the reading thread
+     * @param searchIndex SearchIndex of the subscribers and meals registered in the registry of the engine
+     * @throws IllegalArgumentException when the number of clerks is smaller than 1
+     */
+    public BatchProcessor(SubscriptionEngine engine, LetterService letterService, int clerks, SearchIndex searchIndex)
+    {
+        this(engine, letterService, clerks);
+        this.searchIndex = searchIndex;
+    }
+
+    //Methods
+    /**
+     * Applies all operations of the operations file and writes the result of every operation to the log.
+     * With one clerk operations are applied in the order of the file, with more clerks in the order of the file for each subscriber.
+     * @param opsFile path of the operations file
+     * @param log Writer the result of every operation is written to, it is flushed but not closed
+     * @throws IOException when the operations file can't be read or the log can't be written
+     * @throws RuntimeException when an operation failed for a reason other than the operation itself, e.g. its letter couldn't be sent,
+     * with more clerks the other operations of the failed clerk are not applied
+     */
+    public void process(Path opsFile, Writer log) throws IOException
+    {
+        long start = System.nanoTime();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(Files.newInputStream(opsFile), StandardCharsets.UTF_8), BUFFER_SIZE))
+        {
+            if (clerks == 1)
+            {
+                String line;
+                int lineNumber = 0;
+                while ((line = in.readLine()) != null)
+                {
+                    lineNumber++;
+                    String operation = line.trim();
+                    //skip blank lines and comments
+                    if (operation.isEmpty() || operation.charAt(0) == '#')
+                    {
+                        continue;
+                    }
+                    writeResult(log, lineNumber, apply(operation));
+                }
+            }
+            else
+            {
+                processConcurrently(in, log);
+            }
+        }
+        finally
+        {
+            log.flush();
+            nanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Reads operations and hands them to clerk threads by the subscriber's name, waits until all clerks are finished.
+     * @param in BufferedReader of the operations file
+     * @param log Writer the result of every operation is written to
+     * @throws IOException when the operations file can't be read or a clerk couldn't write to the log
+     * @throws RuntimeException when a clerk failed to apply an operation for a reason other than the operation itself, e.g. the letter couldn't be sent
+     */
+    private void processConcurrently(BufferedReader in, Writer log) throws IOException
+    {
+        Clerk[] clerkThreads = new Clerk[clerks];
+        for (int i = 0; i < clerks; i++)
+        {
+            clerkThreads[i] = new Clerk(i, log);
+            clerkThreads[i].start();
+        }
+        try
+        {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null)
+            {
+                lineNumber++;
+                String operation = line.trim();
+                //skip blank lines and comments
+                if (operation.isEmpty() || operation.charAt(0) == '#')
+                {
+                    continue;
+                }
+                //operations of the same subscriber always go to the same clerk
+                clerkThreads[clerkOf(operation)].queue.put(new Operation(lineNumber, operation));
+            }
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch was interrupted.", exception);
+        }
+        finally
+        {
+            //let every clerk finish its queue and wait for it
+            for (Clerk clerk : clerkThreads)
+            {
+                clerk.finish();
+            }
+        }
+        for (Clerk clerk : clerkThreads)
+        {
+            if (clerk.failure instanceof IOException failure)
+            {
+                throw failure;
+            }
+            if (clerk.failure instanceof RuntimeException failure)
+            {
+                //e.g. the LetterService was closed, the same exception as with one clerk
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Chooses the clerk for an operation by the subscriber's name, whitespace is ignored so the same subscriber always gets the same clerk.
+     * @param operation operation in format "a First Surname|Meal type|quantity" or "r First Surname|Meal type|quantity"
+     * @return int index of the clerk
+     */
+    private int clerkOf(String operation)
+    {
+        int end = operation.indexOf('|');
+        if (end < 0)
+        {
+            end = operation.length();
+        }
+        int hash = 0;
+        for (int i = 1; i < end; i++)
+        {
+            char c = operation.charAt(i);
+            if (!Character.isWhitespace(c))
+            {
+                hash = 31 * hash + c;
+            }
+        }
+        return Math.floorMod(hash ^ (hash >>> 16), clerks);
+    }
+
+    /**
+     * Writes the result of one operation to the log as one line, clerk threads share the log.
+     * @param log Writer the result is written to
+     * @param lineNumber line number of the operation
+     * @param result result of the operation
+     * @throws IOException when the log can't be written
+     */
+    private static void writeResult(Writer log, int lineNumber, String result) throws IOException
+    {
+        synchronized (log)
+        {
+            log.write(Integer.toString(lineNumber));
+            log.write(' ');
+            log.write(result);
+            log.write('\n');
+        }
+    }
+
+    /**
+     * Applies one operation.
+     * @param operation operation in format "a First Surname|Meal type|quantity" or "r First Surname|Meal type|quantity"
+     * @return String "OK" if the operation succeeded, "FAIL Exception: message" if it failed
+     */
+    String apply(String operation)
+    {
+        operations.increment();
+        try
+        {
+            if (operation.charAt(0) == 'l' && operation.length() > 1 && Character.isWhitespace(operation.charAt(1)))
+            {
+                return "OK " + lookUp(operation.substring(2).trim());
+            }
+            String failure = applyOperation(operation);
+            if (failure == null)
+            {
+                return "OK";
+            }
+            failed.increment();
+            return "FAIL " + failure;
+        }
+        catch (IllegalArgumentException exception)
+        {
+            failed.increment();
+            //keep the log one line per operation
+            return "FAIL " + exception.getClass().getSimpleName() + ": " + exception.getMessage().replace('\n', ' ');
+        }
+    }
+
+    /**
+     * Parses and applies one operation, validations are the same as for the clerk's keyboard input.
+     * @param operation operation in format "a First Surname|Meal type|quantity" or "r First Surname|Meal type|quantity"
+     * @return String null if the operation succeeded, "RESULT: message" explaining the {@link ValidationResult} if it was rejected
+     * @throws IllegalArgumentException when the operation doesn't follow the format
+     * @throws IllegalNumberInputException when the quantity is not a positive number
+     */
+    private String applyOperation(String operation)
+    {
+        //operation letter followed by whitespace and three fields separated by "|"
+        if (operation.length() < 2 || !Character.isWhitespace(operation.charAt(1)))
+        {
+            throw new IllegalArgumentException("Operation \"" + operation + "\" doesn't follow the format \"a|r First Surname|Meal type|quantity\".");
+        }
+        char op = operation.charAt(0);
+        int firstBar = operation.indexOf('|');
+        int secondBar = firstBar < 0 ? -1 : operation.indexOf('|', firstBar + 1);
+        if (secondBar < 0 || operation.indexOf('|', secondBar + 1) >= 0)
+        {
+            throw new IllegalArgumentException("Operation \"" + operation + "\" doesn't follow the format \"a|r First Surname|Meal type|quantity\".");
+        }
+        String fullName = operation.substring(2, firstBar).trim();
+        String mealType = operation.substring(firstBar + 1, secondBar).trim();
+        String quantity = operation.substring(secondBar + 1).trim();
+
+        //first name and surname separated by whitespace
+        int space = indexOfWhitespace(fullName);
+        if (space < 0 || indexOfWhitespace(fullName.substring(space).trim()) >= 0)
+        {
+            throw new IllegalArgumentException("Expected first name and surname separated by space, found \"" + fullName + "\".");
+        }
+        String fName = fullName.substring(0, space);
+        String lName = fullName.substring(space).trim();
+
+        int mealQuantity;
+        try
+        {
+            mealQuantity = Integer.parseInt(quantity);
+        }
+        catch (NumberFormatException exception)
+        {
+            throw new IllegalNumberInputException("The number of meals must be a number, found \"" + quantity + "\".");
+        }
+        if (mealQuantity <= 0)
+        {
+            throw new IllegalNumberInputException("The number of meals you would like to " + (op == 'r' ? "remove" : "add") + " needs to be greater than 0.");
+        }
+
+        ValidationResult result;
+        switch (op)
+        {
+            case 'a':
+                result = desk.add(fName, lName, mealType, mealQuantity);
+                break;
+            case 'r':
+                result = desk.remove(fName, lName, mealType, mealQuantity);
+                break;
+            default:
+                throw new IllegalArgumentException("Operation \"" + op + "\" doesn't exist, expected \"a\", \"r\" or \"l\".");
+        }
+        if (result.isOk())
+        {
+            return null;
+        }
+        //keep the log one line per operation
+        return result + ": " + engine.describe(result, fName, lName, mealType, mealQuantity).replace('\n', ' ');
+    }
+
+    /**
+     * Looks up subscribers and meals by the beginning of their names.
+     * @param query beginning of the surname, or of the first name and surname separated by whitespace, or of the meal's name
+     * @return String in format "# subscribers: First Surname, ...; # meals: Meal type, ..." listing at most {@link #LOOKUP_LIMIT} of each
+     */
+    private String lookUp(String query)
+    {
+        SearchIndex index = getSearchIndex();
+        List<Subscriber> subscribers = index.searchSubscribers(query, LOOKUP_LIMIT + 1);
+        List<Meal> meals = index.findMeals(query);
+        StringBuilder result = new StringBuilder(64);
+        result.append(subscribers.size() > LOOKUP_LIMIT ? "more than " + LOOKUP_LIMIT : Integer.toString(subscribers.size())).append(" subscribers");
+        for (int i = 0; i < subscribers.size() && i < LOOKUP_LIMIT; i++)
+        {
+            result.append(i == 0 ? ": " : ", ").append(subscribers.get(i).getFirstName()).append(' ').append(subscribers.get(i).getSurname());
+        }
+        result.append("; ").append(meals.size()).append(" meals");
+        for (int i = 0; i < meals.size() && i < LOOKUP_LIMIT; i++)
+        {
+            result.append(i == 0 ? ": " : ", ").append(meals.get(i).getMealName());
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns the SearchIndex look ups are done with, building it from the registry of the engine on the first look up if it wasn't specified.
+     * @return SearchIndex of the registered subscribers and meals
+     */
+    private SearchIndex getSearchIndex()
+    {
+        SearchIndex index = searchIndex;
+        if (index == null)
+        {
+            synchronized (this)
+            {
+                index = searchIndex;
+                if (index == null)
+                {
+                    index = SearchIndex.build(engine.getRegistry());
+                    searchIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Finds the first whitespace character.
+     * @param s String to search
+     * @return int position of the first whitespace character, -1 if there is none
+     */
+    private static int indexOfWhitespace(String s)
+    {
+        for (int i = 0; i < s.length(); i++)
+        {
+            if (Character.isWhitespace(s.charAt(i)))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    //getters
+    /**
+     * Getter for the number of operations processed.
+     * @return long number of operations
+     */
+    public long getOperations()
+    {
+        return operations.sum();
+    }
+
+    /**
+     * Getter for the number of operations that failed.
+     * @return long number of failed operations
+     */
+    public long getFailed()
+    {
+        return failed.sum();
+    }
+
+    /**
+     * Getter for the number of letters sent.
+     * @return long number of letters
+     */
+    public long getLetters()
+    {
+        return desk.getLetters();
+    }
+
+    /**
+     * Returns a summary of the batch with counts of operations, time taken and throughput.
+     * @return String in format: "Batch finished: # operations (# succeeded, # failed, # letters) in # ms (# operations/sec)."
+     */
+    public String getSummary()
+    {
+        double seconds = nanos / 1_000_000_000.0;
+        long operations = getOperations();
+        long failed = getFailed();
+        return String.format("Batch finished: %d operations (%d succeeded, %d failed, %d letters) in %.1f ms (%.0f operations/sec%s).",
+                operations, operations - failed, failed, getLetters(), nanos / 1_000_000.0, seconds == 0 ? 0 : operations / seconds,
+                clerks > 1 ? ", " + clerks + " clerks" : "");
+    }
+
+    /**
+     * An operation read from the operations file waiting for a clerk.
+     * @param lineNumber line number of the operation in the operations file
+     * @param text operation in format "a First Surname|Meal type|quantity" or "r First Surname|Meal type|quantity"
+     */
+    private record Operation(int lineNumber, String text) {}
+
+    /**
+     * A clerk thread applying operations from its queue in order until the end of operations.
+     */
+    private class Clerk extends Thread {
+        /**
+         * Operations waiting for this clerk.
+         */
+        private final BlockingQueue<Operation> queue = new ArrayBlockingQueue<Operation>(QUEUE_CAPACITY);
+        /**
+         * Writer the results are written to.
+         */
+        private final Writer log;
+        /**
+         * First failure of the clerk, an IOException writing to the log or a RuntimeException applying an operation, null if there was none.
+         */
+        private volatile Exception failure;
+
+        /**
+         * Clerk constructor specifying the number of the clerk and the log.
+         * @param number number of the clerk used in the thread's name
+         * @param log Writer the results are written to
+         */
+        Clerk(int number, Writer log)
+        {
+            super("batch-clerk-" + number);
+            this.log = log;
+            setDaemon(true);
+        }
+
+        /**
+         * Applies operations from the queue until the end of operations.
+         * An operation failing with an unexpected exception, e.g. because its letter can't be sent, is logged as "line FAIL Exception: message" and counted as failed.
+         * After the first failure, of an operation or writing the log, the remaining operations are only taken from the queue, so the reading thread never waits for a clerk that stopped,
+         * and the failure is thrown by {@link #process(Path, Writer)} once all clerks are finished.
+         */
+        @Override
+        public void run()
+        {
+            try
+            {
+                Operation operation;
+                while ((operation = queue.take()) != END)
+                {
+                    if (failure == null)
+                    {
+                        try
+                        {
+                            writeResult(log, operation.lineNumber(), applyOrFail(operation.text()));
+                        }
+                        catch (IOException exception)
+                        {
+                            failure = exception;
+                        }
+                    }
+                }
+            }
+            catch (InterruptedException exception)
+            {
+                //stop when the batch is interrupted
+            }
+        }
+
+        /**
+         * Applies one operation, an unexpected exception becomes the failure of the clerk and the result of the operation.
+         * @param operation operation in format "a First Surname|Meal type|quantity" or "r First Surname|Meal type|quantity"
+         * @return String result of the operation, "FAIL Exception: message" if it failed with an unexpected exception
+         */
+        private String applyOrFail(String operation)
+        {
+            try
+            {
+                return apply(operation);
+            }
+            catch (RuntimeException exception)
+            {
+                failed.increment();
+                failure = exception;
+                //keep the log one line per operation
+                return "FAIL " + exception.getClass().getSimpleName() + ": " + String.valueOf(exception.getMessage()).replace('\n', ' ');
+            }
+        }
+
+        /**
+         * Marks the end of operations and waits until the clerk has applied all operations in its queue.
+         * @throws IOException when the reading thread is interrupted while waiting
+         */
+        void finish() throws IOException
+        {
+            try
+            {
+                queue.put(END);
+                join();
+            }
+            catch (InterruptedException exception)
+            {
+                interrupt();
+                Thread.currentThread().interrupt();
+                throw new IOException("Batch was interrupted.", exception);
+            }
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package subscription.manager;
+
+import subscription.Meal;
+import subscription.Subscriber;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.InputMismatchException;
+
+/**
+ * A BinaryCatalog reads and writes subscribers and meals in a compact binary format, an alternative to the text format of the input file
+ * that {@link InputDataLoader} reads without parsing names and numbers.
+ * <p>All numbers are little-endian. The file has these parts:
+ * <ul>
+ *     <li>
+ *         a header of {@value #HEADER_SIZE} bytes: the magic bytes "SMCT", the version of the format, flags, the number of strings,
+ *         the size of the string table in bytes (8 bytes), the number of subscribers and the number of meals
+ *     </li>
+ *     <li>
+ *         the string table, every distinct name once as its length in bytes (2 bytes, unsigned) followed by the name in UTF-8
+ *     </li>
+ *     <li>
+ *         the subscribers, 8 bytes each: positions of the first name and the surname in the string table
+ *     </li>
+ *     <li>
+ *         the meals, 8 bytes each: position of the name in the string table and the balance of available meals
+ *     </li>
+ * </ul>
+ * With the {@link #PRESORTED} flag the subscribers are stored in ascending order by surname then first name, so they are added to the registry without sorting,
+ * the order is checked while the subscribers are read and they are sorted after all if it doesn't hold.
+ * <p>The file is memory-mapped and read in place: every distinct name becomes one String, shared by all subscribers with that name,
+ * and subscribers are built from int views of the mapped file, so nothing else is copied or parsed and the load is bound by reading the file.
+ * Catalogs larger than 2 GB can't be mapped at once and are not supported.
+ * <p>{@link #writeCatalog(SubscriptionRegistry, Path)} and {@link #writeText(SubscriptionRegistry, Path)} convert loaded subscribers and meals to either format,
+ * so a text input file is converted by loading it and writing a catalog, and back.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class BinaryCatalog {
+    //Fields
+    /**
+     * First bytes of every catalog, "SMCT" in ASCII.
+     */
+    private static final int MAGIC = 'S' | 'M' << 8 | 'C' << 16 | 'T' << 24;
+    /**
+     * Version of the format written by this class.
+     */
+    public static final int VERSION = 1;
+    /**
+     * Flag set when subscribers are stored in ascending order by surname then first name.
+     */
+    public static final int PRESORTED = 1;
+    /**
+     * Size of the header in bytes.
+     */
+    public static final int HEADER_SIZE = 32;
+    /**
+     * Longest name in UTF-8 bytes, lengths are stored in 2 bytes.
+     */
+    private static final int MAX_NAME_BYTES = 0xFFFF;
+    /**
+     * Size of the buffer a catalog is written through.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Subscribers and meals read from a catalog.
+     * @param subscribers subscribers in the order of the catalog
+     * @param presorted true if the subscribers are in ascending order
+     * @param meals meals in the order of the catalog
+     */
+    public record Contents(Subscriber[] subscribers, boolean presorted, Meal[] meals)
+    {
+    }
+
+    //Constructor
+    /**
+     * BinaryCatalog has only static methods.
+     */
+    private BinaryCatalog()
+    {
+    }
+
+    //Methods
+    /**
+     * Checks if a file is a catalog by its first bytes, the position of the channel is not changed.
+     * @param channel channel of the file
+     * @return boolean true if the file starts with the magic bytes of a catalog
+     * @throws IOException when the file can't be read
+     */
+    public static boolean isCatalog(FileChannel channel) throws IOException
+    {
+        if (channel.size() < HEADER_SIZE)
+        {
+            return false;
+        }
+        ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        while (magic.hasRemaining() && channel.read(magic, magic.position()) >= 0)
+        {
+            //read the 4 bytes, a channel may return fewer at once
+        }
+        return magic.getInt(0) == MAGIC;
+    }
+
+    /**
+     * Reads a catalog from a memory-mapped file.
+     * @param channel channel of the catalog
+     * @param parallel true to build subscribers on all processors
+     * @return Contents of the catalog
+     * @throws IOException when the file can't be mapped or is larger than 2 GB
+     * @throws InputMismatchException when the file is not a catalog of a supported version or is damaged
+     */
+    public static Contents read(FileChannel channel, boolean parallel) throws IOException
+    {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE)
+        {
+            throw new IOException("Catalogs larger than 2 GB are not supported.");
+        }
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        ByteBuffer data = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        if (size < HEADER_SIZE || data.getInt(0) != MAGIC)
+        {
+            throw new InputMismatchException("The file is not a subscription catalog.");
+        }
+        int version = data.getInt(4);
+        if (version != VERSION)
+        {
+            throw new InputMismatchException("Catalog version " + version + " is not supported, expected version " + VERSION + ".");
+        }
+        int flags = data.getInt(8);
+        int stringCount = data.getInt(12);
+        long stringBytes = data.getLong(16);
+        int subscriberCount = data.getInt(24);
+        int mealCount = data.getInt(28);
+        if (stringCount < 0 || subscriberCount < 0 || mealCount < 0 || stringBytes < 0
+                || HEADER_SIZE + stringBytes + 8L * subscriberCount + 8L * mealCount != size)
+        {
+            throw new InputMismatchException("Catalog is damaged, its size doesn't match its header.");
+        }
+
+        //every distinct name becomes one String
+        String[] strings = new String[stringCount];
+        byte[] bytes = new byte[256];
+        int position = HEADER_SIZE;
+        int stringsEnd = (int) (HEADER_SIZE + stringBytes);
+        for (int i = 0; i < stringCount; i++)
+        {
+            if (position + 2 > stringsEnd)
+            {
+                throw new InputMismatchException("Catalog is damaged, the string table ends after " + i + " of " + stringCount + " names.");
+            }
+            int length = Short.toUnsignedInt(data.getShort(position));
+            position += 2;
+            if (position + length > stringsEnd)
+            {
+                throw new InputMismatchException("Catalog is damaged, name " + i + " is longer than the string table.");
+            }
+            if (length > bytes.length)
+            {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            data.get(position, bytes, 0, length);
+            strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            position += length;
+        }
+        if (position != stringsEnd)
+        {
+            throw new InputMismatchException("Catalog is damaged, the string table has more bytes than names.");
+        }
+
+        //subscribers are read through an int view of the mapped file
+        IntBuffer subscriberIds = data.slice(stringsEnd, subscriberCount * 8).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        Subscriber[] subscribers = new Subscriber[subscriberCount];
+        if (parallel)
+        {
+            Arrays.parallelSetAll(subscribers, i -> new Subscriber(string(strings, subscriberIds.get(2 * i)), string(strings, subscriberIds.get(2 * i + 1))));
+        }
+        else
+        {
+            Arrays.setAll(subscribers, i -> new Subscriber(string(strings, subscriberIds.get(2 * i)), string(strings, subscriberIds.get(2 * i + 1))));
+        }
+        //the flag is trusted only if the order holds, a wrong order would break the sorted list
+        boolean presorted = (flags & PRESORTED) != 0 && isSorted(subscribers);
+
+        IntBuffer mealData = data.slice(stringsEnd + subscriberCount * 8, mealCount * 8).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        Meal[] meals = new Meal[mealCount];
+        for (int i = 0; i < mealCount; i++)
+        {
+            int balance = mealData.get(2 * i + 1);
+            if (balance < 0)
+            {
+                throw new InputMismatchException("Catalog is damaged, meal " + i + " has a negative balance.");
+            }
+            meals[i] = new Meal(string(strings, mealData.get(2 * i)), balance);
+        }
+        return new Contents(subscribers, presorted, meals);
+    }
+
+    /**
+     * Finds a name in the string table.
+     * @param strings the string table
+     * @param index position of the name
+     * @return String the name
+     * @throws InputMismatchException when the position is outside the string table
+     */
+    private static String string(String[] strings, int index)
+    {
+        if (index < 0 || index >= strings.length)
+        {
+            throw new InputMismatchException("Catalog is damaged, name " + index + " is not in the string table.");
+        }
+        return strings[index];
+    }
+
+    /**
+     * Checks if subscribers are in ascending order by surname then first name.
+     * @param subscribers the subscribers
+     * @return boolean true if every subscriber sorts before or equal to the next
+     */
+    private static boolean isSorted(Subscriber[] subscribers)
+    {
+        for (int i = 1; i < subscribers.length; i++)
+        {
+            if (subscribers[i - 1].compareTo(subscribers[i]) > 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the registered subscribers and meals as a catalog, subscribers in ascending order with the {@link #PRESORTED} flag,
+     * meals in ascending order by name. The file is replaced.
+     * @param registry registry with the subscribers and meals
+     * @param path path of the catalog
+     * @throws IOException when the catalog can't be written
+     * @throws IllegalArgumentException when a name is longer than 65535 bytes in UTF-8
+     */
+    public static void writeCatalog(SubscriptionRegistry registry, Path path) throws IOException
+    {
+        int subscriberCount = registry.getSubscribers().size();
+        int mealCount = registry.getMeals().size();
+        //positions of names in the string table, names are added in the order they are first used
+        HashMap<String, Integer> positions = new HashMap<String, Integer>();
+        int[] subscriberIds = new int[subscriberCount * 2];
+        int[] mealIds = new int[mealCount];
+        long stringBytes = 0;
+        int i = 0;
+        for (Subscriber subscriber : registry.getSubscribers())
+        {
+            for (String name : new String[] {subscriber.getFirstName(), subscriber.getSurname()})
+            {
+                Integer position = positions.get(name);
+                if (position == null)
+                {
+                    position = positions.size();
+                    positions.put(name, position);
+                    stringBytes += 2 + nameBytes(name).length;
+                }
+                subscriberIds[i++] = position;
+            }
+        }
+        int[] balances = new int[mealCount];
+        int m = 0;
+        for (Meal meal : registry.getMeals())
+        {
+            String name = meal.getMealName();
+            balances[m] = meal.getMealBalance();
+            Integer position = positions.get(name);
+            if (position == null)
+            {
+                position = positions.size();
+                positions.put(name, position);
+                stringBytes += 2 + nameBytes(name).length;
+            }
+            mealIds[m++] = position;
+        }
+        String[] strings = new String[positions.size()];
+        positions.forEach((name, position) -> strings[position] = name);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(PRESORTED).putInt(strings.length).putLong(stringBytes).putInt(subscriberCount).putInt(mealCount);
+            for (String name : strings)
+            {
+                byte[] bytes = nameBytes(name);
+                ensureRoom(channel, buffer, 2 + bytes.length);
+                buffer.putShort((short) bytes.length).put(bytes);
+            }
+            for (int id : subscriberIds)
+            {
+                ensureRoom(channel, buffer, 4);
+                buffer.putInt(id);
+            }
+            for (int meal = 0; meal < mealCount; meal++)
+            {
+                ensureRoom(channel, buffer, 8);
+                buffer.putInt(mealIds[meal]).putInt(balances[meal]);
+            }
+            flush(channel, buffer);
+        }
+    }
+
+    /**
+     * Writes the registered subscribers and meals in the text format of the input file, subscribers and meals in ascending order. The file is replaced.
+     * @param registry registry with the subscribers and meals
+     * @param path path of the text file
+     * @throws IOException when the file can't be written
+     */
+    public static void writeText(SubscriptionRegistry registry, Path path) throws IOException
+    {
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8), BUFFER_SIZE))
+        {
+            out.append(Integer.toString(registry.getSubscribers().size())).append('\n');
+            for (Subscriber subscriber : registry.getSubscribers())
+            {
+                out.append(subscriber.getFirstName()).append(' ').append(subscriber.getSurname()).append('\n');
+            }
+            out.append(Integer.toString(registry.getMeals().size())).append('\n');
+            for (Meal meal : registry.getMeals())
+            {
+                out.append(meal.getMealName()).append('\n').append(Integer.toString(meal.getMealBalance())).append('\n');
+            }
+        }
+    }
+
+    /**
+     * Encodes a name in UTF-8.
+     * @param name the name
+     * @return byte[] the name in UTF-8
+     * @throws IllegalArgumentException when the name is longer than 65535 bytes
+     */
+    private static byte[] nameBytes(String name)
+    {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_NAME_BYTES)
+        {
+            throw new IllegalArgumentException("Name \"" + name.substring(0, 20) + "...\" is longer than " + MAX_NAME_BYTES + " bytes.");
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes the buffer out when it has no room for a number of bytes.
+     * @param channel channel of the catalog
+     * @param buffer the buffer
+     * @param bytes number of bytes about to be put
+     * @throws IOException when the catalog can't be written
+     */
+    private static void ensureRoom(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException
+    {
+        if (buffer.remaining() < bytes)
+        {
+            flush(channel, buffer);
+        }
+    }
+
+    /**
+     * Writes out and clears the buffer.
+     * @param channel channel of the catalog
+     * @param buffer the buffer
+     * @throws IOException when the catalog can't be written
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
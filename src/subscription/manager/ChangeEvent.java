@@ -0,0 +1,269 @@
+package subscription.manager;
+
+/**
+ * A ChangeEvent describes one change of the state published to a {@link ChangeFeed}: a subscription added, increased, decreased or removed, a meal restocked or a letter sent.
+ * <p>Events are slots of the feed's ring, they are created once when the feed is created and filled again for every change, so publishing doesn't create objects.
+ * A listener may only read an event while it is being handled, the slot is reused once all listeners have handled it, values needed later have to be copied.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class ChangeEvent {
+    /**
+     * Kind of change described by a ChangeEvent.
+     */
+    public enum Type {
+        /**
+         * A subscription of a new meal type was added to a subscriber.
+         */
+        SUBSCRIPTION_ADDED,
+        /**
+         * Meals were added to an existing subscription.
+         */
+        QUANTITY_INCREASED,
+        /**
+         * Meals were removed from a subscription and some are left.
+         */
+        QUANTITY_DECREASED,
+        /**
+         * All meals were removed from a subscription, the new quantity is 0.
+         */
+        SUBSCRIPTION_REMOVED,
+        /**
+         * Meals were delivered to or withdrawn from the balance of available meals, or a meal type was added, no subscriber is involved.
+         */
+        MEAL_RESTOCKED,
+        /**
+         * A letter was sent to a subscriber, see {@link #getLetterType()}.
+         */
+        LETTER_SENT;
+
+        /**
+         * Checks if the change is a change of a subscription, which also changes the balance of the meal.
+         * @return boolean true for all types except {@link #MEAL_RESTOCKED} and {@link #LETTER_SENT}
+         */
+        public boolean isSubscriptionChange()
+        {
+            return this != MEAL_RESTOCKED && this != LETTER_SENT;
+        }
+    }
+
+    //Fields
+    /**
+     * Kind of change.
+     */
+    private Type type;
+    /**
+     * Time of the change, milliseconds since the epoch.
+     */
+    private long timeMillis;
+    /**
+     * Subscriber's first name.
+     */
+    private String firstName;
+    /**
+     * Subscriber's surname.
+     */
+    private String surname;
+    /**
+     * Name of the meal type.
+     */
+    private String mealName;
+    /**
+     * Id of the meal in the registry, -1 for letters.
+     */
+    private int mealId;
+    /**
+     * Meals added to the subscription, negative for meals removed, meals added to the balance by a restock, or quantity of meals of the letter.
+     */
+    private int quantity;
+    /**
+     * Quantity of meals of the subscription after the change, 0 for restocks and letters.
+     */
+    private int subscribed;
+    /**
+     * Balance of available meals right after the change, 0 for letters.
+     */
+    private int mealBalance;
+    /**
+     * Kind of letter, null for subscription changes.
+     */
+    private LetterType letterType;
+
+    //Methods
+    /**
+     * Fills the event with a change of a subscription, called by the publisher that claimed the slot.
+     * @param type kind of change
+     * @param firstName subscriber's first name
+     * @param surname subscriber's surname
+     * @param mealName name of the meal type
+     * @param mealId id of the meal in the registry
+     * @param quantity meals added, negative for meals removed
+     * @param subscribed quantity of meals of the subscription after the change
+     * @param mealBalance balance of available meals after the change
+     */
+    void setSubscriptionChange(Type type, String firstName, String surname, String mealName, int mealId, int quantity, int subscribed, int mealBalance)
+    {
+        this.type = type;
+        this.timeMillis = System.currentTimeMillis();
+        this.firstName = firstName;
+        this.surname = surname;
+        this.mealName = mealName;
+        this.mealId = mealId;
+        this.quantity = quantity;
+        this.subscribed = subscribed;
+        this.mealBalance = mealBalance;
+        this.letterType = null;
+    }
+
+    /**
+     * Fills the event with a restock of a meal, called by the publisher that claimed the slot.
+     * @param mealName name of the meal type
+     * @param mealId id of the meal in the registry
+     * @param quantity meals added to the balance, negative for meals withdrawn
+     * @param mealBalance balance of available meals after the restock
+     */
+    void setRestock(String mealName, int mealId, int quantity, int mealBalance)
+    {
+        this.type = Type.MEAL_RESTOCKED;
+        this.timeMillis = System.currentTimeMillis();
+        this.firstName = null;
+        this.surname = null;
+        this.mealName = mealName;
+        this.mealId = mealId;
+        this.quantity = quantity;
+        this.subscribed = 0;
+        this.mealBalance = mealBalance;
+        this.letterType = null;
+    }
+
+    /**
+     * Fills the event with a letter sent, called by the publisher that claimed the slot.
+     * @param letterType kind of letter
+     * @param firstName subscriber's first name
+     * @param surname subscriber's surname
+     * @param mealName name of the meal type of the letter
+     * @param quantity quantity of meals of the letter
+     */
+    void setLetter(LetterType letterType, String firstName, String surname, String mealName, int quantity)
+    {
+        this.type = Type.LETTER_SENT;
+        this.timeMillis = System.currentTimeMillis();
+        this.firstName = firstName;
+        this.surname = surname;
+        this.mealName = mealName;
+        this.mealId = -1;
+        this.quantity = quantity;
+        this.subscribed = 0;
+        this.mealBalance = 0;
+        this.letterType = letterType;
+    }
+
+    /**
+     * Getter for the kind of change.
+     * @return Type of the change
+     */
+    public Type getType()
+    {
+        return type;
+    }
+
+    /**
+     * Getter for the time of the change.
+     * @return long milliseconds since the epoch
+     */
+    public long getTimeMillis()
+    {
+        return timeMillis;
+    }
+
+    /**
+     * Getter for the subscriber's first name.
+     * @return String first name, null for restocks
+     */
+    public String getFirstName()
+    {
+        return firstName;
+    }
+
+    /**
+     * Getter for the subscriber's surname.
+     * @return String surname, null for restocks
+     */
+    public String getSurname()
+    {
+        return surname;
+    }
+
+    /**
+     * Getter for the name of the meal type.
+     * @return String name of the meal type
+     */
+    public String getMealName()
+    {
+        return mealName;
+    }
+
+    /**
+     * Getter for the id of the meal in the registry.
+     * @return int id of the meal, -1 for letters
+     */
+    public int getMealId()
+    {
+        return mealId;
+    }
+
+    /**
+     * Getter for the meals added to the subscription, i.e. taken from the balance of available meals, or added to the balance by a restock.
+     * @return int meals added, negative for meals removed or withdrawn, or quantity of meals of the letter
+     */
+    public int getQuantity()
+    {
+        return quantity;
+    }
+
+    /**
+     * Getter for the quantity of meals of the subscription after the change.
+     * @return int quantity of meals, 0 for restocks and letters
+     */
+    public int getSubscribed()
+    {
+        return subscribed;
+    }
+
+    /**
+     * Getter for the balance of available meals right after the change.
+     * @return int balance of the meal, 0 for letters
+     */
+    public int getMealBalance()
+    {
+        return mealBalance;
+    }
+
+    /**
+     * Getter for the kind of letter.
+     * @return LetterType of the letter, null for subscription changes
+     */
+    public LetterType getLetterType()
+    {
+        return letterType;
+    }
+
+    /**
+     * Describes the event in one line, e.g. for a change log.
+     * @return String e.g. "1760810000000 QUANTITY_INCREASED Ted Smith Curry +2 subscribed 3 balance 5"
+     */
+    @Override
+    public String toString()
+    {
+        if (type == Type.LETTER_SENT)
+        {
+            return timeMillis + " " + type + " " + firstName + " " + surname + " " + mealName + " " + quantity + " " + letterType;
+        }
+        if (type == Type.MEAL_RESTOCKED)
+        {
+            return timeMillis + " " + type + " " + mealName + " " + (quantity > 0 ? "+" : "") + quantity + " balance " + mealBalance;
+        }
+        return timeMillis + " " + type + " " + firstName + " " + surname + " " + mealName + " " + (quantity > 0 ? "+" : "") + quantity
+                + " subscribed " + subscribed + " balance " + mealBalance;
+    }
+}
@@ -0,0 +1,491 @@
+package subscription.manager;
+
+import java.io.Closeable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A ChangeFeed passes every change of the state, i.e. subscriptions added, increased, decreased and removed, meals restocked and letters sent, to listeners in the background,
+ * the way the LMAX Disruptor does, so listeners such as the {@link StockMonitor} or a change log don't add to the time of the clerk's change.
+ * <p>Changes are {@link ChangeEvent events} in a ring of slots created once with the feed:
+ * <ul>
+ *     <li>
+ *         a publisher claims the next sequence number with one atomic increment, fills the slot of the sequence and marks the slot published with the lap of the ring it was filled in,
+ *         every slot is written by the one publisher that claimed it, without locks
+ *     </li>
+ *     <li>
+ *         every listener has its own thread and its own sequence, only written by that thread. It takes all events published since its last event at once,
+ *         handles them in order and moves its sequence once for the whole batch, {@code endOfBatch} tells the listener when to flush
+ *     </li>
+ *     <li>
+ *         a publisher waits only when the ring is full, i.e. the slowest listener is a whole ring behind, so listeners can't lose events
+ *     </li>
+ * </ul>
+ * Changes of one subscriber are published while the subscriber's lock is held, so listeners see them in the order they were done.
+ * An idle listener spins briefly, then yields, then parks until a publisher wakes it up, a publisher only wakes up listeners that are parked,
+ * so no thread is woken up for every event and an idle feed takes no processor time. Publishers waiting for a full ring spin, yield, then sleep for a tenth of a millisecond.
+ * <p>A listener added later only gets events published after it was added. A failing listener is reported once on the error output and removed from the feed.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class ChangeFeed implements Closeable {
+    /**
+     * A Listener handles events of a ChangeFeed on its own thread.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Handles one event, the event may only be read until the method returns.
+         * @param event the event
+         * @param sequence sequence number of the event, events are numbered from 0 in the order they were claimed
+         * @param endOfBatch true for the last event available at the moment, e.g. to flush a writer
+         */
+        void onEvent(ChangeEvent event, long sequence, boolean endOfBatch);
+    }
+
+    //Fields
+    /**
+     * Number of slots of the ring when no other capacity is specified.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    /**
+     * Number of times a waiting thread spins before it yields.
+     */
+    private static final int SPINS = 100;
+    /**
+     * Number of times a waiting thread yields before it sleeps.
+     */
+    private static final int YIELDS = 100;
+    /**
+     * Time a publisher waiting for a full ring sleeps for in nanoseconds.
+     */
+    private static final long SLEEP_NANOS = 100_000;
+    /**
+     * Slots of the ring, the slot of a sequence is sequence &amp; mask.
+     */
+    private final ChangeEvent[] ring;
+    /**
+     * Mask selecting the slot of a sequence, the capacity is a power of 2.
+     */
+    private final int mask;
+    /**
+     * Number of bits of the slot in a sequence, the rest of the sequence is the lap of the ring.
+     */
+    private final int shift;
+    /**
+     * Lap of the ring the event in the slot was published in, -1 before the first lap.
+     */
+    private final AtomicIntegerArray published;
+    /**
+     * Last claimed sequence, -1 before the first event.
+     */
+    private final AtomicLong cursor = new AtomicLong(-1);
+    /**
+     * Sequence of the slowest listener last seen by a publisher, publishers look at all listeners again only when the ring seems full.
+     */
+    private volatile long gatingSequence = -1;
+    /**
+     * Listeners of the feed and their threads.
+     */
+    private final CopyOnWriteArrayList<Consumer> consumers = new CopyOnWriteArrayList<Consumer>();
+    /**
+     * Number of times a publisher waited for the slowest listener because the ring was full.
+     */
+    private final LongAdder publisherWaits = new LongAdder();
+    /**
+     * Number of listeners parked or about to park, publishers look for listeners to wake up only when it isn't 0.
+     */
+    private final AtomicInteger parkedListeners = new AtomicInteger();
+    /**
+     * True once the feed is closed, later changes are not published.
+     */
+    private volatile boolean closed;
+
+    /**
+     * A Consumer runs one listener on its own thread.
+     */
+    private final class Consumer implements Runnable {
+        /**
+         * Name of the listener, also the name of its thread.
+         */
+        private final String name;
+        /**
+         * The listener.
+         */
+        private final Listener listener;
+        /**
+         * Sequence of the last event handled by the listener, only written by the thread of the listener.
+         */
+        private final AtomicLong sequence;
+        /**
+         * Thread the listener runs on.
+         */
+        private final Thread thread;
+        /**
+         * True while the listener is parked or about to park, a publisher then wakes up its thread.
+         */
+        private volatile boolean parked;
+
+        /**
+         * Consumer constructor, the listener starts after the last claimed event.
+         * @param name name of the listener
+         * @param listener the listener
+         */
+        Consumer(String name, Listener listener)
+        {
+            this.name = name;
+            this.listener = listener;
+            this.sequence = new AtomicLong(cursor.get());
+            this.thread = new Thread(this, "change-" + name);
+            thread.setDaemon(true);
+        }
+
+        /**
+         * Handles batches of published events until the feed is closed and all claimed events are handled.
+         */
+        @Override
+        public void run()
+        {
+            long next = sequence.get() + 1;
+            int idle = 0;
+            while (true)
+            {
+                long claimed = cursor.get();
+                long available = highestPublished(next, claimed);
+                if (available >= next)
+                {
+                    for (long s = next; s <= available; s++)
+                    {
+                        try
+                        {
+                            listener.onEvent(ring[(int) s & mask], s, s == available);
+                        }
+                        catch (RuntimeException exception)
+                        {
+                            //the listener is dropped, publishers don't wait for it any more
+                            consumers.remove(this);
+                            System.err.println("Change listener " + name + " failed and was removed: " + exception);
+                            return;
+                        }
+                    }
+                    //one store releases the whole batch to the publishers
+                    sequence.lazySet(available);
+                    next = available + 1;
+                    idle = 0;
+                }
+                else if (closed && next > claimed)
+                {
+                    return;
+                }
+                else if (idle < SPINS + YIELDS)
+                {
+                    idle = idle(idle);
+                }
+                else
+                {
+                    park(next);
+                }
+            }
+        }
+
+        /**
+         * Parks the thread of the listener until a publisher or {@link #close()} wakes it up.
+         * The flag is set before the slot is checked again and publishers check the flag after publishing, so an event published meanwhile is never missed.
+         * @param next sequence of the next event of the listener
+         */
+        private void park(long next)
+        {
+            parkedListeners.incrementAndGet();
+            parked = true;
+            if (published.get((int) next & mask) != lap(next) && !closed)
+            {
+                LockSupport.park(this);
+            }
+            parked = false;
+            parkedListeners.decrementAndGet();
+        }
+    }
+
+    //Constructors
+    /**
+     * ChangeFeed constructor creating a ring of {@link #DEFAULT_CAPACITY} slots.
+     */
+    public ChangeFeed()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * ChangeFeed constructor creating a ring of slots, all events are created here.
+     * @param capacity number of slots, rounded up to a power of 2
+     */
+    public ChangeFeed(int capacity)
+    {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1);
+        ring = new ChangeEvent[size];
+        for (int i = 0; i < size; i++)
+        {
+            ring[i] = new ChangeEvent();
+        }
+        mask = size - 1;
+        shift = Integer.numberOfTrailingZeros(size);
+        published = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++)
+        {
+            published.set(i, -1);
+        }
+    }
+
+    //Methods
+    /**
+     * Adds a listener and starts its thread, it gets events published from now on.
+     * @param name name of the listener, e.g. "stock-monitor"
+     * @param listener the listener
+     */
+    public void addListener(String name, Listener listener)
+    {
+        Consumer consumer = new Consumer(name, listener);
+        consumers.add(consumer);
+        consumer.thread.start();
+    }
+
+    /**
+     * Publishes a change of a subscription. Waits only while the ring is full, does nothing once the feed is closed.
+     * @param type kind of change
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type
+     * @param mealId id of the meal in the registry
+     * @param quantity meals added, negative for meals removed
+     * @param subscribed quantity of meals of the subscription after the change
+     * @param mealBalance balance of available meals after the change
+     */
+    public void publishSubscriptionChange(ChangeEvent.Type type, String fName, String lName, String mealType, int mealId, int quantity, int subscribed, int mealBalance)
+    {
+        if (closed)
+        {
+            return;
+        }
+        long sequence = next();
+        ring[(int) sequence & mask].setSubscriptionChange(type, fName, lName, mealType, mealId, quantity, subscribed, mealBalance);
+        publish(sequence);
+    }
+
+    /**
+     * Publishes a restock of a meal. Waits only while the ring is full, does nothing once the feed is closed.
+     * @param mealType name of the meal type
+     * @param mealId id of the meal in the registry
+     * @param quantity meals added to the balance, negative for meals withdrawn
+     * @param mealBalance balance of available meals after the restock
+     */
+    public void publishRestock(String mealType, int mealId, int quantity, int mealBalance)
+    {
+        if (closed)
+        {
+            return;
+        }
+        long sequence = next();
+        ring[(int) sequence & mask].setRestock(mealType, mealId, quantity, mealBalance);
+        publish(sequence);
+    }
+
+    /**
+     * Publishes a letter sent to a subscriber. Waits only while the ring is full, does nothing once the feed is closed.
+     * @param letterType kind of letter
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type of the letter
+     * @param mealQuantity quantity of meals of the letter
+     */
+    public void publishLetter(LetterType letterType, String fName, String lName, String mealType, int mealQuantity)
+    {
+        if (closed)
+        {
+            return;
+        }
+        long sequence = next();
+        ring[(int) sequence & mask].setLetter(letterType, fName, lName, mealType, mealQuantity);
+        publish(sequence);
+    }
+
+    /**
+     * Marks the slot of a sequence published and wakes up parked listeners, if there are any.
+     * @param sequence the filled sequence
+     */
+    private void publish(long sequence)
+    {
+        published.set((int) sequence & mask, lap(sequence));
+        if (parkedListeners.get() > 0)
+        {
+            wakeUpListeners();
+        }
+    }
+
+    /**
+     * Wakes up the threads of parked listeners.
+     */
+    private void wakeUpListeners()
+    {
+        for (Consumer consumer : consumers)
+        {
+            if (consumer.parked)
+            {
+                LockSupport.unpark(consumer.thread);
+            }
+        }
+    }
+
+    /**
+     * Claims the next sequence, waits while its slot still holds an event the slowest listener hasn't handled.
+     * @return long the claimed sequence
+     */
+    private long next()
+    {
+        long sequence = cursor.incrementAndGet();
+        long wrapPoint = sequence - ring.length;
+        if (wrapPoint > gatingSequence)
+        {
+            long slowest = slowestSequence(sequence - 1);
+            if (wrapPoint > slowest)
+            {
+                publisherWaits.increment();
+                int idle = 0;
+                while (wrapPoint > (slowest = slowestSequence(sequence - 1)))
+                {
+                    idle = idle(idle);
+                }
+            }
+            gatingSequence = slowest;
+        }
+        return sequence;
+    }
+
+    /**
+     * Finds the sequence of the slowest listener.
+     * @param ceiling sequence returned when there are no listeners
+     * @return long lowest sequence of the listeners
+     */
+    private long slowestSequence(long ceiling)
+    {
+        long slowest = ceiling;
+        for (Consumer consumer : consumers)
+        {
+            slowest = Math.min(slowest, consumer.sequence.get());
+        }
+        return slowest;
+    }
+
+    /**
+     * Finds the last of the consecutive published events starting at a sequence, an event claimed but not yet filled ends the run.
+     * @param from first sequence to check
+     * @param to last claimed sequence
+     * @return long last published sequence of the run, from - 1 if the event at from isn't published yet
+     */
+    private long highestPublished(long from, long to)
+    {
+        for (long s = from; s <= to; s++)
+        {
+            if (published.get((int) s & mask) != lap(s))
+            {
+                return s - 1;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Computes the lap of the ring of a sequence.
+     * @param sequence the sequence
+     * @return int lap of the ring
+     */
+    private int lap(long sequence)
+    {
+        return (int) (sequence >>> shift);
+    }
+
+    /**
+     * Waits a little, first by spinning, then by yielding, then by sleeping for a tenth of a millisecond.
+     * @param idle number of times the thread waited so far
+     * @return int number of times the thread waited, including this time
+     */
+    private static int idle(int idle)
+    {
+        if (idle < SPINS)
+        {
+            Thread.onSpinWait();
+        }
+        else if (idle < SPINS + YIELDS)
+        {
+            Thread.yield();
+        }
+        else
+        {
+            LockSupport.parkNanos(SLEEP_NANOS);
+        }
+        return idle + 1;
+    }
+
+    /**
+     * Getter for the number of published events.
+     * @return long number of claimed sequences
+     */
+    public long getPublished()
+    {
+        return cursor.get() + 1;
+    }
+
+    /**
+     * Getter for the number of times a publisher waited because the ring was full.
+     * @return long number of waits
+     */
+    public long getPublisherWaits()
+    {
+        return publisherWaits.sum();
+    }
+
+    /**
+     * Finds how many events every listener has yet to handle.
+     * @return Map of names of listeners to numbers of events, in the order listeners were added
+     */
+    public Map<String, Long> getLags()
+    {
+        Map<String, Long> lags = new LinkedHashMap<String, Long>();
+        long claimed = cursor.get();
+        for (Consumer consumer : consumers)
+        {
+            lags.put(consumer.name, Math.max(0, claimed - consumer.sequence.get()));
+        }
+        return lags;
+    }
+
+    /**
+     * Closes the feed, waits until every listener has handled all events published before, later changes are not published.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        for (Consumer consumer : consumers)
+        {
+            LockSupport.unpark(consumer.thread);
+        }
+        for (Consumer consumer : consumers)
+        {
+            try
+            {
+                consumer.thread.join();
+            }
+            catch (InterruptedException exception)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package subscription.manager;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A HeapSubscriptionStore keeps subscriptions in one long[] array on the Java heap, the default {@link SubscriptionStore}.
+ * <p>Every subscriber has 3 slots at position id * 3, and every used slot packs the meal id and the quantity of meals into one long, an empty slot is 0.
+ * A new subscription takes the first free slot of the subscriber. Slots are read and written with volatile semantics through a VarHandle.
+ * <p>Subscriptions are kept only in memory, the {@link SubscriptionJournal journal} keeps them across restarts.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class HeapSubscriptionStore implements SubscriptionStore {
+    //Fields
+    /**
+     * Number of subscription slots of every subscriber.
+     */
+    private static final int SLOTS = SubscriptionEngine.MAX_MEAL_TYPES;
+    /**
+     * VarHandle for volatile access to the slots.
+     */
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(long[].class);
+    /**
+     * Subscription slots, every used slot is (meal id + 1) in the high 32 bits and the quantity in the low 32 bits.
+     */
+    private volatile long[] slots = new long[16 * SLOTS];
+    /**
+     * Number of all stored subscriptions.
+     */
+    private final AtomicInteger subscriptionsCount = new AtomicInteger();
+
+    //Methods
+    /**
+     * Copies the slots to a bigger array when more subscribers are registered, the array at least doubles.
+     * @param subscribers number of registered subscribers
+     */
+    @Override
+    public void ensureCapacity(int subscribers)
+    {
+        if (subscribers * SLOTS > slots.length)
+        {
+            slots = Arrays.copyOf(slots, Math.max(subscribers, slots.length / SLOTS * 2) * SLOTS);
+        }
+    }
+
+    /**
+     * Finds the quantity of a subscription in the slots of the subscriber.
+     * @param subscriberId id of the subscriber
+     * @param mealId id of the meal
+     * @return int quantity of meals, 0 if the subscriber has no subscription of the meal type
+     */
+    @Override
+    public int getQuantity(int subscriberId, int mealId)
+    {
+        long[] current = slots;
+        for (int i = subscriberId * SLOTS; i < subscriberId * SLOTS + SLOTS; i++)
+        {
+            long slot = (long) SLOT.getVolatile(current, i);
+            if (slot != 0 && mealOf(slot) == mealId)
+            {
+                return quantityOf(slot);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Sets the quantity of a subscription, a new subscription takes the first free slot of the subscriber and quantity 0 frees the slot.
+     * @param subscriberId id of the subscriber
+     * @param mealId id of the meal
+     * @param quantity new quantity of meals, 0 to remove the subscription
+     */
+    @Override
+    public void setQuantity(int subscriberId, int mealId, int quantity)
+    {
+        long[] current = slots;
+        int free = -1;
+        for (int i = subscriberId * SLOTS; i < subscriberId * SLOTS + SLOTS; i++)
+        {
+            long slot = (long) SLOT.getVolatile(current, i);
+            if (slot == 0)
+            {
+                if (free < 0)
+                {
+                    free = i;
+                }
+            }
+            else if (mealOf(slot) == mealId)
+            {
+                if (quantity == 0)
+                {
+                    SLOT.setVolatile(current, i, 0L);
+                    subscriptionsCount.decrementAndGet();
+                }
+                else
+                {
+                    SLOT.setVolatile(current, i, pack(mealId, quantity));
+                }
+                return;
+            }
+        }
+        if (quantity == 0)
+        {
+            return;
+        }
+        if (free < 0)
+        {
+            throw new IllegalStateException("Subscriber " + subscriberId + " has no free subscription slot.");
+        }
+        SLOT.setVolatile(current, free, pack(mealId, quantity));
+        subscriptionsCount.incrementAndGet();
+    }
+
+    /**
+     * Counts used slots of the subscriber.
+     * @param subscriberId id of the subscriber
+     * @return int number of subscriptions of the subscriber
+     */
+    @Override
+    public int countSubscriptions(int subscriberId)
+    {
+        long[] current = slots;
+        int count = 0;
+        for (int i = subscriberId * SLOTS; i < subscriberId * SLOTS + SLOTS; i++)
+        {
+            if ((long) SLOT.getVolatile(current, i) != 0)
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Unpacks the used slots of the subscriber into the arrays.
+     * @param subscriberId id of the subscriber
+     * @param mealIds array the meal ids are copied to
+     * @param quantities array the quantities are copied to
+     * @param offset position of the first copied subscription in the arrays
+     * @return int number of subscriptions copied
+     */
+    @Override
+    public int copySubscriptions(int subscriberId, int[] mealIds, int[] quantities, int offset)
+    {
+        long[] current = slots;
+        int count = 0;
+        for (int i = subscriberId * SLOTS; i < subscriberId * SLOTS + SLOTS; i++)
+        {
+            long slot = (long) SLOT.getVolatile(current, i);
+            if (slot != 0)
+            {
+                mealIds[offset + count] = mealOf(slot);
+                quantities[offset + count] = quantityOf(slot);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Getter for the number of all stored subscriptions.
+     * @return int number of subscriptions
+     */
+    @Override
+    public int getSubscriptionCount()
+    {
+        return subscriptionsCount.get();
+    }
+
+    /**
+     * Getter for the memory of the slots on the Java heap.
+     * @return long bytes of the slot array, 8 bytes for every slot and the array header
+     */
+    @Override
+    public long getMemoryBytes()
+    {
+        return 16 + 8L * slots.length;
+    }
+
+    /**
+     * Subscriptions are kept on the Java heap.
+     * @return boolean false
+     */
+    @Override
+    public boolean isOffHeap()
+    {
+        return false;
+    }
+
+    /**
+     * Subscriptions on the heap don't survive a restart, there is nothing to keep.
+     * @param fingerprint fingerprint of the registered subscribers and meals
+     * @return boolean false
+     */
+    @Override
+    public boolean resume(long fingerprint)
+    {
+        return false;
+    }
+
+    /**
+     * Empties all slots, the fingerprint isn't needed as nothing is kept.
+     * @param fingerprint fingerprint of the registered subscribers and meals
+     */
+    @Override
+    public void reset(long fingerprint)
+    {
+        Arrays.fill(slots, 0L);
+        subscriptionsCount.set(0);
+    }
+
+    /**
+     * Nothing to release, the slots are garbage collected.
+     */
+    @Override
+    public void close()
+    {
+    }
+
+    /**
+     * Packs a meal id and a quantity into a slot.
+     * @param mealId id of the meal
+     * @param quantity quantity of meals, greater than 0
+     * @return long used slot
+     */
+    private static long pack(int mealId, int quantity)
+    {
+        return ((long) (mealId + 1) << 32) | (quantity & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Unpacks the meal id of a used slot.
+     * @param slot used slot
+     * @return int id of the meal
+     */
+    private static int mealOf(long slot)
+    {
+        return (int) (slot >>> 32) - 1;
+    }
+
+    /**
+     * Unpacks the quantity of meals of a used slot.
+     * @param slot used slot
+     * @return int quantity of meals
+     */
+    private static int quantityOf(long slot)
+    {
+        return (int) slot;
+    }
+}
@@ -0,0 +1,746 @@
+package subscription.manager;
+
+import subscription.Meal;
+import subscription.Subscriber;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * An InputDataLoader reads the input file with information about registered subscribers and meals into a {@link SubscriptionRegistry registry}.
+ * <p>Data in the input file follows the format below:
+ * <p>The first line contains an integer representing the number of registered subscribers, followed by the
+ * information about the subscribers (one line for every subscriber with their first name and surname). The
+ * next line contains an integer representing the number of different types of meal available, and is followed by
+ * the information about the meals (two lines for every meal: one line containing the name of the meal and the
+ * second one containing the number of these meals available each week).
+ * <p>The file is read through a FileChannel into a large buffer and parsed byte by byte, numbers are parsed without creating Strings
+ * and without regular expressions used by Scanner, only names of subscribers and meals are turned into Strings.
+ * Time taken and number of records loaded are kept, so the load throughput can be reported with {@link #getSummary()}.
+ * <p>With parallelism greater than 1 the file is memory-mapped and the subscriber section is split into chunks aligned on line boundaries,
+ * the chunks are parsed and sorted on a ForkJoinPool and the sorted chunks are merged into one sorted array,
+ * which is added to the registry without sorting it again. The meal section is small and is read sequentially after that.
+ * Files larger than 2 GB can't be mapped at once and are always read sequentially.
+ * <p>A {@link BinaryCatalog binary catalog} is recognised by its first bytes and read instead of parsing text, names are decoded once and numbers are read in place.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class InputDataLoader {
+    //Fields
+    /**
+     * Path of the input file used when no other path is specified.
+     */
+    public static final String DEFAULT_INPUT_FILE = "src/subscription/manager/input_data.txt";
+    /**
+     * Size of the buffer the file is read into.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+    /**
+     * Number of chunks the subscriber section is split into for every thread of a parallel load, more chunks than threads balance the work better.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+    /**
+     * Path of the input file.
+     */
+    private final Path path;
+    /**
+     * Number of threads used for parsing the subscriber section, 1 for a sequential load.
+     */
+    private final int parallelism;
+    /**
+     * Number of subscribers loaded by the last load.
+     */
+    private int subscribersLoaded;
+    /**
+     * Number of meals loaded by the last load.
+     */
+    private int mealsLoaded;
+    /**
+     * Time taken by the last load in nanoseconds.
+     */
+    private long loadNanos;
+
+    //Constructors
+    /**
+     * InputDataLoader constructor specifying path of the input file, the file is read sequentially.
+     * @param path path of the input file
+     */
+    public InputDataLoader(Path path)
+    {
+        this(path, 1);
+    }
+
+    /**
+     * InputDataLoader constructor specifying path of the input file and number of threads used for parsing subscribers.
+     * @param path path of the input file
+     * @param parallelism number of threads, 1 for a sequential load
+     * @throws IllegalArgumentException when parallelism is smaller than 1
+     */
+    public InputDataLoader(Path path, int parallelism)
+    {
+        if (parallelism < 1)
+        {
+            throw new IllegalArgumentException("Number of threads needs to be greater than 0.");
+        }
+        this.path = path;
+        this.parallelism = parallelism;
+    }
+
+    //Methods
+    /**
+     * Reads subscribers and meals from the input file, text or binary catalog, and registers them in the registry,
+     * each section is sorted once after it is read, see {@link SubscriptionRegistry#addAllSubscribers(java.util.Collection)}.
+     * @param registry registry the subscribers and meals are added to
+     * @throws FileNotFoundException when the input file doesn't exist
+     * @throws IOException when the input file can't be read
+     * @throws InputMismatchException when the input file doesn't follow the expected format
+     */
+    public void load(SubscriptionRegistry registry) throws IOException
+    {
+        long start = System.nanoTime();
+        try (FileChannel channel = openChannel(path))
+        {
+            if (BinaryCatalog.isCatalog(channel))
+            {
+                loadCatalog(registry, channel);
+            }
+            else if (parallelism > 1 && channel.size() <= Integer.MAX_VALUE)
+            {
+                loadParallel(registry, channel);
+            }
+            else
+            {
+                LineReader in = new LineReader(channel, 0);
+                //number of subscribers, followed by one line for every subscriber
+                int noOfSubscribers = in.nextInt();
+                ArrayList<Subscriber> subscribers = new ArrayList<Subscriber>(noOfSubscribers);
+                for (int i = 0; i < noOfSubscribers; i++)
+                {
+                    subscribers.add(in.nextSubscriber());
+                }
+                registry.addAllSubscribers(subscribers);
+                subscribersLoaded = noOfSubscribers;
+
+                readMeals(in, registry);
+            }
+        }
+        loadNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Loads a {@link BinaryCatalog binary catalog}, presorted subscribers are added to the registry without sorting them again.
+     * @param registry registry the subscribers and meals are added to
+     * @param channel channel of the catalog
+     * @throws IOException when the catalog can't be read
+     */
+    private void loadCatalog(SubscriptionRegistry registry, FileChannel channel) throws IOException
+    {
+        BinaryCatalog.Contents contents = BinaryCatalog.read(channel, parallelism > 1);
+        if (contents.presorted())
+        {
+            registry.addAllSubscribersSorted(contents.subscribers());
+        }
+        else
+        {
+            registry.addAllSubscribers(Arrays.asList(contents.subscribers()));
+        }
+        subscribersLoaded = contents.subscribers().length;
+        registry.addAllMeals(Arrays.asList(contents.meals()));
+        mealsLoaded = contents.meals().length;
+    }
+
+    /**
+     * Reads the meal section, i.e. number of meal types followed by two lines for every meal, and registers the meals.
+     * @param in reader positioned at the start of the meal section
+     * @param registry registry the meals are added to
+     * @throws IOException when the input file can't be read
+     */
+    private void readMeals(LineReader in, SubscriptionRegistry registry) throws IOException
+    {
+        //number of meal types, followed by two lines for every meal
+        int noOfMealTypes = in.nextInt();
+        ArrayList<Meal> meals = new ArrayList<Meal>(noOfMealTypes);
+        for (int i = 0; i < noOfMealTypes; i++)
+        {
+            String mealName = in.nextLineString();
+            meals.add(new Meal(mealName, in.nextInt()));
+        }
+        registry.addAllMeals(meals);
+        mealsLoaded = noOfMealTypes;
+    }
+
+    /**
+     * Loads the file with the subscriber section parsed in parallel.
+     * <p>The subscriber count is read first and the lines of the subscriber section are counted to find where the chunks start,
+     * which only looks for line terminators. Each chunk is then parsed and sorted by a {@link SubscriberChunkTask} and the results are merged.
+     * @param registry registry the subscribers and meals are added to
+     * @param channel channel of the input file
+     * @throws IOException when the input file can't be read
+     */
+    private void loadParallel(SubscriptionRegistry registry, FileChannel channel) throws IOException
+    {
+        MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        int limit = data.limit();
+
+        //number of subscribers in the first line that isn't blank
+        int position = 0;
+        int lineNumber = 0;
+        int lineStart;
+        int lineEnd;
+        do
+        {
+            if (position >= limit)
+            {
+                throw new InputMismatchException("Unexpected end of input file after line " + lineNumber + ".");
+            }
+            lineStart = position;
+            lineEnd = lineEnd(data, position);
+            lineNumber++;
+            position = lineEnd + 1;
+        } while (isBlank(data, lineStart, lineEnd));
+        byte[] countBytes = new byte[lineEnd - lineStart];
+        data.get(lineStart, countBytes);
+        int noOfSubscribers = parseInt(countBytes, 0, countBytes.length, lineNumber);
+
+        //find start of every chunk, each chunk gets the same number of subscribers
+        int perChunk = Math.max(1, (noOfSubscribers + parallelism * CHUNKS_PER_THREAD - 1) / (parallelism * CHUNKS_PER_THREAD));
+        int chunks = (noOfSubscribers + perChunk - 1) / perChunk;
+        int[] chunkStarts = new int[chunks];
+        int[] chunkLines = new int[chunks];
+        int[] chunkCounts = new int[chunks];
+        int found = 0;
+        while (found < noOfSubscribers)
+        {
+            if (position >= limit)
+            {
+                throw new InputMismatchException("Unexpected end of input file after line " + lineNumber + ".");
+            }
+            lineEnd = lineEnd(data, position);
+            if (!isBlank(data, position, lineEnd))
+            {
+                if (found % perChunk == 0)
+                {
+                    int chunk = found / perChunk;
+                    chunkStarts[chunk] = position;
+                    chunkLines[chunk] = lineNumber; //number of the line before the chunk
+                    chunkCounts[chunk] = Math.min(perChunk, noOfSubscribers - found);
+                }
+                found++;
+            }
+            lineNumber++;
+            position = lineEnd + 1;
+        }
+
+        //parse and sort chunks in parallel, then merge them
+        Subscriber[] sorted;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try
+        {
+            sorted = chunks == 0 ? new Subscriber[0] : pool.invoke(new SubscriberChunkTask(data, chunkStarts, chunkLines, chunkCounts, 0, chunks));
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        registry.addAllSubscribersSorted(sorted);
+        subscribersLoaded = noOfSubscribers;
+
+        //meal section is read sequentially from the end of the subscriber section
+        channel.position(Math.min(position, limit));
+        readMeals(new LineReader(channel, lineNumber), registry);
+    }
+
+    /**
+     * Opens the file for reading, a missing file is reported with FileNotFoundException like FileReader does.
+     * @param path path of the file
+     * @return FileChannel open for reading
+     * @throws IOException when the file doesn't exist or can't be opened
+     */
+    static FileChannel openChannel(Path path) throws IOException
+    {
+        try
+        {
+            return FileChannel.open(path, StandardOpenOption.READ);
+        }
+        catch (NoSuchFileException exception)
+        {
+            throw new FileNotFoundException(path + " (No such file or directory)");
+        }
+    }
+
+    //getters
+    /**
+     * Getter for the path of the input file.
+     * @return Path of the input file
+     */
+    public Path getPath()
+    {
+        return path;
+    }
+
+    /**
+     * Getter for the number of subscribers and meals loaded by the last load.
+     * @return long number of records loaded
+     */
+    public long getRecordsLoaded()
+    {
+        return (long) subscribersLoaded + mealsLoaded;
+    }
+
+    /**
+     * Getter for the time taken by the last load.
+     * @return long time in nanoseconds
+     */
+    public long getLoadNanos()
+    {
+        return loadNanos;
+    }
+
+    /**
+     * Calculates load throughput of the last load.
+     * @return double number of records loaded per second
+     */
+    public double getRecordsPerSecond()
+    {
+        return loadNanos == 0 ? 0 : getRecordsLoaded() * 1_000_000_000.0 / loadNanos;
+    }
+
+    /**
+     * Returns a summary of the last load with number of records, time taken and throughput.
+     * @return String in format: "Loaded # subscribers and # meals from path in # ms (# records/sec)." with number of threads of a parallel load
+     */
+    public String getSummary()
+    {
+        return String.format("Loaded %d subscribers and %d meals from %s in %.1f ms (%.0f records/sec%s).",
+                subscribersLoaded, mealsLoaded, path, loadNanos / 1_000_000.0, getRecordsPerSecond(),
+                parallelism > 1 ? ", " + parallelism + " threads" : "");
+    }
+
+    /**
+     * Reads lines of the input file through a FileChannel and a large buffer, blank lines are skipped.
+     * Bytes of the current line are kept in a reusable array so numbers are parsed without creating Strings.
+     */
+    static final class LineReader {
+        /**
+         * Channel the file is read from.
+         */
+        private final FileChannel channel;
+        /**
+         * Buffer the file is read into.
+         */
+        private final ByteBuffer buffer;
+        /**
+         * Bytes of the current line without the line terminator.
+         */
+        private byte[] line;
+        /**
+         * Length of the current line.
+         */
+        private int lineLength;
+        /**
+         * Number of the current line in the file, used in error messages.
+         */
+        private int lineNumber;
+
+        /**
+         * LineReader constructor specifying the channel to read from, reading starts at the current position of the channel.
+         * @param channel channel to read from
+         * @param lineNumber number of lines before the current position of the channel, used in error messages
+         */
+        LineReader(FileChannel channel, int lineNumber)
+        {
+            this.channel = channel;
+            this.lineNumber = lineNumber;
+            this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            this.buffer.flip(); //start with an empty buffer
+            this.line = new byte[256];
+        }
+
+        /**
+         * Reads the next line that isn't blank into the line array.
+         * @throws IOException when the file can't be read
+         * @throws InputMismatchException when there are no more lines
+         */
+        void nextLine() throws IOException
+        {
+            do
+            {
+                if (!readLine())
+                {
+                    throw new InputMismatchException("Unexpected end of input file after line " + lineNumber + ".");
+                }
+            } while (isBlank());
+        }
+
+        /**
+         * Reads the next line including blank lines into the line array, '\r' of Windows line terminators is dropped.
+         * @return boolean false at the end of the file
+         * @throws IOException when the file can't be read
+         */
+        private boolean readLine() throws IOException
+        {
+            lineLength = 0;
+            boolean read = false;
+            while (true)
+            {
+                if (!buffer.hasRemaining())
+                {
+                    buffer.clear();
+                    int n = channel.read(buffer);
+                    buffer.flip();
+                    if (n <= 0)
+                    {
+                        break;
+                    }
+                }
+                read = true;
+                byte b = buffer.get();
+                if (b == '\n')
+                {
+                    break;
+                }
+                if (lineLength == line.length)
+                {
+                    line = Arrays.copyOf(line, line.length * 2);
+                }
+                line[lineLength++] = b;
+            }
+            if (lineLength > 0 && line[lineLength - 1] == '\r')
+            {
+                lineLength--;
+            }
+            if (read)
+            {
+                lineNumber++;
+            }
+            return read;
+        }
+
+        /**
+         * Checks if the current line contains only whitespace.
+         * @return boolean true if the line is blank
+         */
+        private boolean isBlank()
+        {
+            for (int i = 0; i < lineLength; i++)
+            {
+                if (!isWhitespace(line[i]))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Reads the next line and parses it as a non-negative integer surrounded by optional whitespace.
+         * @return int parsed number
+         * @throws IOException when the file can't be read
+         * @throws InputMismatchException when the line isn't a number
+         */
+        int nextInt() throws IOException
+        {
+            nextLine();
+            return parseInt(line, 0, lineLength, lineNumber);
+        }
+
+        /**
+         * Reads the next line and returns it as a String, used for meal type names which can contain spaces.
+         * @return String with the line
+         * @throws IOException when the file can't be read
+         */
+        String nextLineString() throws IOException
+        {
+            nextLine();
+            return new String(line, 0, lineLength, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Reads the next line and parses it as a subscriber's first name and surname separated by whitespace.
+         * @return Subscriber read from the line
+         * @throws IOException when the file can't be read
+         * @throws InputMismatchException when the line doesn't contain two names
+         */
+        Subscriber nextSubscriber() throws IOException
+        {
+            nextLine();
+            return parseSubscriber(line, 0, lineLength, lineNumber);
+        }
+
+    }
+
+    /**
+     * A task parsing chunks of the subscriber section of a memory-mapped input file, see {@link #loadParallel(SubscriptionRegistry, FileChannel)}.
+     * <p>A task with one chunk parses the subscribers of the chunk into an array and sorts it with merge sort,
+     * a task with more chunks splits them in halves, runs the halves in parallel and merges the two sorted arrays.
+     */
+    private static final class SubscriberChunkTask extends RecursiveTask<Subscriber[]> {
+        /**
+         * Version of the serialized form, tasks are never serialized.
+         */
+        private static final long serialVersionUID = 1L;
+        /**
+         * Contents of the input file, read with absolute gets only so it can be shared by the tasks, not part of the serialized form.
+         */
+        private final transient ByteBuffer data;
+        /**
+         * Position of the first line of every chunk.
+         */
+        private final int[] chunkStarts;
+        /**
+         * Number of lines before every chunk, used in error messages.
+         */
+        private final int[] chunkLines;
+        /**
+         * Number of subscribers in every chunk.
+         */
+        private final int[] chunkCounts;
+        /**
+         * First chunk of this task, inclusive.
+         */
+        private final int from;
+        /**
+         * Last chunk of this task, exclusive.
+         */
+        private final int to;
+
+        /**
+         * SubscriberChunkTask constructor specifying the file contents, the chunks and the chunks of this task.
+         * @param data contents of the input file
+         * @param chunkStarts position of the first line of every chunk
+         * @param chunkLines number of lines before every chunk
+         * @param chunkCounts number of subscribers in every chunk
+         * @param from first chunk of this task, inclusive
+         * @param to last chunk of this task, exclusive
+         */
+        private SubscriberChunkTask(ByteBuffer data, int[] chunkStarts, int[] chunkLines, int[] chunkCounts, int from, int to)
+        {
+            this.data = data;
+            this.chunkStarts = chunkStarts;
+            this.chunkLines = chunkLines;
+            this.chunkCounts = chunkCounts;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Parses and sorts one chunk, or splits the chunks in halves and merges their results.
+         * @return Subscriber array sorted in ascending lexicographic order
+         */
+        @Override
+        protected Subscriber[] compute()
+        {
+            if (to - from == 1)
+            {
+                Subscriber[] subscribers = parseChunk(from);
+                SortedSkipList.mergeSort(subscribers);
+                return subscribers;
+            }
+            int middle = (from + to) >>> 1;
+            SubscriberChunkTask left = new SubscriberChunkTask(data, chunkStarts, chunkLines, chunkCounts, from, middle);
+            left.fork();
+            Subscriber[] right = new SubscriberChunkTask(data, chunkStarts, chunkLines, chunkCounts, middle, to).compute();
+            return mergeSorted(left.join(), right);
+        }
+
+        /**
+         * Parses subscribers of one chunk, blank lines are skipped.
+         * @param chunk number of the chunk
+         * @return Subscriber array in the order of the file
+         */
+        private Subscriber[] parseChunk(int chunk)
+        {
+            Subscriber[] subscribers = new Subscriber[chunkCounts[chunk]];
+            byte[] line = new byte[256];
+            int position = chunkStarts[chunk];
+            int lineNumber = chunkLines[chunk];
+            int i = 0;
+            while (i < subscribers.length)
+            {
+                int lineEnd = lineEnd(data, position);
+                int length = lineEnd - position;
+                lineNumber++;
+                if (!isBlank(data, position, lineEnd))
+                {
+                    if (length > line.length)
+                    {
+                        line = new byte[Math.max(length, line.length * 2)];
+                    }
+                    data.get(position, line, 0, length);
+                    subscribers[i++] = parseSubscriber(line, 0, length, lineNumber);
+                }
+                position = lineEnd + 1;
+            }
+            return subscribers;
+        }
+
+        /**
+         * Merges two sorted arrays into a new sorted array, see {@link SortedSkipList#merge(Comparable[], Comparable[], int, int, int)}.
+         * @param left sorted array, its elements come first on ties
+         * @param right sorted array
+         * @return Subscriber array with elements of both arrays in ascending order
+         */
+        private static Subscriber[] mergeSorted(Subscriber[] left, Subscriber[] right)
+        {
+            Subscriber[] source = Arrays.copyOf(left, left.length + right.length);
+            System.arraycopy(right, 0, source, left.length, right.length);
+            Subscriber[] target = new Subscriber[source.length];
+            SortedSkipList.merge(source, target, 0, left.length, source.length);
+            return target;
+        }
+    }
+
+    //helpers for reading lines of a memory-mapped file
+    /**
+     * Finds the end of the line starting at the specified position.
+     * @param data contents of the file
+     * @param from start of the line
+     * @return int position of the '\n' ending the line, or limit of the buffer for the last line
+     */
+    private static int lineEnd(ByteBuffer data, int from)
+    {
+        int limit = data.limit();
+        while (from < limit && data.get(from) != '\n')
+        {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Checks if the bytes contain only whitespace.
+     * @param data contents of the file
+     * @param from start of the bytes, inclusive
+     * @param to end of the bytes, exclusive
+     * @return boolean true if blank
+     */
+    private static boolean isBlank(ByteBuffer data, int from, int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            if (!isWhitespace(data.get(i)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //parsing helpers shared with other loaders
+    /**
+     * Parses bytes as a non-negative integer surrounded by optional whitespace.
+     * @param bytes array with the bytes
+     * @param from start of the bytes, inclusive
+     * @param to end of the bytes, exclusive
+     * @param lineNumber number of the line, used in the error message
+     * @return int parsed number
+     * @throws InputMismatchException when the bytes aren't a number
+     */
+    static int parseInt(byte[] bytes, int from, int to, int lineNumber)
+    {
+        while (from < to && isWhitespace(bytes[from]))
+        {
+            from++;
+        }
+        while (to > from && isWhitespace(bytes[to - 1]))
+        {
+            to--;
+        }
+        if (from == to || to - from > 10)
+        {
+            throw new InputMismatchException("Expected a number in line " + lineNumber + " of the input file.");
+        }
+        long value = 0;
+        for (int i = from; i < to; i++)
+        {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9)
+            {
+                throw new InputMismatchException("Expected a number in line " + lineNumber + " of the input file.");
+            }
+            value = value * 10 + digit;
+        }
+        if (value > Integer.MAX_VALUE)
+        {
+            throw new InputMismatchException("Number in line " + lineNumber + " of the input file is too large.");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses bytes as a subscriber's first name and surname separated by whitespace, like two calls to Scanner.next().
+     * @param bytes array with the bytes
+     * @param from start of the bytes, inclusive
+     * @param to end of the bytes, exclusive
+     * @param lineNumber number of the line, used in the error message
+     * @return Subscriber with the parsed names
+     * @throws InputMismatchException when the bytes don't contain two names
+     */
+    static Subscriber parseSubscriber(byte[] bytes, int from, int to, int lineNumber)
+    {
+        int firstStart = skipWhitespace(bytes, from, to);
+        int firstEnd = skipName(bytes, firstStart, to);
+        int surnameStart = skipWhitespace(bytes, firstEnd, to);
+        int surnameEnd = skipName(bytes, surnameStart, to);
+        if (firstStart == firstEnd || surnameStart == surnameEnd)
+        {
+            throw new InputMismatchException("Expected first name and surname in line " + lineNumber + " of the input file.");
+        }
+        return new Subscriber(new String(bytes, firstStart, firstEnd - firstStart, StandardCharsets.UTF_8),
+                new String(bytes, surnameStart, surnameEnd - surnameStart, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Finds the first byte that isn't whitespace.
+     * @param bytes array with the bytes
+     * @param from start of the search
+     * @param to end of the search
+     * @return int position of the first byte that isn't whitespace, or to
+     */
+    private static int skipWhitespace(byte[] bytes, int from, int to)
+    {
+        while (from < to && isWhitespace(bytes[from]))
+        {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Finds the end of a name, i.e. the first whitespace byte.
+     * @param bytes array with the bytes
+     * @param from start of the search
+     * @param to end of the search
+     * @return int position of the first whitespace byte, or to
+     */
+    private static int skipName(byte[] bytes, int from, int to)
+    {
+        while (from < to && !isWhitespace(bytes[from]))
+        {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Checks if the byte is a space, tab or line terminator.
+     * @param b byte to be checked
+     * @return boolean true if whitespace
+     */
+    static boolean isWhitespace(byte b)
+    {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '\f';
+    }
+}
@@ -0,0 +1,213 @@
+package subscription.manager;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A LatencyHistogram counts how long an operation took, in nanoseconds, in buckets with the same relative precision for short and long times,
+ * the way HdrHistogram does.
+ * <p>Times below 64 ns have a bucket each. Above that every power of 2 is split into 32 buckets, so a recorded time is known within about 3%,
+ * from 64 ns up to about 18 minutes (2^40 ns), longer times are counted in the last bucket.
+ * <p>{@link #record(long)} only increments counters, it doesn't create objects or take locks, so clerks can record every operation.
+ * Percentiles are computed from the buckets when they are read, e.g. for a report.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class LatencyHistogram {
+    //Fields
+    /**
+     * Number of bits of a recorded time kept exactly, every power of 2 has 2^(SUB_BUCKET_BITS - 1) buckets.
+     */
+    private static final int SUB_BUCKET_BITS = 6;
+    /**
+     * Number of buckets of times below 2^SUB_BUCKET_BITS, one for each time.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * Number of buckets of every power of 2 above the exact times.
+     */
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    /**
+     * Recorded times are at most 2^MAX_BITS - 1 nanoseconds.
+     */
+    private static final int MAX_BITS = 40;
+    /**
+     * Largest time with its own bucket.
+     */
+    private static final long MAX_VALUE = (1L << MAX_BITS) - 1;
+    /**
+     * Counts of recorded times in the buckets.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(bucketIndex(MAX_VALUE) + 1);
+    /**
+     * Number of recorded times.
+     */
+    private final LongAdder count = new LongAdder();
+    /**
+     * Sum of recorded times, used for the mean.
+     */
+    private final LongAdder sum = new LongAdder();
+    /**
+     * Longest recorded time.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    //Methods
+    /**
+     * Records the time of one operation.
+     * @param nanos time in nanoseconds, negative times are recorded as 0
+     */
+    public void record(long nanos)
+    {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucketIndex(Math.min(value, MAX_VALUE)));
+        count.increment();
+        sum.add(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value))
+        {
+            //another clerk recorded a longer time meanwhile, try again
+        }
+    }
+
+    /**
+     * Getter for the number of recorded times.
+     * @return long number of recorded times
+     */
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+    /**
+     * Getter for the sum of recorded times.
+     * @return long sum of recorded times in nanoseconds
+     */
+    public long getSum()
+    {
+        return sum.sum();
+    }
+
+    /**
+     * Getter for the longest recorded time.
+     * @return long longest recorded time in nanoseconds, 0 if nothing was recorded
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * Computes the mean of recorded times.
+     * @return double mean time in nanoseconds, 0 if nothing was recorded
+     */
+    public double getMean()
+    {
+        long recorded = count.sum();
+        return recorded == 0 ? 0 : (double) sum.sum() / recorded;
+    }
+
+    /**
+     * Finds the time the percentage of recorded times didn't exceed, within the precision of the buckets.
+     * @param percentile percentage of recorded times, e.g. 99.9
+     * @return long highest time of the bucket of the percentile in nanoseconds, never more than the longest recorded time, 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        long[] snapshot = snapshot();
+        long total = 0;
+        for (long bucketCount : snapshot)
+        {
+            total += bucketCount;
+        }
+        if (total == 0)
+        {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++)
+        {
+            seen += snapshot[i];
+            if (seen >= target)
+            {
+                return Math.min(highestValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Counts recorded times not longer than a limit, within the precision of the buckets, used for cumulative buckets of the Prometheus format.
+     * @param nanos the limit in nanoseconds
+     * @return long number of recorded times in buckets starting at or below the limit
+     */
+    public long countAtOrBelow(long nanos)
+    {
+        long counted = 0;
+        for (int i = 0; i < counts.length() && lowestValue(i) <= nanos; i++)
+        {
+            counted += counts.get(i);
+        }
+        return counted;
+    }
+
+    /**
+     * Copies the counts of the buckets, so percentiles are computed from one set of counts while clerks keep recording.
+     * @return long[] counts of the buckets
+     */
+    private long[] snapshot()
+    {
+        long[] snapshot = new long[counts.length()];
+        for (int i = 0; i < snapshot.length; i++)
+        {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Finds the bucket of a time, the highest bit of the time selects the power of 2 and the next 5 bits the bucket within it.
+     * @param value time in nanoseconds, 0 to {@link #MAX_VALUE}
+     * @return int index of the bucket
+     */
+    private static int bucketIndex(long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        int shift = highestBit - (SUB_BUCKET_BITS - 1);
+        int subBucket = (int) (value >>> shift) - HALF_SUB_BUCKETS;
+        return SUB_BUCKETS + (highestBit - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Finds the shortest time counted in a bucket.
+     * @param index index of the bucket
+     * @return long shortest time of the bucket in nanoseconds
+     */
+    private static long lowestValue(int index)
+    {
+        if (index < SUB_BUCKETS)
+        {
+            return index;
+        }
+        int above = index - SUB_BUCKETS;
+        int highestBit = SUB_BUCKET_BITS + above / HALF_SUB_BUCKETS;
+        long subBucket = HALF_SUB_BUCKETS + above % HALF_SUB_BUCKETS;
+        return subBucket << (highestBit - (SUB_BUCKET_BITS - 1));
+    }
+
+    /**
+     * Finds the longest time counted in a bucket.
+     * @param index index of the bucket
+     * @return long longest time of the bucket in nanoseconds
+     */
+    private static long highestValue(int index)
+    {
+        return lowestValue(index + 1) - 1;
+    }
+}
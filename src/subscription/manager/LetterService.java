@@ -0,0 +1,501 @@
+package subscription.manager;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A LetterService writes letters to subscribers, e.g. apology letters when there is not enough meals to add to a subscription, see {@link LetterType} for all letters.
+ * <p>Clerks only put letters into a bounded queue and carry on, one background writer thread takes all queued letters at once,
+ * renders them with their precompiled {@link LetterTemplate templates} into one reused StringBuilder and writes them through a large buffer, so many letters share one write to the file.
+ * When the queue is full clerks wait for the writer (back-pressure) instead of letters piling up in memory.
+ * The date of the letter is taken when the letter is sent and formatted with one shared formatter, the formatted date is reused for letters sent in the same second.
+ * <p>Letters are written either to one file, which is replaced when the service starts, or to one file per day named "letters-yyyy-MM-dd.txt" in a directory,
+ * letters are added to the file of the day they were sent on.
+ * Letters reach the file when the writer finds the queue empty, and all letters are written when the service is {@link #close() closed}.
+ * <p>Every letter sent is published to the {@link ChangeFeed change feed}, if there is one, see {@link #setChangeFeed(ChangeFeed)}.
+ * <p>The last {@link #RECENT_LETTERS} letters written are also kept in memory, so they can be fetched without reading the file, see {@link #getRecentLetters(String, String, int)}.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class LetterService implements Closeable {
+    //Fields
+    /**
+     * Path of the letters file used when no other output is specified.
+     */
+    public static final String DEFAULT_LETTERS_FILE = "src/subscription/manager/letters.txt";
+    /**
+     * Number of letters waiting in the queue before clerks wait for the writer.
+     */
+    private static final int QUEUE_CAPACITY = 8192;
+    /**
+     * Size of the buffer letters are written through.
+     */
+    private static final int BUFFER_SIZE = 1 << 18;
+    /**
+     * Number of the last written letters kept in memory.
+     */
+    public static final int RECENT_LETTERS = 4096;
+    /**
+     * Format of the date at the top of the letter, Day/Month/Year Hour:minutes:seconds.
+     */
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/uuuu HH:mm:ss");
+    /**
+     * Format of the date in names of daily files.
+     */
+    private static final DateTimeFormatter FILE_DATE_FORMAT = DateTimeFormatter.ofPattern("uuuu-MM-dd");
+    /**
+     * Marks the end of letters in the queue.
+     */
+    private static final Letter END = new Letter(LetterType.OUT_OF_STOCK, 0, "", "", "", 0, "");
+
+    /**
+     * The file letters are written to, or the directory of daily files.
+     */
+    private final Path output;
+    /**
+     * True if letters are written to one file per day in the output directory.
+     */
+    private final boolean daily;
+    /**
+     * Letters waiting for the writer.
+     */
+    private final BlockingQueue<Letter> queue = new ArrayBlockingQueue<Letter>(QUEUE_CAPACITY);
+    /**
+     * The writer thread.
+     */
+    private final Thread writerThread;
+    /**
+     * Number of letters written.
+     */
+    private final LongAdder lettersWritten = new LongAdder();
+    /**
+     * Ring of the last written letters, the oldest is replaced, guarded by itself.
+     */
+    private final Letter[] recent = new Letter[RECENT_LETTERS];
+    /**
+     * Number of letters put into the ring, the next letter goes to position recentCount % RECENT_LETTERS, guarded by {@link #recent}.
+     */
+    private long recentCount;
+    /**
+     * Feed letters sent are published to, null if letters are not published.
+     */
+    private volatile ChangeFeed changeFeed;
+    /**
+     * Failure writing letters, no letters can be sent after a failure.
+     */
+    private volatile IOException failure;
+    /**
+     * True once the service is closed.
+     */
+    private volatile boolean closed;
+    /**
+     * Writer of the current file, used only by the writer thread.
+     */
+    private Writer out;
+    /**
+     * Day of the current daily file, used only by the writer thread.
+     */
+    private LocalDate outDay;
+    /**
+     * Second of the last formatted date, used only by the writer thread.
+     */
+    private long formattedSecond = Long.MIN_VALUE;
+    /**
+     * Last formatted date, reused for letters sent in the same second, used only by the writer thread.
+     */
+    private String formattedDate;
+
+    //Constructor
+    /**
+     * LetterService constructor specifying where letters are written, the writer thread starts immediately.
+     * @param output the letters file, or the directory of daily files
+     * @param daily true for one file per day in the output directory
+     * @throws IOException when the letters file or directory can't be created
+     */
+    private LetterService(Path output, boolean daily) throws IOException
+    {
+        this.output = output;
+        this.daily = daily;
+        if (daily)
+        {
+            Files.createDirectories(output);
+        }
+        else
+        {
+            //the letters file is replaced at the start like before
+            out = openWriter(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }
+        writerThread = new Thread(this::write, "letter-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    //Methods
+    /**
+     * Creates a service writing all letters to one file, the file is replaced.
+     * @param file the letters file
+     * @return LetterService ready for letters
+     * @throws IOException when the file can't be created
+     */
+    public static LetterService toFile(Path file) throws IOException
+    {
+        return new LetterService(file, false);
+    }
+
+    /**
+     * Creates a service writing letters to one file per day in a directory, letters are added to existing files.
+     * @param directory the directory of daily files, created if it doesn't exist
+     * @return LetterService ready for letters
+     * @throws IOException when the directory can't be created
+     */
+    public static LetterService dailyFiles(Path directory) throws IOException
+    {
+        return new LetterService(directory, true);
+    }
+
+    /**
+     * Sets the feed every letter sent is published to.
+     * @param changeFeed the feed, null to stop publishing letters
+     */
+    public void setChangeFeed(ChangeFeed changeFeed)
+    {
+        this.changeFeed = changeFeed;
+    }
+
+    /**
+     * Sends an apology letter informing the subscriber that there is not enough meals of requested type, see {@link LetterType#OUT_OF_STOCK}.
+     * Waits only if the queue of letters is full.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type
+     * @param mealQuantity quantity of meals requested
+     * @param message message of the exception explaining how many meals are available
+     * @throws UncheckedIOException when writing letters failed or the clerk is interrupted while waiting
+     * @throws IllegalStateException when the service is closed
+     */
+    public void sendOutOfStock(String fName, String lName, String mealType, int mealQuantity, String message)
+    {
+        send(new Letter(LetterType.OUT_OF_STOCK, System.currentTimeMillis(), fName, lName, mealType, mealQuantity, message));
+    }
+
+    /**
+     * Sends an apology letter informing the subscriber that they have reached the limit of different meal types, see {@link LetterType#LIMIT_REACHED}.
+     * Waits only if the queue of letters is full.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type
+     * @param mealQuantity quantity of meals requested
+     * @throws UncheckedIOException when writing letters failed or the clerk is interrupted while waiting
+     * @throws IllegalStateException when the service is closed
+     */
+    public void sendLimitReached(String fName, String lName, String mealType, int mealQuantity)
+    {
+        send(new Letter(LetterType.LIMIT_REACHED, System.currentTimeMillis(), fName, lName, mealType, mealQuantity, ""));
+    }
+
+    /**
+     * Sends a letter confirming that meals were removed from the subscription, see {@link LetterType#REMOVAL_CONFIRMATION}.
+     * Waits only if the queue of letters is full.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type
+     * @param mealQuantity quantity of meals removed
+     * @throws UncheckedIOException when writing letters failed or the clerk is interrupted while waiting
+     * @throws IllegalStateException when the service is closed
+     */
+    public void sendRemovalConfirmation(String fName, String lName, String mealType, int mealQuantity)
+    {
+        send(new Letter(LetterType.REMOVAL_CONFIRMATION, System.currentTimeMillis(), fName, lName, mealType, mealQuantity, ""));
+    }
+
+    /**
+     * Puts a letter into the queue, waits while the queue is full, and publishes the letter to the change feed.
+     * @param letter the letter
+     */
+    private void send(Letter letter)
+    {
+        if (failure != null)
+        {
+            throw new UncheckedIOException("Writing letters failed.", failure);
+        }
+        if (closed)
+        {
+            throw new IllegalStateException("Letter service is closed.");
+        }
+        try
+        {
+            //wait for space, unless the writer has stopped because of a failure
+            while (!queue.offer(letter, 100, TimeUnit.MILLISECONDS))
+            {
+                if (failure != null)
+                {
+                    throw new UncheckedIOException("Writing letters failed.", failure);
+                }
+            }
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted while sending a letter."));
+        }
+        ChangeFeed feed = changeFeed;
+        if (feed != null)
+        {
+            feed.publishLetter(letter.type(), letter.firstName(), letter.surname(), letter.mealType(), letter.quantity());
+        }
+    }
+
+    /**
+     * Body of the writer thread, takes all queued letters at once, writes them and flushes the file when the queue is empty.
+     */
+    private void write()
+    {
+        ArrayList<Letter> batch = new ArrayList<Letter>(QUEUE_CAPACITY);
+        StringBuilder text = new StringBuilder(1024);
+        try
+        {
+            while (true)
+            {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                for (Letter letter : batch)
+                {
+                    if (letter == END)
+                    {
+                        return;
+                    }
+                    text.setLength(0);
+                    render(letter, text);
+                    writerFor(letter).append(text);
+                    lettersWritten.increment();
+                }
+                remember(batch);
+                batch.clear();
+                if (queue.isEmpty() && out != null)
+                {
+                    out.flush();
+                }
+            }
+        }
+        catch (IOException exception)
+        {
+            failure = exception;
+        }
+        catch (InterruptedException exception)
+        {
+            //stop when the service is interrupted
+        }
+        finally
+        {
+            try
+            {
+                if (out != null)
+                {
+                    out.close();
+                }
+            }
+            catch (IOException exception)
+            {
+                if (failure == null)
+                {
+                    failure = exception;
+                }
+            }
+        }
+    }
+
+    /**
+     * Puts written letters into the ring of recent letters, the lock is taken once for all of them.
+     * @param written letters written, END is not among them
+     */
+    private void remember(List<Letter> written)
+    {
+        synchronized (recent)
+        {
+            for (Letter letter : written)
+            {
+                recent[(int) (recentCount++ % RECENT_LETTERS)] = letter;
+            }
+        }
+    }
+
+    /**
+     * Renders recently written letters, newest first, optionally only the letters of one subscriber.
+     * Letters are rendered in the caller's thread, not by the writer thread.
+     * @param fName subscriber's first name, null for letters of all subscribers
+     * @param lName subscriber's surname, null for letters of all subscribers
+     * @param limit maximum number of letters
+     * @return List of rendered letters, at most the last {@link #RECENT_LETTERS} letters written are searched
+     */
+    public List<String> getRecentLetters(String fName, String lName, int limit)
+    {
+        Letter[] copy;
+        long count;
+        synchronized (recent)
+        {
+            copy = recent.clone();
+            count = recentCount;
+        }
+        List<String> letters = new ArrayList<String>();
+        StringBuilder text = new StringBuilder(1024);
+        for (long i = count - 1; i >= Math.max(0, count - RECENT_LETTERS) && letters.size() < limit; i--)
+        {
+            Letter letter = copy[(int) (i % RECENT_LETTERS)];
+            if (fName != null && !(letter.firstName().equals(fName) && letter.surname().equals(lName)))
+            {
+                continue;
+            }
+            text.setLength(0);
+            String date = DATE_FORMAT.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(letter.sentMillis()), ZoneId.systemDefault()));
+            letter.type().getTemplate().render(text, date, letter.firstName(), letter.surname(), letter.mealType(), letter.quantity(), letter.message());
+            letters.add(text.toString());
+        }
+        return letters;
+    }
+
+    /**
+     * Renders the letter with the template of its type into the text.
+     * @param letter the letter
+     * @param text StringBuilder the letter is appended to
+     */
+    private void render(Letter letter, StringBuilder text)
+    {
+        letter.type().getTemplate().render(text, formatDate(letter.sentMillis()), letter.firstName(), letter.surname(), letter.mealType(), letter.quantity(), letter.message());
+        text.append(System.lineSeparator());
+    }
+
+    /**
+     * Formats the date of a letter, the formatted date is reused while letters are sent in the same second.
+     * @param millis time the letter was sent in milliseconds since the epoch
+     * @return String date in format "dd/MM/yyyy HH:mm:ss"
+     */
+    private String formatDate(long millis)
+    {
+        long second = Math.floorDiv(millis, 1000);
+        if (second != formattedSecond)
+        {
+            formattedDate = DATE_FORMAT.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()));
+            formattedSecond = second;
+        }
+        return formattedDate;
+    }
+
+    /**
+     * Returns the writer of the file the letter goes to, with daily files a new file is opened when the day changes.
+     * @param letter the letter
+     * @return Writer of the file
+     * @throws IOException when the daily file can't be opened
+     */
+    private Writer writerFor(Letter letter) throws IOException
+    {
+        if (daily)
+        {
+            LocalDate day = LocalDate.ofInstant(Instant.ofEpochMilli(letter.sentMillis()), ZoneId.systemDefault());
+            if (!day.equals(outDay))
+            {
+                if (out != null)
+                {
+                    out.close();
+                }
+                Path file = output.resolve("letters-" + FILE_DATE_FORMAT.format(day) + ".txt");
+                out = openWriter(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                outDay = day;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Opens a letters file for writing through a large buffer.
+     * @param file the letters file
+     * @param options options the file is opened with
+     * @return Writer of the file
+     * @throws IOException when the file can't be opened
+     */
+    private static Writer openWriter(Path file, StandardOpenOption... options) throws IOException
+    {
+        return new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file, options), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Writes all letters sent so far, stops the writer thread and closes the file.
+     * @throws IOException when letters couldn't be written
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (closed)
+        {
+            return;
+        }
+        closed = true;
+        try
+        {
+            if (failure == null)
+            {
+                queue.put(END);
+            }
+            writerThread.join();
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing the letter service.");
+        }
+        if (failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    //getters
+    /**
+     * Getter for the number of letters written.
+     * @return long number of letters
+     */
+    public long getLettersWritten()
+    {
+        return lettersWritten.sum();
+    }
+
+    /**
+     * Getter for the letters file, or the directory of daily files.
+     * @return Path of the output
+     */
+    public Path getOutput()
+    {
+        return output;
+    }
+
+    /**
+     * A letter waiting in the queue.
+     * @param type type of the letter
+     * @param sentMillis time the letter was sent in milliseconds since the epoch
+     * @param firstName subscriber's first name
+     * @param surname subscriber's surname
+     * @param mealType meal type of the request
+     * @param quantity quantity of meals of the request
+     * @param message message explaining the outcome of the request
+     */
+    private record Letter(LetterType type, long sentMillis, String firstName, String surname, String mealType, int quantity, String message) {}
+}
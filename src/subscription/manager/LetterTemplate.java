@@ -0,0 +1,212 @@
+package subscription.manager;
+
+import java.util.ArrayList;
+
+/**
+ * A LetterTemplate is the text of a letter with placeholders, compiled once into a list of segments and rendered many times by the {@link LetterService}.
+ * <p>Placeholders are names in curly brackets, "{{" stands for a single "{":
+ * <ul>
+ *     <li>
+ *         {date} - date and time the letter was sent
+ *     </li>
+ *     <li>
+ *         {firstName}, {surname} - subscriber's name
+ *     </li>
+ *     <li>
+ *         {mealType}, {quantity} - meal type and quantity of meals of the request
+ *     </li>
+ *     <li>
+ *         {message} - message explaining the outcome of the request, e.g. message of an exception
+ *     </li>
+ * </ul>
+ * <p>Compiling splits the text into literal segments and placeholder segments, so rendering only appends the segments one after another
+ * to a StringBuilder reused by the caller, without searching the text or creating intermediate Strings, the quantity is appended as a number.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public final class LetterTemplate {
+    //Fields
+    /**
+     * Segment kind of literal text.
+     */
+    private static final byte LITERAL = 0;
+    /**
+     * Segment kind of the {date} placeholder.
+     */
+    private static final byte DATE = 1;
+    /**
+     * Segment kind of the {firstName} placeholder.
+     */
+    private static final byte FIRST_NAME = 2;
+    /**
+     * Segment kind of the {surname} placeholder.
+     */
+    private static final byte SURNAME = 3;
+    /**
+     * Segment kind of the {mealType} placeholder.
+     */
+    private static final byte MEAL_TYPE = 4;
+    /**
+     * Segment kind of the {quantity} placeholder.
+     */
+    private static final byte QUANTITY = 5;
+    /**
+     * Segment kind of the {message} placeholder.
+     */
+    private static final byte MESSAGE = 6;
+    /**
+     * Names of the placeholders, position in the array is the segment kind.
+     */
+    private static final String[] PLACEHOLDERS = {null, "date", "firstName", "surname", "mealType", "quantity", "message"};
+
+    /**
+     * Kind of every segment.
+     */
+    private final byte[] kinds;
+    /**
+     * Text of every literal segment, null for placeholder segments.
+     */
+    private final String[] literals;
+    /**
+     * Number of characters of all literal segments, used to size the StringBuilder.
+     */
+    private final int literalLength;
+
+    //Constructor
+    /**
+     * LetterTemplate constructor specifying the compiled segments.
+     * @param kinds kind of every segment
+     * @param literals text of every literal segment
+     * @param literalLength number of characters of all literal segments
+     */
+    private LetterTemplate(byte[] kinds, String[] literals, int literalLength)
+    {
+        this.kinds = kinds;
+        this.literals = literals;
+        this.literalLength = literalLength;
+    }
+
+    //Methods
+    /**
+     * Compiles the text of a letter into segments.
+     * @param text text of the letter with placeholders
+     * @return LetterTemplate ready for rendering
+     * @throws IllegalArgumentException when a placeholder is unknown or not closed
+     */
+    public static LetterTemplate compile(String text)
+    {
+        ArrayList<String> literals = new ArrayList<String>();
+        ArrayList<Byte> kinds = new ArrayList<Byte>();
+        StringBuilder literal = new StringBuilder();
+        int literalLength = 0;
+        int i = 0;
+        while (i < text.length())
+        {
+            char c = text.charAt(i);
+            if (c != '{')
+            {
+                literal.append(c);
+                i++;
+            }
+            else if (i + 1 < text.length() && text.charAt(i + 1) == '{')
+            {
+                //escaped curly bracket
+                literal.append('{');
+                i += 2;
+            }
+            else
+            {
+                int end = text.indexOf('}', i);
+                if (end < 0)
+                {
+                    throw new IllegalArgumentException("Placeholder at position " + i + " is not closed.");
+                }
+                byte kind = placeholder(text.substring(i + 1, end));
+                //finish the literal before the placeholder
+                if (literal.length() > 0)
+                {
+                    kinds.add(LITERAL);
+                    literals.add(literal.toString());
+                    literalLength += literal.length();
+                    literal.setLength(0);
+                }
+                kinds.add(kind);
+                literals.add(null);
+                i = end + 1;
+            }
+        }
+        if (literal.length() > 0)
+        {
+            kinds.add(LITERAL);
+            literals.add(literal.toString());
+            literalLength += literal.length();
+        }
+        byte[] kindArray = new byte[kinds.size()];
+        for (int k = 0; k < kindArray.length; k++)
+        {
+            kindArray[k] = kinds.get(k);
+        }
+        return new LetterTemplate(kindArray, literals.toArray(new String[0]), literalLength);
+    }
+
+    /**
+     * Finds the segment kind of a placeholder name.
+     * @param name name of the placeholder
+     * @return byte segment kind
+     * @throws IllegalArgumentException when the placeholder is unknown
+     */
+    private static byte placeholder(String name)
+    {
+        for (byte kind = 1; kind < PLACEHOLDERS.length; kind++)
+        {
+            if (PLACEHOLDERS[kind].equals(name))
+            {
+                return kind;
+            }
+        }
+        throw new IllegalArgumentException("Unknown placeholder \"{" + name + "}\".");
+    }
+
+    /**
+     * Appends the letter to the StringBuilder, placeholders are replaced with the values.
+     * @param out StringBuilder the letter is appended to, reused by the caller for many letters
+     * @param date date and time the letter was sent
+     * @param firstName subscriber's first name
+     * @param surname subscriber's surname
+     * @param mealType meal type of the request
+     * @param quantity quantity of meals of the request
+     * @param message message explaining the outcome of the request
+     */
+    public void render(StringBuilder out, CharSequence date, String firstName, String surname, String mealType, int quantity, String message)
+    {
+        //room for the literals and typical values, so the builder grows at most once
+        out.ensureCapacity(out.length() + literalLength + 128);
+        for (int i = 0; i < kinds.length; i++)
+        {
+            switch (kinds[i])
+            {
+                case LITERAL:
+                    out.append(literals[i]);
+                    break;
+                case DATE:
+                    out.append(date);
+                    break;
+                case FIRST_NAME:
+                    out.append(firstName);
+                    break;
+                case SURNAME:
+                    out.append(surname);
+                    break;
+                case MEAL_TYPE:
+                    out.append(mealType);
+                    break;
+                case QUANTITY:
+                    out.append(quantity);
+                    break;
+                default:
+                    out.append(message);
+                    break;
+            }
+        }
+    }
+}
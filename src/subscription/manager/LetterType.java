@@ -0,0 +1,67 @@
+package subscription.manager;
+
+/**
+ * Types of letters sent to subscribers by the {@link LetterService}, every type has its {@link LetterTemplate template} compiled once when the type is first used.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public enum LetterType {
+    /**
+     * Apology letter when there is not enough meals to add to a subscription, the message explains how many meals are available.
+     */
+    OUT_OF_STOCK("{date}\n" +
+            "Food Company Office\n" +
+            "Dear {firstName} {surname},\n" +
+            "{message} Therefore, we are sorry to let you know that this could not be added to your subscription and your request will not be fulfilled.\n" +
+            "Please accept our apologies.\n" +
+            "Sincerely,\n" +
+            "Clerk on behalf of the Food Company\n" +
+            "* * * * * * * * *"),
+    /**
+     * Apology letter when the subscriber already has subscriptions of the maximum number of different meal types.
+     */
+    LIMIT_REACHED("{date}\n" +
+            "Food Company Office\n" +
+            "Dear {firstName} {surname},\n" +
+            "You are already subscribed to the maximum of " + SubscriptionEngine.MAX_MEAL_TYPES + " different meal types, so {mealType} meals (number of meals: {quantity}) could not be added to your subscription and your request will not be fulfilled.\n" +
+            "Please accept our apologies.\n" +
+            "Sincerely,\n" +
+            "Clerk on behalf of the Food Company\n" +
+            "* * * * * * * * *"),
+    /**
+     * Letter confirming that meals were removed from a subscription.
+     */
+    REMOVAL_CONFIRMATION("{date}\n" +
+            "Food Company Office\n" +
+            "Dear {firstName} {surname},\n" +
+            "We confirm that {mealType} meals (number of meals: {quantity}) were removed from your subscription.\n" +
+            "Sincerely,\n" +
+            "Clerk on behalf of the Food Company\n" +
+            "* * * * * * * * *");
+
+    //Fields
+    /**
+     * The compiled template of the letter.
+     */
+    private final LetterTemplate template;
+
+    //Constructor
+    /**
+     * LetterType constructor compiling the text of the letter.
+     * @param text text of the letter with placeholders, see {@link LetterTemplate}
+     */
+    LetterType(String text)
+    {
+        template = LetterTemplate.compile(text);
+    }
+
+    //Methods
+    /**
+     * Getter for the compiled template of the letter.
+     * @return LetterTemplate of the letter
+     */
+    public LetterTemplate getTemplate()
+    {
+        return template;
+    }
+}
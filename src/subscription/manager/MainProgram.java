@@ -3,14 +3,26 @@ package subscription.manager;
 import subscription.*;
 import subscription.manager.exceptions.*;
 
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.PrintWriter;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.InputMismatchException;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Driver class with the {@link #main(String[]) main method} allowing for clerk's interaction with the food company subscription management program.
@@ -42,25 +54,196 @@ import java.util.Scanner;
  */
 public class MainProgram {
     /**
-     * The SortedLinkedList for storing registered subscribers in ascending lexicographic order by surname then name.
+     * The SubscriptionRegistry storing registered subscribers, meals and subscriptions together with their hash indexes.
      */
-    private static SortedLinkedList<Subscriber> subscribersLinkedList;
+    private static SubscriptionRegistry registry;
     /**
-     * The SortedLinkedList for storing registered meals in ascending lexicographic order by meal type name.
+     * The SubscriptionEngine applying business rules to the subscriptions stored in the registry.
      */
-    private static SortedLinkedList<Meal> mealsLinkedList;
+    private static SubscriptionEngine engine;
     /**
-     * The LinkedList for storing subscriptions.
+     * The SearchIndex finding subscribers and meals by the beginning of their names, built once subscribers and meals are loaded and the journal is recovered.
      */
-    private static LinkedList<Subscription> subscriptionsLinkedList;
+    private static SearchIndex searchIndex;
+    /**
+     * Path of the input file with registered subscribers and meals, can be changed with the "--input" command line option.
+     */
+    private static String inputFile = InputDataLoader.DEFAULT_INPUT_FILE;
+    /**
+     * Number of threads used for loading subscribers from the input file, can be changed with the "--parallel-load" command line option.
+     */
+    private static int loadThreads = 1;
+    /**
+     * Path of the operations file applied in batch mode, null for the interactive menu, can be set with the "--batch" command line option.
+     */
+    private static String batchFile = null;
+    /**
+     * Path of the file the batch mode writes the result of every operation to, null for the display, can be set with the "--batch-log" command line option.
+     */
+    private static String batchLogFile = null;
+    /**
+     * Number of clerk threads applying operations in batch mode, can be changed with the "--clerks" command line option.
+     */
+    private static int batchClerks = 1;
+    /**
+     * Directory with the journal and snapshots of subscriptions, null to keep subscriptions only in memory, can be set with the "--data-dir" command line option.
+     */
+    private static String dataDirectory = null;
+    /**
+     * Seconds between snapshots written while the program runs, 0 for a snapshot only when the program finishes, can be changed with the "--snapshot-interval" command line option.
+     */
+    private static int snapshotInterval = 60;
+    /**
+     * Journal of subscription changes, null when subscriptions are kept only in memory.
+     */
+    private static SubscriptionJournal journal;
+    /**
+     * Thread writing periodic snapshots, null when there is no journal or no periodic snapshots.
+     */
+    private static ScheduledExecutorService snapshotScheduler;
+    /**
+     * LetterService letters to subscribers are sent with.
+     */
+    private static LetterService letters;
+    /**
+     * Path of the file apology letters are written to, can be changed with the "--letters" command line option.
+     */
+    private static String lettersFile = LetterService.DEFAULT_LETTERS_FILE;
+    /**
+     * Directory of daily letters files, null to write all letters to one file, can be set with the "--letters-daily" command line option.
+     */
+    private static String lettersDirectory = null;
+    /**
+     * Path of the file all meals and subscribers are exported to without the interactive menu, null for the menu, can be set with the "--export" command line option.
+     */
+    private static String exportFile = null;
+    /**
+     * Path of the binary catalog the input file is converted to without the interactive menu, null for no conversion, can be set with the "--write-catalog" command line option.
+     */
+    private static String catalogFile = null;
+    /**
+     * Path of the text file the input file is converted to without the interactive menu, null for no conversion, can be set with the "--write-text" command line option.
+     */
+    private static String textFile = null;
+    /**
+     * Number of meals or subscribers on one page of options "m" and "s", can be changed with the "--page-size" command line option.
+     */
+    private static int pageSize = RegistryListing.DEFAULT_PAGE_SIZE;
+    /**
+     * True to keep subscriptions outside the Java heap, can be set with the "--offheap" command line option.
+     */
+    private static boolean offHeap = false;
+    /**
+     * Directory of memory-mapped files subscriptions are kept in across restarts, null for memory only, can be set with the "--store-dir" command line option.
+     */
+    private static String storeDirectory = null;
+    /**
+     * Path of the file metrics are written to in the Prometheus text format, null for no file, can be set with the "--metrics-file" command line option.
+     */
+    private static String metricsFile = null;
+    /**
+     * Seconds between writes of the metrics file, can be changed with the "--metrics-interval" command line option.
+     */
+    private static int metricsInterval = 15;
+    /**
+     * Scheduler writing the metrics file, null if there is no metrics file.
+     */
+    private static ScheduledExecutorService metricsScheduler;
+    /**
+     * Thresholds of low stock alerts, can be changed with the "--stock-thresholds" command line option.
+     */
+    private static int[] stockThresholds = StockMonitor.DEFAULT_THRESHOLDS;
+    /**
+     * The StockMonitor warning about meals running low.
+     */
+    private static StockMonitor stockMonitor;
+    /**
+     * The ChangeFeed changes of subscriptions and letters sent are published to.
+     */
+    private static ChangeFeed changeFeed;
+    /**
+     * File every change is written to, specified with "--change-log", null if changes are not logged.
+     */
+    private static String changeLogFile = null;
+    /**
+     * Writer of the change log, null if changes are not logged.
+     */
+    private static Writer changeLog;
+    /**
+     * Directory of restock files applied while the program runs, null for no restocks, can be set with the "--restock-dir" command line option.
+     */
+    private static String restockDirectory = null;
+    /**
+     * The RestockWatcher applying restock files, null if there is no restock directory.
+     */
+    private static RestockWatcher restockWatcher;
+    /**
+     * Port of the HTTP API specified with "--http", -1 if there is no HTTP API.
+     */
+    private static int httpPort = -1;
+    /**
+     * Interface the HTTP API is served on, can be set with the "--http-host" command line option, null for the loopback interface.
+     */
+    private static String httpHost = null;
+    /**
+     * Whether the program only serves the HTTP API, without the interactive menu, option "--no-menu".
+     */
+    private static boolean noMenu = false;
+    /**
+     * The SubscriptionHttpServer of the HTTP API, null if there is none.
+     */
+    private static SubscriptionHttpServer httpServer;
+    /**
+     * Name of the region of the input file, can be changed with the "--region-name" command line option.
+     */
+    private static String regionName = "main";
+    /**
+     * Paths of input files of other regions by region name, in the order they were given with "--region" command line options.
+     */
+    private static Map<String, Path> regionFiles = new LinkedHashMap<String, Path>();
+    /**
+     * The PartitionedRegistry of the region of the input file and the other regions, queried in parallel for totals of all regions.
+     */
+    private static PartitionedRegistry regions;
+    /**
+     * Whether the program was closed by {@link #shutdown()}.
+     */
+    private static boolean shutDown = false;
 
     /**
      * Main method reads in information about registered subscribers and meals, prints menu with operation options to the display,
      * and prompts clerk to interact with the program using keyboard input.
      * <p>Through appropriate interaction clerk is able to print the list of subscribers or meals to the display,
      * and update the stored data when a registered subscriber changes (adds or removes) meals in their subscription.
-     * @param args N/A
-     * @throws FileNotFoundException when input file "input_data.txt" is not found in the current directory
+     * @param args command line options, see {@link #parseArgs(String[])}
+     * @throws IOException when input file "input_data.txt" (or the file specified with "--input") is not found or can't be read
+     * @throws IllegalNumberInputException when the number from clerk's keyboard input is not a positive number and a positive number is expected (adding or removing subscriptions).
+     * @throws IllegalMealQuantityException when either there is not enough meals available to add to a subscription or the quantity of meals to be removed exceeds the quantity subscribed.
+     * @throws NoSuchMealException when meal from clerk's keyboard input isn't a registered meal
+     * @throws NoSuchSubscriberException when subscriber from clerk's keyboard input isn't a registered subscriber
+     * @throws NoSuchSubscriptionException when subscriber has no subscriptions
+     * @throws IllegalSubscriptionQuantityException when attempts to add subscription of another meal for a subscriber that has already reached the limit of 3 different subscriptions.
+     */
+    public static void main(String[] args) throws IOException, IllegalNumberInputException, IllegalMealQuantityException, IllegalSubscriptionQuantityException, NoSuchMealException, NoSuchSubscriberException, NoSuchSubscriptionException {
+
+        //read command line options
+        parseArgs(args);
+
+        try
+        {
+            run();
+        }
+        finally
+        {
+            //close everything that was started, in every mode and also when a mode failed
+            shutdown();
+        }
+    }
+
+    /**
+     * Runs the program in the mode chosen with the command line options: conversion, batch, export, HTTP API only or the interactive menu.
+     * Returns when the mode is finished, parts of the program that were started are closed by {@link #shutdown()} afterwards.
+     * @throws IOException when input file "input_data.txt" (or the file specified with "--input") is not found or can't be read
      * @throws IllegalNumberInputException when the number from clerk's keyboard input is not a positive number and a positive number is expected (adding or removing subscriptions).
      * @throws IllegalMealQuantityException when either there is not enough meals available to add to a subscription or the quantity of meals to be removed exceeds the quantity subscribed.
      * @throws NoSuchMealException when meal from clerk's keyboard input isn't a registered meal
@@ -68,21 +251,67 @@ public class MainProgram {
      * @throws NoSuchSubscriptionException when subscriber has no subscriptions
      * @throws IllegalSubscriptionQuantityException when attempts to add subscription of another meal for a subscriber that has already reached the limit of 3 different subscriptions.
      */
-    public static void main(String[] args) throws FileNotFoundException, IllegalNumberInputException, IllegalMealQuantityException, IllegalSubscriptionQuantityException, NoSuchMealException, NoSuchSubscriberException, NoSuchSubscriptionException {
+    private static void run() throws IOException, IllegalNumberInputException, IllegalMealQuantityException, IllegalSubscriptionQuantityException, NoSuchMealException, NoSuchSubscriberException, NoSuchSubscriptionException {
 
         //boolean variable programDone is used in a while loop that keeps the program running until clerk chooses to finish
         boolean programDone = false;
 
-        //initialise SortedLinkedLists for storing subscriber, meal, subscription information
-        subscribersLinkedList = new SortedLinkedList<Subscriber>();
-        mealsLinkedList = new SortedLinkedList<Meal>();
-        subscriptionsLinkedList = new LinkedList<Subscription>();
+        //initialise SubscriptionRegistry for storing subscriber, meal, subscription information
+        registry = new SubscriptionRegistry(openStore());
+        engine = new SubscriptionEngine(registry);
 
-        //create PrintWriter object outLetters for writing notes to file letters.txt
-        PrintWriter outLetters = new PrintWriter("src/subscription/manager/letters.txt");
+        //create LetterService letters for writing notes to file letters.txt (or the file specified with "--letters") in the background
+        letters = openLetters();
+        engine.getMetrics().setLetters(letters);
+        //write metrics to the file specified with "--metrics-file" while the program runs
+        startMetricsFile();
 
         //calling method readIn to read in the input file
         readIn();
+        //conversion mode writes the input file as a binary catalog or as text without the interactive menu
+        if (catalogFile != null || textFile != null)
+        {
+            convertInput();
+            return;
+        }
+        //keep subscriptions of the store directory from the last run, unless the journal recovers them
+        recoverStore();
+        //recover subscriptions kept on disk, clerk's changes wait for the journal, batch changes are forced to disk when the journal is closed
+        openJournal(batchFile == null);
+        //index subscribers and meals for look ups by the beginning of their names, including subscribers the journal registered again
+        searchIndex = SearchIndex.build(registry);
+        //publish changes from the recovered state on, the stock monitor watches meal balances through the feed
+        startChangeFeed();
+
+        //batch mode applies the operations file without the interactive menu
+        if (batchFile != null)
+        {
+            runBatch();
+            if (exportFile != null)
+            {
+                exportListing(exportFile);
+            }
+            return;
+        }
+
+        //export mode writes all meals and subscribers to a file without the interactive menu
+        if (exportFile != null)
+        {
+            exportListing(exportFile);
+            return;
+        }
+
+        //load the regions specified with "--region" next to the region of the input file
+        loadRegions();
+        //restock meals from files put in the directory specified with "--restock-dir" while clerks work
+        startRestockWatcher();
+        //serve the HTTP API specified with "--http" next to the menu, or instead of it with "--no-menu"
+        startHttpServer();
+        if (noMenu)
+        {
+            serveUntilStopped();
+            return;
+        }
 
         //print welcome message at the start of the program only
         //ASCII Art was found here: https://www.asciiart.eu/food-and-drinks/other
@@ -132,65 +361,62 @@ public class MainProgram {
                 case "f":
                     //print goodbye message to display
                     System.out.println("Closing the program, see you later!");
-                    //close PrintWriter to output notes to letters.txt file
-                    outLetters.close();
-                    //finish running the program using boolean programDone
+                    //finish running the program using boolean programDone, the program is closed by shutdown()
                     programDone = true;
                     break;
 
-                //option "m" for displaying a list of meals and their available quantity sorted in ascending lexicographic order by meal's name
+                //option "m" for displaying pages of meals and their available quantity sorted in ascending lexicographic order by meal's name
                 case "m":
-                    //print to display
-                    System.out.println("Information about all the meals and their availability:\n");
-                    //print meals and their available quantity using for-each loop on mealsLinkedList
-                    for (Meal meal : mealsLinkedList) {
-                        System.out.println("Meal type: " + meal.getMealName() + "\nNumber available: " + meal.getMealBalance());
-                        System.out.println();
-                    }
+                    browse(true);
                     break;
 
-                //option "s" for displaying a list of subscribers and their subscriptions, sorted in ascending lexicographic order by subscriber's surname then name
+                //option "s" for displaying pages of subscribers and their subscriptions, sorted in ascending lexicographic order by subscriber's surname then name
                 case "s":
-                    //print to display
-                    System.out.println("Information about all the subscribers:\n");
-                    /*Print subscribers and their subscriptions to display in the following format using for-each loop on subscribersLinkedList
-                    Full Name: X Y
-                    Subscriptions: none - if no subscriptions
-                    1. Meal type: Z, number of meals: # - numbered list if has subscriptions*/
-                    //outer for-each loop
-                    for (Subscriber subscriber : subscribersLinkedList) {
-                        System.out.println("Full name: " + subscriber.getFirstName() + " " + subscriber.getSurname());
-                        //try block
-                        try
-                        {
-                            //check if subscriber has subscriptions using isSubscription()
-                            isSubscription(subscriber.getFirstName(), subscriber.getSurname()); //throws NoSuchSubscriptionException if subscriber has no subscriptions
-                            //print subscriber's subscriptions to display as a numbered list
-                            System.out.println("Subscriptions:");
-                            int count = 0; //numbered list counter
-                            //inner for-each loop
-                            for (Subscription subscription : subscriptionsLinkedList)
-                            {
-                                Subscriber subscribed = new Subscriber(subscription.getFirstName(), subscription.getSurname());
-                                //match subscription to subscriber from the outer for-each loop
-                                if (subscriber.equals(subscribed))
-                                {
-                                    //add to numbered list counter as each subscription is printed to display
-                                    count++;
-                                    System.out.println(count + ". Meal type: " + subscription.getMealSubscribed() + ", number of meals: " + subscription.getMealSubscribedBalance());
-                                }
-                            }
-                        }
-                        //catch block
-                        catch (NoSuchSubscriptionException exception)
-                        {
-                            //prints to display when user has no subscriptions
-                            System.out.println("Subscriptions: none");
-                        }
-                        System.out.println();
+                    browse(false);
+                    break;
+
+                //option "l" for looking up subscribers and meals by the beginning of their names
+                case "l":
+                    System.out.println("Type the beginning of the subscriber's surname, or of the first name and surname separated by space, or of the meal's name and press enter:");
+                    input = new Scanner(System.in);
+                    lookUp(input.hasNextLine() ? input.nextLine() : "");
+                    break;
+
+                //option "e" for exporting all meals and subscribers to a file
+                case "e":
+                    System.out.println("Type the path of the file to export all meals and subscribers to and press enter:");
+                    input = new Scanner(System.in);
+                    String exportPath = input.nextLine().trim();
+                    try
+                    {
+                        exportListing(exportPath);
+                    }
+                    catch (IOException exception)
+                    {
+                        System.out.println("The file \"" + exportPath + "\" could not be written: " + exception.getMessage());
                     }
                     break;
 
+                //option "o" for displaying meals low on stock and meals running out soon
+                case "o":
+                    System.out.print(stockMonitor.report());
+                    break;
+
+                //option "d" for displaying demand for meals, totals of subscriptions are kept up to date so the report doesn't scan subscriptions
+                case "d":
+                    System.out.print(registry.getDemand().report(MealDemand.DEFAULT_TOP));
+                    break;
+
+                //option "g" for displaying totals and memory of every region, totals of all regions are queried in parallel
+                case "g":
+                    System.out.print(regions.report(MealDemand.DEFAULT_TOP));
+                    break;
+
+                //option "x" for displaying counters of operations, latencies and meal stock
+                case "x":
+                    printMetrics();
+                    break;
+
                 //option "a" for adding new subscriptions or adding meals to already existing subscriptions
                 case "a":
                     //reassign values of boolean variables to false allowing for input validation throughout the option prompts
@@ -212,7 +438,7 @@ public class MainProgram {
                                 inLName = input.next();
                                 input.nextLine();
                                 //validate if input subscriber is a registered subscriber
-                                isSubscriber(inFName, inLName); //throws a NoSuchSubscriberException
+                                engine.isSubscriber(inFName, inLName); //throws a NoSuchSubscriberException
                                 //subscriber is validated
                                 validatedS = true;
                                 //reassign number of clerk's input attempts to 3
@@ -228,7 +454,7 @@ public class MainProgram {
                                 //assign meal name to inMeal variable
                                 inMeal = input.nextLine();
                                 //validate if input meal is a registered meal
-                                isMeal(inMeal); //throws a NoSuchMealException
+                                engine.isMeal(inMeal); //throws a NoSuchMealException
                                 //meal is validated
                                 validatedM = true;
                                 //reassign number of clerk's input attempts to 3
@@ -280,7 +506,9 @@ public class MainProgram {
                         {
                             //print exception message to display
                             System.out.println(exception.getMessage());
-                            System.out.println("Operation was unsuccessful, no changes have been made to subscriptions.");
+                            //print a note in a form of letter to letters.txt file, letter informs that the limit of meal types is reached
+                            letters.sendLimitReached(inFName, inLName, inMeal, inMealQuantity);
+                            System.out.println("Operation was unsuccessful, no changes have been made to subscriptions.\nYou can find an apology letter in the \"letters.txt\" file after you finish running this program.");
                             break;
                         }
                         //1 attempt for the clerk when trying to add more meals than available to a subscription
@@ -288,20 +516,8 @@ public class MainProgram {
                         {
                             //print exception message to display
                             System.out.println(exception.getMessage());
-                            /*
-                            Create date time format object dtf that will set the format to Day/Month/Year Hour:minutes:seconds.
-                            The following parts of code were adapted from the code by user "mkyong" found here: https://mkyong.com/java/java-how-to-get-current-date-time-date-and-calender/
-                             */
-                            DateTimeFormatter dtf = DateTimeFormatter.ofPattern("dd/MM/uuuu HH:mm:ss");
-                            //create date time object now with the current date and time, adapted code as stated above
-                            LocalDateTime now = LocalDateTime.now();
                             //print a note in a form of letter to letters.txt file, letter informs that there is not enough meals of requested type
-                            outLetters.println(dtf.format(now) + "\nFood Company Office\n" + "Dear " + inFName + " " + inLName + ",\n" +
-                                    exception.getMessage() + " Therefore, we are sorry to let you know that this could not be added to your subscription and your request will not be fulfilled.\n" +
-                                    "Please accept our apologies.\n" +
-                                    "Sincerely,\n" +
-                                    "Clerk on behalf of the Food Company\n" +
-                                    "* * * * * * * * *");
+                            letters.sendOutOfStock(inFName, inLName, inMeal, inMealQuantity, exception.getMessage());
                             //print unsuccessful operation message to display
                             System.out.println("Operation was unsuccessful, no changes have been made to subscriptions.\nYou can find an apology letter in the \"letters.txt\" file after you finish running this program.");
                             //exit option while loop
@@ -351,9 +567,9 @@ public class MainProgram {
                                 inLName = input.next();
                                 input.nextLine();
                                 //validate if input subscriber is a registered subscriber
-                                isSubscriber(inFName, inLName); //throws a NoSuchSubscriberException
+                                engine.isSubscriber(inFName, inLName); //throws a NoSuchSubscriberException
                                 //validate if input subscriber has a subscription
-                                isSubscription(inFName, inLName); //throws NoSuchSubscriptionException
+                                engine.isSubscription(inFName, inLName); //throws NoSuchSubscriptionException
                                 //subscriber is validated
                                 validatedS = true;
                                 //reassign number of clerk's input attempts to 3
@@ -369,7 +585,7 @@ public class MainProgram {
                                 //assign meal name to inMeal variable
                                 inMeal = input.nextLine();
                                 //validate if input meal is a registered meal
-                                isMeal(inMeal); //throws a NoSuchMealException
+                                engine.isMeal(inMeal); //throws a NoSuchMealException
                                 //meal is validated
                                 validatedM = true;
                                 //reassign number of clerk's input attempts to 3
@@ -443,367 +659,990 @@ public class MainProgram {
 
     //Methods
     /**
-     * Reads data from input file "input_data.txt" in the current directory, i.e. src/subscription/manager/input_data.txt
-     * containing information about registered subscriptions and meals, stores and sorts subscribers and meals in SortedLinkedLists.
-     * Sorting is performed using insertion sort sorting algorithm insertSort() from SortedLinkedList class.
-     * <p>Data in the input file follows the format below:
-     * <p>The first line contains an integer representing the number of registered subscribers, followed by the
-     * information about the subscribers (one line for every subscriber with their first name and surname). The
-     * next line contains an integer representing the number of different types of meal available, and is followed by
-     * the information about the meals (two lines for every meal: one line containing the name of the meal and the
-     * second one containing the number of these meals available each week). See the example file in the current directory.
-     * @throws FileNotFoundException when input file "input_data.txt" is not found in the current directory
-     */
-    private static void readIn() throws FileNotFoundException {
-        //initialise file reader and scanner
-        FileReader inFile = new FileReader("src/subscription/manager/input_data.txt"); //file needs to be in the same directory
-        Scanner in = new Scanner(inFile);
-
-        //initialise variables
-        //index used for looping over lists, i
-        int i = 0;
-        //number of subscribers read from input file
-        int noOfSubscribers = in.nextInt();
-        in.nextLine();
-
-        //while loop to read subscribers from lines containing subscriber information
-        while (i < noOfSubscribers) {
-            Subscriber subscriber = new Subscriber(in.next(), in.next());
-            subscribersLinkedList.add(subscriber); //add subscriber to SortedLinkedList
-            subscribersLinkedList.insertSort(subscribersLinkedList); //sort SortedLinkedList
-            i++;
-        }
-
-        //variables
-        //reassign index variable to 0
-        i = 0;
-        //number of meal type names read from input file
-        int noOfMealTypes = in.nextInt();
-        in.nextLine();
-
-        //while loop to read subscribers from lines containing subscriber information
-        while (i < noOfMealTypes) {
-            Meal meal = new Meal(in.nextLine(), in.nextInt());
-            in.nextLine();
-            mealsLinkedList.add(meal); //add meal to SortedLinkedList
-            mealsLinkedList.insertSort(mealsLinkedList); //sort SortedLinkedList
-            i++;
-        }
-    }
-
-    /**
-     * Prints the program menu to the display.
-     * The operations specified in this menu are the operations that clerk can perform when running the program via keyboard input:
+     * Reads command line options, options not specified keep their default values:
      * <ul>
      *     <li>
-     *         f - finish running the program
+     *         --input path - path of the input file with registered subscribers and meals, default "src/subscription/manager/input_data.txt"
      *     </li>
      *     <li>
-     *         m - display information about all the meals
+     *         --parallel-load threads - number of threads used for loading subscribers from the input file, 0 for number of available processors, default 1
      *     </li>
      *     <li>
-     *         s - display information about all the subscribers
+     *         --batch path - apply the operations file without the interactive menu, see {@link BatchProcessor} for the format of the file
      *     </li>
      *     <li>
-     *         a - update the stored data, add meals to a registered subscriber's subscription
+     *         --batch-log path - file the batch mode writes the result of every operation to, default is the display
      *     </li>
      *     <li>
-     *         r - update the stored data, remove meals from a registered subscriber's subscription
+     *         --data-dir path - directory with the journal and snapshots of subscriptions, subscriptions are kept only in memory if not specified
+     *     </li>
+     *     <li>
+     *         --snapshot-interval seconds - seconds between snapshots written while the program runs, 0 for a snapshot only when the program finishes, default 60
+     *     </li>
+     *     <li>
+     *         --letters path - file apology letters are written to, replaced at every start, default "src/subscription/manager/letters.txt"
+     *     </li>
+     *     <li>
+     *         --letters-daily path - directory apology letters are written to instead, one file "letters-yyyy-MM-dd.txt" per day
+     *     </li>
+     *     <li>
+     *         --clerks threads - number of clerk threads applying operations in batch mode, 0 for number of available processors, default 1
+     *     </li>
+     *     <li>
+     *         --export path - write all meals and subscribers to the file without the interactive menu, after the batch if "--batch" is specified
+     *     </li>
+     *     <li>
+     *         --write-catalog path - write subscribers and meals of the input file to a binary catalog without the interactive menu, see {@link BinaryCatalog},
+     *         a catalog is read with "--input" like a text input file
+     *     </li>
+     *     <li>
+     *         --write-text path - write subscribers and meals of the input file, e.g. a binary catalog, to a text input file without the interactive menu
+     *     </li>
+     *     <li>
+     *         --page-size entries - number of meals or subscribers on one page of options "m" and "s", default 20
+     *     </li>
+     *     <li>
+     *         --offheap - keep subscriptions in direct memory outside the Java heap, see {@link OffHeapSubscriptionStore}
+     *     </li>
+     *     <li>
+     *         --store-dir path - keep subscriptions outside the Java heap in memory-mapped files in the directory, they are kept at the next start
+     *         with the same input file, ignored with "--data-dir" because the journal recovers subscriptions
+     *     </li>
+     *     <li>
+     *         --metrics-file path - file metrics are written to in the Prometheus text format while the program runs, e.g. for a node exporter's textfile collector
+     *     </li>
+     *     <li>
+     *         --metrics-interval seconds - seconds between writes of the metrics file, default 15
+     *     </li>
+     *     <li>
+     *         --stock-thresholds n,n,... - balances of meals at or below which clerks are alerted, default "10,0"
+     *     </li>
+     *     <li>
+     *         --change-log path - file every change of a subscription and every letter sent is written to, one line each, see {@link ChangeEvent#toString()}
+     *     </li>
+     *     <li>
+     *         --restock-dir path - apply restock files put in the directory while the program runs, see {@link RestockWatcher} for the format of the files,
+     *         not used in batch and export mode
+     *     </li>
+     *     <li>
+     *         --region name=path - load another region, e.g. a kitchen, from its own input file, it has its own subscribers, meals and subscriptions,
+     *         see {@link PartitionedRegistry}, can be given many times, not used in batch and export mode.
+     *         With "--data-dir" the region keeps its journal and snapshots in the subdirectory named after it, so the name may only have letters, digits, "-" and "_".
+     *     </li>
+     *     <li>
+     *         --region-name name - name of the region of the input file, "main" by default
+     *     </li>
+     *     <li>
+     *         --http port - serve the HTTP API on the port while the menu runs, see {@link SubscriptionHttpServer}, not used in batch and export mode
+     *     </li>
+     *     <li>
+     *         --http-host host - serve the HTTP API on the interface of the host name or address, e.g. "0.0.0.0" for all interfaces,
+     *         only the loopback interface by default because requests are not authenticated
+     *     </li>
+     *     <li>
+     *         --no-menu - only serve the HTTP API, without the interactive menu, until the program is stopped, e.g. with Ctrl+C
      *     </li>
      * </ul>
-     *
+     * @param args command line options
+     * @throws IllegalArgumentException when an option is unknown or its value is missing
      */
-    private static void printMenu(){
-        printDivider(); //visually divides space on the display
-        System.out.println("Choose one of the operations displayed below:");
-        System.out.println("f - finish running the program");
-        System.out.println("m - display information about all the meals");
-        System.out.println("s - display information about all the subscribers");
-        System.out.println("a - update the stored data, add meals to a registered subscriber's subscription");
-        System.out.println("r - update the stored data, remove meals from a registered subscriber's subscription");
-        printDivider();
-
+    private static void parseArgs(String[] args)
+    {
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--input":
+                    inputFile = optionValue(args, ++i);
+                    break;
+                case "--batch":
+                    batchFile = optionValue(args, ++i);
+                    break;
+                case "--batch-log":
+                    batchLogFile = optionValue(args, ++i);
+                    break;
+                case "--parallel-load":
+                    loadThreads = intOptionValue(args, ++i);
+                    if (loadThreads == 0)
+                    {
+                        loadThreads = Runtime.getRuntime().availableProcessors();
+                    }
+                    break;
+                case "--data-dir":
+                    dataDirectory = optionValue(args, ++i);
+                    break;
+                case "--snapshot-interval":
+                    snapshotInterval = intOptionValue(args, ++i);
+                    break;
+                case "--letters":
+                    lettersFile = optionValue(args, ++i);
+                    break;
+                case "--letters-daily":
+                    lettersDirectory = optionValue(args, ++i);
+                    break;
+                case "--clerks":
+                    batchClerks = intOptionValue(args, ++i);
+                    if (batchClerks == 0)
+                    {
+                        batchClerks = Runtime.getRuntime().availableProcessors();
+                    }
+                    break;
+                case "--export":
+                    exportFile = optionValue(args, ++i);
+                    break;
+                case "--write-catalog":
+                    catalogFile = optionValue(args, ++i);
+                    break;
+                case "--write-text":
+                    textFile = optionValue(args, ++i);
+                    break;
+                case "--page-size":
+                    pageSize = Math.max(intOptionValue(args, ++i), 1);
+                    break;
+                case "--offheap":
+                    offHeap = true;
+                    break;
+                case "--store-dir":
+                    storeDirectory = optionValue(args, ++i);
+                    break;
+                case "--metrics-file":
+                    metricsFile = optionValue(args, ++i);
+                    break;
+                case "--metrics-interval":
+                    metricsInterval = Math.max(intOptionValue(args, ++i), 1);
+                    break;
+                case "--stock-thresholds":
+                    stockThresholds = intListOptionValue(args, ++i);
+                    break;
+                case "--change-log":
+                    changeLogFile = optionValue(args, ++i);
+                    break;
+                case "--restock-dir":
+                    restockDirectory = optionValue(args, ++i);
+                    break;
+                case "--region":
+                    String region = optionValue(args, ++i);
+                    int equals = region.indexOf('=');
+                    if (equals <= 0 || equals == region.length() - 1)
+                    {
+                        throw new IllegalArgumentException("Option \"--region\" needs a name and a path separated by \"=\", found \"" + region + "\".");
+                    }
+                    if (!region.substring(0, equals).matches("[A-Za-z0-9_-]+"))
+                    {
+                        throw new IllegalArgumentException("Region name \"" + region.substring(0, equals) + "\" may only have letters, digits, \"-\" and \"_\", it names the region's data directory.");
+                    }
+                    regionFiles.put(region.substring(0, equals), Paths.get(region.substring(equals + 1)));
+                    break;
+                case "--region-name":
+                    regionName = optionValue(args, ++i);
+                    break;
+                case "--http":
+                    httpPort = intOptionValue(args, ++i);
+                    break;
+                case "--http-host":
+                    httpHost = optionValue(args, ++i);
+                    break;
+                case "--no-menu":
+                    noMenu = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option \"" + args[i] + "\".");
+            }
+        }
+        if (noMenu && httpPort < 0)
+        {
+            throw new IllegalArgumentException("Option \"--no-menu\" needs \"--http\".");
+        }
+        if (regionFiles.containsKey(regionName))
+        {
+            throw new IllegalArgumentException("Region \"" + regionName + "\" is the region of the input file, choose another name with \"--region-name\".");
+        }
     }
 
     /**
-     * Prints a visual divider line to the display, useful when displaying menu.
+     * Returns value of a command line option.
+     * @param args command line options
+     * @param i position of the value
+     * @return String value of the option
+     * @throws IllegalArgumentException when the value is missing
      */
-    private static void printDivider()
+    private static String optionValue(String[] args, int i)
     {
-        System.out.println("-------------------------------------------------------------------------------------------");
+        if (i >= args.length)
+        {
+            throw new IllegalArgumentException("Option \"" + args[i - 1] + "\" needs a value.");
+        }
+        return args[i];
     }
 
-
-    //methods for adding and removing subscriptions
     /**
-     * Adds meal subscription to the Linked List of subscriptions, subscriptionsLinkedList.
-     * @param fName subscriber's first name
-     * @param lName subscriber's surname
-     * @param mealType name of the meal type
-     * @param mealQuantity quantity of meals of the specified meal type
-     * @throws IllegalSubscriptionQuantityException when attempted to add subscription and subscriber has reached the limit of maximum 3 different subscriptions
-     * @throws IllegalMealQuantityException when attempted to add subscription of more meals of particular type than available at the moment
+     * Returns value of a command line option that needs to be a number that isn't negative.
+     * @param args command line options
+     * @param i position of the value
+     * @return int value of the option
+     * @throws IllegalArgumentException when the value is missing or isn't a number that isn't negative
      */
-    private static void addMealSubscription(String fName, String lName, String mealType, int mealQuantity) throws IllegalSubscriptionQuantityException, IllegalMealQuantityException {
-        //create Subscription and Meal objects from input parameters, subscription and inputMeal
-        Subscription subscription = new Subscription(fName, lName, mealType, mealQuantity);
-        Meal inputMeal = new Meal(mealType, mealQuantity);
-
-        //max limit of subscriptions = 3 different meal types per subscriber
-        //use variable numberMealsSubscribed to check number of existing subscriptions per subscriber
-        int numberMealsSubscribed = 0;
-        for (Subscription subscribed : subscriptionsLinkedList) //loop over subscriptions list
+    private static int intOptionValue(String[] args, int i)
+    {
+        String value = optionValue(args, i);
+        try
         {
-            Subscriber subscriber = new Subscriber(subscription.getFirstName(), subscription.getSurname());
-            if (subscriber.equals(subscribed))
+            int number = Integer.parseInt(value);
+            if (number >= 0)
             {
-                numberMealsSubscribed++; //add to variable
+                return number;
             }
         }
-        //max limit of subscriptions reached, throw exception
-        if (numberMealsSubscribed == 3)
+        catch (NumberFormatException exception)
         {
-            throw new IllegalSubscriptionQuantityException("Subscription cannot be added.\nEach subscriber is allowed to subscribe to a maximum of 3 different meal types and subscriber \"" + fName + " " + lName + "\" has already reached that limit.");
+            //reported below
         }
+        throw new IllegalArgumentException("Option \"" + args[i - 1] + "\" needs a number that isn't negative, found \"" + value + "\".");
+    }
 
-        //validate if enough quantity of meals is available to be subscribed
-        isEnoughMeal(mealType, mealQuantity); //throws IllegalMealQuantityException
-
-        //adding subscription
-        //add to existing subscription
-        if (isSubscription(fName, lName, mealType))
+    /**
+     * Returns value of a command line option that is a comma separated list of numbers that aren't negative.
+     * @param args command line options
+     * @param i position of the value
+     * @return int[] the numbers
+     * @throws IllegalArgumentException when the value is missing or isn't a list of numbers that aren't negative
+     */
+    private static int[] intListOptionValue(String[] args, int i)
+    {
+        String[] values = optionValue(args, i).split(",");
+        int[] numbers = new int[values.length];
+        for (int j = 0; j < values.length; j++)
         {
-            for (Subscription subscriptionExisting : subscriptionsLinkedList)
+            try
             {
-                if (subscriptionExisting.equals(subscription))
-                {
-                    int newQuantity = subscriptionExisting.getMealSubscribedBalance() + mealQuantity;
-                    subscriptionExisting.setMealSubscribedBalance(newQuantity);
-                }
+                numbers[j] = Integer.parseInt(values[j].trim());
+            }
+            catch (NumberFormatException exception)
+            {
+                numbers[j] = -1; //reported below
+            }
+            if (numbers[j] < 0)
+            {
+                throw new IllegalArgumentException("Option \"" + args[i - 1] + "\" needs numbers that aren't negative separated by commas, found \"" + args[i] + "\".");
             }
         }
-        //add a new subscription if meal of specified type hasn't been subscribed to yet
-        else
-        {
-            subscriptionsLinkedList.add(subscription);
-        }
+        return numbers;
+    }
+
+    /**
+     * Reads data from the input file, by default "input_data.txt" in the current directory, i.e. src/subscription/manager/input_data.txt
+     * containing information about registered subscriptions and meals, stores and sorts subscribers and meals in SortedSkipLists of the registry.
+     * The file is read with an {@link InputDataLoader}, see there for the format of the file, and load throughput is printed to the display.
+     * Subscribers are parsed in parallel when more than one load thread is specified with "--parallel-load".
+     * @throws IOException when the input file is not found or can't be read
+     */
+    private static void readIn() throws IOException {
+        InputDataLoader loader = new InputDataLoader(Paths.get(inputFile), loadThreads);
+        loader.load(registry);
+        engine.getMetrics().recordLatency(SubscriptionMetrics.Operation.READ_IN, loader.getLoadNanos());
+        //print number of records loaded and load throughput
+        System.out.println(loader.getSummary());
+    }
 
-        //change balance of available meals
-        for (Meal meal : mealsLinkedList)
+    /**
+     * Writes the subscribers and meals read from the input file to the files specified with "--write-catalog" and "--write-text", and prints the time taken.
+     * @throws IOException when a file can't be written
+     */
+    private static void convertInput() throws IOException
+    {
+        if (catalogFile != null)
         {
-         if (inputMeal.equals(meal))
-            {
-                int newMealBalance = meal.getMealBalance() - mealQuantity;
-                meal.setMealBalance(newMealBalance);
-            }
+            long start = System.nanoTime();
+            BinaryCatalog.writeCatalog(registry, Paths.get(catalogFile));
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("Wrote catalog \"" + catalogFile + "\" in " + millis + " ms.");
         }
+        if (textFile != null)
+        {
+            long start = System.nanoTime();
+            BinaryCatalog.writeText(registry, Paths.get(textFile));
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("Wrote text input file \"" + textFile + "\" in " + millis + " ms.");
+        }
+    }
 
-        //print confirmation of operation message to the display
-        System.out.println("The " + mealType + " meal (number of meals: " + mealQuantity + ") was added to " + fName + " " + lName + "'s subscription.");
+    /**
+     * Creates the store of subscriptions chosen with "--offheap" and "--store-dir", the Java heap by default.
+     * @return SubscriptionStore for the registry
+     * @throws IOException when the files in the store directory can't be created or mapped
+     */
+    private static SubscriptionStore openStore() throws IOException
+    {
+        if (storeDirectory != null)
+        {
+            return OffHeapSubscriptionStore.mapped(Paths.get(storeDirectory));
+        }
+        return offHeap ? OffHeapSubscriptionStore.direct() : new HeapSubscriptionStore();
     }
 
     /**
-     * Removes meal subscription or removes meals from subscription stored in the Linked List of subscriptions, subscriptionsLinkedList.
-     * @param fName subscriber's first name
-     * @param lName subscriber's surname
-     * @param mealType name of the meal type
-     * @param mealQuantity quantity of meals of the specified meal type
-     * @throws IllegalMealQuantityException when attempted to remove more meals of particular type than there is subscribed to at the moment
+     * Keeps subscriptions the store directory has from the last run with the same subscribers and meals, and prints how many were kept.
+     * Subscriptions of the store are always cleared when "--data-dir" is specified, the journal is recovered instead.
      */
-    private static void removeMealSubscription(String fName, String lName, String mealType, int mealQuantity) throws IllegalMealQuantityException
+    private static void recoverStore()
     {
-        //create Subscription and Meal objects from input parameters, subscription and inputMeal
-        Subscription subscription = new Subscription(fName, lName, mealType, mealQuantity);
-        Meal inputMeal = new Meal(mealType, mealQuantity);
+        int kept = registry.recoverStore(dataDirectory == null);
+        if (storeDirectory != null && dataDirectory == null)
+        {
+            System.out.println(kept > 0 ? "Kept " + kept + " subscriptions of the store directory." : "Store directory has no subscriptions of these subscribers and meals.");
+        }
+    }
 
-        //if subscription exists, remove specified quantity of meals (mealQuantity) from subscription
-        if (isSubscription(fName, lName, mealType))
+    /**
+     * Starts the LetterService writing apology letters to the file specified with "--letters", or to daily files in the directory specified with "--letters-daily".
+     * @return LetterService ready for letters
+     * @throws IOException when the letters file or directory can't be created
+     */
+    private static LetterService openLetters() throws IOException
+    {
+        if (lettersDirectory != null)
         {
-            //using for-each loop here threw ConcurrentModificationException hence use for loop over the Linked List instead
-            for (int i = 0; i < subscriptionsLinkedList.size(); i++)
-            {
-                Subscription subscribed = subscriptionsLinkedList.get(i);
+            return LetterService.dailyFiles(Paths.get(lettersDirectory));
+        }
+        return LetterService.toFile(Paths.get(lettersFile));
+    }
 
-                //specified with parameter quantity of meals (mealQuantity) needs to be equal or smaller than quantity of meals subscribed to (subscribed.getMealSubscribedBalance())
-                if (subscribed.equals(subscription) && subscribed.getMealSubscribedBalance() >= mealQuantity)
+    /**
+     * Opens the journal in the directory specified with "--data-dir", recovers subscriptions and balances of meals from it
+     * and starts writing periodic snapshots. Does nothing if no data directory is specified.
+     * @param waitForDurability true if every change waits until it is forced to disk, see {@link SubscriptionEngine#setJournal(SubscriptionJournal, boolean)}
+     * @throws IOException when the data directory can't be read or its snapshot or journal is damaged
+     */
+    private static void openJournal(boolean waitForDurability) throws IOException
+    {
+        if (dataDirectory == null)
+        {
+            return;
+        }
+        journal = SubscriptionJournal.open(Paths.get(dataDirectory), registry);
+        System.out.println(journal.getSummary());
+        engine.setJournal(journal, waitForDurability);
+        if (snapshotInterval > 0)
+        {
+            snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "snapshot-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotScheduler.scheduleWithFixedDelay(() -> {
+                try
                 {
-                    //temporary variable newQuantity to check what is the new quantity of meals in the subscription
-                    int newQuantity = subscribed.getMealSubscribedBalance() - mealQuantity;
-                    //if new quantity is 0, remove subscription from the Linked List of subscriptions (subscriptionsLinkedList)
-                    if (newQuantity == 0)
-                    {
-                        subscriptionsLinkedList.remove(subscribed);
-                    }
-                    //if new quantity is still greater than 0, only change quantity of meals subscribed to in the subscription
-                    else
-                    {
-                        subscribed.setMealSubscribedBalance(newQuantity);
-                    }
-                    //print confirmation of operation message to the display
-                    System.out.println("The " + mealType + " meal (number of meals: " + mealQuantity + ") was removed from " + fName + " " + lName + "'s subscription.");
+                    engine.snapshot();
+                }
+                catch (IOException exception)
+                {
+                    //the journal still has every change, the next snapshot tries again
+                    System.err.println("Snapshot could not be written: " + exception.getMessage());
+                }
+            }, snapshotInterval, snapshotInterval, TimeUnit.SECONDS);
+        }
+    }
 
-                    //update balance of available meals in SortedLinkedList (mealsLinkedList) after removing subscriptions
-                    for (Meal meal : mealsLinkedList)
+    /**
+     * Starts the ChangeFeed the engine and the LetterService publish changes to, with its listeners:
+     * <ul>
+     *     <li>
+     *         the StockMonitor with the thresholds specified with "--stock-thresholds", alerts are printed to the display,
+     *         in batch mode to the error output so they don't mix with a batch log on the display
+     *     </li>
+     *     <li>
+     *         the change log specified with "--change-log", every change is written as one line, the file is flushed once for every batch of changes
+     *     </li>
+     * </ul>
+     * @throws IOException when the change log can't be created
+     */
+    private static void startChangeFeed() throws IOException
+    {
+        changeFeed = new ChangeFeed();
+        stockMonitor = new StockMonitor(registry, stockThresholds);
+        PrintStream alerts = batchFile == null ? System.out : System.err;
+        stockMonitor.addListener(event -> alerts.println(event));
+        changeFeed.addListener("stock-monitor", (event, sequence, endOfBatch) -> {
+            if (event.getType().isSubscriptionChange())
+            {
+                stockMonitor.onChange(event.getMealId(), event.getQuantity());
+            }
+            else if (event.getType() == ChangeEvent.Type.MEAL_RESTOCKED)
+            {
+                //restocked meals are not taken by clerks, only the stock level changes
+                stockMonitor.onChange(event.getMealId(), 0);
+            }
+        });
+        if (changeLogFile != null)
+        {
+            changeLog = Files.newBufferedWriter(Paths.get(changeLogFile), StandardCharsets.UTF_8);
+            Writer log = changeLog;
+            changeFeed.addListener("change-log", (event, sequence, endOfBatch) -> {
+                try
+                {
+                    log.append(event.toString()).append('\n');
+                    if (endOfBatch)
                     {
-                        if (meal.equals(inputMeal))
-                        {
-                            //temporary variable of new meal balance
-                            int newMealBalance = meal.getMealBalance() + mealQuantity;
-
-                            meal.setMealBalance(newMealBalance);
-                        }
+                        log.flush();
                     }
                 }
-                //throw IllegalMealQuantityException if attempted to remove more meals than there is subscribed to
-                if (subscribed.equals(subscription) && subscribed.getMealSubscribedBalance() < mealQuantity)
+                catch (IOException exception)
                 {
-                    throw new IllegalMealQuantityException("The quantity of meals you want to remove (" + mealQuantity + ") exceeds the number of meals " + fName + " " + lName + " is subscribed to (" + subscribed.getMealSubscribedBalance() + ").");
+                    throw new UncheckedIOException(exception);
                 }
-            }
+            });
         }
+        engine.setChangeFeed(changeFeed);
+        letters.setChangeFeed(changeFeed);
+        engine.getMetrics().setStockMonitor(stockMonitor);
+        engine.getMetrics().setChangeFeed(changeFeed);
     }
 
-    //methods for validating input
     /**
-     * Validates if subscription of a particular meal type for a particular subscriber specified with parameters exists.
-     * @param fName subscriber's first name
-     * @param lName subscriber's surname
-     * @param mealType name of the meal type
-     * @return boolean validSubscription = true if subscription specified with parameters exists (valid)
+     * Stops publishing changes, waits until listeners of the change feed have handled all changes and closes the change log.
+     * Does nothing if the change feed wasn't started.
+     * @throws IOException when the change log can't be written
      */
-    private static boolean isSubscription(String fName, String lName, String mealType)
+    private static void closeChangeFeed() throws IOException
     {
-        boolean validSubscription = false; //boolean validSubscription to be returned by this method, starts as false
+        if (changeFeed == null)
+        {
+            return;
+        }
+        engine.setChangeFeed(null);
+        letters.setChangeFeed(null);
+        changeFeed.close();
+        if (changeLog != null)
+        {
+            changeLog.close();
+            changeLog = null;
+        }
+    }
+
+    /**
+     * Starts the HTTP API on the port specified with "--http", on the interface specified with "--http-host" or on the loopback interface by default.
+     * Changes go through a {@link SubscriptionDesk} so they follow the rules of batch mode and send the same letters.
+     * Does nothing if no port is specified.
+     * @throws IOException when the port can't be bound
+     */
+    private static void startHttpServer() throws IOException
+    {
+        if (httpPort < 0)
+        {
+            return;
+        }
+        httpServer = new SubscriptionHttpServer(new SubscriptionDesk(engine, letters), letters, stockMonitor, pageSize);
+        httpServer.setRegions(regions);
+        httpServer.start(httpHost, httpPort);
+        System.out.println("HTTP API is served on " + httpServer.getHost() + " port " + httpServer.getPort() + ".");
+    }
 
-        Subscription inputSubscription = new Subscription(fName, lName, mealType, 1); //meal quantity is 1 as it's the minimum to be subscribed to
+    /**
+     * Stops the HTTP API, requests in progress finish first. Does nothing if there is no HTTP API.
+     */
+    private static void stopHttpServer()
+    {
+        if (httpServer != null)
+        {
+            httpServer.close();
+            httpServer = null;
+        }
+    }
 
-        //check if subscription specified with parameters (inputSubscription) exists in the Linked List of subscriptions (subscriptionsLinkedList)
-        for (Subscription subscription : subscriptionsLinkedList) {
-            if (inputSubscription.equals(subscription)) {
-                validSubscription = true; //boolean value = true if exists (valid)
-                break;
+    /**
+     * Loads the regions specified with "--region" in parallel and puts them after the region of the input file, prints the load summary of every region.
+     * Other regions keep their subscriptions on the Java heap, they have no stock monitor or change feed, their letters are sent with the letters of the program.
+     * With "--data-dir" every other region has its own journal in the subdirectory named after it and recovers its subscriptions from it,
+     * otherwise their subscriptions are kept only in memory.
+     * @throws IOException when the input file of a region is not found or can't be read, or the journal of a region can't be recovered
+     */
+    private static void loadRegions() throws IOException
+    {
+        regions = PartitionedRegistry.load(new Region(regionName, engine, letters), regionFiles, loadThreads, letters,
+                dataDirectory == null ? null : Paths.get(dataDirectory), ForkJoinPool.commonPool());
+        for (Region region : regions.getRegions())
+        {
+            if (region.getLoadSummary() != null)
+            {
+                System.out.println("Region " + region.getName() + ": " + region.getLoadSummary());
+            }
+            if (region.getJournal() != null)
+            {
+                System.out.println("Region " + region.getName() + ": " + region.getJournal().getSummary());
             }
         }
-        return validSubscription;
     }
 
-    //overloading isSubscription
     /**
-     * Validates if a particular subscriber specified with parameters has subscription(s).
-     * @param fName subscriber's first name
-     * @param lName subscriber's surname
-     * @return boolean validSubscription = true if subscriber specified with parameters has subscription(s) (valid)
-     * @throws NoSuchSubscriptionException when subscriber specified with parameters has no subscriptions
+     * Starts applying restock files of the directory specified with "--restock-dir", files already there are applied first.
+     * Applied and failed files are reported on the display.
+     * @throws IOException when the directory can't be created or watched
      */
-    private static boolean isSubscription(String fName, String lName) throws NoSuchSubscriptionException
+    private static void startRestockWatcher() throws IOException
     {
-        boolean validSubscription = false; //boolean validSubscription to be returned by this method, starts as false
+        if (restockDirectory == null)
+        {
+            return;
+        }
+        restockWatcher = new RestockWatcher(engine, Paths.get(restockDirectory), System.out);
+        restockWatcher.start();
+    }
 
-        Subscriber isSubscribed = new Subscriber(fName, lName);
+    /**
+     * Stops applying restock files, a file being applied is finished first.
+     */
+    private static void stopRestockWatcher()
+    {
+        if (restockWatcher != null)
+        {
+            restockWatcher.close();
+            restockWatcher = null;
+        }
+    }
 
-        //check if subscriber specified with parameters (isSubscribed) has subscriptions in the Linked List of subscriptions (subscriptionsLinkedList)
-        for (Subscription subscription : subscriptionsLinkedList) {
-            Subscriber subscribed = new Subscriber(subscription.getFirstName(), subscription.getSurname()); //subscriber actually found in the list of subscriptions (subscribed)
-            if (isSubscribed.equals(subscribed)) {
-                validSubscription = true; //boolean true if subscriber specified with parameters (isSubscribed) is actually on the list of subscriptions (subscribed)
-                break;
+    /**
+     * Serves the HTTP API until the program is stopped, used with "--no-menu".
+     * When the program is stopped, the program is closed by {@link #shutdown()} the same way as after option "f".
+     */
+    private static void serveUntilStopped()
+    {
+        Thread shutdown = new Thread(() -> {
+            try
+            {
+                shutdown();
             }
+            catch (IOException exception)
+            {
+                System.err.println("The program could not be closed cleanly: " + exception.getMessage());
+            }
+        }, "shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdown);
+        System.out.println("Press Ctrl+C to stop the program.");
+        try
+        {
+            //requests are served on virtual threads, the main thread only waits
+            Thread.currentThread().join();
         }
-        //throw NoSuchSubscriptionException if no subscriptions for the subscriber specified with parameters
-        if (!validSubscription)
+        catch (InterruptedException exception)
         {
-            throw new NoSuchSubscriptionException("Subscriber \"" + fName + " " + lName + "\" has no subscriptions.");
+            Thread.currentThread().interrupt();
         }
-        return validSubscription;
     }
 
     /**
-     * Validates if subscriber specified with parameters is actually a registered subscriber.
-     * @param fName subscriber's first name
-     * @param lName subscriber's surname
-     * @return boolean validSubscriber = true if subscriber specified with parameters is a registered subscriber (valid)
-     * @throws NoSuchSubscriberException when subscriber specified with parameters is not a registered subscriber
+     * Closes everything the program started, in every mode and also after a failure, parts that weren't started are skipped:
+     * the HTTP API and the restock watcher are stopped before anything they use is closed, letters are written out,
+     * listeners of the change feed handle the last changes, the journals of the program and of other regions write their last snapshots, the store writes subscriptions out
+     * and the metrics file is written for the last time. Every part is closed even if closing an earlier part failed.
+     * The program is closed once, later calls, e.g. by the shutdown hook of "--no-menu", do nothing.
+     * @throws IOException when a part couldn't be closed, failures of later parts are suppressed exceptions of the first one
      */
-    private static boolean isSubscriber(String fName, String lName) throws NoSuchSubscriberException
+    private static synchronized void shutdown() throws IOException
     {
-        boolean validSubscriber = false; // boolean validSubscriber to be returned by this method, starts as false
-
-        Subscriber inputSubscriber = new Subscriber(fName, lName);
+        if (shutDown)
+        {
+            return;
+        }
+        shutDown = true;
+        stopHttpServer();
+        stopRestockWatcher();
+        Closeable[] parts = {
+                () -> {
+                    if (letters != null)
+                    {
+                        letters.close();
+                    }
+                },
+                MainProgram::closeChangeFeed,
+                MainProgram::closeJournal,
+                () -> {
+                    if (regions != null)
+                    {
+                        regions.close();
+                    }
+                },
+                () -> {
+                    if (registry != null)
+                    {
+                        registry.close();
+                    }
+                },
+                MainProgram::stopMetricsFile
+        };
+        IOException failure = null;
+        for (Closeable part : parts)
+        {
+            try
+            {
+                part.close();
+            }
+            catch (IOException exception)
+            {
+                if (failure == null)
+                {
+                    failure = exception;
+                }
+                else
+                {
+                    failure.addSuppressed(exception);
+                }
+            }
+        }
+        if (failure != null)
+        {
+            throw failure;
+        }
+    }
 
-        //check if subscriber specified with parameters (inputSubscriber) exists in the SortedLinkedList of subscribers (subscribersLinkedList)
-        for (Subscriber subscriber : subscribersLinkedList)
+    /**
+     * Starts writing the metrics file specified with "--metrics-file" every few seconds, see {@link SubscriptionMetrics#writePrometheus(java.nio.file.Path)}.
+     * Does nothing if no metrics file is specified.
+     */
+    private static void startMetricsFile()
+    {
+        if (metricsFile == null)
         {
-            if (inputSubscriber.equals(subscriber))
+            return;
+        }
+        metricsScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        metricsScheduler.scheduleWithFixedDelay(() -> {
+            try
             {
-                validSubscriber = true; //true if exists (valid)
-                break;
+                engine.getMetrics().writePrometheus(Paths.get(metricsFile));
             }
+            catch (IOException exception)
+            {
+                //metrics are written again at the next interval
+                System.err.println("Metrics could not be written: " + exception.getMessage());
+            }
+        }, 0, metricsInterval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops writing the metrics file and writes it for the last time, so it has the final counters. Does nothing if there is no metrics file.
+     * @throws IOException when the metrics file can't be written
+     */
+    private static void stopMetricsFile() throws IOException
+    {
+        if (metricsScheduler == null)
+        {
+            return;
         }
-        //throw NoSuchSubscriberException when subscriber specified with parameters is not a registered subscriber
-        if (!validSubscriber) {
-            throw new NoSuchSubscriberException("Subscriber \"" + fName + " " + lName + "\" doesn't exist.");
+        //a write in progress finishes first, both writes use the same temporary file
+        metricsScheduler.shutdown();
+        try
+        {
+            metricsScheduler.awaitTermination(10, TimeUnit.SECONDS);
         }
-        return validSubscriber;
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+        }
+        engine.getMetrics().writePrometheus(Paths.get(metricsFile));
+    }
 
+    /**
+     * Prints the metrics report to the display, see {@link SubscriptionMetrics#writeReport(Appendable)}.
+     */
+    private static void printMetrics()
+    {
+        StringBuilder report = new StringBuilder();
+        try
+        {
+            engine.getMetrics().writeReport(report);
+        }
+        catch (IOException exception)
+        {
+            throw new UncheckedIOException(exception); //a StringBuilder doesn't throw
+        }
+        System.out.print(report);
     }
 
     /**
-     * Validates if meal type name specified with parameter is actually a registered meal available for subscriptions
-     * @param mealName name of the meal type
-     * @return boolean validMeal = true if meal specified with parameter is a registered meal available for subscriptions
-     * @throws NoSuchMealException when meal type specified with parameter is not a registered meal
+     * Stops periodic snapshots, writes the last snapshot so the next start doesn't need to replay the journal, and closes the journal.
+     * Does nothing if there is no journal.
+     * @throws IOException when the snapshot or the journal can't be written
      */
-    private static boolean isMeal(String mealName) throws NoSuchMealException
+    private static void closeJournal() throws IOException
     {
-        boolean validMeal = false; //boolean validMeal to be returned by this method, starts as false
+        if (journal == null)
+        {
+            return;
+        }
+        if (snapshotScheduler != null)
+        {
+            snapshotScheduler.shutdownNow();
+        }
+        engine.snapshot();
+        journal.close();
+        engine.setJournal(null, false);
+    }
 
-        Meal inputMeal = new Meal(mealName);
+    /**
+     * Applies the operations file specified with "--batch" using a {@link BatchProcessor}, prints result of every operation to the batch log
+     * and a summary with throughput of the batch to the display.
+     * @throws IOException when the operations file can't be read or the batch log can't be written
+     */
+    private static void runBatch() throws IOException
+    {
+        BatchProcessor batch = new BatchProcessor(engine, letters, batchClerks, searchIndex);
+        if (batchLogFile == null)
+        {
+            //System.out is flushed but not closed by the batch
+            Writer log = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+            batch.process(Paths.get(batchFile), log);
+        }
+        else
+        {
+            try (Writer log = Files.newBufferedWriter(Paths.get(batchLogFile), StandardCharsets.UTF_8))
+            {
+                batch.process(Paths.get(batchFile), log);
+            }
+        }
+        System.out.println(batch.getSummary());
+        printMealContention(registry, System.out);
+    }
 
-        //check if meal specified with parameter (mealName) exists in the SortedLinkedList of meals (mealsLinkedList)
-        for (Meal meal : mealsLinkedList) {
-            if (inputMeal.equals(meal)) {
-                validMeal = true; //true if exists (valid)
-                break;
+    /**
+     * Prints the meals whose balance changes had to be retried because other clerks changed the balance at the same time, see {@link Meal#getReserveRetries()}.
+     * Nothing is printed when no clerks competed for meals.
+     * @param registry registry storing the meals
+     * @param out PrintStream the contention is printed to, i.e. the display
+     */
+    static void printMealContention(SubscriptionRegistry registry, PrintStream out)
+    {
+        for (Meal meal : registry.getMeals())
+        {
+            long retries = meal.getReserveRetries();
+            if (retries > 0)
+            {
+                out.println("Meal contention: " + meal.getMealName() + " had " + retries + " balance change retries.");
             }
         }
-        //throw NoSuchMealException when meal specified with parameter is not a registered meal
-        if (!validMeal) {
-            throw new NoSuchMealException("Meal type \"" + mealName + "\" doesn't exist.");
+    }
+
+    //methods for displaying lists of meals and subscribers
+    /**
+     * Displays pages of meals or subscribers, used by options "m" and "s".
+     * The clerk can type the beginning of the meal's name or the subscriber's surname to list only matching entries,
+     * and pages of {@link #pageSize} entries are displayed one by one until the clerk goes back to the menu, see {@link RegistryListing}.
+     * @param meals true to list meals, false to list subscribers
+     */
+    private static void browse(boolean meals)
+    {
+        RegistryListing listing = new RegistryListing(registry);
+        Scanner input = new Scanner(System.in);
+        if (meals)
+        {
+            System.out.println("Type the beginning of the meal's name to list matching meals, or press enter to list all the meals:");
+        }
+        else
+        {
+            System.out.println("Type the beginning of the subscriber's surname to list matching subscribers, or press enter to list all the subscribers:");
+        }
+        String prefix = input.hasNextLine() ? input.nextLine().trim() : "";
+        int offset = 0;
+        while (true)
+        {
+            RegistryListing.Page page = meals ? listing.mealsPage(prefix, offset, pageSize) : listing.subscribersPage(prefix, offset, pageSize);
+            //the whole page is printed at once
+            System.out.print(page.text());
+            if (!page.hasNext())
+            {
+                return;
+            }
+            System.out.println("Press enter for the next page, or type \"q\" and press enter to go back to the menu:");
+            if (!input.hasNextLine() || input.nextLine().trim().equalsIgnoreCase("q"))
+            {
+                return;
+            }
+            offset += page.count();
         }
-        return validMeal;
     }
 
     /**
-     * Validates if there is enough meals of particular type specified with parameters to add to subscription.
-     * @param mealName name of the meal type
-     * @param mealQuantity quantity of meals of the specified meal type
-     * @return boolean enoughMeal = true if there is enough meals of specified meal type to subscribe
-     * @throws IllegalMealQuantityException when attempted to add more meals of particular type to a subscription than currently available
+     * Looks up subscribers and meals by the beginning of their names using the {@link SearchIndex}, used by option "l".
+     * At most {@link #pageSize} subscribers and meals are displayed together with the number of all matches and the time the look up took.
+     * @param query beginning of the surname, or of the first name and surname separated by whitespace, or of the meal's name
      */
-    private static boolean isEnoughMeal(String mealName, int mealQuantity) throws IllegalMealQuantityException
+    private static void lookUp(String query)
     {
-        boolean enoughMeal = false; //boolean enoughMeal to be returned by this method, starts as false
+        long start = System.nanoTime();
+        List<Subscriber> subscribers = searchIndex.searchSubscribers(query, pageSize);
+        List<Meal> meals = searchIndex.findMeals(query.trim());
+        long micros = (System.nanoTime() - start) / 1_000;
 
-        int mealAvailableQuantity = 0; //integer for storing quantity of available meals of particular type, starts as 0
+        StringBuilder text = new StringBuilder(256);
+        text.append("Subscribers found: ").append(subscribers.size() < pageSize ? Integer.toString(subscribers.size()) : "at least " + pageSize).append('\n');
+        for (Subscriber subscriber : subscribers)
+        {
+            text.append(subscriber.getFirstName()).append(' ').append(subscriber.getSurname()).append('\n');
+        }
+        text.append("Meals found: ").append(meals.size()).append('\n');
+        for (int i = 0; i < meals.size() && i < pageSize; i++)
+        {
+            text.append(meals.get(i).getMealName()).append('\n');
+        }
+        text.append("Look up took ").append(micros).append(" microseconds.");
+        System.out.println(text);
+    }
+
+    /**
+     * Exports all meals and subscribers to a file, used by option "e" and the "--export" command line option, see {@link RegistryListing#export(java.nio.file.Path)}.
+     * @param path path of the export file, replaced if it exists
+     * @throws IOException when the file can't be written
+     */
+    private static void exportListing(String path) throws IOException
+    {
+        long start = System.nanoTime();
+        long entries = new RegistryListing(registry).export(Paths.get(path));
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Exported " + entries + " meals and subscribers to \"" + path + "\" in " + millis + " ms.");
+    }
 
-        Meal inputMeal = new Meal(mealName);
+    /**
+     * Prints a list of all meals and their available quantity sorted in ascending lexicographic order by meal's name, through one buffered writer.
+     * @param registry registry storing the meals
+     * @param out PrintStream the list is printed to, i.e. the display
+     */
+    static void printMeals(SubscriptionRegistry registry, PrintStream out)
+    {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        try
+        {
+            new RegistryListing(registry).writeMeals(writer);
+            //the PrintStream is flushed but not closed
+            writer.flush();
+        }
+        catch (IOException exception)
+        {
+            throw new UncheckedIOException(exception);
+        }
+    }
 
-        //loop through SortedLinkedList of Meals (mealsLinkedList)
-        for (Meal meal : mealsLinkedList)
+    /**
+     * Prints a list of all subscribers and their subscriptions sorted in ascending lexicographic order by subscriber's surname then name, through one buffered writer.
+     * @param engine engine with the registry storing the subscribers and subscriptions
+     * @param out PrintStream the list is printed to, i.e. the display
+     */
+    static void printSubscribers(SubscriptionEngine engine, PrintStream out)
+    {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        try
         {
-            if (inputMeal.equals(meal) && meal.getMealBalance() >= mealQuantity) //mealQuantity specified with parameter needs to be equal or smaller than current balance of meal
-            {
-                enoughMeal = true; //true if there is enough meals
-                break;
-            } else if (inputMeal.equals(meal) && meal.getMealBalance() < mealQuantity) {
-                mealAvailableQuantity = meal.getMealBalance(); //store available meal balance
-            }
+            new RegistryListing(engine.getRegistry()).writeSubscribers(writer);
+            //the PrintStream is flushed but not closed
+            writer.flush();
         }
-        //throw IllegalMealQuantityException if not enough meals, display the message with meal type name, requested quantity, available quantity
-        if (!enoughMeal)
+        catch (IOException exception)
+        {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Prints the program menu to the display.
+     * The operations specified in this menu are the operations that clerk can perform when running the program via keyboard input:
+     * <ul>
+     *     <li>
+     *         f - finish running the program
+     *     </li>
+     *     <li>
+     *         m - display information about all the meals
+     *     </li>
+     *     <li>
+     *         s - display information about all the subscribers
+     *     </li>
+     *     <li>
+     *         l - look up subscribers and meals by the beginning of their names
+     *     </li>
+     *     <li>
+     *         e - export information about all the meals and subscribers to a file
+     *     </li>
+     *     <li>
+     *         a - update the stored data, add meals to a registered subscriber's subscription
+     *     </li>
+     *     <li>
+     *         r - update the stored data, remove meals from a registered subscriber's subscription
+     *     </li>
+     *     <li>
+     *         o - display meals low on stock and forecasts of running out, see {@link StockMonitor}
+     *     </li>
+     *     <li>
+     *         d - display demand for meals, meal types with most meals subscribed to and subscribers by number of meal types, see {@link MealDemand}
+     *     </li>
+     *     <li>
+     *         g - display totals and memory of every region and totals of all regions, see {@link PartitionedRegistry}
+     *     </li>
+     *     <li>
+     *         x - display metrics of operations and meal stock, see {@link SubscriptionMetrics}
+     *     </li>
+     * </ul>
+     *
+     */
+    private static void printMenu(){
+        printDivider(); //visually divides space on the display
+        System.out.println("Choose one of the operations displayed below:");
+        System.out.println("f - finish running the program");
+        System.out.println("m - display information about all the meals");
+        System.out.println("s - display information about all the subscribers");
+        System.out.println("l - look up subscribers and meals by the beginning of their names");
+        System.out.println("e - export information about all the meals and subscribers to a file");
+        System.out.println("a - update the stored data, add meals to a registered subscriber's subscription");
+        System.out.println("r - update the stored data, remove meals from a registered subscriber's subscription");
+        System.out.println("o - display meals low on stock and forecasts of running out");
+        System.out.println("d - display demand for meals, meal types with most meals subscribed to and subscribers by number of meal types");
+        System.out.println("g - display totals and memory of every region and totals of all regions");
+        System.out.println("x - display metrics of operations and meal stock");
+        printDivider();
+
+    }
+
+    /**
+     * Prints a visual divider line to the display, useful when displaying menu.
+     */
+    private static void printDivider()
+    {
+        System.out.println("-------------------------------------------------------------------------------------------");
+    }
+
+
+    //methods for adding and removing subscriptions
+    /**
+     * Adds meal subscription using the {@link SubscriptionEngine#addMealSubscription(String, String, String, int) subscription engine} and prints confirmation to the display.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type
+     * @param mealQuantity quantity of meals of the specified meal type
+     * @throws IllegalSubscriptionQuantityException when attempted to add subscription and subscriber has reached the limit of maximum 3 different subscriptions
+     * @throws IllegalMealQuantityException when attempted to add subscription of more meals of particular type than available at the moment
+     */
+    private static void addMealSubscription(String fName, String lName, String mealType, int mealQuantity) throws IllegalSubscriptionQuantityException, IllegalMealQuantityException {
+        engine.addMealSubscription(fName, lName, mealType, mealQuantity);
+        //print confirmation of operation message to the display
+        System.out.println("The " + mealType + " meal (number of meals: " + mealQuantity + ") was added to " + fName + " " + lName + "'s subscription.");
+    }
+
+    /**
+     * Removes meal subscription or removes meals from subscription using the {@link SubscriptionEngine#removeMealSubscription(String, String, String, int) subscription engine} and prints confirmation to the display.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type
+     * @param mealQuantity quantity of meals of the specified meal type
+     * @throws IllegalMealQuantityException when attempted to remove more meals of particular type than there is subscribed to at the moment
+     */
+    private static void removeMealSubscription(String fName, String lName, String mealType, int mealQuantity) throws IllegalMealQuantityException
+    {
+        if (engine.removeMealSubscription(fName, lName, mealType, mealQuantity))
         {
-            throw new IllegalMealQuantityException("The number of " + mealName + " meals you would like to add (" + mealQuantity + ") exceeds the number of " + mealName + " meals currently available (" + mealAvailableQuantity + ").");
+            //print confirmation of operation message to the display
+            System.out.println("The " + mealType + " meal (number of meals: " + mealQuantity + ") was removed from " + fName + " " + lName + "'s subscription.");
+            //send a letter confirming the removal to the subscriber
+            letters.sendRemovalConfirmation(fName, lName, mealType, mealQuantity);
         }
-        return enoughMeal;
     }
 }
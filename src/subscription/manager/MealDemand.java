@@ -0,0 +1,430 @@
+package subscription.manager;
+
+import subscription.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * MealDemand keeps totals of the subscriptions of a {@link SubscriptionRegistry registry} up to date, so demand for meals is reported without scanning the subscriptions:
+ * <ul>
+ *     <li>quantity of meals subscribed to, by meal type</li>
+ *     <li>number of subscribers subscribed to each meal type</li>
+ *     <li>number of subscribers subscribed to 0, 1, 2 and 3 meal types</li>
+ * </ul>
+ * <p>Every change of a subscription's quantity, by clerks, the journal or a restarted store, goes through {@link SubscriptionRegistry#setQuantity(int, int, int)},
+ * which updates the totals with a few atomic increments, so a change costs O(1) however many subscriptions are stored.
+ * <p>The meal types with most meals subscribed to are kept in order by an indexed heap of all m meal types, with the position of every meal type in the heap by meal id,
+ * so a change moves its meal type up or down the heap in O(log m) time, also when its total falls, and the top K are read from the heap in O(K log K) time
+ * however many meal types there are. The heap has its own lock, held by a change only while its meal type moves.
+ * <p>Totals are read without locks, while clerks change subscriptions a report may include a change in one total and not yet in another.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class MealDemand {
+    //Fields
+    /**
+     * Number of meal types with most meals listed in the report when the clerk doesn't choose otherwise.
+     */
+    public static final int DEFAULT_TOP = 5;
+    /**
+     * Maximum number of different meal types of a subscriber.
+     */
+    private static final int MAX_TYPES = SubscriptionEngine.MAX_MEAL_TYPES;
+    /**
+     * Registered meals by meal id, the same meals as in the registry.
+     */
+    private volatile Meal[] meals = new Meal[16];
+    /**
+     * Number of registered meals.
+     */
+    private volatile int mealCount;
+    /**
+     * Number of registered subscribers.
+     */
+    private volatile int subscriberCount;
+    /**
+     * Quantity of meals subscribed to, by meal id.
+     */
+    private volatile AtomicLongArray quantities = new AtomicLongArray(16);
+    /**
+     * Number of subscribers subscribed to the meal type, by meal id.
+     */
+    private volatile AtomicIntegerArray subscribers = new AtomicIntegerArray(16);
+    /**
+     * Number of subscribers by the number of their meal types, index 0 is not used, subscribers without subscriptions are counted from the number of registered subscribers.
+     */
+    private final AtomicLongArray subscribersByTypes = new AtomicLongArray(MAX_TYPES + 1);
+    /**
+     * Lock of the heap of meal types, guards heap, positions, keys and heapSize.
+     */
+    private final Object heapLock = new Object();
+    /**
+     * Max-heap of meal ids ordered by {@link #isBefore(int, int)}, the meal type with most meals subscribed to first,
+     * the children of position i are at 2i + 1 and 2i + 2.
+     */
+    private int[] heap = new int[16];
+    /**
+     * Position in the heap by meal id.
+     */
+    private int[] positions = new int[16];
+    /**
+     * Quantity of meals subscribed to by meal id as the heap is ordered by, brought up to date with the quantity by every change of the meal type.
+     */
+    private long[] keys = new long[16];
+    /**
+     * Number of meal types in the heap.
+     */
+    private int heapSize;
+
+    /**
+     * Demand for one meal type.
+     * @param mealName name of the meal type
+     * @param quantity quantity of meals subscribed to
+     * @param subscribers number of subscribers subscribed to the meal type
+     * @param balance meals still available
+     */
+    public record MealTotal(String mealName, long quantity, int subscribers, int balance)
+    {
+    }
+
+    //Methods
+    /**
+     * Adds a meal with the next meal id, called when a meal is registered while no subscriptions change. The totals grow to have room for it.
+     * @param meal the registered meal
+     */
+    void addMeal(Meal meal)
+    {
+        int id = mealCount;
+        if (id == quantities.length())
+        {
+            int capacity = id * 2;
+            AtomicLongArray grownQuantities = new AtomicLongArray(capacity);
+            AtomicIntegerArray grownSubscribers = new AtomicIntegerArray(capacity);
+            for (int i = 0; i < id; i++)
+            {
+                grownQuantities.set(i, quantities.get(i));
+                grownSubscribers.set(i, subscribers.get(i));
+            }
+            quantities = grownQuantities;
+            subscribers = grownSubscribers;
+            meals = Arrays.copyOf(meals, capacity);
+        }
+        meals[id] = meal;
+        mealCount = id + 1;
+        synchronized (heapLock)
+        {
+            if (id == heap.length)
+            {
+                heap = Arrays.copyOf(heap, id * 2);
+                positions = Arrays.copyOf(positions, id * 2);
+                keys = Arrays.copyOf(keys, id * 2);
+            }
+            heap[id] = id;
+            positions[id] = id;
+            keys[id] = quantities.get(id);
+            heapSize = id + 1;
+            //a new meal type comes before meal types without subscriptions and with a later name
+            siftUp(id);
+        }
+    }
+
+    /**
+     * Sets the number of registered subscribers, subscribers without subscriptions are counted from it.
+     * @param subscribers number of registered subscribers
+     */
+    void setSubscriberCount(int subscribers)
+    {
+        subscriberCount = subscribers;
+    }
+
+    /**
+     * Updates the totals after the quantity of one subscription changed.
+     * @param mealId id of the meal
+     * @param before quantity of meals before the change, 0 if the subscription was added
+     * @param after quantity of meals after the change, 0 if the subscription was removed
+     * @param typesBefore number of meal types of the subscriber before the change
+     */
+    void onChange(int mealId, int before, int after, int typesBefore)
+    {
+        if (after != before)
+        {
+            quantities.addAndGet(mealId, after - before);
+            moveInHeap(mealId);
+        }
+        if (before == 0 && after > 0)
+        {
+            subscribers.incrementAndGet(mealId);
+            moveSubscriber(typesBefore, typesBefore + 1);
+        }
+        else if (before > 0 && after == 0)
+        {
+            subscribers.decrementAndGet(mealId);
+            moveSubscriber(typesBefore, typesBefore - 1);
+        }
+    }
+
+    /**
+     * Sets all totals to 0, called when the store of the registry is emptied.
+     */
+    void clear()
+    {
+        for (int i = 0; i < quantities.length(); i++)
+        {
+            quantities.set(i, 0);
+            subscribers.set(i, 0);
+        }
+        for (int i = 0; i <= MAX_TYPES; i++)
+        {
+            subscribersByTypes.set(i, 0);
+        }
+        synchronized (heapLock)
+        {
+            //all keys are 0, the heap is built again ordered by names
+            Arrays.fill(keys, 0, heapSize, 0);
+            for (int position = heapSize / 2 - 1; position >= 0; position--)
+            {
+                siftDown(position);
+            }
+        }
+    }
+
+    /**
+     * Brings the key of a meal type up to date with its quantity and moves the meal type up or down the heap to its place, in O(log m) time.
+     * The quantity is read under the lock, so whichever change of the meal type moves it last leaves it ordered by its latest quantity.
+     * @param mealId id of the meal
+     */
+    private void moveInHeap(int mealId)
+    {
+        synchronized (heapLock)
+        {
+            keys[mealId] = quantities.get(mealId);
+            siftUp(positions[mealId]);
+            siftDown(positions[mealId]);
+        }
+    }
+
+    /**
+     * Moves the meal type at a position of the heap up while it comes before its parent, called with the heap's lock held.
+     * @param position position of the meal type
+     */
+    private void siftUp(int position)
+    {
+        int mealId = heap[position];
+        while (position > 0)
+        {
+            int parent = (position - 1) / 2;
+            if (!isBefore(mealId, heap[parent]))
+            {
+                break;
+            }
+            place(heap[parent], position);
+            position = parent;
+        }
+        place(mealId, position);
+    }
+
+    /**
+     * Moves the meal type at a position of the heap down while a child comes before it, called with the heap's lock held.
+     * @param position position of the meal type
+     */
+    private void siftDown(int position)
+    {
+        int mealId = heap[position];
+        while (true)
+        {
+            int child = 2 * position + 1;
+            if (child >= heapSize)
+            {
+                break;
+            }
+            if (child + 1 < heapSize && isBefore(heap[child + 1], heap[child]))
+            {
+                child++;
+            }
+            if (!isBefore(heap[child], mealId))
+            {
+                break;
+            }
+            place(heap[child], position);
+            position = child;
+        }
+        place(mealId, position);
+    }
+
+    /**
+     * Puts a meal type at a position of the heap and remembers the position, called with the heap's lock held.
+     * @param mealId id of the meal
+     * @param position position in the heap
+     */
+    private void place(int mealId, int position)
+    {
+        heap[position] = mealId;
+        positions[mealId] = position;
+    }
+
+    /**
+     * Checks if a meal type comes before another in the heap, i.e. has more meals subscribed to, or as many and comes first by name.
+     * Called with the heap's lock held.
+     * @param a id of the first meal
+     * @param b id of the second meal
+     * @return boolean true if a comes before b
+     */
+    private boolean isBefore(int a, int b)
+    {
+        if (keys[a] != keys[b])
+        {
+            return keys[a] > keys[b];
+        }
+        return meals[a].getMealName().compareTo(meals[b].getMealName()) < 0;
+    }
+
+    /**
+     * Moves a subscriber between counts of subscribers by the number of their meal types.
+     * @param from number of meal types before the change
+     * @param to number of meal types after the change
+     */
+    private void moveSubscriber(int from, int to)
+    {
+        if (from > 0)
+        {
+            subscribersByTypes.decrementAndGet(from);
+        }
+        if (to > 0)
+        {
+            subscribersByTypes.incrementAndGet(to);
+        }
+    }
+
+    /**
+     * Getter for the quantity of meals of a meal type subscribed to.
+     * @param mealId id of the meal
+     * @return long quantity of meals in all subscriptions of the meal type
+     */
+    public long getSubscribedQuantity(int mealId)
+    {
+        return quantities.get(mealId);
+    }
+
+    /**
+     * Getter for the number of subscribers subscribed to a meal type.
+     * @param mealId id of the meal
+     * @return int number of subscribers
+     */
+    public int getSubscriberCount(int mealId)
+    {
+        return subscribers.get(mealId);
+    }
+
+    /**
+     * Counts subscribers by the number of meal types they are subscribed to.
+     * @return long[] numbers of subscribers with 0, 1, 2 and 3 meal types
+     */
+    public long[] getTypeDistribution()
+    {
+        long[] distribution = new long[MAX_TYPES + 1];
+        long withSubscriptions = 0;
+        for (int types = 1; types <= MAX_TYPES; types++)
+        {
+            distribution[types] = subscribersByTypes.get(types);
+            withSubscriptions += distribution[types];
+        }
+        distribution[0] = Math.max(0, subscriberCount - withSubscriptions);
+        return distribution;
+    }
+
+    /**
+     * Getter for the demand for one meal type.
+     * @param mealId id of the meal
+     * @return MealTotal of the meal type
+     */
+    public MealTotal getTotal(int mealId)
+    {
+        Meal meal = meals[mealId];
+        return new MealTotal(meal.getMealName(), quantities.get(mealId), subscribers.get(mealId), meal.getMealBalance());
+    }
+
+    /**
+     * Finds the meal types with most meals subscribed to, ties are broken by the meal's name, in O(K log K) time for K meal types.
+     * The heap's root is the first meal type, the next one is always a child of a meal type already taken,
+     * so the children of taken meal types are kept in a small heap of positions, K meal types are taken from it.
+     * @param k maximum number of meal types
+     * @return List of at most k meal types, most meals first
+     */
+    public List<MealTotal> getTopMeals(int k)
+    {
+        int[] ids;
+        synchronized (heapLock)
+        {
+            if (k <= 0 || heapSize == 0)
+            {
+                return List.of();
+            }
+            ids = new int[Math.min(k, heapSize)];
+            //positions of meal types that may come next, in the order of the heap
+            PriorityQueue<Integer> next = new PriorityQueue<Integer>(2 * ids.length + 1, (a, b) -> isBefore(heap[a], heap[b]) ? -1 : isBefore(heap[b], heap[a]) ? 1 : 0);
+            next.add(0);
+            for (int i = 0; i < ids.length; i++)
+            {
+                int position = next.poll();
+                ids[i] = heap[position];
+                for (int child = 2 * position + 1; child <= 2 * position + 2 && child < heapSize; child++)
+                {
+                    next.add(child);
+                }
+            }
+        }
+        List<MealTotal> top = new ArrayList<MealTotal>(ids.length);
+        for (int id : ids)
+        {
+            top.add(getTotal(id));
+        }
+        return top;
+    }
+
+    /**
+     * Orders meal types by demand, most meals subscribed to first, then by meal's name, the order of {@link #getTopMeals(int)}.
+     * @return Comparator of meal types by demand
+     */
+    static Comparator<MealTotal> byDemand()
+    {
+        return Comparator.comparingLong(MealTotal::quantity).reversed().thenComparing(MealTotal::mealName);
+    }
+
+    /**
+     * Builds the demand report for the clerk: totals of all subscriptions, meal types with most meals subscribed to and subscribers by the number of their meal types.
+     * @param k number of meal types with most meals listed
+     * @return String report of the demand
+     */
+    public String report(int k)
+    {
+        long totalQuantity = 0;
+        long subscriptions = 0;
+        for (int id = 0; id < mealCount; id++)
+        {
+            totalQuantity += quantities.get(id);
+            //every subscriber of a meal type has one subscription of it
+            subscriptions += subscribers.get(id);
+        }
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "Subscribed: %d meals in %d subscriptions of %d subscribers%n", totalQuantity, subscriptions, subscriberCount));
+        report.append("Meal types with most meals subscribed to:\n");
+        for (MealTotal total : getTopMeals(k))
+        {
+            report.append(String.format(Locale.ROOT, "  %-20s %8d meals, %6d subscribers, %6d left%n", total.mealName(), total.quantity(), total.subscribers(), total.balance()));
+        }
+        report.append("Subscribers by number of meal types:\n");
+        long[] distribution = getTypeDistribution();
+        for (int types = 0; types < distribution.length; types++)
+        {
+            report.append(String.format(Locale.ROOT, "  %d meal types: %d%n", types, distribution[types]));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,528 @@
+package subscription.manager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An OffHeapSubscriptionStore keeps subscriptions outside the Java heap, so tens of millions of subscriptions don't add objects the garbage collector has to visit.
+ * <p>Subscriptions are rows of three fixed-width int columns: subscriber id, meal id and quantity. Every subscriber has an index entry of 3 ints
+ * holding the rows of its subscriptions (row + 1, 0 for no subscription). Removed rows are put on a free list and reused by new subscriptions,
+ * the free list is chained through the quantity column. There are never more rows than 3 per subscriber, so room for the rows is made
+ * while subscribers are registered and rows never move while clerks work.
+ * <p>The columns are {@link ByteBuffer ByteBuffers} read and written with volatile semantics through a VarHandle:
+ * <ul>
+ *     <li>
+ *         {@link #direct()} - buffers allocated with ByteBuffer.allocateDirect, subscriptions are kept only in memory
+ *     </li>
+ *     <li>
+ *         {@link #mapped(Path)} - every column is a memory-mapped file in a directory, so subscriptions survive a restart of the program.
+ *         The operating system writes changed pages to the files, {@link #close()} forces them to disk.
+ *         The files are only kept on restart when they were written for the same registered subscribers and meals, see {@link #resume(long)},
+ *         they are not a replacement for the {@link SubscriptionJournal journal}, a crash while clerks work can leave them inconsistent.
+ *     </li>
+ * </ul>
+ * <p>Files in the store directory, ints are little-endian:
+ * <ul>
+ *     <li>
+ *         store.meta - magic, version, capacity in subscribers, rows used, head of the free list, number of subscriptions, fingerprint of subscribers and meals
+ *     </li>
+ *     <li>
+ *         index.col, subscriber.col, meal.col, quantity.col - the index and the three columns, 3 ints per subscriber each
+ *     </li>
+ * </ul>
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class OffHeapSubscriptionStore implements SubscriptionStore {
+    //Fields
+    /**
+     * Number of index entries and rows of every subscriber.
+     */
+    private static final int SLOTS = SubscriptionEngine.MAX_MEAL_TYPES;
+    /**
+     * Largest number of subscribers a store has room for, a column of every subscriber's slots has to fit in one buffer of at most 2 GB.
+     */
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE / (SLOTS * Integer.BYTES);
+    /**
+     * VarHandle for volatile access to ints in the buffers, offsets are in bytes.
+     */
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    /**
+     * VarHandle for the fingerprint in the meta buffer.
+     */
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    /**
+     * First int of store.meta.
+     */
+    private static final int MAGIC = 0x53554253; //"SUBS"
+    /**
+     * Version of the file format.
+     */
+    private static final int VERSION = 1;
+    /**
+     * Size of store.meta in bytes.
+     */
+    private static final int META_SIZE = 32;
+    /**
+     * Byte offsets of the fields of the meta buffer.
+     */
+    private static final int META_MAGIC = 0, META_VERSION = 4, META_CAPACITY = 8, META_ROWS = 12, META_FREE = 16, META_COUNT = 20, META_FINGERPRINT = 24;
+    /**
+     * Names of the column files, in the order of {@link #INDEX}, {@link #SUBSCRIBER}, {@link #MEAL}, {@link #QUANTITY}.
+     */
+    private static final String[] COLUMN_FILES = {"index.col", "subscriber.col", "meal.col", "quantity.col"};
+    /**
+     * Positions of the columns in {@link #columns}.
+     */
+    private static final int INDEX = 0, SUBSCRIBER = 1, MEAL = 2, QUANTITY = 3;
+
+    /**
+     * Directory of the mapped files, null for direct memory.
+     */
+    private final Path directory;
+    /**
+     * Meta fields, mapped from store.meta or in direct memory.
+     */
+    private final ByteBuffer meta;
+    /**
+     * The index and the three columns, each has 3 ints per subscriber of the capacity.
+     */
+    private volatile ByteBuffer[] columns;
+    /**
+     * Number of subscribers the columns have room for.
+     */
+    private int capacity;
+    /**
+     * Lock taken while rows are taken from or returned to the free list.
+     */
+    private final Object rowLock = new Object();
+
+    //Constructor
+    /**
+     * OffHeapSubscriptionStore constructor specifying the directory of the mapped files.
+     * @param directory directory of the mapped files, null for direct memory
+     * @throws IOException when the files can't be created or mapped
+     */
+    private OffHeapSubscriptionStore(Path directory) throws IOException
+    {
+        this.directory = directory;
+        if (directory == null)
+        {
+            meta = ByteBuffer.allocateDirect(META_SIZE);
+            columns = new ByteBuffer[COLUMN_FILES.length];
+            for (int i = 0; i < columns.length; i++)
+            {
+                columns[i] = ByteBuffer.allocateDirect(0);
+            }
+            INT.setVolatile(meta, META_MAGIC, MAGIC);
+            INT.setVolatile(meta, META_VERSION, VERSION);
+            return;
+        }
+        Files.createDirectories(directory);
+        meta = map(directory.resolve("store.meta"), META_SIZE);
+        if ((int) INT.getVolatile(meta, META_MAGIC) != MAGIC || (int) INT.getVolatile(meta, META_VERSION) != VERSION)
+        {
+            //new or unknown files are started again
+            for (int offset = 0; offset < META_SIZE; offset += 4)
+            {
+                INT.setVolatile(meta, offset, 0);
+            }
+            INT.setVolatile(meta, META_MAGIC, MAGIC);
+            INT.setVolatile(meta, META_VERSION, VERSION);
+        }
+        capacity = (int) INT.getVolatile(meta, META_CAPACITY);
+        columns = mapColumns(capacity);
+    }
+
+    //Methods
+    /**
+     * Creates a store in direct memory outside the Java heap.
+     * @return OffHeapSubscriptionStore without files
+     */
+    public static OffHeapSubscriptionStore direct()
+    {
+        try
+        {
+            return new OffHeapSubscriptionStore(null);
+        }
+        catch (IOException exception)
+        {
+            throw new IllegalStateException(exception); //no files are used
+        }
+    }
+
+    /**
+     * Creates a store in memory-mapped files in a directory, files written by a previous run are kept until {@link #resume(long)} or {@link #reset(long)} is called.
+     * @param directory directory of the files, created if it doesn't exist
+     * @return OffHeapSubscriptionStore backed by the files
+     * @throws IOException when the files can't be created or mapped
+     */
+    public static OffHeapSubscriptionStore mapped(Path directory) throws IOException
+    {
+        return new OffHeapSubscriptionStore(directory);
+    }
+
+    /**
+     * Makes room for the index entries and rows of the number of subscribers, mapped files are extended and mapped again,
+     * direct buffers are copied to bigger buffers.
+     * @param subscribers number of registered subscribers
+     * @throws UncheckedIOException when the files can't be extended
+     * @throws IllegalStateException when a column of the subscribers would be larger than the 2 GB limit of a buffer
+     */
+    @Override
+    public void ensureCapacity(int subscribers)
+    {
+        if (subscribers <= capacity)
+        {
+            return;
+        }
+        if (subscribers > MAX_CAPACITY)
+        {
+            throw new IllegalStateException("An off-heap store has room for at most " + MAX_CAPACITY + " subscribers, " + subscribers + " are registered.");
+        }
+        int newCapacity = (int) Math.min(Math.max(subscribers, capacity * 2L), MAX_CAPACITY);
+        if (directory != null)
+        {
+            try
+            {
+                columns = mapColumns(newCapacity);
+            }
+            catch (IOException exception)
+            {
+                throw new UncheckedIOException(exception);
+            }
+        }
+        else
+        {
+            ByteBuffer[] grown = new ByteBuffer[columns.length];
+            for (int i = 0; i < grown.length; i++)
+            {
+                grown[i] = ByteBuffer.allocateDirect(newCapacity * SLOTS * Integer.BYTES);
+                grown[i].put(columns[i].duplicate().clear());
+                grown[i].clear();
+            }
+            columns = grown;
+        }
+        capacity = newCapacity;
+        INT.setVolatile(meta, META_CAPACITY, capacity);
+    }
+
+    /**
+     * Finds the quantity of a subscription through the index entries of the subscriber.
+     * @param subscriberId id of the subscriber
+     * @param mealId id of the meal
+     * @return int quantity of meals, 0 if the subscriber has no subscription of the meal type
+     */
+    @Override
+    public int getQuantity(int subscriberId, int mealId)
+    {
+        ByteBuffer[] current = columns;
+        for (int i = subscriberId * SLOTS; i < subscriberId * SLOTS + SLOTS; i++)
+        {
+            int row = get(current[INDEX], i) - 1;
+            if (row >= 0 && get(current[MEAL], row) == mealId && get(current[SUBSCRIBER], row) == subscriberId)
+            {
+                int quantity = get(current[QUANTITY], row);
+                //a row removed meanwhile holds the free list in its quantity
+                return get(current[INDEX], i) == row + 1 ? quantity : 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Sets the quantity of a subscription, a new subscription takes a row from the free list or the next unused row,
+     * the row is filled before the index entry points to it, so readers never see a half-written row.
+     * @param subscriberId id of the subscriber
+     * @param mealId id of the meal
+     * @param quantity new quantity of meals, 0 to remove the subscription
+     */
+    @Override
+    public void setQuantity(int subscriberId, int mealId, int quantity)
+    {
+        ByteBuffer[] current = columns;
+        int free = -1;
+        for (int i = subscriberId * SLOTS; i < subscriberId * SLOTS + SLOTS; i++)
+        {
+            int row = get(current[INDEX], i) - 1;
+            if (row < 0)
+            {
+                if (free < 0)
+                {
+                    free = i;
+                }
+            }
+            else if (get(current[MEAL], row) == mealId)
+            {
+                if (quantity == 0)
+                {
+                    set(current[INDEX], i, 0);
+                    releaseRow(current, row);
+                }
+                else
+                {
+                    set(current[QUANTITY], row, quantity);
+                }
+                return;
+            }
+        }
+        if (quantity == 0)
+        {
+            return;
+        }
+        if (free < 0)
+        {
+            throw new IllegalStateException("Subscriber " + subscriberId + " has no free subscription slot.");
+        }
+        int row = takeRow(current);
+        set(current[SUBSCRIBER], row, subscriberId);
+        set(current[MEAL], row, mealId);
+        set(current[QUANTITY], row, quantity);
+        set(current[INDEX], free, row + 1);
+    }
+
+    /**
+     * Takes a row from the free list, or the next unused row if the free list is empty, and counts the new subscription.
+     * @param current the columns
+     * @return int the row
+     */
+    private int takeRow(ByteBuffer[] current)
+    {
+        synchronized (rowLock)
+        {
+            int row;
+            int freeHead = (int) INT.getVolatile(meta, META_FREE);
+            if (freeHead != 0)
+            {
+                row = freeHead - 1;
+                //the quantity column of a free row holds the next free row
+                INT.setVolatile(meta, META_FREE, get(current[QUANTITY], row));
+            }
+            else
+            {
+                row = (int) INT.getVolatile(meta, META_ROWS);
+                INT.setVolatile(meta, META_ROWS, row + 1);
+            }
+            INT.setVolatile(meta, META_COUNT, (int) INT.getVolatile(meta, META_COUNT) + 1);
+            return row;
+        }
+    }
+
+    /**
+     * Puts a row on the free list and counts the removed subscription.
+     * @param current the columns
+     * @param row the row
+     */
+    private void releaseRow(ByteBuffer[] current, int row)
+    {
+        synchronized (rowLock)
+        {
+            set(current[MEAL], row, -1);
+            set(current[QUANTITY], row, (int) INT.getVolatile(meta, META_FREE));
+            INT.setVolatile(meta, META_FREE, row + 1);
+            INT.setVolatile(meta, META_COUNT, (int) INT.getVolatile(meta, META_COUNT) - 1);
+        }
+    }
+
+    /**
+     * Counts index entries of the subscriber pointing to rows.
+     * @param subscriberId id of the subscriber
+     * @return int number of subscriptions of the subscriber
+     */
+    @Override
+    public int countSubscriptions(int subscriberId)
+    {
+        ByteBuffer index = columns[INDEX];
+        int count = 0;
+        for (int i = subscriberId * SLOTS; i < subscriberId * SLOTS + SLOTS; i++)
+        {
+            if (get(index, i) != 0)
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Copies meal ids and quantities of the rows the index entries of the subscriber point to.
+     * @param subscriberId id of the subscriber
+     * @param mealIds array the meal ids are copied to
+     * @param quantities array the quantities are copied to
+     * @param offset position of the first copied subscription in the arrays
+     * @return int number of subscriptions copied
+     */
+    @Override
+    public int copySubscriptions(int subscriberId, int[] mealIds, int[] quantities, int offset)
+    {
+        ByteBuffer[] current = columns;
+        int count = 0;
+        for (int i = subscriberId * SLOTS; i < subscriberId * SLOTS + SLOTS; i++)
+        {
+            int row = get(current[INDEX], i) - 1;
+            if (row >= 0)
+            {
+                mealIds[offset + count] = get(current[MEAL], row);
+                quantities[offset + count] = get(current[QUANTITY], row);
+                if (get(current[INDEX], i) == row + 1)
+                {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Getter for the number of all stored subscriptions, kept in the meta fields.
+     * @return int number of subscriptions
+     */
+    @Override
+    public int getSubscriptionCount()
+    {
+        return (int) INT.getVolatile(meta, META_COUNT);
+    }
+
+    /**
+     * Getter for the memory of the meta fields and the columns, in direct memory or mapped from files.
+     * @return long bytes of the buffers
+     */
+    @Override
+    public long getMemoryBytes()
+    {
+        long bytes = meta.capacity();
+        for (ByteBuffer column : columns)
+        {
+            bytes += column.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Subscriptions are kept outside the Java heap.
+     * @return boolean true
+     */
+    @Override
+    public boolean isOffHeap()
+    {
+        return true;
+    }
+
+    /**
+     * Keeps the subscriptions in the mapped files if they were stored for subscribers and meals with the same fingerprint.
+     * @param fingerprint fingerprint of the registered subscribers and meals in the order of their ids
+     * @return boolean true if the subscriptions are kept, always false for direct memory
+     */
+    @Override
+    public boolean resume(long fingerprint)
+    {
+        return directory != null && (long) LONG.getVolatile(meta, META_FINGERPRINT) == fingerprint && getSubscriptionCount() > 0;
+    }
+
+    /**
+     * Clears the index entries, rows and the free list, and remembers the fingerprint.
+     * @param fingerprint fingerprint of the registered subscribers and meals in the order of their ids
+     */
+    @Override
+    public void reset(long fingerprint)
+    {
+        synchronized (rowLock)
+        {
+            for (ByteBuffer column : columns)
+            {
+                //bulk zeroing, a ByteBuffer has no fill
+                ByteBuffer zeros = ByteBuffer.allocate(Math.min(column.capacity(), 1 << 16));
+                ByteBuffer target = column.duplicate().clear();
+                while (target.hasRemaining())
+                {
+                    zeros.clear().limit(Math.min(zeros.capacity(), target.remaining()));
+                    target.put(zeros);
+                }
+            }
+            INT.setVolatile(meta, META_ROWS, 0);
+            INT.setVolatile(meta, META_FREE, 0);
+            INT.setVolatile(meta, META_COUNT, 0);
+            LONG.setVolatile(meta, META_FINGERPRINT, fingerprint);
+        }
+    }
+
+    /**
+     * Forces mapped files to disk, the buffers are released by the garbage collector.
+     * @throws IOException never, mapped buffers report failures of force() as unchecked exceptions
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (directory == null)
+        {
+            return;
+        }
+        for (ByteBuffer column : columns)
+        {
+            ((MappedByteBuffer) column).force();
+        }
+        ((MappedByteBuffer) meta).force();
+    }
+
+    /**
+     * Maps the column files with room for the number of subscribers, files are extended if needed.
+     * @param subscribers number of subscribers
+     * @return ByteBuffer[] the mapped index and columns
+     * @throws IOException when a file can't be mapped
+     */
+    private ByteBuffer[] mapColumns(int subscribers) throws IOException
+    {
+        ByteBuffer[] mapped = new ByteBuffer[COLUMN_FILES.length];
+        for (int i = 0; i < mapped.length; i++)
+        {
+            mapped[i] = map(directory.resolve(COLUMN_FILES[i]), subscribers * SLOTS * Integer.BYTES);
+        }
+        return mapped;
+    }
+
+    /**
+     * Maps a file for reading and writing, the file is created or extended to the size, the mapping stays valid after the channel is closed.
+     * @param path path of the file
+     * @param size size of the mapping in bytes
+     * @return MappedByteBuffer of the file
+     * @throws IOException when the file can't be mapped
+     */
+    private static MappedByteBuffer map(Path path, int size) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * Reads an int of a column with volatile semantics.
+     * @param column the column
+     * @param position position of the int
+     * @return int the value
+     */
+    private static int get(ByteBuffer column, int position)
+    {
+        return (int) INT.getVolatile(column, position * Integer.BYTES);
+    }
+
+    /**
+     * Writes an int of a column with volatile semantics.
+     * @param column the column
+     * @param position position of the int
+     * @param value the value
+     */
+    private static void set(ByteBuffer column, int position, int value)
+    {
+        INT.setVolatile(column, position * Integer.BYTES, value);
+    }
+}
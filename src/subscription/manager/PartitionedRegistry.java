@@ -0,0 +1,379 @@
+package subscription.manager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * A PartitionedRegistry serves many regions or kitchens from one program, every {@link Region region} is a partition with its own subscribers, meals and subscriptions,
+ * loaded from its own input file.
+ * <p>Queries across all regions, e.g. the quantity of meals subscribed to in all regions, run in parallel on a {@link ForkJoinPool}:
+ * the regions are split in halves until one region is left, the halves are queried as fork-join tasks and their results are combined,
+ * see {@link #query(Function, BinaryOperator)}. Every region answers from totals kept up to date by its registry, so a query doesn't scan subscriptions
+ * and doesn't lock anything, clerks keep working in all regions meanwhile.
+ * <p>Memory is accounted for per region with {@link SubscriptionRegistry#estimateMemory()}, see {@link #summarize()}.
+ * <p>Regions are loaded once, before clerks start working, the set of regions doesn't change afterwards.
+ * Regions loaded with a data directory keep their journals in subdirectories named after them, {@link #close()} closes them.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class PartitionedRegistry implements Closeable {
+    //Fields
+    /**
+     * Regions by name, in the order they were given.
+     */
+    private final Map<String, Region> regions;
+    /**
+     * Regions in the order they were given, split in halves by queries.
+     */
+    private final Region[] partitions;
+    /**
+     * Pool queries across regions run on.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Totals and memory of one region.
+     * @param name name of the region
+     * @param totals totals of the region
+     * @param memory estimated memory of the region
+     */
+    public record RegionSummary(String name, Region.Totals totals, SubscriptionRegistry.MemoryEstimate memory)
+    {
+    }
+
+    //Constructor
+    /**
+     * PartitionedRegistry constructor specifying the regions and the pool queries run on.
+     * @param regions regions, names of the regions need to be different
+     * @param pool pool queries across regions run on, e.g. {@link ForkJoinPool#commonPool()}
+     * @throws IllegalArgumentException when there are no regions or two regions have the same name
+     */
+    public PartitionedRegistry(List<Region> regions, ForkJoinPool pool)
+    {
+        if (regions.isEmpty())
+        {
+            throw new IllegalArgumentException("A partitioned registry needs at least one region.");
+        }
+        Map<String, Region> byName = new LinkedHashMap<String, Region>();
+        for (Region region : regions)
+        {
+            if (byName.putIfAbsent(region.getName(), region) != null)
+            {
+                throw new IllegalArgumentException("Region \"" + region.getName() + "\" is given twice.");
+            }
+        }
+        this.regions = Collections.unmodifiableMap(byName);
+        this.partitions = regions.toArray(new Region[0]);
+        this.pool = pool;
+    }
+
+    //Methods
+    /**
+     * Loads regions from their input files in parallel on the pool and puts them after a region loaded elsewhere, e.g. the one of the main program.
+     * With a data directory every loaded region opens its journal in the subdirectory named after the region and recovers its subscriptions,
+     * if a region can't be loaded the journals of the regions loaded already are closed.
+     * @param home region loaded elsewhere, the first region
+     * @param inputFiles paths of the input files by names of the other regions, in the order the regions are listed
+     * @param loadThreads number of threads parsing the subscribers of every file
+     * @param letters LetterService letters of the desks of the regions are sent with
+     * @param dataDirectory directory the data directories of the loaded regions are created in, null to keep their subscriptions only in memory
+     * @param pool pool the regions are loaded on and queries run on
+     * @return PartitionedRegistry with the home region and the loaded regions
+     * @throws IOException when an input file is not found or can't be read, or the journal of a region can't be recovered
+     * @throws IllegalArgumentException when two regions have the same name
+     */
+    public static PartitionedRegistry load(Region home, Map<String, Path> inputFiles, int loadThreads, LetterService letters, Path dataDirectory, ForkJoinPool pool) throws IOException
+    {
+        List<ForkJoinTask<Region>> loads = new ArrayList<ForkJoinTask<Region>>(inputFiles.size());
+        for (Map.Entry<String, Path> file : inputFiles.entrySet())
+        {
+            Path regionDirectory = dataDirectory == null ? null : dataDirectory.resolve(file.getKey());
+            loads.add(pool.submit(() -> Region.load(file.getKey(), file.getValue(), loadThreads, letters, regionDirectory)));
+        }
+        List<Region> regions = new ArrayList<Region>(inputFiles.size() + 1);
+        regions.add(home);
+        try
+        {
+            for (ForkJoinTask<Region> load : loads)
+            {
+                regions.add(load.get());
+            }
+        }
+        catch (ExecutionException exception)
+        {
+            closeLoaded(loads);
+            if (exception.getCause() instanceof IOException cause)
+            {
+                throw cause;
+            }
+            if (exception.getCause() instanceof RuntimeException cause)
+            {
+                //e.g. InputMismatchException of a malformed input file
+                throw cause;
+            }
+            throw new IllegalStateException(exception.getCause());
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Loading regions was interrupted.");
+        }
+        return new PartitionedRegistry(regions, pool);
+    }
+
+    /**
+     * Closes the regions that were loaded after loading another region failed, so their journals are closed, failures of closing are reported on the error output.
+     * @param loads loads of the regions
+     */
+    private static void closeLoaded(List<ForkJoinTask<Region>> loads)
+    {
+        for (ForkJoinTask<Region> load : loads)
+        {
+            try
+            {
+                load.join().close();
+            }
+            catch (RuntimeException exception)
+            {
+                //the region wasn't loaded, it has nothing to close
+            }
+            catch (IOException exception)
+            {
+                //the next start recovers the region from its journal
+                System.err.println("Journal of a region could not be closed: " + exception.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Finds a region by its name.
+     * @param name name of the region
+     * @return Region with the name, null if there is none
+     */
+    public Region getRegion(String name)
+    {
+        return regions.get(name);
+    }
+
+    /**
+     * Getter for the regions.
+     * @return Collection of the regions in the order they were given, can't be changed
+     */
+    public Collection<Region> getRegions()
+    {
+        return regions.values();
+    }
+
+    /**
+     * Queries all regions in parallel on the pool and combines their results, the result of every region is computed on its own fork-join task.
+     * @param query the query of one region
+     * @param combiner combines the results of two neighbouring groups of regions, the earlier regions are the first argument
+     * @param <T> type of the result
+     * @return T the combined result of all regions
+     */
+    public <T> T query(Function<Region, T> query, BinaryOperator<T> combiner)
+    {
+        return pool.invoke(ForkJoinTask.adapt(() -> query(query, combiner, 0, partitions.length)));
+    }
+
+    /**
+     * Queries the regions between two positions, the second half is forked and the first half is queried by the current task.
+     * @param query the query of one region
+     * @param combiner combines the results of two neighbouring groups of regions
+     * @param from position of the first region
+     * @param to position after the last region
+     * @param <T> type of the result
+     * @return T the combined result of the regions
+     */
+    private <T> T query(Function<Region, T> query, BinaryOperator<T> combiner, int from, int to)
+    {
+        if (to - from == 1)
+        {
+            return query.apply(partitions[from]);
+        }
+        int middle = (from + to) >>> 1;
+        ForkJoinTask<T> second = ForkJoinTask.adapt(() -> query(query, combiner, middle, to)).fork();
+        T first = query(query, combiner, from, middle);
+        return combiner.apply(first, second.join());
+    }
+
+    /**
+     * Adds up the totals of all regions in parallel.
+     * @return Region.Totals of all regions
+     */
+    public Region.Totals getTotals()
+    {
+        return query(Region::getTotals, Region.Totals::plus);
+    }
+
+    /**
+     * Adds up the estimated memory of all regions in parallel.
+     * @return MemoryEstimate of all regions
+     */
+    public SubscriptionRegistry.MemoryEstimate getMemory()
+    {
+        return query(Region::getMemory, SubscriptionRegistry.MemoryEstimate::plus);
+    }
+
+    /**
+     * Finds totals and memory of every region in parallel.
+     * @return List of summaries of the regions, in the order the regions were given
+     */
+    public List<RegionSummary> summarize()
+    {
+        return query(region -> List.of(new RegionSummary(region.getName(), region.getTotals(), region.getMemory())), (first, second) -> {
+            List<RegionSummary> both = new ArrayList<RegionSummary>(first.size() + second.size());
+            both.addAll(first);
+            both.addAll(second);
+            return both;
+        });
+    }
+
+    /**
+     * Finds the meal types with most meals subscribed to in all regions, meal types of the same name in different regions are added up.
+     * The totals of every meal type of every region are read in parallel, in O(m) time for m meal types of a region, and merged by name,
+     * the top k of a region can't be merged because a meal type out of the top of every region may be at the top of the sum.
+     * The k meal types with most meals are then kept in a heap of k meal types, ties are broken by the meal's name.
+     * @param k maximum number of meal types
+     * @return List of at most k meal types, most meals first, the balance is the sum of the balances in all regions
+     */
+    public List<MealDemand.MealTotal> getTopMeals(int k)
+    {
+        if (k <= 0)
+        {
+            return List.of();
+        }
+        Map<String, MealDemand.MealTotal> totals = query(region -> {
+            MealDemand demand = region.getRegistry().getDemand();
+            int mealCount = region.getRegistry().getMealCount();
+            Map<String, MealDemand.MealTotal> byName = new HashMap<String, MealDemand.MealTotal>(mealCount * 2);
+            for (int id = 0; id < mealCount; id++)
+            {
+                MealDemand.MealTotal total = demand.getTotal(id);
+                byName.put(total.mealName(), total);
+            }
+            return byName;
+        }, (first, second) -> {
+            second.forEach((name, total) -> first.merge(name, total, (a, b) ->
+                    new MealDemand.MealTotal(name, a.quantity() + b.quantity(), a.subscribers() + b.subscribers(), a.balance() + b.balance())));
+            return first;
+        });
+        //heap of the k meal types with most meals so far, the root is the first to be replaced
+        Comparator<MealDemand.MealTotal> byDemand = MealDemand.byDemand();
+        PriorityQueue<MealDemand.MealTotal> heap = new PriorityQueue<MealDemand.MealTotal>(k + 1, byDemand.reversed());
+        for (MealDemand.MealTotal total : totals.values())
+        {
+            heap.add(total);
+            if (heap.size() > k)
+            {
+                heap.poll();
+            }
+        }
+        List<MealDemand.MealTotal> top = new ArrayList<MealDemand.MealTotal>(heap);
+        top.sort(byDemand);
+        return top;
+    }
+
+    /**
+     * Builds the report of all regions for the clerk: totals and memory of every region, totals of all regions and meal types with most meals subscribed to in all regions.
+     * @param k number of meal types with most meals listed
+     * @return String report of the regions
+     */
+    public String report(int k)
+    {
+        List<RegionSummary> summaries = summarize();
+        Region.Totals all = null;
+        SubscriptionRegistry.MemoryEstimate memory = null;
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "Regions: %d%n", summaries.size()));
+        for (RegionSummary summary : summaries)
+        {
+            appendRegion(report, summary.name(), summary.totals(), summary.memory());
+            all = all == null ? summary.totals() : all.plus(summary.totals());
+            memory = memory == null ? summary.memory() : memory.plus(summary.memory());
+        }
+        appendRegion(report, "All regions", all, memory);
+        report.append("Meal types with most meals subscribed to in all regions:\n");
+        for (MealDemand.MealTotal total : getTopMeals(k))
+        {
+            report.append(String.format(Locale.ROOT, "  %-20s %8d meals, %6d subscribers, %6d left%n", total.mealName(), total.quantity(), total.subscribers(), total.balance()));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Closes every region, i.e. writes the last snapshot of every region with a journal and closes the journal, see {@link Region#close()}.
+     * Every region is closed even if closing an earlier one failed.
+     * @throws IOException when a region couldn't be closed, failures of later regions are suppressed exceptions of the first one
+     */
+    @Override
+    public void close() throws IOException
+    {
+        IOException failure = null;
+        for (Region region : partitions)
+        {
+            try
+            {
+                region.close();
+            }
+            catch (IOException exception)
+            {
+                if (failure == null)
+                {
+                    failure = exception;
+                }
+                else
+                {
+                    failure.addSuppressed(exception);
+                }
+            }
+        }
+        if (failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    /**
+     * Appends the totals and memory of a region to a report.
+     * @param report StringBuilder the lines are appended to
+     * @param name name of the region
+     * @param totals totals of the region
+     * @param memory estimated memory of the region
+     */
+    private static void appendRegion(StringBuilder report, String name, Region.Totals totals, SubscriptionRegistry.MemoryEstimate memory)
+    {
+        report.append(String.format(Locale.ROOT, "  %-20s %d subscribers, %d subscriptions, %d meal types, %d meals subscribed, %d meals left%n",
+                name, totals.subscribers(), totals.subscriptions(), totals.mealTypes(), totals.subscribedMeals(), totals.availableMeals()));
+        report.append(String.format(Locale.ROOT, "  %-20s memory %s on the heap (subscribers %s, names %s, indexes %s, subscriptions %s), %s outside the heap%n",
+                "", size(memory.heapBytes()), size(memory.subscriberBytes()), size(memory.nameBytes()), size(memory.indexBytes()),
+                size(memory.heapStoreBytes()), size(memory.offHeapStoreBytes())));
+    }
+
+    /**
+     * Formats a number of bytes in kilobytes, or in megabytes from one megabyte on.
+     * @param bytes number of bytes
+     * @return String e.g. "12.5 KB" or "343.4 MB"
+     */
+    private static String size(long bytes)
+    {
+        return bytes < 1024 * 1024 ? String.format(Locale.ROOT, "%.1f KB", bytes / 1024.0) : String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
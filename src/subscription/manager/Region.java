@@ -0,0 +1,239 @@
+package subscription.manager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A Region is one partition of a {@link PartitionedRegistry}, e.g. a region or a kitchen served by the same program,
+ * with its own {@link SubscriptionRegistry registry} of subscribers, meals and subscriptions, its own {@link SubscriptionEngine engine} and {@link SubscriptionDesk desk}.
+ * <p>Subscribers and meals of a region are loaded from the region's own input file, a subscriber or meal of one region is unknown to the others
+ * and balances of meals are kept per region. Changes in one region don't lock anything of other regions.
+ * <p>Totals and memory of a region are read from totals kept up to date by the registry, without scanning subscriptions, see {@link #getTotals()}.
+ * <p>A region loaded with a data directory has its own {@link SubscriptionJournal journal} there, its subscriptions are recovered when it is loaded
+ * and every change is forced to disk before the desk answers, {@link #close()} writes the last snapshot.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class Region implements Closeable {
+    //Fields
+    /**
+     * Name of the region.
+     */
+    private final String name;
+    /**
+     * Engine applying business rules to the subscriptions of the region.
+     */
+    private final SubscriptionEngine engine;
+    /**
+     * Desk changes of subscriptions of the region are done with, letters are sent like in batch mode.
+     */
+    private final SubscriptionDesk desk;
+    /**
+     * Listing of pages of meals and subscribers of the region.
+     */
+    private final RegistryListing listing;
+    /**
+     * Summary of loading the input file of the region, null if the region was loaded elsewhere.
+     */
+    private final String loadSummary;
+    /**
+     * Journal of the region, null if the region was loaded elsewhere or without a data directory.
+     */
+    private final SubscriptionJournal journal;
+
+    /**
+     * Totals of a region, or of many regions added up.
+     * @param subscribers number of registered subscribers
+     * @param subscriptions number of subscriptions
+     * @param mealTypes number of registered meal types
+     * @param subscribedMeals quantity of meals in all subscriptions
+     * @param availableMeals meals still available, the sum of balances of all meal types
+     */
+    public record Totals(long subscribers, long subscriptions, long mealTypes, long subscribedMeals, long availableMeals)
+    {
+        /**
+         * Adds the totals of two regions.
+         * @param other totals of the other region
+         * @return Totals with the sums
+         */
+        public Totals plus(Totals other)
+        {
+            return new Totals(subscribers + other.subscribers, subscriptions + other.subscriptions, mealTypes + other.mealTypes,
+                    subscribedMeals + other.subscribedMeals, availableMeals + other.availableMeals);
+        }
+    }
+
+    //Constructors
+    /**
+     * Region constructor for a registry loaded elsewhere, e.g. the registry of the {@link MainProgram main program} loaded from "--input".
+     * @param name name of the region
+     * @param engine engine of the registry of the region
+     * @param letters LetterService letters of the region's desk are sent with
+     */
+    public Region(String name, SubscriptionEngine engine, LetterService letters)
+    {
+        this(name, engine, letters, null, null);
+    }
+
+    /**
+     * Region constructor specifying the summary of loading and the journal.
+     * @param name name of the region
+     * @param engine engine of the registry of the region
+     * @param letters LetterService letters of the region's desk are sent with
+     * @param loadSummary summary of loading the input file, null if there is none
+     * @param journal journal of the region, null if there is none
+     */
+    private Region(String name, SubscriptionEngine engine, LetterService letters, String loadSummary, SubscriptionJournal journal)
+    {
+        this.name = name;
+        this.engine = engine;
+        this.desk = new SubscriptionDesk(engine, letters);
+        this.listing = new RegistryListing(engine.getRegistry());
+        this.loadSummary = loadSummary;
+        this.journal = journal;
+    }
+
+    //Methods
+    /**
+     * Loads a region from its own input file into a new registry keeping subscriptions on the Java heap, see {@link InputDataLoader} for the format of the file.
+     * With a data directory the region's journal is opened there and subscriptions and balances of meals are recovered from it, see {@link SubscriptionJournal#open(Path, SubscriptionRegistry)}.
+     * @param name name of the region
+     * @param inputFile path of the input file of the region, a text file or a {@link BinaryCatalog binary catalog}
+     * @param loadThreads number of threads parsing the subscribers of the file
+     * @param letters LetterService letters of the region's desk are sent with
+     * @param dataDirectory directory of the region's journal and snapshots, null to keep subscriptions only in memory
+     * @return Region with the loaded subscribers and meals, and the recovered subscriptions
+     * @throws IOException when the input file is not found or can't be read, or the data directory can't be read or its snapshot or journal is damaged
+     */
+    public static Region load(String name, Path inputFile, int loadThreads, LetterService letters, Path dataDirectory) throws IOException
+    {
+        SubscriptionEngine engine = new SubscriptionEngine(new SubscriptionRegistry());
+        InputDataLoader loader = new InputDataLoader(inputFile, loadThreads);
+        loader.load(engine.getRegistry());
+        engine.getMetrics().recordLatency(SubscriptionMetrics.Operation.READ_IN, loader.getLoadNanos());
+        SubscriptionJournal journal = null;
+        if (dataDirectory != null)
+        {
+            journal = SubscriptionJournal.open(dataDirectory, engine.getRegistry());
+            //changes come from the HTTP API, which answers only once they are on disk
+            engine.setJournal(journal, true);
+        }
+        return new Region(name, engine, letters, loader.getSummary(), journal);
+    }
+
+    /**
+     * Getter for the name of the region.
+     * @return String name of the region
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Getter for the registry of the region.
+     * @return SubscriptionRegistry of the region
+     */
+    public SubscriptionRegistry getRegistry()
+    {
+        return engine.getRegistry();
+    }
+
+    /**
+     * Getter for the engine of the region.
+     * @return SubscriptionEngine of the region
+     */
+    public SubscriptionEngine getEngine()
+    {
+        return engine;
+    }
+
+    /**
+     * Getter for the desk of the region.
+     * @return SubscriptionDesk of the region
+     */
+    public SubscriptionDesk getDesk()
+    {
+        return desk;
+    }
+
+    /**
+     * Getter for the listing of meals and subscribers of the region.
+     * @return RegistryListing of the region
+     */
+    public RegistryListing getListing()
+    {
+        return listing;
+    }
+
+    /**
+     * Getter for the summary of loading the input file of the region.
+     * @return String summary of the {@link InputDataLoader}, null if the region was loaded elsewhere
+     */
+    public String getLoadSummary()
+    {
+        return loadSummary;
+    }
+
+    /**
+     * Getter for the journal of the region.
+     * @return SubscriptionJournal of the region, null if the region was loaded elsewhere or keeps subscriptions only in memory
+     */
+    public SubscriptionJournal getJournal()
+    {
+        return journal;
+    }
+
+    /**
+     * Adds up the totals of the region from the {@link MealDemand demand totals} and the balances of meals, in O(m) time for m meal types.
+     * Totals are read without locks, while clerks change subscriptions they may include a change in one total and not yet in another.
+     * @return Totals of the region
+     */
+    public Totals getTotals()
+    {
+        SubscriptionRegistry registry = engine.getRegistry();
+        MealDemand demand = registry.getDemand();
+        int mealCount = registry.getMealCount();
+        long subscribedMeals = 0;
+        long availableMeals = 0;
+        for (int id = 0; id < mealCount; id++)
+        {
+            subscribedMeals += demand.getSubscribedQuantity(id);
+            availableMeals += registry.getMeal(id).getMealBalance();
+        }
+        return new Totals(registry.getSubscriberCount(), registry.getSubscriptionCount(), mealCount, subscribedMeals, availableMeals);
+    }
+
+    /**
+     * Estimates the memory taken by the registry of the region, see {@link SubscriptionRegistry#estimateMemory()}.
+     * @return MemoryEstimate of the region
+     */
+    public SubscriptionRegistry.MemoryEstimate getMemory()
+    {
+        return engine.getRegistry().estimateMemory();
+    }
+
+    /**
+     * Writes the last snapshot of the region, so the next start doesn't need to replay the journal, and closes the journal.
+     * Does nothing if the region has no journal, the journal of a region loaded elsewhere is closed by its owner.
+     * @throws IOException when the snapshot or the journal can't be written
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (journal == null)
+        {
+            return;
+        }
+        try
+        {
+            engine.snapshot();
+        }
+        finally
+        {
+            journal.close();
+            engine.setJournal(null, false);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package subscription.manager;
+
+import subscription.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A RegistryListing lists meals and subscribers of a {@link SubscriptionRegistry registry} in the format of the options "m" and "s" of the {@link MainProgram main program}.
+ * <p>Listings are paged: a page starts at an offset and has at most a limit of entries, and can be filtered by the beginning of the meal's name or the subscriber's surname.
+ * Meals and subscribers are kept sorted in {@link SortedSkipList SortedSkipLists}, so the first entry of a page is found with
+ * {@link SortedSkipList#lowerBound(Comparable) lowerBound} and {@link SortedSkipList#iterator(int) iterator(int)} in O(log n) time,
+ * and the number of matching entries is the difference of two lower bounds, a page takes O(log n + limit) time however many entries are stored.
+ * A page is rendered into one StringBuilder and printed at once.
+ * <p>The full lists can be exported to a file, entries are streamed through one large BufferedWriter without building the whole text in memory.
+ * <p>Filters compare the beginning of names exactly, i.e. they are case sensitive, same as the sorted order.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class RegistryListing {
+    //Fields
+    /**
+     * Number of entries on a page when the clerk doesn't choose otherwise.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    /**
+     * Size of the buffer of the writer the lists are exported with.
+     */
+    private static final int EXPORT_BUFFER_SIZE = 1 << 20;
+    /**
+     * The SubscriptionRegistry storing the listed meals and subscribers.
+     */
+    private final SubscriptionRegistry registry;
+
+    /**
+     * A page of a listing.
+     * @param text text of the page ready to be printed
+     * @param offset position of the first entry of the page among the matching entries
+     * @param count number of entries on the page
+     * @param total number of matching entries
+     */
+    public record Page(String text, int offset, int count, int total)
+    {
+        /**
+         * Checks if there are matching entries after this page.
+         * @return boolean true if there is a next page
+         */
+        public boolean hasNext()
+        {
+            return offset + count < total;
+        }
+    }
+
+    /**
+     * Entries of a page of a listing, for front-ends rendering pages themselves.
+     * @param entries meals or subscribers of the page, in sorted order
+     * @param offset position of the first entry of the page among the matching entries
+     * @param total number of matching entries
+     * @param <E> Meal or Subscriber
+     */
+    public record Slice<E>(List<E> entries, int offset, int total)
+    {
+        /**
+         * Checks if there are matching entries after this page.
+         * @return boolean true if there is a next page
+         */
+        public boolean hasNext()
+        {
+            return offset + entries.size() < total;
+        }
+    }
+
+    //Constructor
+    /**
+     * RegistryListing constructor specifying the registry.
+     * @param registry registry storing the listed meals and subscribers
+     */
+    public RegistryListing(SubscriptionRegistry registry)
+    {
+        this.registry = registry;
+    }
+
+    //Methods
+    /**
+     * Renders a page of meals whose name starts with the prefix, sorted by meal's name.
+     * @param prefix beginning of the meal's name, empty for all meals
+     * @param offset number of matching meals skipped before the page
+     * @param limit maximum number of meals on the page
+     * @return Page of meals
+     */
+    public Page mealsPage(String prefix, int offset, int limit)
+    {
+        Slice<Meal> slice = mealsSlice(prefix, offset, limit);
+        StringBuilder text = new StringBuilder(64 + slice.entries().size() * 48);
+        appendHeader(text, "Meals", slice.offset(), slice.entries().size(), slice.total(), "name", prefix);
+        try
+        {
+            for (Meal meal : slice.entries())
+            {
+                appendMeal(text, meal);
+            }
+        }
+        catch (IOException exception)
+        {
+            throw new UncheckedIOException(exception); //a StringBuilder doesn't fail
+        }
+        return new Page(text.toString(), slice.offset(), slice.entries().size(), slice.total());
+    }
+
+    /**
+     * Renders a page of subscribers whose surname starts with the prefix, with their subscriptions, sorted by surname then first name.
+     * @param prefix beginning of the subscriber's surname, empty for all subscribers
+     * @param offset number of matching subscribers skipped before the page
+     * @param limit maximum number of subscribers on the page
+     * @return Page of subscribers
+     */
+    public Page subscribersPage(String prefix, int offset, int limit)
+    {
+        Slice<Subscriber> slice = subscribersSlice(prefix, offset, limit);
+        StringBuilder text = new StringBuilder(64 + slice.entries().size() * 96);
+        appendHeader(text, "Subscribers", slice.offset(), slice.entries().size(), slice.total(), "surname", prefix);
+        try
+        {
+            for (Subscriber subscriber : slice.entries())
+            {
+                appendSubscriber(text, subscriber);
+            }
+        }
+        catch (IOException exception)
+        {
+            throw new UncheckedIOException(exception); //a StringBuilder doesn't fail
+        }
+        return new Page(text.toString(), slice.offset(), slice.entries().size(), slice.total());
+    }
+
+    /**
+     * Finds a page of meals whose name starts with the prefix, sorted by meal's name.
+     * @param prefix beginning of the meal's name, empty for all meals
+     * @param offset number of matching meals skipped before the page
+     * @param limit maximum number of meals on the page
+     * @return Slice of meals
+     */
+    public Slice<Meal> mealsSlice(String prefix, int offset, int limit)
+    {
+        SortedSkipList<Meal> meals = registry.getMeals();
+        int first = meals.lowerBound(new Meal(prefix, 0));
+        String after = SearchIndex.successor(prefix);
+        int end = after == null ? meals.size() : meals.lowerBound(new Meal(after, 0));
+        return slice(meals, first, end, offset, limit);
+    }
+
+    /**
+     * Finds a page of subscribers whose surname starts with the prefix, sorted by surname then first name.
+     * @param prefix beginning of the subscriber's surname, empty for all subscribers
+     * @param offset number of matching subscribers skipped before the page
+     * @param limit maximum number of subscribers on the page
+     * @return Slice of subscribers
+     */
+    public Slice<Subscriber> subscribersSlice(String prefix, int offset, int limit)
+    {
+        SortedSkipList<Subscriber> subscribers = registry.getSubscribers();
+        //the empty first name sorts before every subscriber with the surname
+        int first = subscribers.lowerBound(new Subscriber("", prefix));
+        String after = SearchIndex.successor(prefix);
+        int end = after == null ? subscribers.size() : subscribers.lowerBound(new Subscriber("", after));
+        return slice(subscribers, first, end, offset, limit);
+    }
+
+    /**
+     * Copies a page of the matching entries, the first entry is found in O(log n) time.
+     * @param list sorted list of all entries
+     * @param first position of the first matching entry in the list
+     * @param end position after the last matching entry in the list
+     * @param offset number of matching entries skipped before the page
+     * @param limit maximum number of entries on the page
+     * @param <E> type of the entries
+     * @return Slice of entries
+     */
+    private static <E extends Comparable<E>> Slice<E> slice(SortedSkipList<E> list, int first, int end, int offset, int limit)
+    {
+        int total = end - first;
+        int start = Math.min(Math.max(offset, 0), total);
+        int count = Math.min(Math.max(limit, 0), total - start);
+        List<E> entries = new ArrayList<E>(count);
+        Iterator<E> iterator = list.iterator(first + start);
+        for (int i = 0; i < count; i++)
+        {
+            entries.add(iterator.next());
+        }
+        return new Slice<E>(entries, start, total);
+    }
+
+    /**
+     * Exports all meals and then all subscribers with their subscriptions to a file, in the format of the options "m" and "s".
+     * The file is replaced if it exists.
+     * @param file path of the export file
+     * @return long number of meals and subscribers exported
+     * @throws IOException when the file can't be written
+     */
+    public long export(Path file) throws IOException
+    {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), EXPORT_BUFFER_SIZE))
+        {
+            return writeMeals(out) + writeSubscribers(out);
+        }
+    }
+
+    /**
+     * Writes all meals sorted by meal's name, with the heading of option "m".
+     * @param out Appendable the meals are written to, should be buffered
+     * @return long number of meals written
+     * @throws IOException when the meals can't be written
+     */
+    public long writeMeals(Appendable out) throws IOException
+    {
+        out.append("Information about all the meals and their availability:\n\n");
+        long count = 0;
+        for (Meal meal : registry.getMeals())
+        {
+            appendMeal(out, meal);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Writes all subscribers with their subscriptions sorted by surname then first name, with the heading of option "s".
+     * @param out Appendable the subscribers are written to, should be buffered
+     * @return long number of subscribers written
+     * @throws IOException when the subscribers can't be written
+     */
+    public long writeSubscribers(Appendable out) throws IOException
+    {
+        out.append("Information about all the subscribers:\n\n");
+        long count = 0;
+        for (Subscriber subscriber : registry.getSubscribers())
+        {
+            appendSubscriber(out, subscriber);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Appends the heading of a page, e.g. "Subscribers 21-40 of 1500 (surname starting with "Sm"):" or "Meals not found (name starting with "X"):".
+     * @param text StringBuilder the page is rendered into
+     * @param what name of the listed entries
+     * @param start position of the first entry of the page
+     * @param count number of entries on the page
+     * @param total number of matching entries
+     * @param field name of the filtered field
+     * @param prefix beginning of the filtered field, empty when not filtered
+     */
+    private static void appendHeader(StringBuilder text, String what, int start, int count, int total, String field, String prefix)
+    {
+        text.append(what).append(' ');
+        if (count > 0)
+        {
+            text.append(start + 1).append('-').append(start + count).append(" of ").append(total);
+        }
+        else
+        {
+            text.append("not found");
+        }
+        if (!prefix.isEmpty())
+        {
+            text.append(" (").append(field).append(" starting with \"").append(prefix).append("\")");
+        }
+        text.append(":\n\n");
+    }
+
+    /**
+     * Appends a meal in format "Meal type: X\nNumber available: #\n\n".
+     * @param out Appendable the meal is appended to
+     * @param meal meal to be appended
+     * @throws IOException when the Appendable is a writer that fails
+     */
+    private static void appendMeal(Appendable out, Meal meal) throws IOException
+    {
+        out.append("Meal type: ").append(meal.getMealName())
+                .append("\nNumber available: ").append(Integer.toString(meal.getMealBalance()))
+                .append("\n\n");
+    }
+
+    /**
+     * Appends a subscriber with their subscriptions in format "Full name: X Y\nSubscriptions: none\n\n",
+     * or "Full name: X Y\nSubscriptions:\n" followed by a numbered list of subscriptions "1. Meal type: Z, number of meals: #\n" and an empty line.
+     * @param out Appendable the subscriber is appended to
+     * @param subscriber subscriber to be appended
+     * @throws IOException when the Appendable is a writer that fails
+     */
+    private void appendSubscriber(Appendable out, Subscriber subscriber) throws IOException
+    {
+        out.append("Full name: ").append(subscriber.getFirstName()).append(' ').append(subscriber.getSurname()).append('\n');
+        //the at most 3 subscriptions of the subscriber
+        List<Subscription> subscriptions = registry.getSubscriptions(subscriber);
+        if (subscriptions.isEmpty())
+        {
+            out.append("Subscriptions: none\n\n");
+            return;
+        }
+        out.append("Subscriptions:\n");
+        int count = 0; //numbered list counter
+        for (Subscription subscription : subscriptions)
+        {
+            count++;
+            out.append(Integer.toString(count)).append(". Meal type: ").append(subscription.getMealSubscribed())
+                    .append(", number of meals: ").append(Integer.toString(subscription.getMealSubscribedBalance())).append('\n');
+        }
+        out.append('\n');
+    }
+}
@@ -0,0 +1,484 @@
+package subscription.manager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A RestockWatcher watches a directory for restock files and applies them to the balances of meals while clerks keep working, so meals are restocked without restarting the program.
+ * <p>A restock file has a name ending with {@value #SUFFIX} and one restock on every line, the meal type's name followed by the meals delivered, or withdrawn with a minus sign:
+ * <pre>
+ * # deliveries of Monday
+ * Curry +20
+ * Mushroom Stew 15
+ * Fish Pie -3
+ * </pre>
+ * Blank lines and lines starting with "#" are ignored. A meal type that isn't registered yet is added with the meals delivered.
+ * <p>Every file is read and checked as a whole before anything is applied, a file with a mistake, e.g. withdrawing more meals than the balance has at the time the file is read,
+ * is not applied at all and is renamed to end with {@value #FAILED_SUFFIX}.
+ * Restocks of an applied file are done one by one with {@link SubscriptionEngine#restock(String, int)}, which changes balances atomically alongside clerks' reservations,
+ * appends them to the journal and publishes them to the change feed. Clerks may take meals between the check and the restock,
+ * a withdrawal then takes only the meals left and the line is reported as short. The file is then renamed to end with {@value #DONE_SUFFIX}.
+ * <p>A file is applied once even if the program stops while applying it: before its first restock the file is claimed by renaming it to end with {@value #APPLYING_SUFFIX},
+ * and a claimed file left when the watcher starts is not applied again, the journal already recovered the restocks done before the program stopped.
+ * It is reported and renamed to end with {@value #DONE_SUFFIX}, the restocks of its lines after the last one done are lost and need a new file.
+ * <p>Files already in the directory are applied when the watcher starts, later files as they appear, reported by a {@link WatchService}.
+ * A file is read only when no file of the directory changed for {@value #SETTLE_MILLIS} ms, so a file still being written is not applied half-way,
+ * writing the file under another name and moving it into the directory is safest. Files are applied in the order of their names.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class RestockWatcher implements Closeable {
+    //Fields
+    /**
+     * Ending of names of restock files.
+     */
+    public static final String SUFFIX = ".restock";
+    /**
+     * Ending added to names of applied restock files.
+     */
+    public static final String DONE_SUFFIX = ".done";
+    /**
+     * Ending added to names of restock files that were not applied because of a mistake.
+     */
+    public static final String FAILED_SUFFIX = ".failed";
+    /**
+     * Ending added to names of restock files while their restocks are done.
+     */
+    public static final String APPLYING_SUFFIX = ".applying";
+    /**
+     * Time in milliseconds without changes in the directory before changed files are read.
+     */
+    private static final long SETTLE_MILLIS = 250;
+    /**
+     * Engine the restocks are applied with.
+     */
+    private final SubscriptionEngine engine;
+    /**
+     * The watched directory.
+     */
+    private final Path directory;
+    /**
+     * Stream applied and failed files are reported to.
+     */
+    private final PrintStream out;
+    /**
+     * Service reporting changes in the directory, null before the watcher starts.
+     */
+    private WatchService watchService;
+    /**
+     * Thread applying files as they appear.
+     */
+    private Thread thread;
+    /**
+     * Number of applied files.
+     */
+    private final LongAdder filesApplied = new LongAdder();
+    /**
+     * Number of files not applied because of a mistake.
+     */
+    private final LongAdder filesFailed = new LongAdder();
+    /**
+     * Number of restocks applied.
+     */
+    private final LongAdder restocksApplied = new LongAdder();
+    /**
+     * Number of restocks that changed the balance by fewer meals than the line asked for.
+     */
+    private final LongAdder restocksShort = new LongAdder();
+
+    /**
+     * One line of a restock file.
+     * @param line number of the line in the file, from 1
+     * @param mealName name of the meal type
+     * @param delta meals delivered, negative for meals withdrawn
+     */
+    private record Restock(int line, String mealName, int delta)
+    {
+    }
+
+    //Constructor
+    /**
+     * RestockWatcher constructor specifying the directory, nothing is watched until {@link #start()}.
+     * @param engine engine the restocks are applied with
+     * @param directory directory of restock files, created if it doesn't exist
+     * @param out stream applied and failed files are reported to, e.g. the display
+     */
+    public RestockWatcher(SubscriptionEngine engine, Path directory, PrintStream out)
+    {
+        this.engine = engine;
+        this.directory = directory;
+        this.out = out;
+    }
+
+    //Methods
+    /**
+     * Applies the restock files already in the directory and starts watching it for new ones.
+     * @throws IOException when the directory can't be created or watched
+     */
+    public void start() throws IOException
+    {
+        Files.createDirectories(directory);
+        watchService = directory.getFileSystem().newWatchService();
+        //registered before the files are listed, so a file moved in meanwhile is reported
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        finishInterrupted();
+        applyAll(listRestockFiles());
+        thread = new Thread(this::watch, "restock-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Waits for changes in the directory and applies restock files once the directory settled, until the watcher is closed.
+     */
+    private void watch()
+    {
+        try
+        {
+            while (true)
+            {
+                Set<Path> changed = new TreeSet<Path>();
+                boolean overflow = false;
+                WatchKey key = watchService.take();
+                //collect changes until none came for a while
+                while (key != null)
+                {
+                    for (WatchEvent<?> event : key.pollEvents())
+                    {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                        {
+                            overflow = true;
+                        }
+                        else if (isRestockFile((Path) event.context()))
+                        {
+                            changed.add(directory.resolve((Path) event.context()));
+                        }
+                    }
+                    if (!key.reset())
+                    {
+                        out.println("Restock directory \"" + directory + "\" can't be watched anymore.");
+                        return;
+                    }
+                    key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                //some changes were lost, look at all the files
+                applyAll(overflow ? listRestockFiles() : changed);
+            }
+        }
+        catch (ClosedWatchServiceException | InterruptedException exception)
+        {
+            //the watcher is closed
+        }
+        catch (IOException exception)
+        {
+            out.println("Restock directory \"" + directory + "\" can't be read: " + exception.getMessage());
+        }
+    }
+
+    /**
+     * Lists the restock files in the directory.
+     * @return Set of paths of restock files in the order of their names
+     * @throws IOException when the directory can't be read
+     */
+    private Set<Path> listRestockFiles() throws IOException
+    {
+        Set<Path> files = new TreeSet<Path>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX))
+        {
+            for (Path file : stream)
+            {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Renames files claimed by a watcher that stopped while applying them, without applying them again.
+     * Their restocks done before the program stopped were recovered from the journal, applying the file again would count them twice.
+     * @throws IOException when the directory can't be read
+     */
+    private void finishInterrupted() throws IOException
+    {
+        Set<Path> files = new TreeSet<Path>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX + APPLYING_SUFFIX))
+        {
+            for (Path file : stream)
+            {
+                files.add(file);
+            }
+        }
+        for (Path claimed : files)
+        {
+            String name = claimed.getFileName().toString();
+            Path file = claimed.resolveSibling(name.substring(0, name.length() - APPLYING_SUFFIX.length()));
+            out.println("Restock file \"" + file.getFileName() + "\" was being applied when the program stopped and is not applied again, "
+                    + "its restocks done before were recovered, restocks of later lines need a new file.");
+            rename(claimed, file, DONE_SUFFIX);
+        }
+    }
+
+    /**
+     * Checks if a file is a restock file by its name.
+     * @param name name of the file
+     * @return boolean true if the name ends with {@value #SUFFIX}
+     */
+    private static boolean isRestockFile(Path name)
+    {
+        return name.getFileName().toString().endsWith(SUFFIX);
+    }
+
+    /**
+     * Applies restock files one after another, files that were already applied and moved away are skipped.
+     * @param files paths of the files
+     */
+    private void applyAll(Set<Path> files)
+    {
+        for (Path file : files)
+        {
+            if (Files.isRegularFile(file))
+            {
+                apply(file);
+            }
+        }
+    }
+
+    /**
+     * Reads, checks and applies one restock file and renames it, reports the result.
+     * The file is claimed before its first restock, see {@link #claim(Path)}, so it isn't applied twice if the program stops half-way.
+     * @param file path of the file
+     */
+    private void apply(Path file)
+    {
+        List<Restock> restocks;
+        try
+        {
+            restocks = read(file);
+        }
+        catch (IOException | InputMismatchException exception)
+        {
+            filesFailed.increment();
+            out.println("Restock file \"" + file.getFileName() + "\" was not applied: " + exception.getMessage());
+            rename(file, file, FAILED_SUFFIX);
+            return;
+        }
+        Path claimed = claim(file);
+        if (claimed == null)
+        {
+            return;
+        }
+        int applied = 0;
+        int added = 0;
+        int shortLines = 0;
+        for (Restock restock : restocks)
+        {
+            boolean isNew = engine.getRegistry().mealId(restock.mealName()) < 0;
+            SubscriptionEngine.RestockResult result = engine.restock(restock.mealName(), restock.delta());
+            if (!result.result().isOk())
+            {
+                out.println("Line " + restock.line() + " of \"" + file.getFileName() + "\" was not applied: " + result.result() + ".");
+                continue;
+            }
+            applied++;
+            if (isNew)
+            {
+                added++;
+            }
+            if (result.isShort())
+            {
+                //clerks took meals since the file was checked
+                shortLines++;
+                out.println("Line " + restock.line() + " of \"" + file.getFileName() + "\" changed the balance of " + restock.mealName() + " by "
+                        + result.applied() + " instead of " + result.requested() + " meals.");
+            }
+        }
+        restocksApplied.add(applied);
+        restocksShort.add(shortLines);
+        filesApplied.increment();
+        out.println("Applied " + applied + " of " + restocks.size() + " restocks from \"" + file.getFileName() + "\", " + added + " new meal types, " + shortLines + " short.");
+        rename(claimed, file, DONE_SUFFIX);
+    }
+
+    /**
+     * Claims a checked restock file before its restocks are done by renaming it to end with {@value #APPLYING_SUFFIX}, in one step,
+     * so from the first restock on the file is never listed as a restock file again, see {@link #finishInterrupted()}.
+     * @param file path of the file
+     * @return Path of the claimed file, null if it couldn't be renamed and is not applied now
+     */
+    private Path claim(Path file)
+    {
+        Path claimed = file.resolveSibling(file.getFileName() + APPLYING_SUFFIX);
+        try
+        {
+            Files.move(file, claimed, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return claimed;
+        }
+        catch (IOException exception)
+        {
+            out.println("Restock file \"" + file.getFileName() + "\" was not applied, it could not be renamed: " + exception.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads and checks all lines of a restock file, meals can only be withdrawn from meal types registered or added by an earlier line,
+     * and no more meals than the current balance with the earlier lines of the file applied.
+     * @param file path of the file
+     * @return List of the restocks in the order of the lines
+     * @throws IOException when the file can't be read
+     * @throws InputMismatchException when a line is not a meal type's name followed by a whole number, withdraws meals of a meal type that isn't registered,
+     * or withdraws more meals than are available or delivers more than a balance can hold
+     */
+    private List<Restock> read(Path file) throws IOException
+    {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        List<Restock> restocks = new ArrayList<Restock>(lines.size());
+        //balances of the meal types of the file with the earlier lines applied
+        Map<String, Long> balances = new HashMap<String, Long>();
+        for (int i = 0; i < lines.size(); i++)
+        {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#"))
+            {
+                continue;
+            }
+            //the meal type's name may have spaces, the number is after the last one
+            int space = Math.max(line.lastIndexOf(' '), line.lastIndexOf('\t'));
+            String mealName = space < 0 ? "" : line.substring(0, space).trim();
+            if (mealName.isEmpty())
+            {
+                throw new InputMismatchException("Line " + (i + 1) + " needs a meal type and a number of meals, found \"" + line + "\".");
+            }
+            int delta;
+            try
+            {
+                delta = Integer.parseInt(line.substring(space + 1));
+            }
+            catch (NumberFormatException exception)
+            {
+                throw new InputMismatchException("Line " + (i + 1) + " needs a whole number of meals, found \"" + line.substring(space + 1) + "\".");
+            }
+            Long balance = balances.get(mealName);
+            if (balance == null)
+            {
+                int mealId = engine.getRegistry().mealId(mealName);
+                if (mealId < 0 && delta < 0)
+                {
+                    throw new InputMismatchException("Line " + (i + 1) + " withdraws meals of \"" + mealName + "\", which is not a registered meal type.");
+                }
+                balance = mealId < 0 ? 0L : engine.getRegistry().getMeal(mealId).getMealBalance();
+            }
+            if (balance + delta < 0)
+            {
+                throw new InputMismatchException("Line " + (i + 1) + " withdraws " + -delta + " meals of \"" + mealName + "\", only " + balance + " are available.");
+            }
+            if (balance + delta > Integer.MAX_VALUE)
+            {
+                throw new InputMismatchException("Line " + (i + 1) + " delivers " + delta + " meals of \"" + mealName + "\", the balance can't be larger than " + Integer.MAX_VALUE + ".");
+            }
+            balances.put(mealName, balance + delta);
+            restocks.add(new Restock(i + 1, mealName, delta));
+        }
+        return restocks;
+    }
+
+    /**
+     * Renames a restock file, possibly claimed, to its name with an ending added, replacing a file of that name.
+     * A claimed file that can't be renamed keeps its name and is renamed when the watcher starts again, it is not applied again.
+     * @param current path of the file now
+     * @param file path of the restock file before it was claimed
+     * @param suffix ending added to the name
+     */
+    private void rename(Path current, Path file, String suffix)
+    {
+        try
+        {
+            Files.move(current, file.resolveSibling(file.getFileName() + suffix), StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException exception)
+        {
+            out.println("Restock file \"" + current.getFileName() + "\" could not be renamed to end with " + suffix + ": " + exception.getMessage());
+        }
+    }
+
+    /**
+     * Getter for the number of applied restock files.
+     * @return long number of files
+     */
+    public long getFilesApplied()
+    {
+        return filesApplied.sum();
+    }
+
+    /**
+     * Getter for the number of restock files not applied because of a mistake.
+     * @return long number of files
+     */
+    public long getFilesFailed()
+    {
+        return filesFailed.sum();
+    }
+
+    /**
+     * Getter for the number of applied restocks, i.e. lines of applied files that restocked their meal type.
+     * @return long number of restocks
+     */
+    public long getRestocksApplied()
+    {
+        return restocksApplied.sum();
+    }
+
+    /**
+     * Getter for the number of applied restocks that changed the balance by fewer meals than their line asked for, see {@link SubscriptionEngine.RestockResult#isShort()}.
+     * @return long number of restocks
+     */
+    public long getRestocksShort()
+    {
+        return restocksShort.sum();
+    }
+
+    /**
+     * Stops watching the directory and waits until the file being applied is done.
+     */
+    @Override
+    public void close()
+    {
+        if (watchService == null)
+        {
+            return;
+        }
+        try
+        {
+            watchService.close();
+            thread.join();
+        }
+        catch (IOException exception)
+        {
+            out.println("Restock directory \"" + directory + "\" could not be closed: " + exception.getMessage());
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package subscription.manager;
+
+import subscription.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A SearchIndex finds registered subscribers and meals by the beginning of their names, for type-ahead lookup by clerks and batch operations,
+ * e.g. "Smi" finds all the Smiths.
+ * <p>The index is a sorted array of subscribers in the order of {@link Subscriber#compareTo(Subscriber)}, surname then first name,
+ * and a sorted array of meals in the order of {@link Meal#compareTo(Meal)}, copied from the {@link SortedSkipList SortedSkipLists} of the {@link SubscriptionRegistry registry} in O(n) time.
+ * All names starting with a prefix are next to each other in the sorted order, so the range of matches is found with two binary searches in O(log n) time
+ * and returned as a view of the array without copying.
+ * <p>Subscribers are registered when the input file is loaded and when the {@link SubscriptionJournal journal} is recovered, which registers subscribers of recovered subscriptions
+ * missing from the input file again, and not afterwards. So the index is built once after the journal is recovered and its subscribers are not changed afterwards,
+ * it can be used by many threads at the same time. Meal types can be added later by a restock, the registry then publishes a new list of meals
+ * and the meals of the index are copied from it again on the next look up of meals. Balances of meals and subscriptions are read from the registered objects, so they are always current.
+ * <p>Prefixes are compared exactly, i.e. they are case sensitive, same as the sorted order.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public final class SearchIndex {
+    //Fields
+    /**
+     * Registered subscribers sorted by surname then first name.
+     */
+    private final Subscriber[] subscribers;
+    /**
+     * Registry the meals are copied from.
+     */
+    private final SubscriptionRegistry registry;
+    /**
+     * List of meals of the registry the meals were copied from.
+     */
+    private volatile SortedSkipList<Meal> mealSource;
+    /**
+     * Registered meals sorted by meal's name.
+     */
+    private volatile Meal[] meals;
+
+    //Constructor
+    /**
+     * SearchIndex constructor specifying the sorted subscribers and the registry the meals are copied from.
+     * @param subscribers registered subscribers sorted by surname then first name
+     * @param registry registry storing the meals
+     */
+    private SearchIndex(Subscriber[] subscribers, SubscriptionRegistry registry)
+    {
+        this.subscribers = subscribers;
+        this.registry = registry;
+        currentMeals();
+    }
+
+    //Methods
+    /**
+     * Builds the index of subscribers and meals registered in the registry, they are already sorted so building takes O(n) time.
+     * @param registry registry storing the subscribers and meals
+     * @return SearchIndex of the registered subscribers and meals
+     */
+    public static SearchIndex build(SubscriptionRegistry registry)
+    {
+        return new SearchIndex(registry.getSubscribers().toArray(new Subscriber[0]), registry);
+    }
+
+    /**
+     * Returns the indexed meals, copied again if the registry published a new list of meals since they were copied.
+     * @return Meal[] registered meals sorted by meal's name
+     */
+    private Meal[] currentMeals()
+    {
+        SortedSkipList<Meal> source = registry.getMeals();
+        if (source == mealSource)
+        {
+            return meals;
+        }
+        Meal[] copy = source.toArray(new Meal[0]);
+        meals = copy;
+        mealSource = source;
+        return copy;
+    }
+
+    /**
+     * Finds subscribers whose surname starts with the prefix in O(log n) time.
+     * @param surnamePrefix beginning of the surname, empty for all subscribers
+     * @return List of matching subscribers sorted by surname then first name, an unmodifiable view of the index
+     */
+    public List<Subscriber> findSubscribers(String surnamePrefix)
+    {
+        //the empty first name sorts before every subscriber with the same surname
+        int from = lowerBound(subscribers, new Subscriber("", surnamePrefix));
+        String after = successor(surnamePrefix);
+        int to = after == null ? subscribers.length : lowerBound(subscribers, new Subscriber("", after));
+        return Collections.unmodifiableList(Arrays.asList(subscribers).subList(from, to));
+    }
+
+    /**
+     * Finds subscribers whose first name and surname start with the prefixes, e.g. "An" and "Smi" find Anna Smith.
+     * Subscribers are sorted by surname first, so the subscribers matching the surname are found in O(log n) time and then filtered by the first name
+     * until the limit of matches is reached.
+     * @param firstNamePrefix beginning of the first name, empty for any first name
+     * @param surnamePrefix beginning of the surname, empty for any surname
+     * @param limit maximum number of subscribers returned
+     * @return List of at most limit matching subscribers sorted by surname then first name
+     */
+    public List<Subscriber> findSubscribers(String firstNamePrefix, String surnamePrefix, int limit)
+    {
+        List<Subscriber> bySurname = findSubscribers(surnamePrefix);
+        if (firstNamePrefix.isEmpty())
+        {
+            return bySurname.subList(0, Math.min(limit, bySurname.size()));
+        }
+        List<Subscriber> matches = new ArrayList<Subscriber>(Math.min(limit, 16));
+        for (Subscriber subscriber : bySurname)
+        {
+            if (matches.size() >= limit)
+            {
+                break;
+            }
+            if (subscriber.getFirstName().startsWith(firstNamePrefix))
+            {
+                matches.add(subscriber);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Finds subscribers for text typed by the clerk: the beginning of the surname, e.g. "Smi",
+     * or the beginning of the first name and of the surname separated by whitespace, e.g. "An Smi".
+     * @param query text typed by the clerk
+     * @param limit maximum number of subscribers returned
+     * @return List of at most limit matching subscribers sorted by surname then first name
+     */
+    public List<Subscriber> searchSubscribers(String query, int limit)
+    {
+        String text = query.trim();
+        for (int i = 0; i < text.length(); i++)
+        {
+            if (Character.isWhitespace(text.charAt(i)))
+            {
+                return findSubscribers(text.substring(0, i), text.substring(i).trim(), limit);
+            }
+        }
+        return findSubscribers("", text, limit);
+    }
+
+    /**
+     * Counts subscribers whose surname starts with the prefix in O(log n) time.
+     * @param surnamePrefix beginning of the surname
+     * @return int number of matching subscribers
+     */
+    public int countSubscribers(String surnamePrefix)
+    {
+        return findSubscribers(surnamePrefix).size();
+    }
+
+    /**
+     * Finds meals whose name starts with the prefix in O(log n) time.
+     * @param prefix beginning of the meal's name, empty for all meals
+     * @return List of matching meals sorted by meal's name, an unmodifiable view of the index
+     */
+    public List<Meal> findMeals(String prefix)
+    {
+        Meal[] meals = currentMeals();
+        int from = lowerBound(meals, new Meal(prefix, 0));
+        String after = successor(prefix);
+        int to = after == null ? meals.length : lowerBound(meals, new Meal(after, 0));
+        return Collections.unmodifiableList(Arrays.asList(meals).subList(from, to));
+    }
+
+    /**
+     * Getter for the number of indexed subscribers.
+     * @return int number of subscribers
+     */
+    public int getSubscriberCount()
+    {
+        return subscribers.length;
+    }
+
+    /**
+     * Getter for the number of indexed meals.
+     * @return int number of meals
+     */
+    public int getMealCount()
+    {
+        return currentMeals().length;
+    }
+
+    /**
+     * Finds the position of the first element that is not smaller than the key with binary search.
+     * @param sorted array sorted in ascending order
+     * @param key element to compare against
+     * @param <T> specifies the type of objects in the array
+     * @return int position of the first element not smaller than the key, length of the array if all elements are smaller
+     */
+    private static <T extends Comparable<T>> int lowerBound(T[] sorted, T key)
+    {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle].compareTo(key) < 0)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the smallest String greater than every String starting with the prefix, the end of the range of matches.
+     * @param prefix beginning of names
+     * @return String the prefix with its last character increased by one, null when there is no such String and the range ends with the array
+     */
+    static String successor(String prefix)
+    {
+        int last = prefix.length() - 1;
+        //names starting with the greatest character are in the range whatever follows it
+        while (last >= 0 && prefix.charAt(last) == Character.MAX_VALUE)
+        {
+            last--;
+        }
+        if (last < 0)
+        {
+            return null;
+        }
+        return prefix.substring(0, last) + (char) (prefix.charAt(last) + 1);
+    }
+}
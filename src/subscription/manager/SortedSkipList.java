@@ -0,0 +1,504 @@
+package subscription.manager;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A generic sorted collection based on an indexable skip list that is used for storing Subscriber or Meal objects in ascending lexicographic order.
+ * <p>Unlike {@link SortedLinkedList}, which is sorted again after every insertion, a SortedSkipList keeps its elements sorted at all times:
+ * {@link #addSorted(Comparable) addSorted} finds the position of a new element in O(log n) expected time,
+ * and {@link #addAllSorted(Collection) addAllSorted} loads many elements at once sorting them only once with merge sort in O(n log n).
+ * <p>Every link of the skip list also stores its width (number of elements it skips), so an element can be found by its position
+ * with {@link #get(int) get} and the position of the first element not smaller than a given key with {@link #lowerBound(Comparable) lowerBound}, both in O(log n).
+ * <p>Elements are ordered by their compareTo method, e.g. surname then first name for {@link subscription.Subscriber subscribers} and meal type name for {@link subscription.Meal meals}.
+ * Elements equal according to compareTo are kept in the order they were added.
+ * <p>The collection is not thread safe.
+ * @param <E> specifies the type of objects stored in the list
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class SortedSkipList<E extends Comparable<E>> extends AbstractCollection<E> {
+    //Fields
+    /**
+     * Maximum number of levels of the skip list, enough for more than 4 billion elements.
+     */
+    private static final int MAX_LEVEL = 32;
+    /**
+     * Average bytes of a node with compressed references: the node of 24 bytes and its two arrays of links and widths,
+     * a node has 2 levels on average and an array of 1 or 2 ints takes 24 bytes with its header.
+     */
+    private static final int NODE_BYTES = 76;
+    /**
+     * Head node of the skip list, it doesn't hold an element and has links on all levels.
+     */
+    private final Node<E> head;
+    /**
+     * Number of levels currently in use.
+     */
+    private int levels;
+    /**
+     * Number of elements stored in the list.
+     */
+    private int size;
+    /**
+     * State of the xorshift random number generator used for choosing levels of new nodes.
+     */
+    private long seed;
+
+    /**
+     * Node of the skip list holding one element, links to next nodes on each level and widths of these links.
+     * @param <E> specifies the type of objects stored in the list
+     */
+    private static final class Node<E> {
+        /**
+         * Element stored in the node, null for the head node.
+         */
+        private final E value;
+        /**
+         * Next nodes on each level, null at the end of the list.
+         */
+        private final Node<E>[] next;
+        /**
+         * Number of elements each link skips, i.e. the difference of positions of the next node and this node.
+         */
+        private final int[] width;
+
+        /**
+         * Node constructor specifying the element and number of levels of the node.
+         * @param value element stored in the node
+         * @param height number of levels of the node
+         */
+        @SuppressWarnings("unchecked")
+        private Node(E value, int height)
+        {
+            this.value = value;
+            this.next = (Node<E>[]) new Node<?>[height];
+            this.width = new int[height];
+        }
+    }
+
+    //Constructor
+    /**
+     * SortedSkipList constructor creating an empty list.
+     */
+    public SortedSkipList()
+    {
+        head = new Node<E>(null, MAX_LEVEL);
+        levels = 1;
+        seed = System.nanoTime() | 1L;
+    }
+
+    //Methods
+    /**
+     * Adds an element to the list keeping ascending order, same as {@link #addSorted(Comparable) addSorted}.
+     * @param e element to be added
+     * @return boolean true as the list always changes
+     */
+    @Override
+    public boolean add(E e)
+    {
+        addSorted(e);
+        return true;
+    }
+
+    /**
+     * Inserts an element at its sorted position in O(log n) expected time, after any elements equal to it.
+     * @param e element to be added
+     */
+    public void addSorted(E e)
+    {
+        //nodes preceding the new node on each level and their positions
+        @SuppressWarnings("unchecked")
+        Node<E>[] update = (Node<E>[]) new Node<?>[MAX_LEVEL];
+        int[] position = new int[MAX_LEVEL];
+
+        Node<E> node = head;
+        int index = -1; //position of the head node
+        for (int level = levels - 1; level >= 0; level--)
+        {
+            while (node.next[level] != null && node.next[level].value.compareTo(e) <= 0)
+            {
+                index += node.width[level];
+                node = node.next[level];
+            }
+            update[level] = node;
+            position[level] = index;
+        }
+
+        int height = randomHeight();
+        if (height > levels)
+        {
+            for (int level = levels; level < height; level++)
+            {
+                update[level] = head;
+                position[level] = -1;
+                head.width[level] = size + 1; //head links on new levels skip the whole list
+            }
+            levels = height;
+        }
+
+        //link the new node, its position is one after the preceding node on level 0
+        Node<E> newNode = new Node<E>(e, height);
+        int newIndex = position[0] + 1;
+        for (int level = 0; level < height; level++)
+        {
+            Node<E> previous = update[level];
+            newNode.next[level] = previous.next[level];
+            previous.next[level] = newNode;
+            int skippedBefore = newIndex - position[level];
+            newNode.width[level] = previous.width[level] - skippedBefore + 1;
+            previous.width[level] = skippedBefore;
+        }
+        //links on higher levels now skip one more element
+        for (int level = height; level < levels; level++)
+        {
+            update[level].width[level]++;
+        }
+        size++;
+    }
+
+    /**
+     * Adds all elements of a collection sorting them only once, the whole list is sorted with {@link #mergeSort(Comparable[]) merge sort}
+     * and rebuilt with evenly spread levels in O(n log n) time.
+     * <p>This should be used for loading many elements at once instead of adding them one by one.
+     * @param c collection of elements to be added
+     */
+    @SuppressWarnings("unchecked")
+    public void addAllSorted(Collection<? extends E> c)
+    {
+        Comparable<?>[] all = new Comparable<?>[size + c.size()];
+        int i = 0;
+        //elements already in the list are sorted, merge sort keeps their order
+        for (E e : this)
+        {
+            all[i++] = e;
+        }
+        for (E e : c)
+        {
+            all[i++] = e;
+        }
+        E[] sorted = (E[]) all;
+        mergeSort(sorted);
+        rebuild(sorted, i);
+    }
+
+    /**
+     * Adds elements that are already sorted in ascending order without sorting them again,
+     * they are merged with elements already in the list in O(n) time, or the list is just rebuilt from them if it is empty.
+     * @param sorted array of elements in ascending order
+     * @param count number of elements of the array to use
+     */
+    @SuppressWarnings("unchecked")
+    public void addAllPresorted(E[] sorted, int count)
+    {
+        if (size == 0)
+        {
+            rebuild(sorted, count);
+            return;
+        }
+        Comparable<?>[] all = new Comparable<?>[size + count];
+        int i = 0;
+        for (E e : this)
+        {
+            all[i++] = e;
+        }
+        System.arraycopy(sorted, 0, all, i, count);
+        E[] source = (E[]) all;
+        E[] target = (E[]) new Comparable<?>[all.length];
+        merge(source, target, 0, size, all.length);
+        rebuild(target, all.length);
+    }
+
+    /**
+     * Replaces elements of the list with already sorted elements in O(n) time, levels of the nodes are spread evenly.
+     * @param sorted array of elements in ascending order
+     * @param count number of elements of the array to use
+     */
+    void rebuild(E[] sorted, int count)
+    {
+        clear();
+        //last node on each level and its position
+        @SuppressWarnings("unchecked")
+        Node<E>[] last = (Node<E>[]) new Node<?>[MAX_LEVEL];
+        int[] lastIndex = new int[MAX_LEVEL];
+        for (int level = 0; level < MAX_LEVEL; level++)
+        {
+            last[level] = head;
+            lastIndex[level] = -1;
+        }
+        for (int i = 0; i < count; i++)
+        {
+            //every second node has 2 levels, every fourth has 3 levels and so on
+            int height = Math.min(Integer.numberOfTrailingZeros(i + 1) + 1, MAX_LEVEL);
+            Node<E> node = new Node<E>(sorted[i], height);
+            for (int level = 0; level < height; level++)
+            {
+                last[level].next[level] = node;
+                last[level].width[level] = i - lastIndex[level];
+                last[level] = node;
+                lastIndex[level] = i;
+            }
+            levels = Math.max(levels, height);
+        }
+        //last links on each level skip to the end of the list
+        for (int level = 0; level < levels; level++)
+        {
+            last[level].width[level] = count - lastIndex[level];
+        }
+        size = count;
+    }
+
+    /**
+     * Returns the element at the specified position in O(log n) time.
+     * @param index position of the element, starting from 0
+     * @return element at the specified position
+     * @throws IndexOutOfBoundsException when index is negative or not smaller than size of the list
+     */
+    public E get(int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        Node<E> node = head;
+        int position = -1;
+        for (int level = levels - 1; level >= 0; level--)
+        {
+            while (node.next[level] != null && position + node.width[level] <= index)
+            {
+                position += node.width[level];
+                node = node.next[level];
+            }
+        }
+        return node.value;
+    }
+
+    /**
+     * Finds the position of the first element that is not smaller than the key in O(log n) time.
+     * @param key element to compare against
+     * @return int position of the first element not smaller than the key, size of the list if all elements are smaller
+     */
+    public int lowerBound(E key)
+    {
+        Node<E> node = head;
+        int position = -1;
+        for (int level = levels - 1; level >= 0; level--)
+        {
+            while (node.next[level] != null && node.next[level].value.compareTo(key) < 0)
+            {
+                position += node.width[level];
+                node = node.next[level];
+            }
+        }
+        return position + 1;
+    }
+
+    /**
+     * Removes one element equal to the specified element according to compareTo in O(log n) expected time.
+     * @param o element to be removed
+     * @return boolean true if an element was removed
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o)
+    {
+        if (o == null)
+        {
+            return false;
+        }
+        E key = (E) o;
+        @SuppressWarnings("unchecked")
+        Node<E>[] update = (Node<E>[]) new Node<?>[MAX_LEVEL];
+        Node<E> node = head;
+        for (int level = levels - 1; level >= 0; level--)
+        {
+            while (node.next[level] != null && node.next[level].value.compareTo(key) < 0)
+            {
+                node = node.next[level];
+            }
+            update[level] = node;
+        }
+        Node<E> target = node.next[0];
+        if (target == null || target.value.compareTo(key) != 0)
+        {
+            return false;
+        }
+        for (int level = 0; level < levels; level++)
+        {
+            if (update[level].next[level] == target)
+            {
+                //unlink the node, the preceding link now also skips what the removed link skipped
+                update[level].next[level] = target.next[level];
+                update[level].width[level] += target.width[level] - 1;
+            }
+            else
+            {
+                update[level].width[level]--;
+            }
+        }
+        while (levels > 1 && head.next[levels - 1] == null)
+        {
+            levels--;
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes all elements from the list.
+     */
+    @Override
+    public void clear()
+    {
+        for (int level = 0; level < MAX_LEVEL; level++)
+        {
+            head.next[level] = null;
+            head.width[level] = 0;
+        }
+        levels = 1;
+        size = 0;
+    }
+
+    /**
+     * Getter for the number of elements in the list.
+     * @return int number of elements in the list
+     */
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Estimates the memory taken by the nodes of the list on the Java heap, the elements themselves are not counted.
+     * @return long estimated bytes of the nodes, from the average number of levels of a node
+     */
+    public long estimateMemoryBytes()
+    {
+        return (long) (size + 1) * NODE_BYTES;
+    }
+
+    /**
+     * Returns an iterator over the elements in ascending order.
+     * @return Iterator over all elements of the list
+     */
+    @Override
+    public Iterator<E> iterator()
+    {
+        return iterator(0);
+    }
+
+    /**
+     * Returns an iterator over the elements in ascending order starting at the specified position, the start is found in O(log n) time.
+     * @param fromIndex position of the first element returned by the iterator
+     * @return Iterator over elements of the list from the specified position
+     */
+    public Iterator<E> iterator(int fromIndex)
+    {
+        //find the node preceding the first element returned
+        Node<E> start = head;
+        int position = -1;
+        for (int level = levels - 1; level >= 0; level--)
+        {
+            while (start.next[level] != null && position + start.width[level] < fromIndex)
+            {
+                position += start.width[level];
+                start = start.next[level];
+            }
+        }
+        Node<E> first = start;
+        return new Iterator<E>() {
+            private Node<E> current = first;
+
+            @Override
+            public boolean hasNext()
+            {
+                return current.next[0] != null;
+            }
+
+            @Override
+            public E next()
+            {
+                if (current.next[0] == null)
+                {
+                    throw new NoSuchElementException();
+                }
+                current = current.next[0];
+                return current.value;
+            }
+        };
+    }
+
+    /**
+     * Chooses number of levels of a new node, each additional level has probability 1/2.
+     * @return int number of levels between 1 and MAX_LEVEL
+     */
+    private int randomHeight()
+    {
+        //xorshift random number generator
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return Math.min(Long.numberOfTrailingZeros(seed) + 1, MAX_LEVEL);
+    }
+
+    /**
+     * This generic method sorts an array in ascending lexicographic order using bottom-up merge sort sorting algorithm in O(n log n) time.
+     * <p>Merge sort is stable, elements equal according to compareTo keep their order.
+     * @param a array to be sorted
+     * @param <T> specifies the type of objects in the array
+     */
+    public static <T extends Comparable<T>> void mergeSort(T[] a)
+    {
+        int n = a.length;
+        T[] source = a;
+        T[] target = a.clone();
+        //merge runs of width 1, 2, 4, ... from source to target, then swap the arrays
+        for (int width = 1; width < n; width *= 2)
+        {
+            for (int low = 0; low < n; low += 2 * width)
+            {
+                int middle = Math.min(low + width, n);
+                int high = Math.min(low + 2 * width, n);
+                merge(source, target, low, middle, high);
+            }
+            T[] swap = source;
+            source = target;
+            target = swap;
+        }
+        //sorted elements ended up in the copy, copy them back
+        if (source != a)
+        {
+            System.arraycopy(source, 0, a, 0, n);
+        }
+    }
+
+    /**
+     * Merges two sorted runs source[low, middle) and source[middle, high) into target[low, high).
+     * @param source array with the sorted runs
+     * @param target array the merged run is written to
+     * @param low start of the first run
+     * @param middle end of the first run and start of the second run
+     * @param high end of the second run
+     * @param <T> specifies the type of objects in the array
+     */
+    static <T extends Comparable<T>> void merge(T[] source, T[] target, int low, int middle, int high)
+    {
+        int i = low;
+        int j = middle;
+        for (int k = low; k < high; k++)
+        {
+            //take from the first run on ties to keep the sort stable
+            if (i < middle && (j >= high || source[i].compareTo(source[j]) <= 0))
+            {
+                target[k] = source[i++];
+            }
+            else
+            {
+                target[k] = source[j++];
+            }
+        }
+    }
+}
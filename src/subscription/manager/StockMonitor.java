@@ -0,0 +1,495 @@
+package subscription.manager;
+
+import subscription.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * A StockMonitor watches balances of available meals and warns before a meal type runs out.
+ * <p>The monitor is told about every reservation and release of meals, see {@link #onChange(int, int)}, by a listener of the {@link ChangeFeed change feed}
+ * the {@link SubscriptionEngine engine} publishes changes to, so the monitor never scans all the meals to find out what changed and clerks don't wait for it. For every meal type it keeps:
+ * <ul>
+ *     <li>
+ *         the number of meals taken over sliding windows of the last minute, 15 minutes and hour, returned meals are subtracted,
+ *         see {@link #getRate(int, int)}
+ *     </li>
+ *     <li>
+ *         the stock level, the number of configured thresholds the balance is at or below, e.g. with thresholds 10 and 0 a balance of 5 is level 1
+ *     </li>
+ * </ul>
+ * Right after the monitor started, a window counts only the time since then.
+ * <p>When the balance of a meal falls to or below a threshold, or rises above it again, a {@link StockEvent} is sent to the listeners
+ * with the time left until the meal runs out at the rate of the last 15 minutes, see {@link #getTimeToStockout(int)}.
+ * {@link #onChange(int, int)} runs only on the thread of the change feed's listener, so levels and windows have one writer, every crossing is sent once
+ * and events are sent in the order of the changes. Reports and rates are read by other threads, e.g. the clerk's or the HTTP API's,
+ * so levels and buckets are kept in atomic arrays, which make every write visible to them.
+ * <p>Windows are rings of buckets, every bucket packs the number of its time slot and the meals taken in it into one long,
+ * so a reader sees the count of a bucket with its time slot and a bucket from an older time slot is reused without a separate reset.
+ * <p>Meal types registered after the monitor was created, i.e. added by a {@link RestockWatcher restock}, are watched from their first change on,
+ * the windows and levels are then copied into larger arrays the way {@link MealDemand} grows, see {@link #onChange(int, int)}.
+ * A new meal type starts at level 0, so a meal type added with a balance at or below a threshold is reported right away.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class StockMonitor {
+    /**
+     * A StockEvent reports that the balance of a meal type crossed a threshold.
+     * @param mealName name of the meal type
+     * @param threshold the threshold that was crossed
+     * @param balance balance of available meals after the change
+     * @param low true if the balance fell to or below the threshold, false if it rose above it again
+     * @param mealsPerMinute meals taken per minute over the last 15 minutes
+     * @param secondsToStockout projected seconds until the meal type runs out, -1 if meals are not being taken
+     */
+    public record StockEvent(String mealName, int threshold, int balance, boolean low, double mealsPerMinute, long secondsToStockout)
+    {
+        /**
+         * Describes the event for the clerk.
+         * @return String e.g. "Stock alert: Curry has 8 meals left (threshold 10), taking 2.5 meals/min, runs out in 3 min."
+         */
+        @Override
+        public String toString()
+        {
+            if (!low)
+            {
+                return "Stock recovered: " + mealName + " has " + balance + " meals available (threshold " + threshold + ").";
+            }
+            String forecast = secondsToStockout <= 0 ? "." : String.format(Locale.ROOT, ", taking %.1f meals/min, runs out in %s.", mealsPerMinute, formatDuration(secondsToStockout));
+            return (balance == 0 ? "Stock alert: " + mealName + " is out of stock" : "Stock alert: " + mealName + " has " + balance + " meals left")
+                    + " (threshold " + threshold + ")" + forecast;
+        }
+    }
+
+    //Fields
+    /**
+     * Default thresholds of the low stock alerts.
+     */
+    public static final int[] DEFAULT_THRESHOLDS = {10, 0};
+    /**
+     * Names of the sliding windows.
+     */
+    private static final String[] WINDOW_NAMES = {"1 min", "15 min", "1 h"};
+    /**
+     * Width of the buckets of the sliding windows in milliseconds.
+     */
+    private static final long[] BUCKET_MILLIS = {5_000, 60_000, 300_000};
+    /**
+     * Number of buckets of the sliding windows.
+     */
+    private static final int[] BUCKETS = {12, 15, 12};
+    /**
+     * Sliding window used for forecasts, the last 15 minutes.
+     */
+    private static final int FORECAST_WINDOW = 1;
+
+    /**
+     * The registry storing the meals.
+     */
+    private final SubscriptionRegistry registry;
+    /**
+     * Thresholds in descending order.
+     */
+    private final int[] thresholds;
+    /**
+     * Clock in milliseconds.
+     */
+    private final LongSupplier clock;
+    /**
+     * Time the monitor started, rates of windows longer than the time since then are computed over the shorter time.
+     */
+    private final long startMillis;
+    /**
+     * Number of meal types watched, ids are smaller than this number, written after the arrays were grown.
+     */
+    private volatile int mealCount;
+    /**
+     * Buckets of the sliding windows by window, every meal has its buckets at mealId * buckets, see {@link #pack(long, int)}.
+     * Replaced by larger arrays when meal types are added.
+     */
+    private volatile AtomicLongArray[] windows;
+    /**
+     * Stock levels by meal id, room for at least {@link #mealCount} meals, replaced by a larger array when meal types are added.
+     */
+    private volatile AtomicIntegerArray levels;
+    /**
+     * Ids of meals with a stock level above 0, so low meals are listed without looking at all meals.
+     */
+    private final Set<Integer> lowMeals = ConcurrentHashMap.newKeySet();
+    /**
+     * Listeners of crossed thresholds.
+     */
+    private final List<Consumer<StockEvent>> listeners = new CopyOnWriteArrayList<Consumer<StockEvent>>();
+
+    //Constructors
+    /**
+     * StockMonitor constructor watching all the registered meals with the system clock.
+     * @param registry registry storing the meals
+     * @param thresholds thresholds of the alerts, in any order
+     */
+    public StockMonitor(SubscriptionRegistry registry, int[] thresholds)
+    {
+        this(registry, thresholds, System::currentTimeMillis);
+    }
+
+    /**
+     * StockMonitor constructor watching all the registered meals with a particular clock, the stock levels of the current balances are set without events.
+     * @param registry registry storing the meals
+     * @param thresholds thresholds of the alerts, in any order
+     * @param clock clock in milliseconds
+     */
+    public StockMonitor(SubscriptionRegistry registry, int[] thresholds, LongSupplier clock)
+    {
+        this.registry = registry;
+        this.thresholds = Arrays.stream(thresholds).boxed().sorted((a, b) -> b - a).mapToInt(Integer::intValue).distinct().toArray();
+        this.clock = clock;
+        startMillis = clock.getAsLong();
+        mealCount = registry.getMealCount();
+        windows = new AtomicLongArray[BUCKETS.length];
+        for (int w = 0; w < windows.length; w++)
+        {
+            windows[w] = new AtomicLongArray(mealCount * BUCKETS[w]);
+        }
+        levels = new AtomicIntegerArray(mealCount);
+        for (int id = 0; id < mealCount; id++)
+        {
+            int level = level(registry.getMeal(id).getMealBalance());
+            levels.set(id, level);
+            if (level > 0)
+            {
+                lowMeals.add(id);
+            }
+        }
+    }
+
+    //Methods
+    /**
+     * Adds a listener of crossed thresholds, listeners are called by the thread that called {@link #onChange(int, int)}, i.e. the thread of the change feed's listener, not by the clerk that changed the balance.
+     * @param listener the listener
+     */
+    public void addListener(Consumer<StockEvent> listener)
+    {
+        listeners.add(listener);
+    }
+
+    /**
+     * Getter for the thresholds of the alerts.
+     * @return int[] copy of the thresholds in descending order
+     */
+    public int[] getThresholds()
+    {
+        return thresholds.clone();
+    }
+
+    /**
+     * Updates the sliding windows and the stock level of a meal after its balance was changed.
+     * A meal registered after the monitor was created starts being watched, changes are passed to the monitor by one thread, the change feed's listener,
+     * so no update is made to arrays that are being replaced.
+     * @param mealId id of the meal
+     * @param taken meals taken from the balance, negative for meals returned to it, 0 after a restock, which changes only the stock level
+     */
+    public void onChange(int mealId, int taken)
+    {
+        if (mealId >= mealCount && mealId < registry.getMealCount())
+        {
+            watchNewMeals(mealId + 1);
+        }
+        if (mealId < 0 || mealId >= mealCount)
+        {
+            return;
+        }
+        AtomicLongArray[] windows = this.windows;
+        AtomicIntegerArray levels = this.levels;
+        long now = clock.getAsLong();
+        for (int w = 0; w < windows.length; w++)
+        {
+            add(windows[w], mealId * BUCKETS[w] + (int) ((now / BUCKET_MILLIS[w]) % BUCKETS[w]), now / BUCKET_MILLIS[w], taken);
+        }
+        Meal meal = registry.getMeal(mealId);
+        int newLevel = level(meal.getMealBalance());
+        //the feed's listener is the only thread changing levels, so the level read is the one the last change left
+        int oldLevel = levels.get(mealId);
+        if (oldLevel == newLevel)
+        {
+            return;
+        }
+        levels.set(mealId, newLevel);
+        if (newLevel > 0)
+        {
+            lowMeals.add(mealId);
+        }
+        else
+        {
+            lowMeals.remove(mealId);
+        }
+        if (listeners.isEmpty())
+        {
+            return;
+        }
+        int balance = meal.getMealBalance();
+        double perMinute = getRate(mealId, FORECAST_WINDOW) * 60;
+        long secondsLeft = getTimeToStockout(mealId);
+        //one event for every threshold crossed, a big change can cross several
+        for (int level = oldLevel; level < newLevel; level++)
+        {
+            send(new StockEvent(meal.getMealName(), thresholds[level], balance, true, perMinute, secondsLeft));
+        }
+        for (int level = oldLevel; level > newLevel; level--)
+        {
+            send(new StockEvent(meal.getMealName(), thresholds[level - 1], balance, false, perMinute, secondsLeft));
+        }
+    }
+
+    /**
+     * Starts watching meals registered after the monitor was created, the windows and levels are copied into arrays twice as large when they are full.
+     * @param count number of meal types watched from now on
+     */
+    private synchronized void watchNewMeals(int count)
+    {
+        int watched = mealCount;
+        if (count <= watched)
+        {
+            return;
+        }
+        if (count > levels.length())
+        {
+            int capacity = Math.max(count, levels.length() * 2);
+            AtomicLongArray[] grownWindows = new AtomicLongArray[BUCKETS.length];
+            for (int w = 0; w < grownWindows.length; w++)
+            {
+                grownWindows[w] = new AtomicLongArray(capacity * BUCKETS[w]);
+                for (int i = 0; i < watched * BUCKETS[w]; i++)
+                {
+                    grownWindows[w].set(i, windows[w].get(i));
+                }
+            }
+            AtomicIntegerArray grownLevels = new AtomicIntegerArray(capacity);
+            for (int id = 0; id < watched; id++)
+            {
+                grownLevels.set(id, levels.get(id));
+            }
+            windows = grownWindows;
+            levels = grownLevels;
+        }
+        mealCount = count;
+    }
+
+    /**
+     * Computes the rate meals of a meal type are taken at over a sliding window, returned meals are subtracted.
+     * @param mealId id of the meal
+     * @param window 0 for the last minute, 1 for the last 15 minutes, 2 for the last hour
+     * @return double meals taken per second, 0 for meals not watched
+     */
+    public double getRate(int mealId, int window)
+    {
+        if (mealId < 0 || mealId >= mealCount)
+        {
+            return 0;
+        }
+        AtomicLongArray buckets = windows[window];
+        long now = clock.getAsLong();
+        long slot = now / BUCKET_MILLIS[window];
+        long taken = 0;
+        for (int b = 0; b < BUCKETS[window]; b++)
+        {
+            long bucket = buckets.get(mealId * BUCKETS[window] + b);
+            //buckets of time slots older than the window are not counted
+            if (slot - slotOf(bucket) < BUCKETS[window])
+            {
+                taken += countOf(bucket);
+            }
+        }
+        long windowMillis = BUCKET_MILLIS[window] * BUCKETS[window];
+        //right after the start a window is as long as the time since then, but at least one bucket, so a few meals don't look like a rush
+        long elapsed = Math.max(Math.min(windowMillis, now - startMillis), BUCKET_MILLIS[window]);
+        return taken * 1000.0 / elapsed;
+    }
+
+    /**
+     * Projects the time left until a meal type runs out, at the rate of the last 15 minutes.
+     * @param mealId id of the meal
+     * @return long seconds until no meals are left, 0 if the meal is out of stock, -1 if meals are not being taken
+     */
+    public long getTimeToStockout(int mealId)
+    {
+        if (mealId < 0 || mealId >= mealCount)
+        {
+            return -1;
+        }
+        int balance = registry.getMeal(mealId).getMealBalance();
+        if (balance == 0)
+        {
+            return 0;
+        }
+        double rate = getRate(mealId, FORECAST_WINDOW);
+        return rate <= 0 ? -1 : (long) Math.ceil(balance / rate);
+    }
+
+    /**
+     * Lists ids of the meals at or below a threshold.
+     * @return List of ids of low meals, lowest balance first
+     */
+    public List<Integer> getLowMeals()
+    {
+        List<Integer> low = new ArrayList<Integer>(lowMeals);
+        low.sort((a, b) -> Integer.compare(registry.getMeal(a).getMealBalance(), registry.getMeal(b).getMealBalance()));
+        return low;
+    }
+
+    /**
+     * Builds the stock report for the clerk: meals at or below a threshold, and meals that run out within an hour at the current rate.
+     * Rates of all meals are read for the report, no meal is read between reports.
+     * @return String report of the stock
+     */
+    public String report()
+    {
+        StringBuilder report = new StringBuilder();
+        report.append("Stock thresholds: ").append(Arrays.toString(thresholds)).append(", rates are meals per minute over the last ")
+                .append(String.join(" / ", WINDOW_NAMES)).append('\n');
+        List<Integer> low = getLowMeals();
+        report.append(low.isEmpty() ? "No meals are low on stock.\n" : "Meals low on stock:\n");
+        for (int id : low)
+        {
+            appendMeal(report, id);
+        }
+        List<Integer> runningOut = new ArrayList<Integer>();
+        for (int id = 0; id < mealCount; id++)
+        {
+            long secondsLeft = getTimeToStockout(id);
+            if (levels.get(id) == 0 && secondsLeft > 0 && secondsLeft <= 3600)
+            {
+                runningOut.add(id);
+            }
+        }
+        if (!runningOut.isEmpty())
+        {
+            runningOut.sort((a, b) -> Long.compare(getTimeToStockout(a), getTimeToStockout(b)));
+            report.append("Meals running out within an hour:\n");
+            for (int id : runningOut)
+            {
+                appendMeal(report, id);
+            }
+        }
+        return report.toString();
+    }
+
+    /**
+     * Appends one line of the stock report.
+     * @param report StringBuilder the line is appended to
+     * @param mealId id of the meal
+     */
+    private void appendMeal(StringBuilder report, int mealId)
+    {
+        Meal meal = registry.getMeal(mealId);
+        report.append(String.format(Locale.ROOT, "  %-20s %6d left, rates %.1f / %.1f / %.1f", meal.getMealName(), meal.getMealBalance(),
+                getRate(mealId, 0) * 60, getRate(mealId, 1) * 60, getRate(mealId, 2) * 60));
+        long secondsLeft = getTimeToStockout(mealId);
+        report.append(secondsLeft == 0 ? ", out of stock\n" : secondsLeft < 0 ? "\n" : ", runs out in " + formatDuration(secondsLeft) + "\n");
+    }
+
+    /**
+     * Sends an event to all listeners, a failing listener doesn't stop the others or the change feed's listener.
+     * @param event the event
+     */
+    private void send(StockEvent event)
+    {
+        for (Consumer<StockEvent> listener : listeners)
+        {
+            try
+            {
+                listener.accept(event);
+            }
+            catch (RuntimeException exception)
+            {
+                System.err.println("Stock listener failed: " + exception);
+            }
+        }
+    }
+
+    /**
+     * Computes the stock level of a balance.
+     * @param balance balance of available meals
+     * @return int number of thresholds the balance is at or below
+     */
+    private int level(int balance)
+    {
+        int level = 0;
+        while (level < thresholds.length && balance <= thresholds[level])
+        {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Adds meals taken to a bucket, a bucket of an older time slot is started again at the time slot.
+     * Called only by the change feed's listener, so the bucket isn't changed between reading and writing it.
+     * @param buckets the buckets of a window
+     * @param index index of the bucket
+     * @param slot number of the current time slot
+     * @param taken meals taken, negative for meals returned
+     */
+    private static void add(AtomicLongArray buckets, int index, long slot, int taken)
+    {
+        long bucket = buckets.get(index);
+        buckets.set(index, slotOf(bucket) == slot ? pack(slot, countOf(bucket) + taken) : pack(slot, taken));
+    }
+
+    /**
+     * Packs the number of a time slot into the high 32 bits and the meals taken in it into the low 32 bits of a bucket.
+     * @param slot number of the time slot
+     * @param count meals taken, can be negative
+     * @return long the bucket
+     */
+    private static long pack(long slot, int count)
+    {
+        return (slot << 32) | (count & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Unpacks the number of the time slot of a bucket.
+     * @param bucket the bucket
+     * @return long number of the time slot
+     */
+    private static long slotOf(long bucket)
+    {
+        return bucket >>> 32;
+    }
+
+    /**
+     * Unpacks the meals taken in a bucket.
+     * @param bucket the bucket
+     * @return int meals taken, negative if more were returned
+     */
+    private static int countOf(long bucket)
+    {
+        return (int) bucket;
+    }
+
+    /**
+     * Formats seconds for the clerk, e.g. "45 s", "12 min", "3.5 h".
+     * @param seconds number of seconds
+     * @return String the formatted duration
+     */
+    static String formatDuration(long seconds)
+    {
+        if (seconds < 60)
+        {
+            return seconds + " s";
+        }
+        if (seconds < 3600)
+        {
+            return (seconds + 59) / 60 + " min";
+        }
+        return String.format(Locale.ROOT, "%.1f h", seconds / 3600.0);
+    }
+}
@@ -0,0 +1,126 @@
+package subscription.manager;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A SubscriptionDesk adds and removes meals the way a clerk does, for front-ends without the interactive menu of the {@link MainProgram main program},
+ * i.e. the {@link BatchProcessor batch mode} and the {@link SubscriptionHttpServer HTTP API}.
+ * <p>Subscriber, subscriptions and meal are validated in the same order as the clerk's keyboard input, then the change is done by the {@link SubscriptionEngine engine},
+ * and the letter that goes with the result is sent: an apology when there is not enough meals or the limit of meal types is reached,
+ * a confirmation when meals are removed, see {@link LetterType}.
+ * <p>Rules are checked with {@link ValidationResult results}, so rejected changes don't create exceptions. The desk is thread-safe.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class SubscriptionDesk {
+    //Fields
+    /**
+     * The SubscriptionEngine changes are done with.
+     */
+    private final SubscriptionEngine engine;
+    /**
+     * LetterService letters to subscribers are sent with.
+     */
+    private final LetterService letterService;
+    /**
+     * Number of letters sent by this desk.
+     */
+    private final LongAdder letters = new LongAdder();
+
+    //Constructor
+    /**
+     * SubscriptionDesk constructor specifying the engine changes are done with and the LetterService for letters.
+     * @param engine SubscriptionEngine changes are done with
+     * @param letterService LetterService letters to subscribers are sent with
+     */
+    public SubscriptionDesk(SubscriptionEngine engine, LetterService letterService)
+    {
+        this.engine = engine;
+        this.letterService = letterService;
+    }
+
+    //Methods
+    /**
+     * Adds meals to a registered subscriber's subscription, an apology letter is sent when there is not enough meals or the limit of meal types is reached.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type
+     * @param mealQuantity quantity of meals, greater than 0
+     * @return ValidationResult {@link ValidationResult#OK} if meals were added, otherwise the rule that rejected the change
+     */
+    public ValidationResult add(String fName, String lName, String mealType, int mealQuantity)
+    {
+        ValidationResult result = engine.checkSubscriber(fName, lName);
+        if (result.isOk())
+        {
+            result = engine.checkMeal(mealType);
+        }
+        if (result.isOk())
+        {
+            result = engine.tryAddMealSubscription(fName, lName, mealType, mealQuantity);
+        }
+        if (result == ValidationResult.NOT_ENOUGH_MEALS)
+        {
+            //print a note in a form of letter, letter informs that there is not enough meals of requested type
+            letterService.sendOutOfStock(fName, lName, mealType, mealQuantity, engine.describe(result, fName, lName, mealType, mealQuantity));
+            letters.increment();
+        }
+        else if (result == ValidationResult.MEAL_TYPE_LIMIT_REACHED)
+        {
+            //print a note in a form of letter, letter informs that the limit of meal types is reached
+            letterService.sendLimitReached(fName, lName, mealType, mealQuantity);
+            letters.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Removes meals from a registered subscriber's subscription, a confirmation letter is sent when meals were removed.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type
+     * @param mealQuantity quantity of meals, greater than 0
+     * @return ValidationResult {@link ValidationResult#OK} if meals were removed, otherwise the rule that rejected the change
+     */
+    public ValidationResult remove(String fName, String lName, String mealType, int mealQuantity)
+    {
+        ValidationResult result = engine.checkSubscriber(fName, lName);
+        if (result.isOk())
+        {
+            result = engine.checkSubscriptions(fName, lName);
+        }
+        if (result.isOk())
+        {
+            result = engine.checkMeal(mealType);
+        }
+        if (result.isOk())
+        {
+            result = engine.tryRemoveMealSubscription(fName, lName, mealType, mealQuantity);
+        }
+        if (result.isOk())
+        {
+            //confirm the removal with a letter
+            letterService.sendRemovalConfirmation(fName, lName, mealType, mealQuantity);
+            letters.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Getter for the engine changes are done with.
+     * @return SubscriptionEngine of the desk
+     */
+    public SubscriptionEngine getEngine()
+    {
+        return engine;
+    }
+
+    /**
+     * Getter for the number of letters sent by this desk.
+     * @return long number of letters
+     */
+    public long getLetters()
+    {
+        return letters.sum();
+    }
+}
@@ -0,0 +1,658 @@
+package subscription.manager;
+
+import subscription.*;
+import subscription.manager.exceptions.*;
+
+import java.io.IOException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A SubscriptionEngine applies the business rules of the food company to the subscriptions stored in a {@link SubscriptionRegistry registry}.
+ * <p>It validates subscribers, meals and subscriptions, and adds meals to or removes meals from subscriptions while keeping balances of available meals up to date.
+ * Each subscriber can subscribe to a maximum of 3 different meal types and no more meals can be subscribed to than are available.
+ * <p>Validations and changes return a {@link ValidationResult}, so the {@link BatchProcessor batch mode} and listings check rules without the cost of exceptions,
+ * the text explaining a result is built with {@link #describe(ValidationResult, String, String, String, int)} only when it is needed.
+ * The interactive {@link MainProgram main program} uses the methods throwing exceptions from {@link subscription.manager.exceptions}, e.g. {@link #isSubscriber(String, String)},
+ * so the same rules are used by both.
+ * <p>The engine is thread-safe, many clerks can add and remove subscriptions at the same time.
+ * Changes of one subscriber's subscriptions are serialized by a lock striped by subscriber's full name, so the limit of 3 different meal types holds,
+ * and the balance of a meal is checked and taken in one lock-free step with {@link Meal#tryReserve(int)}, so the same meals are never subscribed to twice.
+ * Clerks working with different subscribers don't wait for each other and clerks subscribing to the same meal don't block each other.
+ * <p>With a {@link SubscriptionJournal journal} every change is appended to the journal under the subscriber's lock, so changes of one subscriber are journaled in order.
+ * Changes share a state lock, which {@link #snapshot()} takes exclusively for the short time it copies the state.
+ * <p>Meals are restocked with {@link #restock(String, int)} while clerks work, new meal types are registered on the way.
+ * <p>Results and times of changes and validations are recorded in the engine's {@link SubscriptionMetrics metrics},
+ * and every change is published to a {@link ChangeFeed change feed}, whose listeners, e.g. the {@link StockMonitor stock monitor}, react in the background.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class SubscriptionEngine {
+    //Fields
+    /**
+     * Maximum number of different meal types a subscriber can subscribe to.
+     */
+    public static final int MAX_MEAL_TYPES = 3;
+    /**
+     * The registry storing subscribers, meals and subscriptions.
+     */
+    private final SubscriptionRegistry registry;
+    /**
+     * Number of lock stripes, a power of 2 so the stripe is selected with a mask.
+     */
+    private static final int LOCK_STRIPES = 64;
+    /**
+     * Locks serializing changes of subscriptions of subscribers, selected by hash of subscriber's full name.
+     */
+    private final ReentrantLock[] subscriberLocks;
+    /**
+     * Lock shared by changes of subscriptions and taken exclusively while a snapshot copies the state.
+     */
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+    /**
+     * Journal every change is appended to, null if subscriptions are kept only in memory.
+     */
+    private volatile SubscriptionJournal journal;
+    /**
+     * True if changes return only after their journal record is forced to disk.
+     */
+    private volatile boolean waitForDurability;
+    /**
+     * Counters and latency histograms of changes and validations.
+     */
+    private final SubscriptionMetrics metrics;
+    /**
+     * Feed every change of a subscription is published to, null if changes are not published.
+     */
+    private volatile ChangeFeed changeFeed;
+
+    /**
+     * Outcome of a restock.
+     * @param result {@link ValidationResult#OK} if the meal was restocked, {@link ValidationResult#NO_SUCH_MEAL} if meals were to be withdrawn from a meal type that isn't registered
+     * @param requested meals to be added to the balance, negative for meals to be withdrawn
+     * @param applied meals actually added to the balance, negative for meals actually withdrawn, 0 if the meal was not restocked
+     */
+    public record RestockResult(ValidationResult result, int requested, int applied)
+    {
+        /**
+         * Checks if the balance changed by less than requested, i.e. fewer meals were available than were to be withdrawn,
+         * or the balance would have grown beyond the largest int.
+         * @return boolean true if the meal was restocked with fewer meals than requested
+         */
+        public boolean isShort()
+        {
+            return result.isOk() && applied != requested;
+        }
+    }
+
+    //Constructor
+    /**
+     * SubscriptionEngine constructor specifying the registry the rules are applied to.
+     * @param registry registry storing subscribers, meals and subscriptions
+     */
+    public SubscriptionEngine(SubscriptionRegistry registry)
+    {
+        this.registry = registry;
+        metrics = new SubscriptionMetrics(registry);
+        subscriberLocks = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++)
+        {
+            subscriberLocks[i] = new ReentrantLock();
+        }
+    }
+
+    //Methods
+    /**
+     * Getter for the registry the rules are applied to.
+     * @return SubscriptionRegistry storing subscribers, meals and subscriptions
+     */
+    public SubscriptionRegistry getRegistry()
+    {
+        return registry;
+    }
+
+    /**
+     * Getter for the metrics of the engine.
+     * @return SubscriptionMetrics with results and times of changes and validations
+     */
+    public SubscriptionMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+    /**
+     * Sets the feed every change of a subscription, and with it of a meal balance, is published to.
+     * @param changeFeed the feed, null to stop publishing changes
+     */
+    public void setChangeFeed(ChangeFeed changeFeed)
+    {
+        this.changeFeed = changeFeed;
+    }
+
+    /**
+     * Sets the journal every change is appended to.
+     * @param journal journal for the changes, null to keep subscriptions only in memory
+     * @param waitForDurability true if changes return only after their record is forced to disk (shared with other clerks' changes),
+     *                          false if records are forced to disk in the background and {@link SubscriptionJournal#sync()} is called later
+     */
+    public void setJournal(SubscriptionJournal journal, boolean waitForDurability)
+    {
+        this.journal = journal;
+        this.waitForDurability = waitForDurability;
+    }
+
+    /**
+     * Writes a snapshot of all subscriptions and balances of meals to the journal's data directory, older journal segments are deleted.
+     * Changes of subscriptions wait only while the state is copied, not while the snapshot is written.
+     * @throws IOException when the snapshot can't be written
+     * @throws IllegalStateException when the engine has no journal
+     */
+    public synchronized void snapshot() throws IOException
+    {
+        SubscriptionJournal current = journal;
+        if (current == null)
+        {
+            throw new IllegalStateException("Snapshots need a journal.");
+        }
+        SubscriptionJournal.Snapshot snapshot;
+        stateLock.writeLock().lock();
+        try
+        {
+            snapshot = current.capture(registry);
+        }
+        finally
+        {
+            stateLock.writeLock().unlock();
+        }
+        current.writeSnapshot(snapshot);
+    }
+
+    //methods for adding and removing subscriptions
+    /**
+     * Adds meal subscription to the subscriptions of the registry, or adds meals to an existing subscription of the same meal type, and takes the meals from the balance of available meals.
+     * <p>The limit check and the change of the subscription are done under the subscriber's lock, the check and the change of the meal balance are one atomic step,
+     * so concurrent clerks can't exceed the limit of meal types or subscribe to more meals than available.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type
+     * @param mealQuantity quantity of meals of the specified meal type
+     * @return ValidationResult {@link ValidationResult#OK} if meals were added, {@link ValidationResult#MEAL_TYPE_LIMIT_REACHED},
+     * {@link ValidationResult#NOT_ENOUGH_MEALS}, {@link ValidationResult#NO_SUCH_MEAL} or {@link ValidationResult#NO_SUCH_SUBSCRIBER} if nothing was changed
+     */
+    public ValidationResult tryAddMealSubscription(String fName, String lName, String mealType, int mealQuantity)
+    {
+        long start = System.nanoTime();
+        SubscriptionJournal current = journal;
+        long sequence = 0; //sequence number of the journal record
+        ValidationResult result;
+        ReentrantLock subscriberLock = subscriberLock(fName, lName);
+        stateLock.readLock().lock();
+        subscriberLock.lock();
+        try
+        {
+            result = addMealSubscriptionLocked(fName, lName, mealType, mealQuantity);
+            if (result.isOk() && current != null)
+            {
+                sequence = current.appendAdd(fName, lName, mealType, mealQuantity);
+            }
+        }
+        finally
+        {
+            subscriberLock.unlock();
+            stateLock.readLock().unlock();
+        }
+        //wait without holding locks, so other clerks' records share the same fsync
+        if (sequence > 0 && waitForDurability)
+        {
+            current.awaitDurable(sequence);
+        }
+        //the time includes waiting for the journal, as the clerk waits for it too
+        metrics.record(SubscriptionMetrics.Operation.ADD, result, System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Adds meal subscription like {@link #tryAddMealSubscription(String, String, String, int)}, used at the interactive boundary where rule violations are reported with exceptions.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type
+     * @param mealQuantity quantity of meals of the specified meal type
+     * @throws IllegalSubscriptionQuantityException when attempted to add subscription and subscriber has reached the limit of maximum 3 different subscriptions
+     * @throws IllegalMealQuantityException when attempted to add subscription of more meals of particular type than available at the moment
+     * @throws NoSuchMealException when meal type is not a registered meal
+     * @throws NoSuchSubscriberException when subscriber is not a registered subscriber
+     */
+    public void addMealSubscription(String fName, String lName, String mealType, int mealQuantity) throws IllegalSubscriptionQuantityException, IllegalMealQuantityException {
+        ValidationResult result = tryAddMealSubscription(fName, lName, mealType, mealQuantity);
+        if (!result.isOk())
+        {
+            throw result.toException(describe(result, fName, lName, mealType, mealQuantity));
+        }
+    }
+
+    /**
+     * Adds meal subscription while the subscriber's lock is held, see {@link #tryAddMealSubscription(String, String, String, int)}.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type
+     * @param mealQuantity quantity of meals of the specified meal type
+     * @return ValidationResult of the change
+     */
+    private ValidationResult addMealSubscriptionLocked(String fName, String lName, String mealType, int mealQuantity)
+    {
+        //subscriptions are stored by ids of the subscriber and the meal
+        int subscriberId = registry.subscriberId(fName, lName);
+        if (subscriberId < 0)
+        {
+            return ValidationResult.NO_SUCH_SUBSCRIBER;
+        }
+        //max limit of subscriptions = 3 different meal types per subscriber
+        //use variable numberMealsSubscribed to check number of existing subscriptions per subscriber, looked up in the registry
+        int numberMealsSubscribed = registry.countSubscriptions(subscriberId);
+        //max limit of subscriptions reached
+        if (numberMealsSubscribed == MAX_MEAL_TYPES)
+        {
+            return ValidationResult.MEAL_TYPE_LIMIT_REACHED;
+        }
+
+        //take the meals from the balance of available meals first, so no other clerk can take the same meals
+        int mealId = registry.mealId(mealType);
+        if (mealId < 0)
+        {
+            return ValidationResult.NO_SUCH_MEAL;
+        }
+        if (!registry.getMeal(mealId).tryReserve(mealQuantity))
+        {
+            return ValidationResult.NOT_ENOUGH_MEALS;
+        }
+
+        //adding subscription
+        //quantity of the existing subscription of the same meal type, 0 adds a new subscription if meal of specified type hasn't been subscribed to yet
+        int quantityExisting = registry.getQuantity(subscriberId, mealId);
+        registry.setQuantity(subscriberId, mealId, quantityExisting + mealQuantity);
+        publish(quantityExisting == 0 ? ChangeEvent.Type.SUBSCRIPTION_ADDED : ChangeEvent.Type.QUANTITY_INCREASED,
+                fName, lName, mealType, mealId, mealQuantity, quantityExisting + mealQuantity);
+        return ValidationResult.OK;
+    }
+
+    /**
+     * Removes meal subscription or removes meals from subscription stored in the registry, and returns the meals to the balance of available meals.
+     * <p>The subscription is changed under the subscriber's lock and the meals are returned atomically.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type
+     * @param mealQuantity quantity of meals of the specified meal type
+     * @return ValidationResult {@link ValidationResult#OK} if meals were removed, {@link ValidationResult#NO_SUCH_SUBSCRIPTION}
+     * or {@link ValidationResult#TOO_MANY_MEALS_REMOVED} if nothing was changed
+     */
+    public ValidationResult tryRemoveMealSubscription(String fName, String lName, String mealType, int mealQuantity)
+    {
+        long start = System.nanoTime();
+        SubscriptionJournal current = journal;
+        long sequence = 0; //sequence number of the journal record, 0 if nothing was removed
+        ValidationResult result;
+        ReentrantLock subscriberLock = subscriberLock(fName, lName);
+        stateLock.readLock().lock();
+        subscriberLock.lock();
+        try
+        {
+            result = removeMealSubscriptionLocked(fName, lName, mealType, mealQuantity);
+            if (result.isOk() && current != null)
+            {
+                sequence = current.appendRemove(fName, lName, mealType, mealQuantity);
+            }
+        }
+        finally
+        {
+            subscriberLock.unlock();
+            stateLock.readLock().unlock();
+        }
+        //wait without holding locks, so other clerks' records share the same fsync
+        if (sequence > 0 && waitForDurability)
+        {
+            current.awaitDurable(sequence);
+        }
+        metrics.record(SubscriptionMetrics.Operation.REMOVE, result, System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Removes meal subscription like {@link #tryRemoveMealSubscription(String, String, String, int)}, used at the interactive boundary where rule violations are reported with exceptions.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type
+     * @param mealQuantity quantity of meals of the specified meal type
+     * @return boolean true if meals were removed, false if the subscription doesn't exist and nothing was changed
+     * @throws IllegalMealQuantityException when attempted to remove more meals of particular type than there is subscribed to at the moment
+     */
+    public boolean removeMealSubscription(String fName, String lName, String mealType, int mealQuantity) throws IllegalMealQuantityException
+    {
+        ValidationResult result = tryRemoveMealSubscription(fName, lName, mealType, mealQuantity);
+        //nothing is removed if the subscription doesn't exist
+        if (result == ValidationResult.NO_SUCH_SUBSCRIPTION)
+        {
+            return false;
+        }
+        if (!result.isOk())
+        {
+            throw result.toException(describe(result, fName, lName, mealType, mealQuantity));
+        }
+        return true;
+    }
+
+    /**
+     * Removes meal subscription while the subscriber's lock is held, see {@link #tryRemoveMealSubscription(String, String, String, int)}.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type
+     * @param mealQuantity quantity of meals of the specified meal type
+     * @return ValidationResult of the change
+     */
+    private ValidationResult removeMealSubscriptionLocked(String fName, String lName, String mealType, int mealQuantity)
+    {
+        //find the subscription specified with parameters in the registry, quantity 0 if subscription doesn't exist
+        int subscriberId = registry.subscriberId(fName, lName);
+        int mealId = registry.mealId(mealType);
+        int quantitySubscribed = subscriberId < 0 || mealId < 0 ? 0 : registry.getQuantity(subscriberId, mealId);
+        //nothing is removed if the subscription doesn't exist
+        if (quantitySubscribed == 0)
+        {
+            return ValidationResult.NO_SUCH_SUBSCRIPTION;
+        }
+        //attempted to remove more meals than there is subscribed to
+        if (quantitySubscribed < mealQuantity)
+        {
+            return ValidationResult.TOO_MANY_MEALS_REMOVED;
+        }
+        //new quantity of meals in the subscription, 0 removes subscription from the registry
+        registry.setQuantity(subscriberId, mealId, quantitySubscribed - mealQuantity);
+
+        //update balance of available meals after removing subscriptions, see Meal.release(int)
+        registry.getMeal(mealId).release(mealQuantity);
+        publish(quantitySubscribed == mealQuantity ? ChangeEvent.Type.SUBSCRIPTION_REMOVED : ChangeEvent.Type.QUANTITY_DECREASED,
+                fName, lName, mealType, mealId, -mealQuantity, quantitySubscribed - mealQuantity);
+        return ValidationResult.OK;
+    }
+
+    //restocking meals
+    /**
+     * Restocks a meal, i.e. adds meals delivered to the balance of available meals or withdraws meals from it, while clerks keep subscribing to the meal,
+     * see {@link Meal#restock(int)}. A withdrawal takes at most the meals available.
+     * <p>A meal type that isn't registered yet is registered with a balance of 0 before the meals are added, see {@link SubscriptionRegistry#addMeal(Meal)}.
+     * Changes of subscriptions wait only while the meal is registered, as they do for a {@link #snapshot()}.
+     * <p>The meals actually added or withdrawn are appended to the journal and published to the change feed and returned, see {@link RestockResult#isShort()}.
+     * @param mealType name of the meal type
+     * @param delta meals added to the balance, negative for meals withdrawn
+     * @return RestockResult with {@link ValidationResult#OK} and the meals actually added or withdrawn if the meal was restocked,
+     * with {@link ValidationResult#NO_SUCH_MEAL} if meals were to be withdrawn from a meal type that isn't registered
+     */
+    public RestockResult restock(String mealType, int delta)
+    {
+        int mealId = registry.mealId(mealType);
+        if (mealId < 0)
+        {
+            if (delta < 0)
+            {
+                return new RestockResult(ValidationResult.NO_SUCH_MEAL, delta, 0);
+            }
+            //the new meal gets an id while no subscriptions change, so the totals of subscriptions grow without losing a change
+            stateLock.writeLock().lock();
+            try
+            {
+                if (registry.mealId(mealType) < 0)
+                {
+                    registry.addMeal(new Meal(mealType, 0));
+                }
+            }
+            finally
+            {
+                stateLock.writeLock().unlock();
+            }
+            mealId = registry.mealId(mealType);
+        }
+        SubscriptionJournal current = journal;
+        long sequence = 0; //sequence number of the journal record
+        Meal meal = registry.getMeal(mealId);
+        int applied;
+        stateLock.readLock().lock();
+        try
+        {
+            applied = meal.restock(delta);
+            if (current != null)
+            {
+                sequence = current.appendRestock(mealType, applied);
+            }
+            ChangeFeed feed = changeFeed;
+            if (feed != null)
+            {
+                feed.publishRestock(mealType, mealId, applied, meal.getMealBalance());
+            }
+        }
+        finally
+        {
+            stateLock.readLock().unlock();
+        }
+        if (sequence > 0 && waitForDurability)
+        {
+            current.awaitDurable(sequence);
+        }
+        return new RestockResult(ValidationResult.OK, delta, applied);
+    }
+
+    /**
+     * Publishes a change of a subscription to the change feed, if there is one, while the subscriber's lock is held, so changes of a subscriber are published in order.
+     * @param type kind of change
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type
+     * @param mealId id of the meal
+     * @param quantity meals taken from the balance, negative for meals returned
+     * @param subscribed quantity of meals of the subscription after the change
+     */
+    private void publish(ChangeEvent.Type type, String fName, String lName, String mealType, int mealId, int quantity, int subscribed)
+    {
+        ChangeFeed feed = changeFeed;
+        if (feed != null)
+        {
+            feed.publishSubscriptionChange(type, fName, lName, mealType, mealId, quantity, subscribed, registry.getMeal(mealId).getMealBalance());
+        }
+    }
+
+    //methods for validating input without exceptions
+    /**
+     * Checks if subscriber specified with parameters is a registered subscriber.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @return ValidationResult {@link ValidationResult#OK} or {@link ValidationResult#NO_SUCH_SUBSCRIBER}
+     */
+    public ValidationResult checkSubscriber(String fName, String lName)
+    {
+        long start = System.nanoTime();
+        ValidationResult result = registry.subscriberId(fName, lName) >= 0 ? ValidationResult.OK : ValidationResult.NO_SUCH_SUBSCRIBER;
+        metrics.record(SubscriptionMetrics.Operation.CHECK_SUBSCRIBER, result, System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Checks if meal type specified with parameter is a registered meal.
+     * @param mealName name of the meal type
+     * @return ValidationResult {@link ValidationResult#OK} or {@link ValidationResult#NO_SUCH_MEAL}
+     */
+    public ValidationResult checkMeal(String mealName)
+    {
+        long start = System.nanoTime();
+        ValidationResult result = registry.mealId(mealName) >= 0 ? ValidationResult.OK : ValidationResult.NO_SUCH_MEAL;
+        metrics.record(SubscriptionMetrics.Operation.CHECK_MEAL, result, System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Checks if subscriber specified with parameters has subscription(s).
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @return ValidationResult {@link ValidationResult#OK} or {@link ValidationResult#NO_SUBSCRIPTIONS}
+     */
+    public ValidationResult checkSubscriptions(String fName, String lName)
+    {
+        long start = System.nanoTime();
+        ValidationResult result = registry.countSubscriptions(fName, lName) > 0 ? ValidationResult.OK : ValidationResult.NO_SUBSCRIPTIONS;
+        metrics.record(SubscriptionMetrics.Operation.CHECK_SUBSCRIPTIONS, result, System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Checks if there is enough meals of particular type to add to subscription at the moment, the meals are not taken.
+     * @param mealName name of the meal type
+     * @param mealQuantity quantity of meals of the specified meal type
+     * @return ValidationResult {@link ValidationResult#OK} or {@link ValidationResult#NOT_ENOUGH_MEALS}
+     */
+    public ValidationResult checkEnoughMeal(String mealName, int mealQuantity)
+    {
+        long start = System.nanoTime();
+        Meal meal = registry.getMeal(mealName);
+        ValidationResult result = meal != null && meal.getMealBalance() >= mealQuantity ? ValidationResult.OK : ValidationResult.NOT_ENOUGH_MEALS;
+        metrics.record(SubscriptionMetrics.Operation.CHECK_ENOUGH_MEAL, result, System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Builds the message explaining a result to the clerk or the subscriber, the same messages are used by exceptions, batch logs and letters.
+     * Quantities in the messages are read when the message is built.
+     * @param result the result
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type, not used by results about subscribers only
+     * @param mealQuantity quantity of meals of the request, not used by results about names only
+     * @return String message of the result
+     */
+    public String describe(ValidationResult result, String fName, String lName, String mealType, int mealQuantity)
+    {
+        switch (result)
+        {
+            case NO_SUCH_SUBSCRIBER:
+                return "Subscriber \"" + fName + " " + lName + "\" doesn't exist.";
+            case NO_SUCH_MEAL:
+                return "Meal type \"" + mealType + "\" doesn't exist.";
+            case NO_SUBSCRIPTIONS:
+                return "Subscriber \"" + fName + " " + lName + "\" has no subscriptions.";
+            case NO_SUCH_SUBSCRIPTION:
+                return "Subscriber \"" + fName + " " + lName + "\" has no subscription of meal type \"" + mealType + "\".";
+            case MEAL_TYPE_LIMIT_REACHED:
+                return "Subscription cannot be added.\nEach subscriber is allowed to subscribe to a maximum of 3 different meal types and subscriber \"" + fName + " " + lName + "\" has already reached that limit.";
+            case NOT_ENOUGH_MEALS:
+                Meal meal = registry.getMeal(mealType);
+                //quantity of available meals of particular type, 0 if meal is not registered
+                int mealAvailableQuantity = meal == null ? 0 : meal.getMealBalance();
+                return "The number of " + mealType + " meals you would like to add (" + mealQuantity + ") exceeds the number of " + mealType + " meals currently available (" + mealAvailableQuantity + ").";
+            case TOO_MANY_MEALS_REMOVED:
+                Subscription subscribed = registry.getSubscription(fName, lName, mealType);
+                return "The quantity of meals you want to remove (" + mealQuantity + ") exceeds the number of meals " + fName + " " + lName + " is subscribed to (" + (subscribed == null ? 0 : subscribed.getMealSubscribedBalance()) + ").";
+            default:
+                return "OK.";
+        }
+    }
+
+    //methods for validating input at the interactive boundary
+    /**
+     * Validates if subscription of a particular meal type for a particular subscriber specified with parameters exists.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type
+     * @return boolean validSubscription = true if subscription specified with parameters exists (valid)
+     */
+    public boolean isSubscription(String fName, String lName, String mealType)
+    {
+        //check if subscription specified with parameters exists in the subscriptions index of the registry
+        return registry.getSubscription(fName, lName, mealType) != null; //boolean value = true if exists (valid)
+    }
+
+    //overloading isSubscription
+    /**
+     * Validates if a particular subscriber specified with parameters has subscription(s).
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @return boolean validSubscription = true if subscriber specified with parameters has subscription(s) (valid)
+     * @throws NoSuchSubscriptionException when subscriber specified with parameters has no subscriptions
+     */
+    public boolean isSubscription(String fName, String lName) throws NoSuchSubscriptionException
+    {
+        return requireOk(checkSubscriptions(fName, lName), fName, lName, null, 0);
+    }
+
+    /**
+     * Validates if subscriber specified with parameters is actually a registered subscriber.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @return boolean validSubscriber = true if subscriber specified with parameters is a registered subscriber (valid)
+     * @throws NoSuchSubscriberException when subscriber specified with parameters is not a registered subscriber
+     */
+    public boolean isSubscriber(String fName, String lName) throws NoSuchSubscriberException
+    {
+        return requireOk(checkSubscriber(fName, lName), fName, lName, null, 0);
+    }
+
+    /**
+     * Validates if meal type name specified with parameter is actually a registered meal available for subscriptions
+     * @param mealName name of the meal type
+     * @return boolean validMeal = true if meal specified with parameter is a registered meal available for subscriptions
+     * @throws NoSuchMealException when meal type specified with parameter is not a registered meal
+     */
+    public boolean isMeal(String mealName) throws NoSuchMealException
+    {
+        return requireOk(checkMeal(mealName), null, null, mealName, 0);
+    }
+
+    /**
+     * Validates if there is enough meals of particular type specified with parameters to add to subscription.
+     * @param mealName name of the meal type
+     * @param mealQuantity quantity of meals of the specified meal type
+     * @return boolean enoughMeal = true if there is enough meals of specified meal type to subscribe
+     * @throws IllegalMealQuantityException when attempted to add more meals of particular type to a subscription than currently available
+     */
+    public boolean isEnoughMeal(String mealName, int mealQuantity) throws IllegalMealQuantityException
+    {
+        return requireOk(checkEnoughMeal(mealName, mealQuantity), null, null, mealName, mealQuantity);
+    }
+
+    /**
+     * Turns a failed result into its exception.
+     * @param result the result
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type
+     * @param mealQuantity quantity of meals
+     * @return boolean true if the result is {@link ValidationResult#OK}
+     * @throws RuntimeException from {@link subscription.manager.exceptions} matching a failed result
+     */
+    private boolean requireOk(ValidationResult result, String fName, String lName, String mealType, int mealQuantity)
+    {
+        if (!result.isOk())
+        {
+            throw result.toException(describe(result, fName, lName, mealType, mealQuantity));
+        }
+        return true;
+    }
+
+    /**
+     * Selects the lock stripe of a subscriber.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @return ReentrantLock guarding subscriptions of the subscriber
+     */
+    private ReentrantLock subscriberLock(String fName, String lName)
+    {
+        //same hash as Subscriber.hashCode()
+        return subscriberLocks[spread(31 * lName.hashCode() + fName.hashCode())];
+    }
+
+    /**
+     * Mixes high bits of a hash into the low bits and selects a stripe.
+     * @param hash hash code
+     * @return int index of the stripe
+     */
+    private static int spread(int hash)
+    {
+        return (hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1);
+    }
+}
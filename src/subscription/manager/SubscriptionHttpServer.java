@@ -0,0 +1,792 @@
+package subscription.manager;
+
+import subscription.*;
+import subscription.manager.exceptions.*;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A SubscriptionHttpServer lets other programs list meals and subscribers, change subscriptions and fetch letters over HTTP, with the same rules clerks work with.
+ * <p>Endpoints, parameters are taken from the query string, or from a form body ("application/x-www-form-urlencoded") of POST requests:
+ * <ul>
+ *     <li>GET /meals?prefix=&amp;offset=&amp;limit= - page of meals whose name starts with the prefix, see {@link RegistryListing#mealsSlice(String, int, int)}</li>
+ *     <li>GET /subscribers?prefix=&amp;offset=&amp;limit= - page of subscribers whose surname starts with the prefix, with their subscriptions</li>
+ *     <li>GET /subscriptions?firstName=&amp;surname= - subscriptions of one subscriber</li>
+ *     <li>POST /subscriptions/add and POST /subscriptions/remove with firstName, surname, meal and quantity - adds or removes meals through the {@link SubscriptionDesk desk}, letters are sent the same way as in batch mode</li>
+ *     <li>GET /letters?firstName=&amp;surname=&amp;limit= - most recent letters, of one subscriber if the name is given, see {@link LetterService#getRecentLetters(String, String, int)}</li>
+ *     <li>GET /stock - the stock report of the {@link StockMonitor}</li>
+ *     <li>GET /demand?limit= - totals of subscriptions, meal types with most meals subscribed to and subscribers by number of meal types, see {@link MealDemand}</li>
+ *     <li>GET /metrics - metrics in the Prometheus text format, see {@link SubscriptionMetrics#writePrometheus(Appendable)}</li>
+ *     <li>GET /regions?limit= - totals and estimated memory of every region, totals of all regions and meal types with most meals subscribed to in all regions,
+ *     queried in parallel, see {@link PartitionedRegistry}</li>
+ * </ul>
+ * <p>Meals, subscribers, subscriptions, changes and demand are those of the region of the program's input file, or of another region given with the parameter region,
+ * an unknown region is answered with status 404 and the error NO_SUCH_REGION.
+ * <p>Responses are JSON, except the stock report and the metrics which are plain text. Rejected requests are answered with the status matching
+ * the exception the clerk would see: 404 for NoSuchSubscriberException, NoSuchMealException and NoSuchSubscriptionException,
+ * 409 for IllegalSubscriptionQuantityException and IllegalMealQuantityException, 400 for IllegalNumberInputException and other invalid parameters,
+ * and a body like {"error":"NOT_ENOUGH_MEALS","exception":"IllegalMealQuantityException","message":"..."}.
+ * Rules are checked with {@link ValidationResult results}, the status of every result is found once, so rejected requests don't create exceptions either.
+ * <p>Requests are not authenticated, the server listens on the loopback interface unless another interface is given to {@link #start(String, int)}.
+ * <p>Every request is handled on its own virtual thread, a request waiting for a meal's balance, the journal or the letter queue doesn't hold a platform thread,
+ * so many connections are served by a few carrier threads.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class SubscriptionHttpServer implements Closeable {
+    //Fields
+    /**
+     * Number of connections waiting to be accepted before new connections are refused.
+     */
+    private static final int BACKLOG = 1024;
+    /**
+     * System property turning on TCP_NODELAY for connections of the JDK HTTP server.
+     */
+    private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+    /**
+     * Largest number of entries or letters returned by one request.
+     */
+    public static final int MAX_LIMIT = 1000;
+    /**
+     * HTTP status of every {@link ValidationResult}, by ordinal, found from the exception of the result.
+     */
+    private static final int[] RESULT_STATUS = new int[ValidationResult.values().length];
+    /**
+     * Name of the exception of every {@link ValidationResult}, by ordinal.
+     */
+    private static final String[] RESULT_EXCEPTION = new String[ValidationResult.values().length];
+
+    static
+    {
+        for (ValidationResult result : ValidationResult.values())
+        {
+            if (result.isOk())
+            {
+                RESULT_STATUS[result.ordinal()] = 200;
+                continue;
+            }
+            RuntimeException exception = result.toException(null);
+            RESULT_STATUS[result.ordinal()] = statusOf(exception);
+            RESULT_EXCEPTION[result.ordinal()] = exception.getClass().getSimpleName();
+        }
+    }
+
+    /**
+     * The SubscriptionDesk changes to subscriptions are done with.
+     */
+    private final SubscriptionDesk desk;
+    /**
+     * Desk, registry and listing of the region of the program's input file, used when a request doesn't give a region.
+     */
+    private final Scope home;
+    /**
+     * The PartitionedRegistry of all regions, by default only the region of the desk.
+     */
+    private volatile PartitionedRegistry regions;
+    /**
+     * The LetterService recent letters are fetched from.
+     */
+    private final LetterService letters;
+    /**
+     * The StockMonitor of the stock report, null if there is none.
+     */
+    private final StockMonitor stockMonitor;
+    /**
+     * Number of entries returned when a request doesn't specify a limit.
+     */
+    private final int defaultLimit;
+    /**
+     * The HttpServer accepting connections, null until the server is started.
+     */
+    private HttpServer server;
+    /**
+     * The ExecutorService starting a virtual thread for every request.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Desk, registry and listing of the region a request is about.
+     * @param desk SubscriptionDesk changes to subscriptions are done with
+     * @param registry SubscriptionRegistry listed meals and subscribers are read from
+     * @param listing RegistryListing pages of meals and subscribers are found with
+     */
+    private record Scope(SubscriptionDesk desk, SubscriptionRegistry registry, RegistryListing listing)
+    {
+    }
+
+    /**
+     * A response to a request.
+     * @param status HTTP status
+     * @param contentType media type of the body
+     * @param body text of the body
+     */
+    private record Response(int status, String contentType, String body)
+    {
+        /**
+         * Creates a JSON response.
+         * @param status HTTP status
+         * @param json JSON text of the body
+         * @return Response with the JSON body
+         */
+        static Response json(int status, CharSequence json)
+        {
+            return new Response(status, "application/json; charset=utf-8", json.toString());
+        }
+
+        /**
+         * Creates a plain text response.
+         * @param text text of the body
+         * @return Response with status 200
+         */
+        static Response text(CharSequence text)
+        {
+            return new Response(200, "text/plain; charset=utf-8", text.toString());
+        }
+    }
+
+    //Constructor
+    /**
+     * SubscriptionHttpServer constructor specifying the desk changes are done with, the letters and the stock monitor.
+     * @param desk SubscriptionDesk changes to subscriptions are done with
+     * @param letters LetterService recent letters are fetched from
+     * @param stockMonitor StockMonitor of the stock report, null if there is none
+     * @param defaultLimit number of entries returned when a request doesn't specify a limit
+     */
+    public SubscriptionHttpServer(SubscriptionDesk desk, LetterService letters, StockMonitor stockMonitor, int defaultLimit)
+    {
+        this.desk = desk;
+        this.home = new Scope(desk, desk.getEngine().getRegistry(), new RegistryListing(desk.getEngine().getRegistry()));
+        this.regions = new PartitionedRegistry(List.of(new Region("main", desk.getEngine(), letters)), ForkJoinPool.commonPool());
+        this.letters = letters;
+        this.stockMonitor = stockMonitor;
+        this.defaultLimit = Math.min(Math.max(defaultLimit, 1), MAX_LIMIT);
+    }
+
+    //Methods
+    /**
+     * Sets the regions requests can give with the parameter region and GET /regions reports on.
+     * @param regions PartitionedRegistry of all regions, including the region of the desk
+     */
+    public void setRegions(PartitionedRegistry regions)
+    {
+        this.regions = regions;
+    }
+
+    /**
+     * Starts accepting requests on a port of the loopback interface, only programs on the same computer can connect.
+     * @param port port number, 0 for any free port
+     * @throws IOException when the port can't be bound
+     */
+    public void start(int port) throws IOException
+    {
+        start(null, port);
+    }
+
+    /**
+     * Starts accepting requests on a port of one network interface. Requests are not authenticated,
+     * so other interfaces than the loopback interface should only be used on a trusted network.
+     * @param host name or address of the interface, e.g. "0.0.0.0" for all interfaces, null for the loopback interface
+     * @param port port number, 0 for any free port
+     * @throws IOException when the host is unknown or the port can't be bound
+     */
+    public void start(String host, int port) throws IOException
+    {
+        //headers and body are written separately, without TCP_NODELAY every response on a kept-alive connection waits about 40 ms for a delayed ACK,
+        //the JDK server reads the option once, when the first server is created
+        if (System.getProperty(NO_DELAY_PROPERTY) == null)
+        {
+            System.setProperty(NO_DELAY_PROPERTY, "true");
+        }
+        InetAddress address = host == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(host);
+        server = HttpServer.create(new InetSocketAddress(address, port), BACKLOG);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Getter for the address requests are accepted on.
+     * @return String address of the interface, null if the server isn't started
+     */
+    public String getHost()
+    {
+        return server == null ? null : server.getAddress().getAddress().getHostAddress();
+    }
+
+    /**
+     * Getter for the port requests are accepted on.
+     * @return int port number, -1 if the server isn't started
+     */
+    public int getPort()
+    {
+        return server == null ? -1 : server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting requests, requests in progress are given a second to finish. Does nothing if the server isn't started.
+     */
+    @Override
+    public void close()
+    {
+        if (server == null)
+        {
+            return;
+        }
+        server.stop(1);
+        //waits for the virtual threads of requests still running
+        executor.close();
+        server = null;
+    }
+
+    /**
+     * Handles one request: finds the endpoint, answers it and sends the response.
+     * Invalid parameters are answered with status 400, unexpected failures with status 500, the server keeps running.
+     * @param exchange the request and its response
+     * @throws IOException when the response can't be sent
+     */
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        Response response;
+        try
+        {
+            response = route(exchange.getRequestMethod(), exchange.getRequestURI().getPath(), parameters(exchange));
+        }
+        catch (RuntimeException exception)
+        {
+            int status = statusOf(exception);
+            response = error(status, status == 500 ? "INTERNAL_ERROR" : "INVALID_REQUEST", exception.getClass().getSimpleName(), exception.getMessage());
+        }
+        byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", response.contentType());
+        exchange.sendResponseHeaders(response.status(), body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody())
+        {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Finds the endpoint of a request and answers it.
+     * @param method HTTP method of the request
+     * @param path path of the request
+     * @param parameters parameters of the request
+     * @return Response to the request
+     */
+    private Response route(String method, String path, Map<String, String> parameters)
+    {
+        String expected = path.startsWith("/subscriptions/") ? "POST" : "GET";
+        switch (path)
+        {
+            case "/meals":
+            case "/subscribers":
+            case "/subscriptions":
+            case "/subscriptions/add":
+            case "/subscriptions/remove":
+            case "/letters":
+            case "/stock":
+            case "/demand":
+            case "/metrics":
+            case "/regions":
+                break;
+            default:
+                return error(404, "NOT_FOUND", null, "There is no endpoint " + path + ".");
+        }
+        if (!method.equals(expected))
+        {
+            return error(405, "METHOD_NOT_ALLOWED", null, "Use " + expected + " for " + path + ".");
+        }
+        Scope scope = home;
+        String regionName = parameters.get("region");
+        if (regionName != null && !regionName.isEmpty())
+        {
+            Region region = regions.getRegion(regionName);
+            if (region == null)
+            {
+                return error(404, "NO_SUCH_REGION", null, "There is no region " + regionName + ".");
+            }
+            scope = new Scope(region.getDesk(), region.getRegistry(), region.getListing());
+        }
+        switch (path)
+        {
+            case "/meals":
+                return meals(scope, parameters);
+            case "/subscribers":
+                return subscribers(scope, parameters);
+            case "/subscriptions":
+                return subscriptions(scope, parameters);
+            case "/subscriptions/add":
+                return change(scope, parameters, true);
+            case "/subscriptions/remove":
+                return change(scope, parameters, false);
+            case "/letters":
+                return letters(parameters);
+            case "/stock":
+                return Response.text(stockMonitor == null ? "There is no stock monitor.\n" : stockMonitor.report());
+            case "/demand":
+                return demand(scope, parameters);
+            case "/regions":
+                return regions(parameters);
+            default:
+                return metrics();
+        }
+    }
+
+    /**
+     * Answers GET /meals with a page of meals.
+     * @param scope region of the request
+     * @param parameters prefix, offset and limit, all optional
+     * @return Response with the page of meals
+     */
+    private Response meals(Scope scope, Map<String, String> parameters)
+    {
+        RegistryListing.Slice<Meal> slice = scope.listing().mealsSlice(parameters.getOrDefault("prefix", ""),
+                intParameter(parameters, "offset", 0), Math.min(intParameter(parameters, "limit", defaultLimit), MAX_LIMIT));
+        StringBuilder json = new StringBuilder(64 + slice.entries().size() * 48);
+        appendSliceStart(json, slice);
+        for (int i = 0; i < slice.entries().size(); i++)
+        {
+            Meal meal = slice.entries().get(i);
+            json.append(i == 0 ? "" : ",").append("{\"name\":");
+            appendString(json, meal.getMealName());
+            json.append(",\"balance\":").append(meal.getMealBalance()).append('}');
+        }
+        return Response.json(200, json.append("]}"));
+    }
+
+    /**
+     * Answers GET /subscribers with a page of subscribers and their subscriptions.
+     * @param scope region of the request
+     * @param parameters prefix, offset and limit, all optional
+     * @return Response with the page of subscribers
+     */
+    private Response subscribers(Scope scope, Map<String, String> parameters)
+    {
+        RegistryListing.Slice<Subscriber> slice = scope.listing().subscribersSlice(parameters.getOrDefault("prefix", ""),
+                intParameter(parameters, "offset", 0), Math.min(intParameter(parameters, "limit", defaultLimit), MAX_LIMIT));
+        StringBuilder json = new StringBuilder(64 + slice.entries().size() * 128);
+        appendSliceStart(json, slice);
+        for (int i = 0; i < slice.entries().size(); i++)
+        {
+            json.append(i == 0 ? "" : ",");
+            appendSubscriber(json, scope.registry(), slice.entries().get(i));
+        }
+        return Response.json(200, json.append("]}"));
+    }
+
+    /**
+     * Answers GET /subscriptions with the subscriptions of one subscriber.
+     * @param scope region of the request
+     * @param parameters firstName and surname
+     * @return Response with the subscriber and its subscriptions, status 404 if the subscriber isn't registered
+     */
+    private Response subscriptions(Scope scope, Map<String, String> parameters)
+    {
+        String fName = requiredParameter(parameters, "firstName");
+        String lName = requiredParameter(parameters, "surname");
+        Subscriber subscriber = scope.registry().getSubscriber(fName, lName);
+        if (subscriber == null)
+        {
+            return rejected(scope, ValidationResult.NO_SUCH_SUBSCRIBER, fName, lName, null, 0);
+        }
+        StringBuilder json = new StringBuilder(128);
+        appendSubscriber(json, scope.registry(), subscriber);
+        return Response.json(200, json);
+    }
+
+    /**
+     * Answers POST /subscriptions/add and POST /subscriptions/remove through the desk of the region.
+     * @param scope region of the request
+     * @param parameters firstName, surname, meal and quantity
+     * @param add true to add meals, false to remove meals
+     * @return Response with the changed subscriptions of the subscriber, or the rule that rejected the change
+     * @throws IllegalNumberInputException when the quantity is not a number greater than 0
+     */
+    private Response change(Scope scope, Map<String, String> parameters, boolean add)
+    {
+        String fName = requiredParameter(parameters, "firstName");
+        String lName = requiredParameter(parameters, "surname");
+        String mealType = requiredParameter(parameters, "meal");
+        int mealQuantity = intParameter(parameters, "quantity", 0);
+        if (mealQuantity <= 0)
+        {
+            throw new IllegalNumberInputException("The number of meals needs to be greater than 0.");
+        }
+        SubscriptionDesk desk = scope.desk();
+        ValidationResult result = add ? desk.add(fName, lName, mealType, mealQuantity) : desk.remove(fName, lName, mealType, mealQuantity);
+        if (!result.isOk())
+        {
+            return rejected(scope, result, fName, lName, mealType, mealQuantity);
+        }
+        StringBuilder json = new StringBuilder(128);
+        appendSubscriber(json, scope.registry(), scope.registry().getSubscriber(fName, lName));
+        return Response.json(200, json);
+    }
+
+    /**
+     * Answers GET /letters with the most recent letters.
+     * @param parameters firstName and surname to fetch the letters of one subscriber, and limit, all optional
+     * @return Response with the letters, newest first
+     */
+    private Response letters(Map<String, String> parameters)
+    {
+        String fName = parameters.get("firstName");
+        String lName = parameters.get("surname");
+        if ((fName == null) != (lName == null))
+        {
+            throw new IllegalArgumentException("Both firstName and surname are needed to fetch letters of a subscriber.");
+        }
+        List<String> recent = letters.getRecentLetters(fName, lName, Math.min(intParameter(parameters, "limit", defaultLimit), MAX_LIMIT));
+        StringBuilder json = new StringBuilder(32 + recent.size() * 256).append("{\"letters\":[");
+        for (int i = 0; i < recent.size(); i++)
+        {
+            json.append(i == 0 ? "" : ",");
+            appendString(json, recent.get(i));
+        }
+        return Response.json(200, json.append("]}"));
+    }
+
+    /**
+     * Answers GET /demand with the totals of the subscriptions, read from the {@link MealDemand} without scanning subscriptions.
+     * @param scope region of the request
+     * @param parameters limit of meal types with most meals subscribed to, optional
+     * @return Response with the demand
+     */
+    private Response demand(Scope scope, Map<String, String> parameters)
+    {
+        SubscriptionRegistry registry = scope.registry();
+        MealDemand demand = registry.getDemand();
+        List<MealDemand.MealTotal> top = demand.getTopMeals(Math.min(intParameter(parameters, "limit", MealDemand.DEFAULT_TOP), MAX_LIMIT));
+        StringBuilder json = new StringBuilder(128 + top.size() * 96).append("{\"subscriptions\":").append(registry.getSubscriptionCount())
+                .append(",\"subscribers\":").append(registry.getSubscriberCount()).append(",\"topMeals\":");
+        appendMealTotals(json, top);
+        json.append(",\"subscribersByMealTypes\":[");
+        long[] distribution = demand.getTypeDistribution();
+        for (int types = 0; types < distribution.length; types++)
+        {
+            json.append(types == 0 ? "" : ",").append(distribution[types]);
+        }
+        return Response.json(200, json.append("]}"));
+    }
+
+    /**
+     * Answers GET /regions with the totals and estimated memory of every region and of all regions, the regions are queried in parallel.
+     * @param parameters limit of meal types with most meals subscribed to in all regions, optional
+     * @return Response with the regions
+     */
+    private Response regions(Map<String, String> parameters)
+    {
+        PartitionedRegistry regions = this.regions;
+        List<PartitionedRegistry.RegionSummary> summaries = regions.summarize();
+        List<MealDemand.MealTotal> top = regions.getTopMeals(Math.min(intParameter(parameters, "limit", MealDemand.DEFAULT_TOP), MAX_LIMIT));
+        StringBuilder json = new StringBuilder(128 + summaries.size() * 384 + top.size() * 96).append("{\"regions\":[");
+        Region.Totals totals = null;
+        SubscriptionRegistry.MemoryEstimate memory = null;
+        for (int i = 0; i < summaries.size(); i++)
+        {
+            PartitionedRegistry.RegionSummary summary = summaries.get(i);
+            json.append(i == 0 ? "{\"name\":" : ",{\"name\":");
+            appendString(json, summary.name());
+            json.append(',');
+            appendRegion(json, summary.totals(), summary.memory());
+            json.append('}');
+            totals = totals == null ? summary.totals() : totals.plus(summary.totals());
+            memory = memory == null ? summary.memory() : memory.plus(summary.memory());
+        }
+        json.append("],\"all\":{");
+        appendRegion(json, totals, memory);
+        json.append("},\"topMeals\":");
+        appendMealTotals(json, top);
+        return Response.json(200, json.append('}'));
+    }
+
+    /**
+     * Answers GET /metrics with the metrics in the Prometheus text format.
+     * @return Response with the metrics
+     */
+    private Response metrics()
+    {
+        StringBuilder text = new StringBuilder(8192);
+        try
+        {
+            desk.getEngine().getMetrics().writePrometheus(text);
+        }
+        catch (IOException exception)
+        {
+            throw new IllegalStateException(exception); //a StringBuilder doesn't throw
+        }
+        return new Response(200, "text/plain; version=0.0.4; charset=utf-8", text.toString());
+    }
+
+    /**
+     * Creates the response to a change or look up rejected by a rule, with the message the clerk would see.
+     * @param scope region of the request
+     * @param result the rule that rejected the request
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type, null if there is none
+     * @param mealQuantity quantity of meals, 0 if there is none
+     * @return Response with the status of the result
+     */
+    private Response rejected(Scope scope, ValidationResult result, String fName, String lName, String mealType, int mealQuantity)
+    {
+        return error(RESULT_STATUS[result.ordinal()], result.name(), RESULT_EXCEPTION[result.ordinal()],
+                scope.desk().getEngine().describe(result, fName, lName, mealType, mealQuantity));
+    }
+
+    /**
+     * Creates an error response.
+     * @param status HTTP status
+     * @param error name of the error, e.g. a {@link ValidationResult}
+     * @param exception simple name of the exception the clerk would see, null if there is none
+     * @param message message of the error, null if there is none
+     * @return Response with the error
+     */
+    private static Response error(int status, String error, String exception, String message)
+    {
+        StringBuilder json = new StringBuilder(128).append("{\"error\":");
+        appendString(json, error);
+        if (exception != null)
+        {
+            json.append(",\"exception\":");
+            appendString(json, exception);
+        }
+        json.append(",\"message\":");
+        appendString(json, message == null ? "" : message);
+        return Response.json(status, json.append('}'));
+    }
+
+    /**
+     * Finds the HTTP status of an exception by its class.
+     * @param exception the exception
+     * @return int 404 for missing subscribers, meals and subscriptions, 409 for quantities breaking a rule, 400 for other invalid input, otherwise 500
+     */
+    private static int statusOf(RuntimeException exception)
+    {
+        if (exception instanceof NoSuchSubscriberException || exception instanceof NoSuchMealException || exception instanceof NoSuchSubscriptionException)
+        {
+            return 404;
+        }
+        if (exception instanceof IllegalSubscriptionQuantityException || exception instanceof IllegalMealQuantityException)
+        {
+            return 409;
+        }
+        if (exception instanceof IllegalArgumentException || exception instanceof NoSuchElementException)
+        {
+            //IllegalNumberInputException, missing parameters and malformed escapes
+            return 400;
+        }
+        return 500;
+    }
+
+    /**
+     * Reads the parameters of a request from the query string and, for POST requests, from a form body.
+     * @param exchange the request
+     * @return Map of decoded parameter names to values, the first value of a repeated parameter is kept
+     * @throws IOException when the body can't be read
+     */
+    private static Map<String, String> parameters(HttpExchange exchange) throws IOException
+    {
+        Map<String, String> parameters = new HashMap<String, String>();
+        parseForm(exchange.getRequestURI().getRawQuery(), parameters);
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded"))
+        {
+            try (InputStream in = exchange.getRequestBody())
+            {
+                parseForm(new String(in.readAllBytes(), StandardCharsets.UTF_8), parameters);
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Decodes "name=value" pairs separated by '&amp;' into a map.
+     * @param form encoded pairs, null if there are none
+     * @param parameters Map the decoded pairs are put into
+     */
+    private static void parseForm(String form, Map<String, String> parameters)
+    {
+        if (form == null || form.isEmpty())
+        {
+            return;
+        }
+        for (String pair : form.split("&"))
+        {
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            parameters.putIfAbsent(name, value);
+        }
+    }
+
+    /**
+     * Reads a parameter that has to be given.
+     * @param parameters parameters of the request
+     * @param name name of the parameter
+     * @return String value of the parameter
+     * @throws IllegalArgumentException when the parameter is missing or empty
+     */
+    private static String requiredParameter(Map<String, String> parameters, String name)
+    {
+        String value = parameters.get(name);
+        if (value == null || value.isEmpty())
+        {
+            throw new IllegalArgumentException("Parameter \"" + name + "\" is missing.");
+        }
+        return value;
+    }
+
+    /**
+     * Reads a number parameter.
+     * @param parameters parameters of the request
+     * @param name name of the parameter
+     * @param defaultValue value used when the parameter is missing
+     * @return int value of the parameter
+     * @throws IllegalNumberInputException when the value is not a number
+     */
+    private static int intParameter(Map<String, String> parameters, String name, int defaultValue)
+    {
+        String value = parameters.get(name);
+        if (value == null || value.isEmpty())
+        {
+            return defaultValue;
+        }
+        try
+        {
+            return Integer.parseInt(value.trim());
+        }
+        catch (NumberFormatException exception)
+        {
+            throw new IllegalNumberInputException("Parameter \"" + name + "\" must be a number.");
+        }
+    }
+
+    /**
+     * Appends the position of a page and the start of its entries to a JSON object.
+     * @param json StringBuilder the JSON is appended to
+     * @param slice the page
+     */
+    private static void appendSliceStart(StringBuilder json, RegistryListing.Slice<?> slice)
+    {
+        json.append("{\"offset\":").append(slice.offset()).append(",\"count\":").append(slice.entries().size())
+                .append(",\"total\":").append(slice.total()).append(",\"entries\":[");
+    }
+
+    /**
+     * Appends meal types with their demand as a JSON array.
+     * @param json StringBuilder the JSON is appended to
+     * @param totals demand of the meal types
+     */
+    private static void appendMealTotals(StringBuilder json, List<MealDemand.MealTotal> totals)
+    {
+        json.append('[');
+        for (int i = 0; i < totals.size(); i++)
+        {
+            MealDemand.MealTotal total = totals.get(i);
+            json.append(i == 0 ? "{\"meal\":" : ",{\"meal\":");
+            appendString(json, total.mealName());
+            json.append(",\"quantity\":").append(total.quantity()).append(",\"subscribers\":").append(total.subscribers())
+                    .append(",\"balance\":").append(total.balance()).append('}');
+        }
+        json.append(']');
+    }
+
+    /**
+     * Appends the totals and estimated memory of a region as members of a JSON object.
+     * @param json StringBuilder the JSON is appended to
+     * @param totals totals of the region
+     * @param memory estimated memory of the region
+     */
+    private static void appendRegion(StringBuilder json, Region.Totals totals, SubscriptionRegistry.MemoryEstimate memory)
+    {
+        json.append("\"subscribers\":").append(totals.subscribers()).append(",\"subscriptions\":").append(totals.subscriptions())
+                .append(",\"mealTypes\":").append(totals.mealTypes()).append(",\"subscribedMeals\":").append(totals.subscribedMeals())
+                .append(",\"availableMeals\":").append(totals.availableMeals())
+                .append(",\"memory\":{\"heapBytes\":").append(memory.heapBytes()).append(",\"subscriberBytes\":").append(memory.subscriberBytes())
+                .append(",\"nameBytes\":").append(memory.nameBytes()).append(",\"indexBytes\":").append(memory.indexBytes())
+                .append(",\"heapStoreBytes\":").append(memory.heapStoreBytes()).append(",\"offHeapStoreBytes\":").append(memory.offHeapStoreBytes()).append('}');
+    }
+
+    /**
+     * Appends a subscriber and its subscriptions as a JSON object.
+     * @param json StringBuilder the JSON is appended to
+     * @param registry SubscriptionRegistry of the subscriber
+     * @param subscriber the subscriber
+     */
+    private static void appendSubscriber(StringBuilder json, SubscriptionRegistry registry, Subscriber subscriber)
+    {
+        json.append("{\"firstName\":");
+        appendString(json, subscriber.getFirstName());
+        json.append(",\"surname\":");
+        appendString(json, subscriber.getSurname());
+        json.append(",\"subscriptions\":[");
+        List<Subscription> subscriptions = registry.getSubscriptions(subscriber);
+        for (int i = 0; i < subscriptions.size(); i++)
+        {
+            json.append(i == 0 ? "{\"meal\":" : ",{\"meal\":");
+            appendString(json, subscriptions.get(i).getMealSubscribed());
+            json.append(",\"quantity\":").append(subscriptions.get(i).getMealSubscribedBalance()).append('}');
+        }
+        json.append("]}");
+    }
+
+    /**
+     * Appends a text as a JSON string, escaping quotes, backslashes and control characters.
+     * @param json StringBuilder the JSON is appended to
+     * @param text the text
+     */
+    private static void appendString(StringBuilder json, String text)
+    {
+        json.append('"');
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            switch (c)
+            {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                    {
+                        json.append(String.format("\\u%04x", (int) c));
+                    }
+                    else
+                    {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
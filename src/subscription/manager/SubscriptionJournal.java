@@ -0,0 +1,959 @@
+package subscription.manager;
+
+import subscription.Meal;
+import subscription.Subscriber;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A SubscriptionJournal keeps subscriptions and balances of meals on disk, so they survive a restart of the {@link MainProgram program}.
+ * <p>Every subscription change done by the {@link SubscriptionEngine engine} is appended to a journal file as a small binary record with a checksum.
+ * Records are written through a FileChannel by one committer thread, which writes everything appended since its last write and then forces it to disk once,
+ * so many changes share one fsync (group commit) instead of waiting for an fsync each.
+ * <p>From time to time the whole state is written to a compact binary snapshot and a new journal file (segment) is started,
+ * segments older than the snapshot are deleted. Snapshots are written to a temporary file and moved over the previous snapshot, so a crash never leaves a half-written snapshot.
+ * <p>On restart {@link #open(Path, SubscriptionRegistry)} loads the latest snapshot into the registry and replays the journal segments written after it.
+ * A record torn by a crash at the end of the last segment is cut off, a damaged record anywhere else stops the recovery with an IOException.
+ * <p>Files in the data directory:
+ * <ul>
+ *     <li>
+ *         snapshot.bin - meals with balances followed by subscribers with their subscriptions, meal types are stored as positions in the meal table
+ *     </li>
+ *     <li>
+ *         journal-0000000001.log - records "length, checksum, operation, quantity, first name, surname, meal type" appended after the snapshot,
+ *         restocks of meals are records with empty names
+ *     </li>
+ * </ul>
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class SubscriptionJournal implements Closeable {
+    //Fields
+    /**
+     * Name of the snapshot file.
+     */
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    /**
+     * Name of the temporary file a new snapshot is written to.
+     */
+    private static final String SNAPSHOT_TEMP_FILE = "snapshot.tmp";
+    /**
+     * Prefix of the journal segment files.
+     */
+    private static final String SEGMENT_PREFIX = "journal-";
+    /**
+     * Suffix of the journal segment files.
+     */
+    private static final String SEGMENT_SUFFIX = ".log";
+    /**
+     * First bytes of a snapshot file, "SMSN".
+     */
+    private static final int SNAPSHOT_MAGIC = 0x534D534E;
+    /**
+     * Version of the snapshot format.
+     */
+    private static final int SNAPSHOT_VERSION = 1;
+    /**
+     * Operation of a record adding meals to a subscription.
+     */
+    private static final byte ADD = 'a';
+    /**
+     * Operation of a record removing meals from a subscription.
+     */
+    private static final byte REMOVE = 'r';
+    /**
+     * Operation of a record of meals added to or withdrawn from the balance of a meal, the names of the subscriber are empty.
+     */
+    private static final byte RESTOCK = 's';
+    /**
+     * Length of the record header, i.e. length of the record and its checksum.
+     */
+    private static final int HEADER_SIZE = 8;
+    /**
+     * Smallest length of a record, operation, quantity and three empty names.
+     */
+    private static final int MIN_RECORD_SIZE = 1 + 4 + 3 * 2;
+    /**
+     * Largest length of a record, operation, quantity and three names of the largest length.
+     */
+    private static final int MAX_RECORD_SIZE = 1 + 4 + 3 * (2 + 0xFFFF);
+    /**
+     * Size of the buffers records are collected in and journal segments are read with.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+    /**
+     * Size of the buffers of snapshot streams.
+     */
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The data directory with the snapshot and journal segments.
+     */
+    private final Path directory;
+    /**
+     * Lock guarding the buffers, sequence numbers and state of the committer.
+     */
+    private final Object lock = new Object();
+    /**
+     * Lock guarding the channel of the current segment, held while records are written and while the segment is changed.
+     */
+    private final Object channelLock = new Object();
+    /**
+     * Checksum of records, used under the lock.
+     */
+    private final CRC32C recordChecksum = new CRC32C();
+    /**
+     * Records appended and not yet taken by the committer.
+     */
+    private ByteBuffer pending = ByteBuffer.allocate(BUFFER_SIZE);
+    /**
+     * Buffer the committer writes from, swapped with pending.
+     */
+    private ByteBuffer writing = ByteBuffer.allocate(BUFFER_SIZE);
+    /**
+     * Channel of the current journal segment.
+     */
+    private FileChannel channel;
+    /**
+     * Number of the current journal segment.
+     */
+    private long segment;
+    /**
+     * Sequence number of the last appended record.
+     */
+    private long appendedSequence;
+    /**
+     * Sequence number of the last record forced to disk.
+     */
+    private long durableSequence;
+    /**
+     * Number of times the journal was forced to disk.
+     */
+    private long syncs;
+    /**
+     * Failure writing the journal, no records can be appended after a failure.
+     */
+    private IOException failure;
+    /**
+     * True once the journal is closed.
+     */
+    private boolean closed;
+    /**
+     * The committer thread writing and forcing records to disk.
+     */
+    private final Thread committer;
+    /**
+     * Number of subscriptions loaded from the snapshot by the recovery.
+     */
+    private int subscriptionsRecovered;
+    /**
+     * Number of journal records replayed by the recovery.
+     */
+    private long recordsReplayed;
+    /**
+     * Time taken by the recovery in nanoseconds.
+     */
+    private long recoveryNanos;
+
+    //Constructor
+    /**
+     * SubscriptionJournal constructor specifying the data directory, the journal is ready for records once {@link #recover(SubscriptionRegistry)} opened a segment.
+     * @param directory the data directory with the snapshot and journal segments
+     */
+    private SubscriptionJournal(Path directory)
+    {
+        this.directory = directory;
+        committer = new Thread(this::commit, "journal-committer");
+        committer.setDaemon(true);
+    }
+
+    //Methods
+    /**
+     * Opens the journal in the data directory, loads the latest snapshot and replays the journal into the registry and starts a new journal segment.
+     * The registry should already contain subscribers and meals read from the input file, balances of meals are then replaced with the recovered balances.
+     * @param directory the data directory, created if it doesn't exist
+     * @param registry registry the state is recovered into
+     * @return SubscriptionJournal ready for records
+     * @throws IOException when the data directory can't be read or written, or the snapshot or a journal segment is damaged
+     */
+    public static SubscriptionJournal open(Path directory, SubscriptionRegistry registry) throws IOException
+    {
+        Files.createDirectories(directory);
+        SubscriptionJournal journal = new SubscriptionJournal(directory);
+        journal.recover(registry);
+        journal.committer.start();
+        return journal;
+    }
+
+    /**
+     * Loads the snapshot, replays the segments written after the snapshot in order, deletes older segments and opens a new segment.
+     * @param registry registry the state is recovered into
+     * @throws IOException when the snapshot or a journal segment is damaged or can't be read
+     */
+    private void recover(SubscriptionRegistry registry) throws IOException
+    {
+        long start = System.nanoTime();
+        long firstSegment = 1;
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot))
+        {
+            firstSegment = readSnapshot(snapshot, registry);
+        }
+        List<Long> segments = listSegments();
+        long lastSegment = firstSegment - 1;
+        for (int i = 0; i < segments.size(); i++)
+        {
+            long number = segments.get(i);
+            if (number < firstSegment)
+            {
+                //already contained in the snapshot
+                Files.delete(segmentPath(number));
+            }
+            else
+            {
+                replaySegment(segmentPath(number), registry, i == segments.size() - 1);
+                lastSegment = number;
+            }
+        }
+        //new records always go to a new segment
+        segment = lastSegment + 1;
+        channel = openSegment(segment);
+        recoveryNanos = System.nanoTime() - start;
+    }
+
+    //appending records
+    /**
+     * Appends a record of meals added to a subscription, the record is written to disk by the committer thread.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type
+     * @param mealQuantity quantity of meals added
+     * @return long sequence number of the record, see {@link #awaitDurable(long)}
+     * @throws UncheckedIOException when writing the journal failed before
+     * @throws IllegalStateException when the journal is closed
+     */
+    public long appendAdd(String fName, String lName, String mealType, int mealQuantity)
+    {
+        return append(ADD, fName, lName, mealType, mealQuantity);
+    }
+
+    /**
+     * Appends a record of meals removed from a subscription, the record is written to disk by the committer thread.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type
+     * @param mealQuantity quantity of meals removed
+     * @return long sequence number of the record, see {@link #awaitDurable(long)}
+     * @throws UncheckedIOException when writing the journal failed before
+     * @throws IllegalStateException when the journal is closed
+     */
+    public long appendRemove(String fName, String lName, String mealType, int mealQuantity)
+    {
+        return append(REMOVE, fName, lName, mealType, mealQuantity);
+    }
+
+    /**
+     * Appends a record of meals added to or withdrawn from the balance of a meal, the record is written to disk by the committer thread.
+     * A meal type not registered at recovery is registered by the record.
+     * @param mealType name of the meal type
+     * @param mealQuantity meals actually added to the balance, negative for meals actually withdrawn
+     * @return long sequence number of the record, see {@link #awaitDurable(long)}
+     * @throws UncheckedIOException when writing the journal failed before
+     * @throws IllegalStateException when the journal is closed
+     */
+    public long appendRestock(String mealType, int mealQuantity)
+    {
+        return append(RESTOCK, "", "", mealType, mealQuantity);
+    }
+
+    /**
+     * Encodes a record into the pending buffer and wakes the committer.
+     * @param operation operation of the record
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type
+     * @param mealQuantity quantity of meals
+     * @return long sequence number of the record
+     */
+    private long append(byte operation, String fName, String lName, String mealType, int mealQuantity)
+    {
+        byte[] first = fName.getBytes(StandardCharsets.UTF_8);
+        byte[] surname = lName.getBytes(StandardCharsets.UTF_8);
+        byte[] meal = mealType.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 4 + 2 + first.length + 2 + surname.length + 2 + meal.length;
+        if (length > MAX_RECORD_SIZE)
+        {
+            throw new IllegalArgumentException("Names are too long to be written to the journal.");
+        }
+        synchronized (lock)
+        {
+            checkWritable();
+            if (pending.remaining() < HEADER_SIZE + length)
+            {
+                //grow the buffer, the committer is writing the other one
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + HEADER_SIZE + length));
+                pending.flip();
+                larger.put(pending);
+                pending = larger;
+            }
+            int start = pending.position();
+            pending.putInt(length);
+            pending.putInt(0); //checksum is written below
+            pending.put(operation);
+            pending.putInt(mealQuantity);
+            putName(pending, first);
+            putName(pending, surname);
+            putName(pending, meal);
+            recordChecksum.reset();
+            recordChecksum.update(pending.array(), start + HEADER_SIZE, length);
+            pending.putInt(start + 4, (int) recordChecksum.getValue());
+            appendedSequence++;
+            lock.notifyAll();
+            return appendedSequence;
+        }
+    }
+
+    /**
+     * Writes a name as its length followed by its UTF-8 bytes.
+     * @param buffer buffer the name is written to
+     * @param name UTF-8 bytes of the name
+     */
+    private static void putName(ByteBuffer buffer, byte[] name)
+    {
+        buffer.putShort((short) name.length);
+        buffer.put(name);
+    }
+
+    /**
+     * Checks that records can be appended, called under the lock.
+     * @throws UncheckedIOException when writing the journal failed before
+     * @throws IllegalStateException when the journal is closed
+     */
+    private void checkWritable()
+    {
+        if (failure != null)
+        {
+            throw new UncheckedIOException("Writing the journal failed.", failure);
+        }
+        if (closed)
+        {
+            throw new IllegalStateException("Journal is closed.");
+        }
+    }
+
+    /**
+     * Waits until the record with the sequence number and all records before it are forced to disk.
+     * @param sequence sequence number of the record
+     * @throws UncheckedIOException when writing the journal failed or the waiting thread is interrupted
+     */
+    public void awaitDurable(long sequence)
+    {
+        synchronized (lock)
+        {
+            while (durableSequence < sequence)
+            {
+                if (failure != null)
+                {
+                    throw new UncheckedIOException("Writing the journal failed.", failure);
+                }
+                try
+                {
+                    lock.wait();
+                }
+                catch (InterruptedException exception)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for the journal."));
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until all records appended so far are forced to disk.
+     * @throws UncheckedIOException when writing the journal failed or the waiting thread is interrupted
+     */
+    public void sync()
+    {
+        long sequence;
+        synchronized (lock)
+        {
+            sequence = appendedSequence;
+        }
+        awaitDurable(sequence);
+    }
+
+    /**
+     * Body of the committer thread, writes all pending records with one write and one fsync, records appended meanwhile wait for the next round.
+     */
+    private void commit()
+    {
+        while (true)
+        {
+            long sequence;
+            synchronized (lock)
+            {
+                while (pending.position() == 0 && !closed)
+                {
+                    try
+                    {
+                        lock.wait();
+                    }
+                    catch (InterruptedException exception)
+                    {
+                        return;
+                    }
+                }
+                if (pending.position() == 0)
+                {
+                    //closed and nothing left to write
+                    return;
+                }
+                //swap buffers, appending continues into the empty buffer
+                ByteBuffer full = pending;
+                pending = writing;
+                writing = full;
+                sequence = appendedSequence;
+            }
+            try
+            {
+                writing.flip();
+                synchronized (channelLock)
+                {
+                    while (writing.hasRemaining())
+                    {
+                        channel.write(writing);
+                    }
+                    channel.force(false);
+                }
+                writing.clear();
+            }
+            catch (IOException exception)
+            {
+                synchronized (lock)
+                {
+                    failure = exception;
+                    lock.notifyAll();
+                }
+                return;
+            }
+            synchronized (lock)
+            {
+                durableSequence = sequence;
+                syncs++;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    //snapshots
+    /**
+     * Copies the current state of the registry and starts a new journal segment, so the copy and the new segment together describe the whole state.
+     * No subscriptions can change while this runs, {@link SubscriptionEngine#snapshot()} holds its state lock exclusively.
+     * @param registry registry the state is copied from
+     * @return Snapshot copy of the state, written to disk with {@link #writeSnapshot(Snapshot)} after changes of subscriptions are allowed again
+     * @throws IOException when the new segment can't be created
+     */
+    Snapshot capture(SubscriptionRegistry registry) throws IOException
+    {
+        //everything appended so far belongs to the old segment
+        sync();
+        synchronized (channelLock)
+        {
+            channel.close();
+            segment++;
+            channel = openSegment(segment);
+        }
+        //meals in the order of their ids, so subscriptions refer to meals by id
+        Snapshot snapshot = new Snapshot(segment, registry.getMealCount(), registry.getSubscriptionCount());
+        for (int id = 0; id < snapshot.meals.length; id++)
+        {
+            snapshot.meals[id] = registry.getMeal(id);
+            snapshot.balances[id] = snapshot.meals[id].getMealBalance();
+        }
+        //subscriptions of one subscriber are next to each other
+        int subscriberCount = registry.getSubscriberCount();
+        for (int subscriberId = 0; subscriberId < subscriberCount; subscriberId++)
+        {
+            int copied = registry.copySubscriptions(subscriberId, snapshot.mealIds, snapshot.quantities, snapshot.count);
+            Arrays.fill(snapshot.subscribers, snapshot.count, snapshot.count + copied, registry.getSubscriber(subscriberId));
+            snapshot.count += copied;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Writes a captured state to a temporary snapshot file, forces it to disk and moves it over the previous snapshot,
+     * then deletes journal segments contained in the snapshot.
+     * @param snapshot copy of the state, see {@link #capture(SubscriptionRegistry)}
+     * @throws IOException when the snapshot can't be written
+     */
+    synchronized void writeSnapshot(Snapshot snapshot) throws IOException
+    {
+        Path temp = directory.resolve(SNAPSHOT_TEMP_FILE);
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(Channels.newOutputStream(out), STREAM_BUFFER_SIZE), new CRC32C());
+            DataOutputStream data = new DataOutputStream(checked);
+            data.writeInt(SNAPSHOT_MAGIC);
+            data.writeInt(SNAPSHOT_VERSION);
+            data.writeLong(snapshot.firstSegment);
+            //meal table, subscriptions refer to meals by their position in the table, which is the meal id
+            data.writeInt(snapshot.meals.length);
+            for (int i = 0; i < snapshot.meals.length; i++)
+            {
+                data.writeUTF(snapshot.meals[i].getMealName());
+                data.writeInt(snapshot.balances[i]);
+            }
+            //subscriptions of one subscriber are next to each other, the subscriber's name is written once for all of them
+            data.writeInt(snapshot.count);
+            int i = 0;
+            while (i < snapshot.count)
+            {
+                Subscriber first = snapshot.subscribers[i];
+                int end = i + 1;
+                while (end < snapshot.count && snapshot.subscribers[end] == first)
+                {
+                    end++;
+                }
+                data.writeUTF(first.getFirstName());
+                data.writeUTF(first.getSurname());
+                data.writeByte(end - i);
+                for (; i < end; i++)
+                {
+                    data.writeInt(snapshot.mealIds[i]);
+                    data.writeInt(snapshot.quantities[i]);
+                }
+            }
+            data.flush();
+            //checksum of everything above
+            data.writeInt((int) checked.getChecksum().getValue());
+            data.flush();
+            out.force(true);
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        //segments before the snapshot are not needed anymore
+        for (long number : listSegments())
+        {
+            if (number < snapshot.firstSegment)
+            {
+                Files.deleteIfExists(segmentPath(number));
+            }
+        }
+    }
+
+    /**
+     * Reads the snapshot into the registry, meals not registered yet are registered.
+     * @param path path of the snapshot file
+     * @param registry registry the state is read into
+     * @return long number of the first journal segment written after the snapshot
+     * @throws IOException when the snapshot is damaged or can't be read
+     */
+    private long readSnapshot(Path path, SubscriptionRegistry registry) throws IOException
+    {
+        try (CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(path), STREAM_BUFFER_SIZE), new CRC32C()))
+        {
+            DataInputStream data = new DataInputStream(checked);
+            if (data.readInt() != SNAPSHOT_MAGIC || data.readInt() != SNAPSHOT_VERSION)
+            {
+                throw new IOException("File " + path + " is not a snapshot of a supported version.");
+            }
+            long firstSegment = data.readLong();
+            int mealCount = data.readInt();
+            //ids of the meals in the registry by their position in the snapshot
+            int[] mealIds = new int[mealCount];
+            for (int i = 0; i < mealCount; i++)
+            {
+                String name = data.readUTF();
+                int balance = data.readInt();
+                Meal meal = registry.getMeal(name);
+                if (meal == null)
+                {
+                    meal = new Meal(name, balance);
+                    registry.addMeal(meal);
+                }
+                else
+                {
+                    meal.setMealBalance(balance);
+                }
+                mealIds[i] = registry.mealId(name);
+            }
+            int subscriptionCount = data.readInt();
+            int read = 0;
+            while (read < subscriptionCount)
+            {
+                String fName = data.readUTF();
+                String lName = data.readUTF();
+                int subscriberId = subscriberId(registry, fName, lName);
+                int count = data.readByte();
+                for (int i = 0; i < count; i++, read++)
+                {
+                    int meal = data.readInt();
+                    int quantity = data.readInt();
+                    if (meal < 0 || meal >= mealCount)
+                    {
+                        throw new IOException("Snapshot " + path + " is damaged, unknown meal " + meal + ".");
+                    }
+                    registry.setQuantity(subscriberId, mealIds[meal], quantity);
+                }
+            }
+            int expected = (int) checked.getChecksum().getValue();
+            if (data.readInt() != expected)
+            {
+                throw new IOException("Snapshot " + path + " is damaged, checksum doesn't match.");
+            }
+            subscriptionsRecovered = subscriptionCount;
+            return firstSegment;
+        }
+    }
+
+    //replaying segments
+    /**
+     * Replays all records of a journal segment into the registry.
+     * @param path path of the segment
+     * @param registry registry the records are applied to
+     * @param last true for the last segment, a torn record at its end is cut off
+     * @throws IOException when a record is damaged and the segment is not the last one, or the segment can't be read
+     */
+    private void replaySegment(Path path, SubscriptionRegistry registry, boolean last) throws IOException
+    {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            CRC32C checksum = new CRC32C();
+            long position = 0; //position of the next record in the segment
+            boolean end = false;
+            while (!end)
+            {
+                end = in.read(buffer) < 0;
+                buffer.flip();
+                while (buffer.remaining() >= HEADER_SIZE)
+                {
+                    int start = buffer.position();
+                    int length = buffer.getInt(start);
+                    if (length < MIN_RECORD_SIZE || length > MAX_RECORD_SIZE)
+                    {
+                        damaged(in, path, position, last);
+                        return;
+                    }
+                    if (buffer.remaining() < HEADER_SIZE + length)
+                    {
+                        //rest of the record is read with the next read
+                        break;
+                    }
+                    checksum.reset();
+                    checksum.update(buffer.array(), start + HEADER_SIZE, length);
+                    if (buffer.getInt(start + 4) != (int) checksum.getValue())
+                    {
+                        damaged(in, path, position, last);
+                        return;
+                    }
+                    buffer.position(start + HEADER_SIZE);
+                    byte operation = buffer.get();
+                    int quantity = buffer.getInt();
+                    String fName = getName(buffer);
+                    String lName = getName(buffer);
+                    String mealType = getName(buffer);
+                    replay(registry, operation, fName, lName, mealType, quantity);
+                    recordsReplayed++;
+                    position += HEADER_SIZE + length;
+                }
+                buffer.compact();
+            }
+            if (buffer.position() > 0)
+            {
+                //incomplete record at the end
+                damaged(in, path, position, last);
+            }
+        }
+    }
+
+    /**
+     * Handles a damaged record, a torn record at the end of the last segment is cut off, otherwise the recovery stops.
+     * @param in channel of the segment
+     * @param path path of the segment
+     * @param position position of the damaged record
+     * @param last true for the last segment
+     * @throws IOException when the segment is not the last one or can't be truncated
+     */
+    private static void damaged(FileChannel in, Path path, long position, boolean last) throws IOException
+    {
+        if (!last)
+        {
+            throw new IOException("Journal segment " + path + " is damaged at position " + position + ".");
+        }
+        //the last write before a crash was not finished, none of its records were confirmed
+        in.truncate(position);
+        in.force(true);
+    }
+
+    /**
+     * Reads a name written with {@link #putName(ByteBuffer, byte[])}.
+     * @param buffer heap buffer positioned at the name
+     * @return String the name
+     */
+    private static String getName(ByteBuffer buffer)
+    {
+        int length = buffer.getShort() & 0xFFFF;
+        String name = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return name;
+    }
+
+    /**
+     * Applies one replayed record, the record was checked by the engine when it was appended, so the rules are not checked again.
+     * @param registry registry the record is applied to
+     * @param operation operation of the record
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type
+     * @param quantity quantity of meals
+     * @throws IOException when the operation is unknown
+     */
+    private static void replay(SubscriptionRegistry registry, byte operation, String fName, String lName, String mealType, int quantity) throws IOException
+    {
+        Meal meal = registry.getMeal(mealType);
+        if (meal == null)
+        {
+            //meal type was removed from the input file or added by a restock, keep its subscriptions and balance
+            meal = new Meal(mealType, 0);
+            registry.addMeal(meal);
+        }
+        if (operation == RESTOCK)
+        {
+            //the record has the meals actually added or withdrawn, the balance can't go below 0 if the state was damaged
+            meal.setMealBalance((int) Math.max(0, Math.min((long) meal.getMealBalance() + quantity, Integer.MAX_VALUE)));
+            return;
+        }
+        int mealId = registry.mealId(mealType);
+        int subscriberId = subscriberId(registry, fName, lName);
+        int subscribed = registry.getQuantity(subscriberId, mealId);
+        switch (operation)
+        {
+            case ADD:
+                registry.setQuantity(subscriberId, mealId, subscribed + quantity);
+                meal.setMealBalance(meal.getMealBalance() - quantity);
+                break;
+            case REMOVE:
+                //quantity 0 removes the subscription
+                registry.setQuantity(subscriberId, mealId, Math.max(subscribed - quantity, 0));
+                //a full balance stays at Integer.MAX_VALUE, as Meal.release(int) keeps it
+                meal.setMealBalance((int) Math.min((long) meal.getMealBalance() + quantity, Integer.MAX_VALUE));
+                break;
+            default:
+                throw new IOException("Unknown journal operation \"" + (char) operation + "\".");
+        }
+    }
+
+    /**
+     * Finds the id of a subscriber of a recovered subscription, a subscriber removed from the input file is registered again to keep the subscriptions.
+     * @param registry registry the state is recovered into
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @return int id of the subscriber
+     */
+    private static int subscriberId(SubscriptionRegistry registry, String fName, String lName)
+    {
+        int id = registry.subscriberId(fName, lName);
+        if (id < 0)
+        {
+            registry.addSubscriber(new Subscriber(fName, lName));
+            id = registry.subscriberId(fName, lName);
+        }
+        return id;
+    }
+
+    //files
+    /**
+     * Lists numbers of the journal segments in the data directory.
+     * @return List of segment numbers in ascending order
+     * @throws IOException when the data directory can't be read
+     */
+    private List<Long> listSegments() throws IOException
+    {
+        List<Long> segments = new ArrayList<Long>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX))
+        {
+            for (Path file : files)
+            {
+                String name = file.getFileName().toString();
+                try
+                {
+                    segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                }
+                catch (NumberFormatException exception)
+                {
+                    //not a segment written by the journal
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Returns the path of a journal segment.
+     * @param number number of the segment
+     * @return Path of the segment file
+     */
+    private Path segmentPath(long number)
+    {
+        return directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Creates a journal segment for appending records.
+     * @param number number of the segment
+     * @return FileChannel positioned at the end of the segment
+     * @throws IOException when the segment can't be created
+     */
+    private FileChannel openSegment(long number) throws IOException
+    {
+        return FileChannel.open(segmentPath(number), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Forces all appended records to disk, stops the committer and closes the current segment.
+     * @throws IOException when the records can't be written
+     */
+    @Override
+    public void close() throws IOException
+    {
+        synchronized (lock)
+        {
+            if (closed)
+            {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try
+        {
+            //the committer writes what is left before it stops
+            committer.join();
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing the journal.");
+        }
+        synchronized (channelLock)
+        {
+            channel.close();
+        }
+        if (failure != null)
+        {
+            throw failure;
+        }
+    }
+
+    //getters
+    /**
+     * Getter for the number of times the journal was forced to disk, compared with the number of records it shows how many records shared an fsync.
+     * @return long number of fsyncs
+     */
+    public long getSyncs()
+    {
+        synchronized (lock)
+        {
+            return syncs;
+        }
+    }
+
+    /**
+     * Getter for the number of records appended since the journal was opened.
+     * @return long number of records
+     */
+    public long getRecordsAppended()
+    {
+        synchronized (lock)
+        {
+            return appendedSequence;
+        }
+    }
+
+    /**
+     * Returns a summary of the recovery.
+     * @return String in format: "Recovered # subscriptions from the snapshot and replayed # journal records from path in # ms."
+     */
+    public String getSummary()
+    {
+        return String.format("Recovered %d subscriptions from the snapshot and replayed %d journal records from %s in %.1f ms.",
+                subscriptionsRecovered, recordsReplayed, directory, recoveryNanos / 1_000_000.0);
+    }
+
+    /**
+     * A copy of the state of the registry taken by {@link #capture(SubscriptionRegistry)}, balances and quantities are copied because they keep changing.
+     */
+    static final class Snapshot {
+        /**
+         * Number of the first journal segment written after the copy was taken.
+         */
+        private final long firstSegment;
+        /**
+         * Meals in the registry in the order of their ids.
+         */
+        private final Meal[] meals;
+        /**
+         * Balances of the meals at the time of the copy.
+         */
+        private final int[] balances;
+        /**
+         * Subscriber of every subscription, subscriptions of one subscriber are next to each other.
+         */
+        private final Subscriber[] subscribers;
+        /**
+         * Meal id of every subscription.
+         */
+        private final int[] mealIds;
+        /**
+         * Quantity of every subscription at the time of the copy.
+         */
+        private final int[] quantities;
+        /**
+         * Number of subscriptions copied.
+         */
+        private int count;
+
+        /**
+         * Snapshot constructor specifying the first segment after the copy and the numbers of meals and subscriptions.
+         * @param firstSegment number of the first journal segment written after the copy
+         * @param mealCount number of meals
+         * @param subscriptionCount number of subscriptions
+         */
+        private Snapshot(long firstSegment, int mealCount, int subscriptionCount)
+        {
+            this.firstSegment = firstSegment;
+            meals = new Meal[mealCount];
+            balances = new int[mealCount];
+            //room for the subscriptions of one more subscriber, see SubscriptionRegistry.copySubscriptions
+            subscribers = new Subscriber[subscriptionCount + SubscriptionEngine.MAX_MEAL_TYPES];
+            mealIds = new int[subscribers.length];
+            quantities = new int[subscribers.length];
+        }
+    }
+}
@@ -0,0 +1,539 @@
+package subscription.manager;
+
+import subscription.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SubscriptionMetrics counts what clerks do with the {@link SubscriptionEngine engine} and how long it takes.
+ * <p>The metrics are:
+ * <ul>
+ *     <li>
+ *         counters of results of every {@link Operation operation}, successful adds and removes and rejected operations by {@link ValidationResult result},
+ *         rejected operations are also reported by the exception the clerk sees, e.g. IllegalMealQuantityException
+ *     </li>
+ *     <li>
+ *         a {@link LatencyHistogram latency histogram} of every operation, including reading the input file
+ *     </li>
+ *     <li>
+ *         number of letters written by the {@link LetterService}
+ *     </li>
+ *     <li>
+ *         gauges of available meals of every meal type, read from the registry when metrics are written
+ *     </li>
+ *     <li>
+ *         events published to the {@link ChangeFeed} and the number of events every listener has yet to handle, if there is a feed
+ *     </li>
+ *     <li>
+ *         gauges of the rate meals are taken at and the projected time until they run out, read from the {@link StockMonitor} if there is one
+ *     </li>
+ * </ul>
+ * <p>Recording increments counters only, so it doesn't slow clerks down. Metrics are written as a report for the display with {@link #writeReport(Appendable)},
+ * or in the Prometheus text format with {@link #writePrometheus(Appendable)}, e.g. to a file read by a local Prometheus node exporter.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class SubscriptionMetrics {
+    /**
+     * Operations of the engine that are counted and timed.
+     */
+    public enum Operation {
+        /**
+         * {@link SubscriptionEngine#tryAddMealSubscription(String, String, String, int)}
+         */
+        ADD("add"),
+        /**
+         * {@link SubscriptionEngine#tryRemoveMealSubscription(String, String, String, int)}
+         */
+        REMOVE("remove"),
+        /**
+         * {@link SubscriptionEngine#checkSubscriber(String, String)}
+         */
+        CHECK_SUBSCRIBER("check_subscriber"),
+        /**
+         * {@link SubscriptionEngine#checkMeal(String)}
+         */
+        CHECK_MEAL("check_meal"),
+        /**
+         * {@link SubscriptionEngine#checkSubscriptions(String, String)}
+         */
+        CHECK_SUBSCRIPTIONS("check_subscriptions"),
+        /**
+         * {@link SubscriptionEngine#checkEnoughMeal(String, int)}
+         */
+        CHECK_ENOUGH_MEAL("check_enough_meal"),
+        /**
+         * Reading the input file, see {@link InputDataLoader#load(SubscriptionRegistry)}, only timed.
+         */
+        READ_IN("read_in");
+
+        /**
+         * Name of the operation in metric labels.
+         */
+        private final String label;
+
+        /**
+         * Operation constructor specifying the name in metric labels.
+         * @param label name of the operation in metric labels
+         */
+        Operation(String label)
+        {
+            this.label = label;
+        }
+
+        /**
+         * Getter for the name of the operation in metric labels.
+         * @return String name of the operation, e.g. "check_meal"
+         */
+        public String getLabel()
+        {
+            return label;
+        }
+    }
+
+    //Fields
+    /**
+     * Percentiles of latencies in the report and in the Prometheus format.
+     */
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    /**
+     * Quantile labels of the {@link #PERCENTILES} in the Prometheus format.
+     */
+    private static final String[] QUANTILE_LABELS = {"0.5", "0.9", "0.99", "0.999"};
+    /**
+     * Upper bounds of the cumulative latency buckets of the Prometheus format, in seconds.
+     */
+    private static final double[] PROMETHEUS_BUCKETS = {1e-6, 2.5e-6, 5e-6, 1e-5, 2.5e-5, 5e-5, 1e-4, 2.5e-4, 5e-4, 1e-3, 2.5e-3, 5e-3, 1e-2, 2.5e-2, 5e-2, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    /**
+     * Simple names of the exceptions reporting results, by ordinal of the result, null for {@link ValidationResult#OK}.
+     */
+    private static final String[] EXCEPTION_NAMES = new String[ValidationResult.values().length];
+
+    static
+    {
+        //the exceptions are created once here to learn their types, not when results are recorded
+        for (ValidationResult result : ValidationResult.values())
+        {
+            if (!result.isOk())
+            {
+                EXCEPTION_NAMES[result.ordinal()] = result.toException("").getClass().getSimpleName();
+            }
+        }
+    }
+
+    /**
+     * The registry the meal stock gauges are read from.
+     */
+    private final SubscriptionRegistry registry;
+    /**
+     * Counters of results by ordinal of the operation then ordinal of the result.
+     */
+    private final LongAdder[][] results;
+    /**
+     * Latency histograms by ordinal of the operation.
+     */
+    private final LatencyHistogram[] latencies;
+    /**
+     * LetterService whose written letters are reported, null if letters are not reported.
+     */
+    private volatile LetterService letters;
+    /**
+     * StockMonitor whose rates and forecasts are reported, null if they are not reported.
+     */
+    private volatile StockMonitor stockMonitor;
+    /**
+     * ChangeFeed whose listeners' lag is reported, null if it is not reported.
+     */
+    private volatile ChangeFeed changeFeed;
+
+    //Constructor
+    /**
+     * SubscriptionMetrics constructor specifying the registry the meal stock is read from.
+     * @param registry registry storing the meals
+     */
+    public SubscriptionMetrics(SubscriptionRegistry registry)
+    {
+        this.registry = registry;
+        Operation[] operations = Operation.values();
+        results = new LongAdder[operations.length][ValidationResult.values().length];
+        latencies = new LatencyHistogram[operations.length];
+        for (int i = 0; i < operations.length; i++)
+        {
+            for (int j = 0; j < results[i].length; j++)
+            {
+                results[i][j] = new LongAdder();
+            }
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    //Methods
+    /**
+     * Records the result and the time of an operation.
+     * @param operation the operation
+     * @param result result of the operation
+     * @param nanos time the operation took in nanoseconds
+     */
+    public void record(Operation operation, ValidationResult result, long nanos)
+    {
+        results[operation.ordinal()][result.ordinal()].increment();
+        latencies[operation.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records the time of an operation without a result, e.g. reading the input file.
+     * @param operation the operation
+     * @param nanos time the operation took in nanoseconds
+     */
+    public void recordLatency(Operation operation, long nanos)
+    {
+        latencies[operation.ordinal()].record(nanos);
+    }
+
+    /**
+     * Sets the LetterService whose written letters are reported.
+     * @param letters the LetterService, null to not report letters
+     */
+    public void setLetters(LetterService letters)
+    {
+        this.letters = letters;
+    }
+
+    /**
+     * Sets the ChangeFeed whose listeners' lag is reported.
+     * @param changeFeed the ChangeFeed, null to not report it
+     */
+    public void setChangeFeed(ChangeFeed changeFeed)
+    {
+        this.changeFeed = changeFeed;
+    }
+
+    /**
+     * Sets the StockMonitor whose rates and forecasts are reported.
+     * @param stockMonitor the StockMonitor, null to not report them
+     */
+    public void setStockMonitor(StockMonitor stockMonitor)
+    {
+        this.stockMonitor = stockMonitor;
+    }
+
+    /**
+     * Getter for the number of operations with a particular result.
+     * @param operation the operation
+     * @param result the result
+     * @return long number of operations with the result
+     */
+    public long getCount(Operation operation, ValidationResult result)
+    {
+        return results[operation.ordinal()][result.ordinal()].sum();
+    }
+
+    /**
+     * Counts rejected operations reported with a particular exception, the same exception can report several results.
+     * @param exceptionName simple name of the exception, e.g. "IllegalMealQuantityException"
+     * @return long number of rejected operations
+     */
+    public long getRejections(String exceptionName)
+    {
+        long rejections = 0;
+        for (LongAdder[] operationResults : results)
+        {
+            for (int j = 0; j < operationResults.length; j++)
+            {
+                if (exceptionName.equals(EXCEPTION_NAMES[j]))
+                {
+                    rejections += operationResults[j].sum();
+                }
+            }
+        }
+        return rejections;
+    }
+
+    /**
+     * Getter for the latency histogram of an operation.
+     * @param operation the operation
+     * @return LatencyHistogram of the operation
+     */
+    public LatencyHistogram getLatency(Operation operation)
+    {
+        return latencies[operation.ordinal()];
+    }
+
+    /**
+     * Writes the metrics as a report for the clerk, latencies are in microseconds and operations never done are left out.
+     * @param out Appendable the report is written to
+     * @throws IOException when the report can't be written
+     */
+    public void writeReport(Appendable out) throws IOException
+    {
+        out.append("Operations:\n");
+        for (Operation operation : Operation.values())
+        {
+            if (operation == Operation.READ_IN)
+            {
+                continue;
+            }
+            long ok = getCount(operation, ValidationResult.OK);
+            long rejected = 0;
+            StringBuilder reasons = new StringBuilder();
+            for (ValidationResult result : ValidationResult.values())
+            {
+                long count = getCount(operation, result);
+                if (!result.isOk() && count > 0)
+                {
+                    rejected += count;
+                    reasons.append(reasons.length() == 0 ? " (" : ", ").append(result.name().toLowerCase(Locale.ROOT)).append(' ').append(count);
+                }
+            }
+            if (ok + rejected > 0)
+            {
+                out.append(String.format(Locale.ROOT, "  %-20s %d ok, %d rejected%s%n", operation.getLabel(), ok, rejected, reasons.length() == 0 ? "" : reasons.append(')')));
+            }
+        }
+        out.append("Rejected by exception:\n");
+        for (String exceptionName : distinctExceptionNames())
+        {
+            out.append(String.format(Locale.ROOT, "  %-40s %d%n", exceptionName, getRejections(exceptionName)));
+        }
+        LetterService current = letters;
+        if (current != null)
+        {
+            out.append("Letters written: ").append(Long.toString(current.getLettersWritten())).append('\n');
+        }
+        out.append(String.format(Locale.ROOT, "Latency in microseconds:%n  %-20s %10s %10s %10s %10s %10s %10s %10s%n", "operation", "count", "mean", "p50", "p90", "p99", "p99.9", "max"));
+        for (Operation operation : Operation.values())
+        {
+            LatencyHistogram latency = latencies[operation.ordinal()];
+            if (latency.getCount() == 0)
+            {
+                continue;
+            }
+            out.append(String.format(Locale.ROOT, "  %-20s %10d %10.1f", operation.getLabel(), latency.getCount(), latency.getMean() / 1e3));
+            for (double percentile : PERCENTILES)
+            {
+                out.append(String.format(Locale.ROOT, " %10.1f", latency.getValueAtPercentile(percentile) / 1e3));
+            }
+            out.append(String.format(Locale.ROOT, " %10.1f%n", latency.getMax() / 1e3));
+        }
+        //stock of every meal type is in the Prometheus format, the report sums it up
+        long available = 0;
+        int outOfStock = 0;
+        for (int id = 0; id < registry.getMealCount(); id++)
+        {
+            int balance = registry.getMeal(id).getMealBalance();
+            available += balance;
+            if (balance == 0)
+            {
+                outOfStock++;
+            }
+        }
+        out.append(String.format(Locale.ROOT, "Meal stock: %d meals available of %d meal types, %d meal types out of stock%n", available, registry.getMealCount(), outOfStock));
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text exposition format (version 0.0.4).
+     * @param out Appendable the metrics are written to
+     * @throws IOException when the metrics can't be written
+     */
+    public void writePrometheus(Appendable out) throws IOException
+    {
+        out.append("# HELP subscription_operations_total Operations of the subscription engine by result.\n");
+        out.append("# TYPE subscription_operations_total counter\n");
+        for (Operation operation : Operation.values())
+        {
+            if (operation == Operation.READ_IN)
+            {
+                continue;
+            }
+            for (ValidationResult result : ValidationResult.values())
+            {
+                long count = getCount(operation, result);
+                //results an operation never had are left out, most can't happen for the operation
+                if (!result.isOk() && count == 0)
+                {
+                    continue;
+                }
+                out.append("subscription_operations_total{operation=\"").append(operation.getLabel())
+                        .append("\",result=\"").append(result.name().toLowerCase(Locale.ROOT)).append("\"} ")
+                        .append(Long.toString(count)).append('\n');
+            }
+        }
+        out.append("# HELP subscription_rejections_total Rejected operations by the exception reporting them to the clerk.\n");
+        out.append("# TYPE subscription_rejections_total counter\n");
+        for (String exceptionName : distinctExceptionNames())
+        {
+            out.append("subscription_rejections_total{exception=\"").append(exceptionName).append("\"} ")
+                    .append(Long.toString(getRejections(exceptionName))).append('\n');
+        }
+        LetterService current = letters;
+        if (current != null)
+        {
+            out.append("# HELP subscription_letters_written_total Letters written to subscribers.\n");
+            out.append("# TYPE subscription_letters_written_total counter\n");
+            out.append("subscription_letters_written_total ").append(Long.toString(current.getLettersWritten())).append('\n');
+        }
+        out.append("# HELP subscription_operation_duration_seconds Time operations took.\n");
+        out.append("# TYPE subscription_operation_duration_seconds histogram\n");
+        for (Operation operation : Operation.values())
+        {
+            LatencyHistogram latency = latencies[operation.ordinal()];
+            String label = "operation=\"" + operation.getLabel() + "\"";
+            for (double bucket : PROMETHEUS_BUCKETS)
+            {
+                out.append("subscription_operation_duration_seconds_bucket{").append(label).append(",le=\"").append(Double.toString(bucket)).append("\"} ")
+                        .append(Long.toString(latency.countAtOrBelow((long) (bucket * 1e9)))).append('\n');
+            }
+            long count = latency.getCount();
+            out.append("subscription_operation_duration_seconds_bucket{").append(label).append(",le=\"+Inf\"} ").append(Long.toString(count)).append('\n');
+            out.append("subscription_operation_duration_seconds_sum{").append(label).append("} ").append(Double.toString(latency.getSum() / 1e9)).append('\n');
+            out.append("subscription_operation_duration_seconds_count{").append(label).append("} ").append(Long.toString(count)).append('\n');
+        }
+        out.append("# HELP subscription_operation_duration_quantile_seconds Percentiles of the time operations took.\n");
+        out.append("# TYPE subscription_operation_duration_quantile_seconds gauge\n");
+        for (Operation operation : Operation.values())
+        {
+            LatencyHistogram latency = latencies[operation.ordinal()];
+            for (int i = 0; i < PERCENTILES.length; i++)
+            {
+                out.append("subscription_operation_duration_quantile_seconds{operation=\"").append(operation.getLabel())
+                        .append("\",quantile=\"").append(QUANTILE_LABELS[i]).append("\"} ")
+                        .append(Double.toString(latency.getValueAtPercentile(PERCENTILES[i]) / 1e9)).append('\n');
+            }
+        }
+        out.append("# HELP subscription_meal_stock Meals available for subscriptions by meal type.\n");
+        out.append("# TYPE subscription_meal_stock gauge\n");
+        for (int id = 0; id < registry.getMealCount(); id++)
+        {
+            Meal meal = registry.getMeal(id);
+            out.append("subscription_meal_stock{meal=\"");
+            appendLabelValue(out, meal.getMealName());
+            out.append("\"} ").append(Integer.toString(meal.getMealBalance())).append('\n');
+        }
+        //subscribed meals are totalled with every change, see MealDemand
+        MealDemand demand = registry.getDemand();
+        out.append("# HELP subscription_meal_subscribed Meals subscribed to by meal type.\n");
+        out.append("# TYPE subscription_meal_subscribed gauge\n");
+        for (int id = 0; id < registry.getMealCount(); id++)
+        {
+            out.append("subscription_meal_subscribed{meal=\"");
+            appendLabelValue(out, registry.getMeal(id).getMealName());
+            out.append("\"} ").append(Long.toString(demand.getSubscribedQuantity(id))).append('\n');
+        }
+        out.append("# HELP subscription_meal_subscribers Subscribers subscribed to the meal type.\n");
+        out.append("# TYPE subscription_meal_subscribers gauge\n");
+        for (int id = 0; id < registry.getMealCount(); id++)
+        {
+            out.append("subscription_meal_subscribers{meal=\"");
+            appendLabelValue(out, registry.getMeal(id).getMealName());
+            out.append("\"} ").append(Integer.toString(demand.getSubscriberCount(id))).append('\n');
+        }
+        ChangeFeed feed = changeFeed;
+        if (feed != null)
+        {
+            out.append("# HELP subscription_feed_events_total Changes published to the change feed.\n");
+            out.append("# TYPE subscription_feed_events_total counter\n");
+            out.append("subscription_feed_events_total ").append(Long.toString(feed.getPublished())).append('\n');
+            out.append("# HELP subscription_feed_publisher_waits_total Times a change waited for the slowest listener because the ring was full.\n");
+            out.append("# TYPE subscription_feed_publisher_waits_total counter\n");
+            out.append("subscription_feed_publisher_waits_total ").append(Long.toString(feed.getPublisherWaits())).append('\n');
+            out.append("# HELP subscription_feed_lag Changes a listener of the change feed has yet to handle.\n");
+            out.append("# TYPE subscription_feed_lag gauge\n");
+            for (Map.Entry<String, Long> lag : feed.getLags().entrySet())
+            {
+                out.append("subscription_feed_lag{listener=\"");
+                appendLabelValue(out, lag.getKey());
+                out.append("\"} ").append(Long.toString(lag.getValue())).append('\n');
+            }
+        }
+        StockMonitor monitor = stockMonitor;
+        if (monitor == null)
+        {
+            return;
+        }
+        //only meals being taken have a rate and a forecast
+        StringBuilder rates = new StringBuilder();
+        StringBuilder forecasts = new StringBuilder();
+        for (int id = 0; id < registry.getMealCount(); id++)
+        {
+            long secondsLeft = monitor.getTimeToStockout(id);
+            if (secondsLeft < 0)
+            {
+                continue;
+            }
+            rates.append("subscription_meal_taken_per_minute{meal=\"");
+            appendLabelValue(rates, registry.getMeal(id).getMealName());
+            rates.append("\"} ").append(monitor.getRate(id, 1) * 60).append('\n');
+            forecasts.append("subscription_meal_seconds_to_stockout{meal=\"");
+            appendLabelValue(forecasts, registry.getMeal(id).getMealName());
+            forecasts.append("\"} ").append(secondsLeft).append('\n');
+        }
+        out.append("# HELP subscription_meal_taken_per_minute Meals taken per minute over the last 15 minutes by meal type.\n");
+        out.append("# TYPE subscription_meal_taken_per_minute gauge\n");
+        out.append(rates);
+        out.append("# HELP subscription_meal_seconds_to_stockout Projected seconds until the meal type runs out.\n");
+        out.append("# TYPE subscription_meal_seconds_to_stockout gauge\n");
+        out.append(forecasts);
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text format to a file, the file is replaced at once so a scraper never reads half of it.
+     * @param file the file, e.g. in the textfile directory of a node exporter
+     * @throws IOException when the file can't be written
+     */
+    public void writePrometheus(Path file) throws IOException
+    {
+        Path absolute = file.toAbsolutePath();
+        Path temporary = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8))
+        {
+            writePrometheus(out);
+        }
+        Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Appends a label value escaping backslashes, double quotes and line feeds as the Prometheus format requires.
+     * @param out Appendable the value is written to
+     * @param value the label value
+     * @throws IOException when the value can't be written
+     */
+    private static void appendLabelValue(Appendable out, String value) throws IOException
+    {
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            switch (c)
+            {
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+    }
+
+    /**
+     * Lists the simple names of the exceptions reporting rejected operations, each once in the order of the results.
+     * @return String[] names of the exceptions
+     */
+    private static String[] distinctExceptionNames()
+    {
+        return Arrays.stream(EXCEPTION_NAMES).filter(name -> name != null).distinct().toArray(String[]::new);
+    }
+}
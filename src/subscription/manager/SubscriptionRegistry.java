@@ -0,0 +1,816 @@
+package subscription.manager;
+
+import subscription.*;
+
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A SubscriptionRegistry stores registered subscribers, meals and subscriptions used by the {@link MainProgram subscription manager program}.
+ * <p>Subscribers and meals are kept in {@link SortedSkipList sorted skip lists} for displaying them in lexicographic order.
+ * Every registered subscriber and meal also gets an integer id, its position in the subscriber table and the meal table of the registry.
+ * <p>Subscriptions are not stored as objects, a {@link SubscriptionStore} keeps the quantities of meals by subscriber id and meal id
+ * (at most 3 per subscriber, the maximum number of meal types, see {@link SubscriptionEngine#MAX_MEAL_TYPES}).
+ * By default it is a {@link HeapSubscriptionStore} packing every subscription into one long, an {@link OffHeapSubscriptionStore} keeps them outside the Java heap.
+ * {@link Subscription} objects are only created as copies when subscriptions are listed.
+ * <p>Subscribers are found by full name in an open addressing hash table of ids, the names are compared with the subscriber table,
+ * so looking up a subscriber doesn't create a key object. Names of subscribers registered together are interned once,
+ * e.g. all the subscribers named "Anna" share one String.
+ * <p>Totals of the subscriptions by meal type are kept up to date with every change in a {@link MealDemand}, see {@link #getDemand()}.
+ * The memory taken by the registry is estimated from the sizes of its structures, see {@link #estimateMemory()}, e.g. for every {@link Region region} of a {@link PartitionedRegistry}.
+ * <p>Subscriptions can be read while other clerks change them.
+ * Changes of subscriptions of one subscriber need to be done by one thread at a time, {@link SubscriptionEngine} does that with the subscriber's lock.
+ * Subscribers are only registered while the input file is loaded or the journal is recovered, before clerks start working, registering them is not thread safe.
+ * Meals can also be registered while clerks work, see {@link #addMeal(Meal)}, the {@link SubscriptionEngine engine} does that while no subscriptions change.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class SubscriptionRegistry {
+    //Fields
+    /**
+     * Maximum number of subscriptions of every subscriber.
+     */
+    private static final int SLOTS = SubscriptionEngine.MAX_MEAL_TYPES;
+    /**
+     * Initial number of subscribers the tables have room for.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * Bytes of a Subscriber object with compressed references: header and two references.
+     */
+    private static final int SUBSCRIBER_BYTES = 24;
+    /**
+     * Approximate bytes of a registered meal besides the list of meals: the Meal, its name, its entry in the hash index of meal ids and its totals.
+     */
+    private static final int MEAL_BYTES = 160;
+    /**
+     * The SortedSkipList for storing registered subscribers in ascending lexicographic order by surname then name.
+     */
+    private final SortedSkipList<Subscriber> subscribersLinkedList;
+    /**
+     * The SortedSkipList for storing registered meals in ascending lexicographic order by meal type name.
+     * A list is never changed once it is published, a meal is registered by replacing the list with a copy including the meal,
+     * so listings and look ups can go through the meals while meal types are added.
+     */
+    private volatile SortedSkipList<Meal> mealsLinkedList;
+    /**
+     * Lock serializing registrations of meals.
+     */
+    private final Object mealLock = new Object();
+    /**
+     * Subscriber table, registered subscribers by id.
+     */
+    private volatile Subscriber[] subscribersById;
+    /**
+     * Number of registered subscribers, ids are 0 to subscriberCount - 1.
+     */
+    private volatile int subscriberCount;
+    /**
+     * Open addressing hash table of subscribers by full name, every entry is id + 1 and 0 is empty, at most half full.
+     */
+    private volatile int[] subscriberTable;
+    /**
+     * Store of the subscriptions by subscriber id and meal id.
+     */
+    private final SubscriptionStore store;
+    /**
+     * Meal table, registered meals by id.
+     */
+    private volatile Meal[] mealsById;
+    /**
+     * Number of registered meals, ids are 0 to mealCount - 1.
+     */
+    private volatile int mealCount;
+    /**
+     * Hash index of ids of registered meals by meal type name.
+     */
+    private final ConcurrentHashMap<String, Integer> mealIds;
+    /**
+     * Totals of the subscriptions by meal type, updated with every change of a subscription.
+     */
+    private final MealDemand demand;
+    /**
+     * Estimated bytes of the distinct Strings of names of registered subscribers, counted as names are registered.
+     */
+    private final AtomicLong nameBytes = new AtomicLong();
+
+    /**
+     * Estimated memory of a registry, or of many registries added up, the Java heap with compressed references is assumed.
+     * @param subscriberBytes bytes of the Subscriber objects
+     * @param nameBytes bytes of the distinct Strings of subscribers' names
+     * @param indexBytes bytes of the lists, the tables of ids and the hash tables of subscribers and meals, including the meals
+     * @param heapStoreBytes bytes of stores keeping subscriptions on the Java heap
+     * @param offHeapStoreBytes bytes of stores keeping subscriptions outside the Java heap
+     */
+    public record MemoryEstimate(long subscriberBytes, long nameBytes, long indexBytes, long heapStoreBytes, long offHeapStoreBytes)
+    {
+        /**
+         * Adds up the bytes on the Java heap.
+         * @return long bytes on the heap
+         */
+        public long heapBytes()
+        {
+            return subscriberBytes + nameBytes + indexBytes + heapStoreBytes;
+        }
+
+        /**
+         * Adds up all bytes.
+         * @return long bytes on and outside the heap
+         */
+        public long totalBytes()
+        {
+            return heapBytes() + offHeapStoreBytes;
+        }
+
+        /**
+         * Adds two estimates, e.g. of two regions.
+         * @param other the other estimate
+         * @return MemoryEstimate with the sums of the bytes
+         */
+        public MemoryEstimate plus(MemoryEstimate other)
+        {
+            return new MemoryEstimate(subscriberBytes + other.subscriberBytes, nameBytes + other.nameBytes, indexBytes + other.indexBytes,
+                    heapStoreBytes + other.heapStoreBytes, offHeapStoreBytes + other.offHeapStoreBytes);
+        }
+    }
+
+    //Constructors
+    /**
+     * SubscriptionRegistry constructor creating an empty registry keeping subscriptions on the Java heap.
+     */
+    public SubscriptionRegistry()
+    {
+        this(new HeapSubscriptionStore());
+    }
+
+    /**
+     * SubscriptionRegistry constructor creating an empty registry keeping subscriptions in a particular store.
+     * @param store store of the subscriptions, subscriptions it keeps from a previous run are only used after {@link #recoverStore(boolean)}
+     */
+    public SubscriptionRegistry(SubscriptionStore store)
+    {
+        subscribersLinkedList = new SortedSkipList<Subscriber>();
+        mealsLinkedList = new SortedSkipList<Meal>();
+        subscribersById = new Subscriber[INITIAL_CAPACITY];
+        subscriberTable = new int[INITIAL_CAPACITY * 2];
+        mealsById = new Meal[INITIAL_CAPACITY];
+        mealIds = new ConcurrentHashMap<String, Integer>();
+        this.store = store;
+        store.ensureCapacity(INITIAL_CAPACITY);
+        demand = new MealDemand();
+    }
+
+    //Methods
+    //getters for the lists
+    /**
+     * Getter for the list of registered subscribers.
+     * @return SortedSkipList of registered subscribers
+     */
+    public SortedSkipList<Subscriber> getSubscribers()
+    {
+        return subscribersLinkedList;
+    }
+
+    /**
+     * Getter for the list of registered meals, the list doesn't change, meals registered later are in the list returned by later calls.
+     * @return SortedSkipList of registered meals
+     */
+    public SortedSkipList<Meal> getMeals()
+    {
+        return mealsLinkedList;
+    }
+
+    /**
+     * Getter for all subscriptions used for reporting, iterating the subscriptions while they are changed by other clerks is safe.
+     * @return Collection view of copies of subscriptions of all subscribers in the order of subscriber ids
+     */
+    public Collection<Subscription> getSubscriptions()
+    {
+        return new AbstractCollection<Subscription>() {
+            @Override
+            public Iterator<Subscription> iterator()
+            {
+                return new Iterator<Subscription>() {
+                    /**
+                     * Id of the next subscriber whose subscriptions are copied.
+                     */
+                    private int nextId;
+                    /**
+                     * Number of registered subscribers.
+                     */
+                    private final int end = subscriberCount;
+                    /**
+                     * Meal ids and quantities of the subscriptions of the last copied subscriber.
+                     */
+                    private final int[] mealIds = new int[SLOTS], quantities = new int[SLOTS];
+                    /**
+                     * Number of copied subscriptions and position of the next one returned.
+                     */
+                    private int count, position;
+
+                    @Override
+                    public boolean hasNext()
+                    {
+                        //subscriptions of a subscriber are copied at once, so a subscription removed by a clerk meanwhile is simply skipped
+                        while (position == count && nextId < end)
+                        {
+                            count = store.copySubscriptions(nextId++, mealIds, quantities, 0);
+                            position = 0;
+                        }
+                        return position < count;
+                    }
+
+                    @Override
+                    public Subscription next()
+                    {
+                        if (!hasNext())
+                        {
+                            throw new NoSuchElementException();
+                        }
+                        int i = position++;
+                        return new Subscription(subscribersById[nextId - 1], mealsById[mealIds[i]].getMealName(), quantities[i]);
+                    }
+                };
+            }
+
+            @Override
+            public int size()
+            {
+                return store.getSubscriptionCount();
+            }
+        };
+    }
+
+    /**
+     * Getter for the subscriptions of one subscriber.
+     * @param subscriber the subscriber
+     * @return List of copies of at most 3 subscriptions of the subscriber, empty if subscriber has no subscriptions or isn't registered
+     */
+    public List<Subscription> getSubscriptions(Subscriber subscriber)
+    {
+        int id = subscriberId(subscriber.getFirstName(), subscriber.getSurname());
+        if (id < 0)
+        {
+            return List.of();
+        }
+        int[] mealIds = new int[SLOTS], quantities = new int[SLOTS];
+        int count = store.copySubscriptions(id, mealIds, quantities, 0);
+        ArrayList<Subscription> subscriptions = new ArrayList<Subscription>(SLOTS);
+        for (int i = 0; i < count; i++)
+        {
+            subscriptions.add(new Subscription(subscribersById[id], mealsById[mealIds[i]].getMealName(), quantities[i]));
+        }
+        return subscriptions;
+    }
+
+    /**
+     * Getter for the number of all stored subscriptions.
+     * @return int number of subscriptions
+     */
+    public int getSubscriptionCount()
+    {
+        return store.getSubscriptionCount();
+    }
+
+    /**
+     * Getter for the totals of the subscriptions by meal type.
+     * @return MealDemand of the registry
+     */
+    public MealDemand getDemand()
+    {
+        return demand;
+    }
+
+    /**
+     * Getter for the store of the subscriptions.
+     * @return SubscriptionStore of the registry
+     */
+    public SubscriptionStore getStore()
+    {
+        return store;
+    }
+
+    //registering subscribers and meals
+    /**
+     * Registers a subscriber, the subscriber is inserted at its sorted position in the list of subscribers in O(log n) time and gets the next id.
+     * @param subscriber subscriber to be registered
+     */
+    public void addSubscriber(Subscriber subscriber)
+    {
+        nameBytes.addAndGet(stringBytes(subscriber.getFirstName()) + stringBytes(subscriber.getSurname()));
+        subscribersLinkedList.addSorted(subscriber);
+        register(subscriber);
+    }
+
+    /**
+     * Registers many subscribers at once, the list of subscribers is sorted only once, see {@link SortedSkipList#addAllSorted(Collection)}.
+     * Names are interned, the registered Subscriber objects share Strings of equal names.
+     * @param subscribers subscribers to be registered
+     */
+    public void addAllSubscribers(Collection<Subscriber> subscribers)
+    {
+        Subscriber[] interned = intern(subscribers.toArray(new Subscriber[0]));
+        subscribersLinkedList.addAllSorted(Arrays.asList(interned));
+        registerAll(interned);
+    }
+
+    /**
+     * Registers many subscribers at once that are already sorted in ascending lexicographic order, the list of subscribers isn't sorted again,
+     * see {@link SortedSkipList#addAllPresorted(Comparable[], int)}. Names are interned, elements of the array are replaced with Subscribers sharing Strings of equal names.
+     * @param subscribers array of subscribers to be registered in ascending order
+     */
+    public void addAllSubscribersSorted(Subscriber[] subscribers)
+    {
+        intern(subscribers);
+        subscribersLinkedList.addAllPresorted(subscribers, subscribers.length);
+        registerAll(subscribers);
+    }
+
+    /**
+     * Registers a meal, the meal gets the next id and is inserted at its sorted position in a copy of the list of meals, which replaces the list,
+     * so meal types can be added while clerks work, e.g. by a {@link RestockWatcher restock}.
+     * @param meal meal to be registered
+     */
+    public void addMeal(Meal meal)
+    {
+        synchronized (mealLock)
+        {
+            SortedSkipList<Meal> meals = copyOfMeals();
+            meals.addSorted(meal);
+            registerMeal(meal);
+            mealsLinkedList = meals;
+        }
+    }
+
+    /**
+     * Registers many meals at once, the list of meals is copied and sorted only once, see {@link SortedSkipList#addAllSorted(Collection)}.
+     * @param meals meals to be registered
+     */
+    public void addAllMeals(Collection<Meal> meals)
+    {
+        synchronized (mealLock)
+        {
+            SortedSkipList<Meal> sorted = copyOfMeals();
+            sorted.addAllSorted(meals);
+            for (Meal meal : meals)
+            {
+                registerMeal(meal);
+            }
+            mealsLinkedList = sorted;
+        }
+    }
+
+    /**
+     * Copies the list of meals, the meals are already sorted so copying takes O(n) time.
+     * @return SortedSkipList with the registered meals, not yet published
+     */
+    private SortedSkipList<Meal> copyOfMeals()
+    {
+        SortedSkipList<Meal> copy = new SortedSkipList<Meal>();
+        Meal[] meals = mealsLinkedList.toArray(new Meal[0]);
+        copy.addAllPresorted(meals, meals.length);
+        return copy;
+    }
+
+    /**
+     * Replaces subscribers with Subscribers whose equal first names and surnames are one String, names are interned once for all the subscribers.
+     * The bytes of the distinct names are added to the memory of the names.
+     * @param subscribers array of subscribers, elements are replaced
+     * @return Subscriber[] the same array
+     */
+    private Subscriber[] intern(Subscriber[] subscribers)
+    {
+        HashMap<String, String> names = new HashMap<String, String>();
+        long bytes = 0;
+        for (int i = 0; i < subscribers.length; i++)
+        {
+            Subscriber subscriber = subscribers[i];
+            String fName = names.putIfAbsent(subscriber.getFirstName(), subscriber.getFirstName());
+            String lName = names.putIfAbsent(subscriber.getSurname(), subscriber.getSurname());
+            bytes += (fName == null ? stringBytes(subscriber.getFirstName()) : 0) + (lName == null ? stringBytes(subscriber.getSurname()) : 0);
+            //replace only subscribers whose names were seen before
+            if (fName != null || lName != null)
+            {
+                subscribers[i] = new Subscriber(fName != null ? fName : subscriber.getFirstName(), lName != null ? lName : subscriber.getSurname());
+            }
+        }
+        nameBytes.addAndGet(bytes);
+        return subscribers;
+    }
+
+    /**
+     * Estimates the bytes of a String with compressed references and compact strings: the String of 24 bytes and its byte array,
+     * one byte for every character if all characters are Latin-1, two otherwise.
+     * @param string the String
+     * @return long estimated bytes
+     */
+    private static long stringBytes(String string)
+    {
+        int length = string.length();
+        for (int i = 0; i < length; i++)
+        {
+            if (string.charAt(i) > 0xFF)
+            {
+                length = string.length() * 2;
+                break;
+            }
+        }
+        return 24 + align(16 + length);
+    }
+
+    /**
+     * Rounds a number of bytes up to the 8 byte alignment of objects on the heap.
+     * @param bytes number of bytes
+     * @return long aligned number of bytes
+     */
+    private static long align(long bytes)
+    {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Estimates the memory taken by the registry: subscribers and their names, the lists, tables and hash tables, the meals and the store of the subscriptions.
+     * Names are counted once per String, names shared by subscribers registered at once are counted once, and Strings shared with other objects are counted anyway.
+     * Estimates are computed from the sizes of the structures in O(1) time, so they may be asked for while clerks work.
+     * @return MemoryEstimate of the registry
+     */
+    public MemoryEstimate estimateMemory()
+    {
+        int subscribers = subscriberCount;
+        int meals = mealCount;
+        long indexBytes = subscribersLinkedList.estimateMemoryBytes() + mealsLinkedList.estimateMemoryBytes()
+                + align(16 + 4L * subscribersById.length) + align(16 + 4L * subscriberTable.length)
+                + align(16 + 4L * mealsById.length) + (long) meals * MEAL_BYTES;
+        long storeBytes = store.getMemoryBytes();
+        return new MemoryEstimate((long) subscribers * SUBSCRIBER_BYTES, nameBytes.get(), indexBytes, store.isOffHeap() ? 0 : storeBytes, store.isOffHeap() ? storeBytes : 0);
+    }
+
+    /**
+     * Gives ids to many subscribers, the tables grow once for all of them.
+     * @param subscribers subscribers to be registered
+     */
+    private void registerAll(Subscriber[] subscribers)
+    {
+        ensureCapacity(subscriberCount + subscribers.length);
+        for (Subscriber subscriber : subscribers)
+        {
+            register(subscriber);
+        }
+    }
+
+    /**
+     * Gives the next id to a subscriber and adds it to the hash table, a subscriber already registered keeps its id.
+     * @param subscriber subscriber to be registered
+     * @return int id of the subscriber
+     */
+    private int register(Subscriber subscriber)
+    {
+        int existing = subscriberId(subscriber.getFirstName(), subscriber.getSurname());
+        if (existing >= 0)
+        {
+            return existing;
+        }
+        int id = subscriberCount;
+        ensureCapacity(id + 1);
+        subscribersById[id] = subscriber;
+        insert(subscriberTable, subscriber, id);
+        subscriberCount = id + 1;
+        demand.setSubscriberCount(id + 1);
+        return id;
+    }
+
+    /**
+     * Gives the next id to a meal, a meal with the same name already registered keeps its id.
+     * @param meal meal to be registered
+     */
+    private void registerMeal(Meal meal)
+    {
+        if (mealIds.containsKey(meal.getMealName()))
+        {
+            return;
+        }
+        int id = mealCount;
+        if (id == mealsById.length)
+        {
+            mealsById = Arrays.copyOf(mealsById, id * 2);
+        }
+        mealsById[id] = meal;
+        demand.addMeal(meal);
+        mealCount = id + 1;
+        mealIds.put(meal.getMealName(), id);
+    }
+
+    /**
+     * Grows the subscriber table, the hash table and the store to have room for the number of subscribers, the hash table is rebuilt when it grows.
+     * @param capacity number of subscribers needed
+     */
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity <= subscribersById.length)
+        {
+            return;
+        }
+        int newCapacity = Math.max(capacity, subscribersById.length * 2);
+        Subscriber[] grownById = Arrays.copyOf(subscribersById, newCapacity);
+        //table at most half full, size is a power of 2
+        int[] grownTable = new int[Integer.highestOneBit(newCapacity * 2 - 1) << 1];
+        for (int id = 0; id < subscriberCount; id++)
+        {
+            insert(grownTable, grownById[id], id);
+        }
+        store.ensureCapacity(newCapacity);
+        subscribersById = grownById;
+        subscriberTable = grownTable;
+    }
+
+    /**
+     * Inserts an id into a hash table with linear probing.
+     * @param table the hash table
+     * @param subscriber the subscriber with the id
+     * @param id id of the subscriber
+     */
+    private static void insert(int[] table, Subscriber subscriber, int id)
+    {
+        int mask = table.length - 1;
+        int i = hash(subscriber.getFirstName(), subscriber.getSurname()) & mask;
+        while (table[i] != 0)
+        {
+            i = (i + 1) & mask;
+        }
+        table[i] = id + 1;
+    }
+
+    /**
+     * Hash of a full name, same as {@link Subscriber#hashCode()} with high bits mixed into the low bits.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @return int hash of the full name
+     */
+    private static int hash(String fName, String lName)
+    {
+        int hash = 31 * lName.hashCode() + fName.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    //lookups
+    /**
+     * Finds the id of a registered subscriber by full name without creating objects.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @return int id of the subscriber, -1 if subscriber is not registered
+     */
+    public int subscriberId(String fName, String lName)
+    {
+        int[] table = subscriberTable;
+        Subscriber[] byId = subscribersById;
+        int mask = table.length - 1;
+        int i = hash(fName, lName) & mask;
+        int entry;
+        while ((entry = table[i]) != 0)
+        {
+            Subscriber subscriber = byId[entry - 1];
+            if (subscriber.getSurname().equals(lName) && subscriber.getFirstName().equals(fName))
+            {
+                return entry - 1;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the id of a registered meal by meal type name.
+     * @param mealName name of the meal type
+     * @return int id of the meal, -1 if meal is not registered
+     */
+    public int mealId(String mealName)
+    {
+        Integer id = mealIds.get(mealName);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Finds a registered subscriber by full name.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @return registered Subscriber, or null if subscriber is not registered
+     */
+    public Subscriber getSubscriber(String fName, String lName)
+    {
+        int id = subscriberId(fName, lName);
+        return id < 0 ? null : subscribersById[id];
+    }
+
+    /**
+     * Finds a registered subscriber by id.
+     * @param id id of the subscriber
+     * @return registered Subscriber
+     */
+    public Subscriber getSubscriber(int id)
+    {
+        return subscribersById[id];
+    }
+
+    /**
+     * Finds a registered meal by meal type name.
+     * @param mealName name of the meal type
+     * @return registered Meal, or null if meal is not registered
+     */
+    public Meal getMeal(String mealName)
+    {
+        int id = mealId(mealName);
+        return id < 0 ? null : mealsById[id];
+    }
+
+    /**
+     * Finds a registered meal by id.
+     * @param id id of the meal
+     * @return registered Meal
+     */
+    public Meal getMeal(int id)
+    {
+        return mealsById[id];
+    }
+
+    /**
+     * Getter for the number of registered subscribers, ids of subscribers are smaller than this number.
+     * @return int number of registered subscribers
+     */
+    public int getSubscriberCount()
+    {
+        return subscriberCount;
+    }
+
+    /**
+     * Getter for the number of registered meals, ids of meals are smaller than this number.
+     * @return int number of registered meals
+     */
+    public int getMealCount()
+    {
+        return mealCount;
+    }
+
+    /**
+     * Finds a subscription of a particular meal type for a particular subscriber.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @param mealType name of the meal type
+     * @return copy of the stored Subscription, or null if subscription doesn't exist
+     */
+    public Subscription getSubscription(String fName, String lName, String mealType)
+    {
+        int subscriberId = subscriberId(fName, lName);
+        int mealId = mealId(mealType);
+        if (subscriberId < 0 || mealId < 0)
+        {
+            return null;
+        }
+        int quantity = getQuantity(subscriberId, mealId);
+        return quantity == 0 ? null : new Subscription(subscribersById[subscriberId], mealsById[mealId].getMealName(), quantity);
+    }
+
+    /**
+     * Counts different meal types the subscriber is subscribed to.
+     * @param fName subscriber's first name
+     * @param lName subscriber's surname
+     * @return int number of subscriptions of the subscriber, 0 if subscriber has no subscriptions or isn't registered
+     */
+    public int countSubscriptions(String fName, String lName)
+    {
+        int id = subscriberId(fName, lName);
+        return id < 0 ? 0 : countSubscriptions(id);
+    }
+
+    /**
+     * Counts different meal types the subscriber is subscribed to.
+     * @param subscriberId id of the subscriber
+     * @return int number of subscriptions of the subscriber
+     */
+    public int countSubscriptions(int subscriberId)
+    {
+        return store.countSubscriptions(subscriberId);
+    }
+
+    /**
+     * Finds the quantity of meals of a particular meal type the subscriber is subscribed to.
+     * @param subscriberId id of the subscriber
+     * @param mealId id of the meal
+     * @return int quantity of meals, 0 if the subscriber has no subscription of the meal type
+     */
+    public int getQuantity(int subscriberId, int mealId)
+    {
+        return store.getQuantity(subscriberId, mealId);
+    }
+
+    /**
+     * Copies meal ids and quantities of the subscriptions of one subscriber into arrays, without creating objects.
+     * @param subscriberId id of the subscriber
+     * @param mealIds array the meal ids are copied to
+     * @param quantities array the quantities are copied to
+     * @param offset position of the first copied subscription in the arrays, the arrays need room for 3 subscriptions after it
+     * @return int number of subscriptions copied
+     */
+    public int copySubscriptions(int subscriberId, int[] mealIds, int[] quantities, int offset)
+    {
+        return store.copySubscriptions(subscriberId, mealIds, quantities, offset);
+    }
+
+    //changing subscriptions
+    /**
+     * Sets the quantity of meals of a particular meal type the subscriber is subscribed to, quantity 0 removes the subscription,
+     * and updates the {@link MealDemand totals} of the subscriptions. Must not be called at the same time for the same subscriber.
+     * @param subscriberId id of the subscriber
+     * @param mealId id of the meal
+     * @param quantity new quantity of meals, 0 to remove the subscription
+     * @throws IllegalStateException when a new subscription is added to a subscriber that already has 3 subscriptions
+     */
+    public void setQuantity(int subscriberId, int mealId, int quantity)
+    {
+        int before = store.getQuantity(subscriberId, mealId);
+        //the number of meal types only changes when a subscription is added or removed
+        int typesBefore = before == 0 || quantity == 0 ? store.countSubscriptions(subscriberId) : 0;
+        try
+        {
+            store.setQuantity(subscriberId, mealId, quantity);
+        }
+        catch (IllegalStateException exception)
+        {
+            throw new IllegalStateException("Subscriber " + subscribersById[subscriberId] + " has no free subscription slot.", exception);
+        }
+        demand.onChange(mealId, before, quantity, typesBefore);
+    }
+
+    //keeping the store across restarts
+    /**
+     * Computes a fingerprint of the registered subscribers and meals in the order of their ids.
+     * Subscriptions kept by a store from a previous run belong to these ids only if the fingerprint is the same.
+     * @return long fingerprint of the names of subscribers and meals
+     */
+    public long fingerprint()
+    {
+        long fingerprint = 1125899906842597L;
+        for (int id = 0; id < subscriberCount; id++)
+        {
+            fingerprint = 31 * fingerprint + subscribersById[id].getFirstName().hashCode();
+            fingerprint = 31 * fingerprint + subscribersById[id].getSurname().hashCode();
+        }
+        for (int id = 0; id < mealCount; id++)
+        {
+            fingerprint = 31 * fingerprint + mealsById[id].getMealName().hashCode();
+        }
+        return (fingerprint * 31 + subscriberCount) * 31 + mealCount;
+    }
+
+    /**
+     * Decides whether subscriptions the store kept from a previous run are used, called once after subscribers and meals are registered.
+     * Kept subscriptions are taken from the balances of meals read from the input file, otherwise the store is cleared.
+     * @param keep true to keep subscriptions of the same subscribers and meals, false to always start without subscriptions
+     * @return int number of subscriptions kept
+     */
+    public int recoverStore(boolean keep)
+    {
+        long fingerprint = fingerprint();
+        if (!keep || !store.resume(fingerprint))
+        {
+            store.reset(fingerprint);
+            demand.clear();
+            return 0;
+        }
+        int[] mealIds = new int[SLOTS], quantities = new int[SLOTS];
+        long[] taken = new long[mealCount];
+        for (int id = 0; id < subscriberCount; id++)
+        {
+            int count = store.copySubscriptions(id, mealIds, quantities, 0);
+            for (int i = 0; i < count; i++)
+            {
+                taken[mealIds[i]] += quantities[i];
+                //kept subscriptions didn't go through setQuantity
+                demand.onChange(mealIds[i], 0, quantities[i], i);
+            }
+        }
+        for (int id = 0; id < mealCount; id++)
+        {
+            //the balance can't go below 0 if restocks in the input file are lower than before
+            mealsById[id].setMealBalance((int) Math.max(0, mealsById[id].getMealBalance() - taken[id]));
+        }
+        return store.getSubscriptionCount();
+    }
+
+    /**
+     * Closes the store, a store backed by files writes the subscriptions out.
+     * @throws IOException when the store can't be written
+     */
+    public void close() throws IOException
+    {
+        store.close();
+    }
+}
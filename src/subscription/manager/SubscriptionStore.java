@@ -0,0 +1,102 @@
+package subscription.manager;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A SubscriptionStore keeps the subscriptions of a {@link SubscriptionRegistry registry} as quantities of meals by subscriber id and meal id.
+ * <p>Every subscriber can have at most 3 subscriptions (see {@link SubscriptionEngine#MAX_MEAL_TYPES}), a subscription with quantity 0 doesn't exist.
+ * Subscriptions can be read while other clerks change them, changes of one subscriber need to be done by one thread at a time,
+ * {@link SubscriptionEngine} does that with the subscriber's lock. {@link #ensureCapacity(int)} is only called while subscribers are registered, before clerks start working.
+ * <p>Implementations:
+ * <ul>
+ *     <li>
+ *         {@link HeapSubscriptionStore} - slots in a long[] array on the Java heap, the default
+ *     </li>
+ *     <li>
+ *         {@link OffHeapSubscriptionStore} - fixed-width columns outside the Java heap, in direct memory or in memory-mapped files that survive restarts
+ *     </li>
+ * </ul>
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public interface SubscriptionStore extends Closeable {
+    /**
+     * Makes room for subscriptions of the number of subscribers.
+     * @param subscribers number of registered subscribers, ids are smaller than this number
+     */
+    void ensureCapacity(int subscribers);
+
+    /**
+     * Finds the quantity of meals of a particular meal type the subscriber is subscribed to.
+     * @param subscriberId id of the subscriber
+     * @param mealId id of the meal
+     * @return int quantity of meals, 0 if the subscriber has no subscription of the meal type
+     */
+    int getQuantity(int subscriberId, int mealId);
+
+    /**
+     * Sets the quantity of meals of a particular meal type the subscriber is subscribed to, quantity 0 removes the subscription.
+     * Must not be called at the same time for the same subscriber.
+     * @param subscriberId id of the subscriber
+     * @param mealId id of the meal
+     * @param quantity new quantity of meals, 0 to remove the subscription
+     * @throws IllegalStateException when a new subscription is added to a subscriber that already has 3 subscriptions
+     */
+    void setQuantity(int subscriberId, int mealId, int quantity);
+
+    /**
+     * Counts different meal types the subscriber is subscribed to.
+     * @param subscriberId id of the subscriber
+     * @return int number of subscriptions of the subscriber
+     */
+    int countSubscriptions(int subscriberId);
+
+    /**
+     * Copies meal ids and quantities of the subscriptions of one subscriber into arrays, without creating objects.
+     * @param subscriberId id of the subscriber
+     * @param mealIds array the meal ids are copied to
+     * @param quantities array the quantities are copied to
+     * @param offset position of the first copied subscription in the arrays, the arrays need room for 3 subscriptions after it
+     * @return int number of subscriptions copied
+     */
+    int copySubscriptions(int subscriberId, int[] mealIds, int[] quantities, int offset);
+
+    /**
+     * Getter for the number of all stored subscriptions.
+     * @return int number of subscriptions
+     */
+    int getSubscriptionCount();
+
+    /**
+     * Getter for the memory holding the subscriptions, used for accounting memory of a {@link Region region}.
+     * @return long bytes of the slots or columns, including room for subscribers not registered yet
+     */
+    long getMemoryBytes();
+
+    /**
+     * Checks where the subscriptions are kept.
+     * @return boolean true if the subscriptions are outside the Java heap
+     */
+    boolean isOffHeap();
+
+    /**
+     * Keeps the subscriptions stored by a previous run of the program, if they were stored for the same registered subscribers and meals.
+     * @param fingerprint fingerprint of the registered subscribers and meals in the order of their ids, see {@link SubscriptionRegistry#fingerprint()}
+     * @return boolean true if the stored subscriptions are kept, false if there are none or they belong to other subscribers and meals
+     */
+    boolean resume(long fingerprint);
+
+    /**
+     * Removes all subscriptions and remembers the fingerprint of the registered subscribers and meals they will be stored for.
+     * @param fingerprint fingerprint of the registered subscribers and meals in the order of their ids
+     */
+    void reset(long fingerprint);
+
+    /**
+     * Writes the stored subscriptions out if the store is backed by files and releases the store.
+     * @throws IOException when the files can't be written
+     */
+    @Override
+    void close() throws IOException;
+}
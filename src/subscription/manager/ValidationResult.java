@@ -0,0 +1,83 @@
+package subscription.manager;
+
+import subscription.manager.exceptions.*;
+
+/**
+ * Outcome of a validation or a subscription change done by the {@link SubscriptionEngine engine}.
+ * <p>Validations return a ValidationResult instead of throwing an exception, so batch processing and listings can check many subscribers, meals and subscriptions cheaply.
+ * The exceptions from {@link subscription.manager.exceptions} are only created at the interactive boundary, where {@link #toException(String)} turns a failed result into the exception clerks are used to,
+ * the message for the result is built by {@link SubscriptionEngine#describe(ValidationResult, String, String, String, int)}.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public enum ValidationResult {
+    /**
+     * Validation passed or the change was done.
+     */
+    OK,
+    /**
+     * Subscriber is not a registered subscriber, reported as {@link NoSuchSubscriberException}.
+     */
+    NO_SUCH_SUBSCRIBER,
+    /**
+     * Meal type is not a registered meal, reported as {@link NoSuchMealException}.
+     */
+    NO_SUCH_MEAL,
+    /**
+     * Subscriber has no subscriptions, reported as {@link NoSuchSubscriptionException}.
+     */
+    NO_SUBSCRIPTIONS,
+    /**
+     * Subscriber has no subscription of the meal type, reported as {@link NoSuchSubscriptionException}.
+     */
+    NO_SUCH_SUBSCRIPTION,
+    /**
+     * Subscriber has already reached the limit of different meal types, reported as {@link IllegalSubscriptionQuantityException}.
+     */
+    MEAL_TYPE_LIMIT_REACHED,
+    /**
+     * There is not enough meals available to add to the subscription, reported as {@link IllegalMealQuantityException}.
+     */
+    NOT_ENOUGH_MEALS,
+    /**
+     * More meals are removed than the subscriber is subscribed to, reported as {@link IllegalMealQuantityException}.
+     */
+    TOO_MANY_MEALS_REMOVED;
+
+    //Methods
+    /**
+     * Checks if the validation passed or the change was done.
+     * @return boolean true for {@link #OK}
+     */
+    public boolean isOk()
+    {
+        return this == OK;
+    }
+
+    /**
+     * Creates the exception reporting this result to the clerk.
+     * @param message message of the exception, see {@link SubscriptionEngine#describe(ValidationResult, String, String, String, int)}
+     * @return RuntimeException from {@link subscription.manager.exceptions} matching the result
+     * @throws IllegalStateException when the result is {@link #OK}
+     */
+    public RuntimeException toException(String message)
+    {
+        switch (this)
+        {
+            case NO_SUCH_SUBSCRIBER:
+                return new NoSuchSubscriberException(message);
+            case NO_SUCH_MEAL:
+                return new NoSuchMealException(message);
+            case NO_SUBSCRIPTIONS:
+            case NO_SUCH_SUBSCRIPTION:
+                return new NoSuchSubscriptionException(message);
+            case MEAL_TYPE_LIMIT_REACHED:
+                return new IllegalSubscriptionQuantityException(message);
+            case NOT_ENOUGH_MEALS:
+            case TOO_MANY_MEALS_REMOVED:
+                return new IllegalMealQuantityException(message);
+            default:
+                throw new IllegalStateException("Result " + this + " is not a failure.");
+        }
+    }
+}
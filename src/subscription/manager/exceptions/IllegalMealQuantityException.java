@@ -16,4 +16,14 @@ public class IllegalMealQuantityException extends IllegalArgumentException {
     {
         super(message);
     }
+
+    /**
+     * Overriden without a stack trace, the message with the quantities is all the clerk and the apology letter need.
+     * @return this exception without a stack trace
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace()
+    {
+        return this;
+    }
 }
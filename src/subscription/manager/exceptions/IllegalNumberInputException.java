@@ -14,4 +14,14 @@ public class IllegalNumberInputException extends IllegalArgumentException {
     {
         super(message);
     }
+
+    /**
+     * Overriden without a stack trace, the exception only asks the clerk to type the number again.
+     * @return this exception without a stack trace
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace()
+    {
+        return this;
+    }
 }
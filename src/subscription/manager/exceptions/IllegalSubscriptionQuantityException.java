@@ -14,4 +14,14 @@ public class IllegalSubscriptionQuantityException extends IllegalArgumentExcepti
     {
         super(message);
     }
+
+    /**
+     * Overriden without a stack trace, the exception only ends the option when the limit of meal types is reached.
+     * @return this exception without a stack trace
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace()
+    {
+        return this;
+    }
 }
@@ -16,4 +16,14 @@ public class NoSuchMealException extends NoSuchElementException {
     {
         super(message);
     }
-}
\ No newline at end of file
+
+    /**
+     * Overriden without a stack trace, the exception only asks the clerk to type the meal type again.
+     * @return this exception without a stack trace
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace()
+    {
+        return this;
+    }
+}
@@ -16,4 +16,14 @@ public class NoSuchSubscriberException extends NoSuchElementException {
     {
         super(message);
     }
+
+    /**
+     * Overriden without a stack trace, the exception only asks the clerk to type the subscriber's name again.
+     * @return this exception without a stack trace
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace()
+    {
+        return this;
+    }
 }
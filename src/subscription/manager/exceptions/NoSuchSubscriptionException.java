@@ -16,4 +16,14 @@ public class NoSuchSubscriptionException extends NoSuchElementException {
     {
         super(message);
     }
+
+    /**
+     * Overriden without a stack trace, the exception only tells the clerk that there is nothing to remove.
+     * @return this exception without a stack trace
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace()
+    {
+        return this;
+    }
 }
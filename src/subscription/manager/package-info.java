@@ -1,5 +1,5 @@
 /**
- * Provides {@link subscription.manager.MainProgram driver class} of the subscription manager program, and a {@link subscription.manager.SortedLinkedList SortedLinkedList class} defining insertion sort algorithm used in the program.
+ * Provides {@link subscription.manager.MainProgram driver class} of the subscription manager program, a {@link subscription.manager.SortedLinkedList SortedLinkedList class} defining insertion sort algorithm used in the program, a {@link subscription.manager.SortedSkipList SortedSkipList class} keeping subscribers and meals sorted with O(log n) insertion, and a {@link subscription.manager.SubscriptionRegistry SubscriptionRegistry class} storing and indexing subscribers, meals and subscriptions.
  * <p>It can be used to help an office clerk manage subscribers’ subscriptions. This system allows subscribers can add/remove meals to/from their subscription with assumption that the number of each type of meal available is limited.. The {@link subscription.manager.MainProgram main program} contained in this package assumes that </p>
  * @author Robert Petecki
  * @version 1.0 Date created: 01/11/2023
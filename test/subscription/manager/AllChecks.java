@@ -0,0 +1,27 @@
+package subscription.manager;
+
+/**
+ * Runs the cases of all check classes of the test folder and ends with exit code 1 if any case failed, see {@link Check}.
+ * <p>Usage, from the project directory after compiling src and test into out:
+ * <pre>
+ * java -cp out subscription.manager.AllChecks
+ * </pre>
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class AllChecks {
+    /**
+     * Runs all checks.
+     * @param args not used
+     */
+    public static void main(String[] args)
+    {
+        SubscriptionJournalCheck.run();
+        ChangeFeedCheck.run();
+        SortedSkipListCheck.run();
+        BinaryCatalogCheck.run();
+        RestockWatcherCheck.run();
+        MealDemandCheck.run();
+        Check.exit();
+    }
+}
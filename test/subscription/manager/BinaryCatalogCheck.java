@@ -0,0 +1,285 @@
+package subscription.manager;
+
+import subscription.Meal;
+import subscription.Subscriber;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that a {@link BinaryCatalog} keeps subscribers and meals unchanged when a text input file is converted to a catalog and back,
+ * that a catalog claiming a wrong order is sorted after all and that damaged catalogs are rejected.
+ * <p>Input files are loaded with an {@link InputDataLoader} like the program does, the loaded registries are compared by their subscribers and meals in order.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class BinaryCatalogCheck {
+    //Fields
+    /**
+     * Subscribers of the small input file, out of order, with names shared by several subscribers and names outside ASCII.
+     */
+    private static final String[] SUBSCRIBERS = {"Ted Smith", "Amy Lee", "Łukasz Żółć", "Bob Lee", "Amy Smith", "Zoë Brontë", "Lee Amy"};
+
+    /**
+     * Runs the cases of this check only.
+     * @param args not used
+     */
+    public static void main(String[] args)
+    {
+        run();
+        Check.exit();
+    }
+
+    /**
+     * Runs the cases of this check.
+     */
+    static void run()
+    {
+        Check.run("BinaryCatalog converts a text input file to a catalog and back unchanged", BinaryCatalogCheck::roundTripsSmallInput);
+        Check.run("BinaryCatalog converts an input file larger than its write buffer unchanged", BinaryCatalogCheck::roundTripsLargeInput);
+        Check.run("BinaryCatalog sorts subscribers of a catalog flagged presorted out of order", BinaryCatalogCheck::sortsWronglyFlaggedCatalog);
+        Check.run("BinaryCatalog rejects damaged catalogs", BinaryCatalogCheck::rejectsDamagedCatalogs);
+    }
+
+    /**
+     * A text file becomes a catalog with the same subscribers and meals, read on one thread or many, and the catalog becomes the same text file again.
+     * @throws Exception when the case fails
+     */
+    private static void roundTripsSmallInput() throws Exception
+    {
+        Path directory = Check.temporaryDirectory("catalog-check");
+        try
+        {
+            Path input = directory.resolve("input.txt");
+            Check.writeInput(input, SUBSCRIBERS, "Pad Thai", 12, "Crème brûlée", 0, "Curry", 10, "Lee", 7);
+            roundTrip(directory, input);
+        }
+        finally
+        {
+            Check.delete(directory);
+        }
+    }
+
+    /**
+     * Enough subscribers with distinct names that the catalog is written through the buffer many times and read on many threads.
+     * @throws Exception when the case fails
+     */
+    private static void roundTripsLargeInput() throws Exception
+    {
+        Path directory = Check.temporaryDirectory("catalog-check");
+        try
+        {
+            Random random = new Random(2023);
+            String[] subscribers = new String[150_000];
+            for (int i = 0; i < subscribers.length; i++)
+            {
+                subscribers[i] = "First" + random.nextInt(5000) + " Surname" + random.nextInt(50_000);
+            }
+            Object[] meals = new Object[2 * 300];
+            for (int i = 0; i < 300; i++)
+            {
+                meals[2 * i] = "Meal " + i;
+                meals[2 * i + 1] = random.nextInt(1000);
+            }
+            Path input = directory.resolve("input.txt");
+            Check.writeInput(input, subscribers, meals);
+            Path catalog = roundTrip(directory, input);
+            Check.isTrue(Files.size(catalog) > 1 << 20, "the catalog is larger than the write buffer");
+        }
+        finally
+        {
+            Check.delete(directory);
+        }
+    }
+
+    /**
+     * A catalog with the presorted flag and subscribers out of order is not trusted, the subscribers are sorted when they are loaded.
+     * @throws Exception when the case fails
+     */
+    private static void sortsWronglyFlaggedCatalog() throws Exception
+    {
+        Path directory = Check.temporaryDirectory("catalog-check");
+        try
+        {
+            Path catalog = directory.resolve("input.bin");
+            String[] strings = {"Bob", "Smith", "Amy", "Lee", "Curry"};
+            writeCatalog(catalog, BinaryCatalog.VERSION, BinaryCatalog.PRESORTED, strings, new int[]{0, 1, 2, 3, 2, 1}, new int[]{4, 10});
+            try (FileChannel channel = FileChannel.open(catalog, StandardOpenOption.READ))
+            {
+                Check.equal(false, BinaryCatalog.read(channel, false).presorted(), "presorted flag of subscribers out of order");
+            }
+            SubscriptionRegistry registry = load(catalog, 1);
+            Check.equal(List.of("Amy Lee", "Amy Smith", "Bob Smith"), subscribers(registry), "subscribers");
+            Check.equal(List.of("Curry 10"), meals(registry), "meals");
+        }
+        finally
+        {
+            Check.delete(directory);
+        }
+    }
+
+    /**
+     * Catalogs cut short, of another version, with a name outside the string table or with a negative balance are rejected.
+     * @throws Exception when the case fails
+     */
+    private static void rejectsDamagedCatalogs() throws Exception
+    {
+        Path directory = Check.temporaryDirectory("catalog-check");
+        try
+        {
+            Path catalog = directory.resolve("input.bin");
+            String[] strings = {"Amy", "Lee", "Curry"};
+            writeCatalog(catalog, BinaryCatalog.VERSION, BinaryCatalog.PRESORTED, strings, new int[]{0, 1}, new int[]{2, 10});
+            Check.equal(List.of("Amy Lee"), subscribers(load(catalog, 1)), "subscribers of the whole catalog");
+
+            try (FileChannel channel = FileChannel.open(catalog, StandardOpenOption.WRITE))
+            {
+                channel.truncate(channel.size() - 1);
+            }
+            Check.fails(InputMismatchException.class, () -> load(catalog, 1), "loading a catalog cut short");
+
+            writeCatalog(catalog, BinaryCatalog.VERSION + 1, BinaryCatalog.PRESORTED, strings, new int[]{0, 1}, new int[]{2, 10});
+            Check.fails(InputMismatchException.class, () -> load(catalog, 1), "loading a catalog of another version");
+
+            writeCatalog(catalog, BinaryCatalog.VERSION, BinaryCatalog.PRESORTED, strings, new int[]{0, 3}, new int[]{2, 10});
+            Check.fails(InputMismatchException.class, () -> load(catalog, 4), "loading a catalog with a name outside the string table");
+
+            writeCatalog(catalog, BinaryCatalog.VERSION, BinaryCatalog.PRESORTED, strings, new int[]{0, 1}, new int[]{2, -1});
+            Check.fails(InputMismatchException.class, () -> load(catalog, 1), "loading a catalog with a negative balance");
+        }
+        finally
+        {
+            Check.delete(directory);
+        }
+    }
+
+    /**
+     * Converts a text input file to a catalog and the catalog back to text, and fails the case if anything changed on the way.
+     * @param directory directory the converted files are written to
+     * @param input the text input file
+     * @return Path of the catalog
+     * @throws Exception when the case fails
+     */
+    private static Path roundTrip(Path directory, Path input) throws Exception
+    {
+        SubscriptionRegistry fromText = load(input, 1);
+        Path catalog = directory.resolve("input.bin");
+        BinaryCatalog.writeCatalog(fromText, catalog);
+        try (FileChannel channel = FileChannel.open(catalog, StandardOpenOption.READ))
+        {
+            Check.equal(true, BinaryCatalog.isCatalog(channel), "the catalog is recognised");
+            Check.equal(true, BinaryCatalog.read(channel, false).presorted(), "presorted flag of the written catalog");
+        }
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ))
+        {
+            Check.equal(false, BinaryCatalog.isCatalog(channel), "the text file is recognised as a catalog");
+        }
+        for (int threads : new int[]{1, 4})
+        {
+            SubscriptionRegistry fromCatalog = load(catalog, threads);
+            Check.equal(subscribers(fromText), subscribers(fromCatalog), "subscribers read from the catalog on " + threads + " threads");
+            Check.equal(meals(fromText), meals(fromCatalog), "meals read from the catalog on " + threads + " threads");
+        }
+
+        //the text written from the catalog is the text written from the input file, and loads the same registry
+        Path expectedText = directory.resolve("expected.txt");
+        Path text = directory.resolve("output.txt");
+        BinaryCatalog.writeText(fromText, expectedText);
+        BinaryCatalog.writeText(load(catalog, 1), text);
+        Check.isTrue(Arrays.equals(Files.readAllBytes(expectedText), Files.readAllBytes(text)), "the text written from the catalog equals the text written from the input file");
+        SubscriptionRegistry again = load(text, 4);
+        Check.equal(subscribers(fromText), subscribers(again), "subscribers of the text written back");
+        Check.equal(meals(fromText), meals(again), "meals of the text written back");
+        return catalog;
+    }
+
+    /**
+     * Loads an input file into a new registry.
+     * @param file the input file, text or catalog
+     * @param threads number of threads of the loader
+     * @return SubscriptionRegistry with the subscribers and meals of the file
+     * @throws Exception when the file can't be loaded
+     */
+    private static SubscriptionRegistry load(Path file, int threads) throws Exception
+    {
+        SubscriptionRegistry registry = new SubscriptionRegistry();
+        new InputDataLoader(file, threads).load(registry);
+        return registry;
+    }
+
+    /**
+     * Lists the names of the registered subscribers.
+     * @param registry the registry
+     * @return List of first names and surnames in the order of the registry
+     */
+    private static List<String> subscribers(SubscriptionRegistry registry)
+    {
+        List<String> names = new ArrayList<String>();
+        for (Subscriber subscriber : registry.getSubscribers())
+        {
+            names.add(subscriber.getFirstName() + " " + subscriber.getSurname());
+        }
+        return names;
+    }
+
+    /**
+     * Lists the names and balances of the registered meals.
+     * @param registry the registry
+     * @return List of names and balances in the order of the registry
+     */
+    private static List<String> meals(SubscriptionRegistry registry)
+    {
+        List<String> meals = new ArrayList<String>();
+        for (Meal meal : registry.getMeals())
+        {
+            meals.add(meal.getMealName() + " " + meal.getMealBalance());
+        }
+        return meals;
+    }
+
+    /**
+     * Writes a catalog byte by byte in the format described by {@link BinaryCatalog}, so its contents can be chosen freely.
+     * @param file path of the catalog
+     * @param version version in the header
+     * @param flags flags in the header
+     * @param strings the string table
+     * @param subscriberIds positions of the first name and the surname of every subscriber
+     * @param meals position of the name and the balance of every meal
+     * @throws Exception when the catalog can't be written
+     */
+    private static void writeCatalog(Path file, int version, int flags, String[] strings, int[] subscriberIds, int[] meals) throws Exception
+    {
+        int stringBytes = 0;
+        for (String name : strings)
+        {
+            stringBytes += 2 + name.getBytes(StandardCharsets.UTF_8).length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryCatalog.HEADER_SIZE + stringBytes + 4 * subscriberIds.length + 4 * meals.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("SMCT".getBytes(StandardCharsets.US_ASCII)).putInt(version).putInt(flags).putInt(strings.length).putLong(stringBytes)
+                .putInt(subscriberIds.length / 2).putInt(meals.length / 2);
+        for (String name : strings)
+        {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) bytes.length).put(bytes);
+        }
+        for (int id : subscriberIds)
+        {
+            buffer.putInt(id);
+        }
+        for (int value : meals)
+        {
+            buffer.putInt(value);
+        }
+        Files.write(file, buffer.array());
+    }
+}
@@ -0,0 +1,205 @@
+package subscription.manager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks that a {@link ChangeFeed} passes every event to every listener in order while the ring wraps around many times,
+ * with publishers waiting for slow listeners, and that a failing listener is removed without stopping the others.
+ * <p>Rings of a few slots are used, so every case laps the ring hundreds of times. Restocks carry the publisher in the meal id
+ * and a running number in the quantity, so a listener can tell which events it got and in which order.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class ChangeFeedCheck {
+    //Fields
+    /**
+     * Seconds a case may take, a listener waiting for a lost event would wait forever.
+     */
+    private static final long TIME_LIMIT = 30;
+
+    /**
+     * Runs the cases of this check only.
+     * @param args not used
+     */
+    public static void main(String[] args)
+    {
+        run();
+        Check.exit();
+    }
+
+    /**
+     * Runs the cases of this check.
+     */
+    static void run()
+    {
+        Check.run("ChangeFeed passes events in order when one publisher laps a small ring", () -> Check.within(TIME_LIMIT, ChangeFeedCheck::wrapsAroundWithOnePublisher));
+        Check.run("ChangeFeed passes every event of many publishers to every listener", () -> Check.within(TIME_LIMIT, ChangeFeedCheck::wrapsAroundWithManyPublishers));
+        Check.run("ChangeFeed removes a failing listener and keeps feeding the others", () -> Check.within(TIME_LIMIT, ChangeFeedCheck::removesFailingListener));
+    }
+
+    /**
+     * One publisher laps a ring of 4 slots 250 times while a slow listener makes it wait, the listener gets every sequence once and in order.
+     * @throws Exception when the case fails
+     */
+    private static void wrapsAroundWithOnePublisher() throws Exception
+    {
+        int events = 1000;
+        ChangeFeed feed = new ChangeFeed(4);
+        List<Long> sequences = new ArrayList<Long>();
+        List<Integer> quantities = new ArrayList<Integer>();
+        feed.addListener("slow", (event, sequence, endOfBatch) -> {
+            sequences.add(sequence);
+            quantities.add(event.getQuantity());
+            if (sequence % 100 == 0)
+            {
+                //let the publisher fill the ring
+                sleep(1);
+            }
+        });
+        for (int i = 0; i < events; i++)
+        {
+            feed.publishRestock("Curry", 0, i, i);
+        }
+        feed.close();
+        Check.equal(events, sequences.size(), "number of events handled");
+        for (int i = 0; i < events; i++)
+        {
+            Check.equal((long) i, sequences.get(i), "sequence of event " + i);
+            Check.equal(i, quantities.get(i), "quantity of event " + i);
+        }
+        Check.isTrue(feed.getPublisherWaits() > 0, "the publisher waited for the slow listener");
+        Check.equal(0L, feed.getLags().get("slow"), "lag of the listener after closing");
+    }
+
+    /**
+     * Four publishers lap a ring of 8 slots thousands of times, each of two listeners gets every sequence once in order,
+     * and the events of every publisher in the order they were published.
+     * @throws Exception when the case fails
+     */
+    private static void wrapsAroundWithManyPublishers() throws Exception
+    {
+        int publishers = 4;
+        int eventsPerPublisher = 20_000;
+        ChangeFeed feed = new ChangeFeed(8);
+        Recorder first = new Recorder(publishers);
+        Recorder second = new Recorder(publishers);
+        feed.addListener("first", first);
+        feed.addListener("second", second);
+        Thread[] threads = new Thread[publishers];
+        for (int p = 0; p < publishers; p++)
+        {
+            int publisher = p;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < eventsPerPublisher; i++)
+                {
+                    feed.publishRestock("Meal " + publisher, publisher, i, i);
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        feed.close();
+        Check.equal((long) publishers * eventsPerPublisher, feed.getPublished(), "number of published events");
+        for (Recorder recorder : new Recorder[]{first, second})
+        {
+            Check.equal(null, recorder.error, "first event out of order");
+            Check.equal((long) publishers * eventsPerPublisher, recorder.handled, "number of events handled");
+            for (int p = 0; p < publishers; p++)
+            {
+                Check.equal(eventsPerPublisher, recorder.next[p], "events of publisher " + p);
+            }
+        }
+    }
+
+    /**
+     * A listener that throws is reported once and removed, publishers stop waiting for it and the other listener gets every event.
+     * @throws Exception when the case fails
+     */
+    private static void removesFailingListener() throws Exception
+    {
+        int events = 500;
+        ChangeFeed feed = new ChangeFeed(4);
+        AtomicLong failingCalls = new AtomicLong();
+        AtomicLong handled = new AtomicLong();
+        feed.addListener("failing", (event, sequence, endOfBatch) -> {
+            failingCalls.incrementAndGet();
+            throw new IllegalStateException("Failing on purpose.");
+        });
+        feed.addListener("working", (event, sequence, endOfBatch) -> handled.incrementAndGet());
+        for (int i = 0; i < events; i++)
+        {
+            feed.publishRestock("Curry", 0, i, i);
+        }
+        feed.close();
+        Check.equal(1L, failingCalls.get(), "calls of the failing listener");
+        Check.equal((long) events, handled.get(), "events handled by the working listener");
+        Check.isTrue(!feed.getLags().containsKey("failing"), "the failing listener was removed");
+    }
+
+    /**
+     * Records the events of many publishers and remembers the first event out of order, called only by the listener's thread.
+     */
+    private static final class Recorder implements ChangeFeed.Listener {
+        /**
+         * Next running number expected from every publisher.
+         */
+        private final int[] next;
+        /**
+         * Number of events handled, also the next sequence expected.
+         */
+        private long handled = 0;
+        /**
+         * Description of the first event out of order, null if there is none.
+         */
+        private String error = null;
+
+        /**
+         * Recorder constructor.
+         * @param publishers number of publishers
+         */
+        Recorder(int publishers)
+        {
+            next = new int[publishers];
+        }
+
+        /**
+         * Checks that the event has the next sequence and the next running number of its publisher.
+         * @param event the event
+         * @param sequence sequence number of the event
+         * @param endOfBatch not used
+         */
+        @Override
+        public void onEvent(ChangeEvent event, long sequence, boolean endOfBatch)
+        {
+            int publisher = event.getMealId();
+            if (error == null && (sequence != handled || event.getQuantity() != next[publisher]))
+            {
+                error = "sequence " + sequence + " after " + handled + " events, number " + event.getQuantity() + " of publisher " + publisher
+                        + " instead of " + next[publisher];
+            }
+            next[publisher]++;
+            handled++;
+        }
+    }
+
+    /**
+     * Sleeps without throwing a checked exception.
+     * @param millis milliseconds to sleep
+     */
+    private static void sleep(long millis)
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package subscription.manager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Check runs the checks of the test folder and offers the assertions they use, the project doesn't depend on a test library.
+ * <p>Every check class has a {@code run()} method running its cases with {@link #run(String, Case)} and a {@code main} method running only its own cases,
+ * {@link AllChecks} runs the cases of all check classes. A failed case is reported and the other cases keep running,
+ * {@link #exit()} ends the program with exit code 1 if any case failed.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+final class Check {
+    //Fields
+    /**
+     * Number of cases that passed.
+     */
+    private static int passed = 0;
+    /**
+     * Number of cases that failed.
+     */
+    private static int failed = 0;
+
+    /**
+     * One case of a check, may throw anything, a thrown exception or error fails the case.
+     */
+    @FunctionalInterface
+    interface Case {
+        /**
+         * Runs the case.
+         * @throws Exception when the case fails
+         */
+        void run() throws Exception;
+    }
+
+    //Constructor
+    /**
+     * Check constructor, not used, all methods are static.
+     */
+    private Check()
+    {
+    }
+
+    //Methods
+    /**
+     * Runs one case and reports if it passed.
+     * @param name name of the case, e.g. "SubscriptionJournal cuts off a torn record"
+     * @param check the case
+     */
+    static void run(String name, Case check)
+    {
+        try
+        {
+            check.run();
+            passed++;
+            System.out.println("ok     " + name);
+        }
+        catch (Throwable failure)
+        {
+            failed++;
+            System.out.println("FAILED " + name + ": " + failure);
+            failure.printStackTrace(System.out);
+        }
+    }
+
+    /**
+     * Prints the number of passed and failed cases and ends the program, with exit code 1 if a case failed.
+     */
+    static void exit()
+    {
+        System.out.println(passed + " passed, " + failed + " failed.");
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    /**
+     * Fails the case if two values are not equal.
+     * @param expected expected value
+     * @param actual actual value
+     * @param what what the value is, e.g. "balance of Curry"
+     * @throws AssertionError when the values are not equal
+     */
+    static void equal(Object expected, Object actual, String what)
+    {
+        if (!Objects.equals(expected, actual))
+        {
+            throw new AssertionError(what + " is " + actual + ", expected " + expected + ".");
+        }
+    }
+
+    /**
+     * Fails the case if a condition doesn't hold.
+     * @param condition the condition
+     * @param what what the condition says, e.g. "snapshot was written"
+     * @throws AssertionError when the condition is false
+     */
+    static void isTrue(boolean condition, String what)
+    {
+        if (!condition)
+        {
+            throw new AssertionError("Expected: " + what + ".");
+        }
+    }
+
+    /**
+     * Fails the case if running code doesn't throw an exception of a type.
+     * @param type type of the expected exception
+     * @param code the code
+     * @param what what the code does, e.g. "opening a journal with a damaged segment"
+     * @throws AssertionError when the code throws nothing or another exception
+     */
+    static void fails(Class<? extends Throwable> type, Case code, String what)
+    {
+        try
+        {
+            code.run();
+        }
+        catch (Throwable thrown)
+        {
+            if (type.isInstance(thrown))
+            {
+                return;
+            }
+            throw new AssertionError(what + " threw " + thrown + ", expected " + type.getSimpleName() + ".", thrown);
+        }
+        throw new AssertionError(what + " threw nothing, expected " + type.getSimpleName() + ".");
+    }
+
+    /**
+     * Runs code on another thread and fails the case if it doesn't finish in time, so a case waiting forever, e.g. for a lost event, fails instead of hanging.
+     * @param seconds time limit in seconds
+     * @param code the code
+     * @throws Exception what the code threw
+     * @throws AssertionError when the code didn't finish in time, the thread running it is left behind as a daemon
+     */
+    static void within(long seconds, Case code) throws Exception
+    {
+        Throwable[] thrown = new Throwable[1];
+        Thread thread = new Thread(() -> {
+            try
+            {
+                code.run();
+            }
+            catch (Throwable failure)
+            {
+                thrown[0] = failure;
+            }
+        }, "check");
+        thread.setDaemon(true);
+        thread.start();
+        thread.join(seconds * 1000);
+        if (thread.isAlive())
+        {
+            throw new AssertionError("Did not finish within " + seconds + " s.");
+        }
+        if (thrown[0] instanceof Exception exception)
+        {
+            throw exception;
+        }
+        if (thrown[0] instanceof Error error)
+        {
+            throw error;
+        }
+    }
+
+    /**
+     * Creates a temporary directory for a case.
+     * @param prefix prefix of the directory name
+     * @return Path of the new directory
+     * @throws IOException when the directory can't be created
+     */
+    static Path temporaryDirectory(String prefix) throws IOException
+    {
+        return Files.createTempDirectory(prefix);
+    }
+
+    /**
+     * Deletes a directory with everything in it.
+     * @param directory the directory, nothing is done if it doesn't exist
+     * @throws IOException when a file can't be deleted
+     */
+    static void delete(Path directory) throws IOException
+    {
+        if (!Files.exists(directory))
+        {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory))
+        {
+            //files before the directories they are in
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList())
+            {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Writes an input file in the format of the {@link InputDataLoader}.
+     * @param file path of the file
+     * @param subscribers subscribers as "first name surname"
+     * @param meals meal types and their balances, name followed by balance
+     * @throws IOException when the file can't be written
+     */
+    static void writeInput(Path file, String[] subscribers, Object... meals) throws IOException
+    {
+        StringBuilder input = new StringBuilder();
+        input.append(subscribers.length).append('\n');
+        for (String subscriber : subscribers)
+        {
+            input.append(subscriber).append('\n');
+        }
+        input.append(meals.length / 2).append('\n');
+        for (Object meal : meals)
+        {
+            input.append(meal).append('\n');
+        }
+        Files.write(file, input.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
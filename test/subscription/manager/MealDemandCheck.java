@@ -0,0 +1,120 @@
+package subscription.manager;
+
+import subscription.Meal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that the heap of meal types kept by {@link MealDemand} gives the same top meal types as sorting all totals,
+ * while totals rise and fall, meal types are added, many threads change totals at the same time and the totals are cleared.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class MealDemandCheck {
+    /**
+     * Runs the cases of this check only.
+     * @param args not used
+     */
+    public static void main(String[] args)
+    {
+        run();
+        Check.exit();
+    }
+
+    /**
+     * Runs the cases of this check.
+     */
+    static void run()
+    {
+        Check.run("MealDemand keeps the top meal types while totals rise and fall", MealDemandCheck::keepsTopWhileTotalsChange);
+        Check.run("MealDemand keeps the top meal types while many threads change totals", MealDemandCheck::keepsTopWithManyThreads);
+    }
+
+    /**
+     * Random subscriptions are added, changed and removed one by one, with meal types added meanwhile and a clear in the middle,
+     * the top meal types are compared with all totals sorted after every change.
+     */
+    private static void keepsTopWhileTotalsChange()
+    {
+        Random random = new Random(2021);
+        MealDemand demand = new MealDemand();
+        //quantities of the subscriptions of one subscriber per meal type, subscribers don't matter to the heap
+        List<Integer> quantities = new ArrayList<Integer>();
+        for (int step = 0; step < 5000; step++)
+        {
+            if (quantities.isEmpty() || random.nextInt(100) == 0)
+            {
+                //names out of the order of ids, ties are broken by name
+                demand.addMeal(new Meal("Meal " + (char) ('a' + random.nextInt(26)) + quantities.size(), 10));
+                quantities.add(0);
+            }
+            int mealId = random.nextInt(quantities.size());
+            int before = quantities.get(mealId);
+            //mostly small quantities, so many meal types tie
+            int after = random.nextInt(4) == 0 ? 0 : random.nextInt(5);
+            demand.onChange(mealId, before, after, 0);
+            quantities.set(mealId, after);
+            if (step == 2500)
+            {
+                demand.clear();
+                quantities.replaceAll(quantity -> 0);
+            }
+            compare(demand, quantities.size(), step % 50 == 0 ? quantities.size() : 5);
+        }
+    }
+
+    /**
+     * Threads change totals of the same meal types at the same time, when they are done the heap is in the order of the final totals.
+     * @throws Exception when the case fails
+     */
+    private static void keepsTopWithManyThreads() throws Exception
+    {
+        int meals = 50;
+        MealDemand demand = new MealDemand();
+        for (int id = 0; id < meals; id++)
+        {
+            demand.addMeal(new Meal("Meal " + id, 10));
+        }
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++)
+        {
+            Random random = new Random(t);
+            threads[t] = new Thread(() -> {
+                //every thread owns its own subscriptions, so it knows the quantity before each change
+                int[] quantities = new int[meals];
+                for (int i = 0; i < 200_000; i++)
+                {
+                    int mealId = random.nextInt(meals);
+                    int after = random.nextInt(1 + mealId % 10);
+                    demand.onChange(mealId, quantities[mealId], after, 0);
+                    quantities[mealId] = after;
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        compare(demand, meals, meals);
+    }
+
+    /**
+     * Fails the case if the top meal types differ from all totals sorted by demand.
+     * @param demand the totals
+     * @param mealCount number of meal types
+     * @param k number of top meal types compared
+     */
+    private static void compare(MealDemand demand, int mealCount, int k)
+    {
+        List<MealDemand.MealTotal> all = new ArrayList<MealDemand.MealTotal>();
+        for (int id = 0; id < mealCount; id++)
+        {
+            all.add(demand.getTotal(id));
+        }
+        all.sort(MealDemand.byDemand());
+        Check.equal(all.subList(0, Math.min(k, mealCount)), demand.getTopMeals(k), "top " + k + " meal types");
+    }
+}
@@ -0,0 +1,125 @@
+package subscription.manager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Checks that a {@link RestockWatcher} applies a restock file once, also when the program stopped while applying it:
+ * the restocks done before the stop are recovered from the journal and the claimed file is not applied again when the watcher starts.
+ * <p>Programs are started like in {@link SubscriptionJournalCheck}, with a journal in a temporary data directory, 10 meals of Curry and 20 of Pho.
+ * The restock directory is a folder of the data directory.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class RestockWatcherCheck {
+    /**
+     * Runs the cases of this check only.
+     * @param args not used
+     */
+    public static void main(String[] args)
+    {
+        run();
+        Check.exit();
+    }
+
+    /**
+     * Runs the cases of this check.
+     */
+    static void run()
+    {
+        Check.run("RestockWatcher doesn't apply an applied file again after a restart", RestockWatcherCheck::appliesFileOnce);
+        Check.run("RestockWatcher doesn't apply a half-applied file again after a restart", RestockWatcherCheck::skipsHalfAppliedFile);
+    }
+
+    /**
+     * A file is applied, renamed and its restocks recovered after a restart, the watcher of the restarted program finds nothing to apply.
+     * @throws Exception when the case fails
+     */
+    private static void appliesFileOnce() throws Exception
+    {
+        Path directory = Check.temporaryDirectory("restock-check");
+        try
+        {
+            Path restocks = directory.resolve("restock");
+            Files.createDirectories(restocks);
+            Files.write(restocks.resolve("monday.restock"), "Curry +5\nPho -4\n".getBytes(StandardCharsets.UTF_8));
+            SubscriptionJournalCheck.Program program = SubscriptionJournalCheck.start(directory);
+            RestockWatcher watcher = new RestockWatcher(program.engine(), restocks, new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8));
+            watcher.start();
+            watcher.close();
+            program.journal().close();
+            Check.equal(1L, watcher.getFilesApplied(), "files applied");
+            Check.isTrue(Files.exists(restocks.resolve("monday.restock.done")), "the applied file was renamed");
+
+            SubscriptionJournalCheck.Program restarted = SubscriptionJournalCheck.start(directory);
+            RestockWatcher again = new RestockWatcher(restarted.engine(), restocks, new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8));
+            again.start();
+            again.close();
+            restarted.journal().close();
+            Check.equal(0L, again.getFilesApplied(), "files applied after the restart");
+            assertBalances(restarted.registry(), 15, 16);
+        }
+        finally
+        {
+            Check.delete(directory);
+        }
+    }
+
+    /**
+     * The program stops after the first line of a claimed file was restocked, the restarted watcher keeps that restock, recovered from the journal,
+     * doesn't apply the file again, renames it and applies a new file as usual.
+     * @throws Exception when the case fails
+     */
+    private static void skipsHalfAppliedFile() throws Exception
+    {
+        Path directory = Check.temporaryDirectory("restock-check");
+        try
+        {
+            Path restocks = directory.resolve("restock");
+            Files.createDirectories(restocks);
+            SubscriptionJournalCheck.Program program = SubscriptionJournalCheck.start(directory);
+            //the state a watcher leaves when the program stops after the first restock of the file
+            Files.write(restocks.resolve("monday.restock.applying"), "Curry +5\nPho +7\n".getBytes(StandardCharsets.UTF_8));
+            program.engine().restock("Curry", 5);
+            program.journal().close();
+            Files.write(restocks.resolve("tuesday.restock"), "Pho +1\n".getBytes(StandardCharsets.UTF_8));
+
+            SubscriptionJournalCheck.Program restarted = SubscriptionJournalCheck.start(directory);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            RestockWatcher watcher = new RestockWatcher(restarted.engine(), restocks, new PrintStream(output, true, StandardCharsets.UTF_8));
+            watcher.start();
+            watcher.close();
+            restarted.journal().close();
+            Check.equal(1L, watcher.getFilesApplied(), "files applied after the restart");
+            assertBalances(restarted.registry(), 15, 21);
+            Check.isTrue(!Files.exists(restocks.resolve("monday.restock.applying")), "the half-applied file was renamed");
+            Check.isTrue(Files.exists(restocks.resolve("monday.restock.done")), "the half-applied file ends with .done");
+            Check.isTrue(Files.exists(restocks.resolve("tuesday.restock.done")), "the new file was applied and renamed");
+            Check.isTrue(output.toString(StandardCharsets.UTF_8).contains("\"monday.restock\" was being applied when the program stopped"), "the half-applied file was reported");
+
+            //the restock of the new file was journaled like the others
+            SubscriptionJournalCheck.Program recovered = SubscriptionJournalCheck.start(directory);
+            recovered.journal().close();
+            assertBalances(recovered.registry(), 15, 21);
+        }
+        finally
+        {
+            Check.delete(directory);
+        }
+    }
+
+    /**
+     * Fails the case if the balances of the meals differ from the expected ones.
+     * @param registry the registry
+     * @param curryBalance expected balance of Curry
+     * @param phoBalance expected balance of Pho
+     */
+    private static void assertBalances(SubscriptionRegistry registry, int curryBalance, int phoBalance)
+    {
+        Check.equal(curryBalance, registry.getMeal("Curry").getMealBalance(), "balance of Curry");
+        Check.equal(phoBalance, registry.getMeal("Pho").getMealBalance(), "balance of Pho");
+    }
+}
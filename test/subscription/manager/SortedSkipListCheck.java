@@ -0,0 +1,254 @@
+package subscription.manager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that a {@link SortedSkipList} keeps the widths of its links right through adds, removes and bulk loads,
+ * by comparing {@link SortedSkipList#get(int) get}, {@link SortedSkipList#lowerBound(Comparable) lowerBound} and iteration with a plain sorted list after every step.
+ * A wrong width of any link on any level makes get return the element of another position.
+ * <p>Items have a key they are ordered by and a number telling items with equal keys apart, so the checks also see that equal items stay in the order they were added.
+ * Operations are chosen by a Random with a fixed seed, the levels of new nodes still differ from run to run.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class SortedSkipListCheck {
+    /**
+     * An element ordered by its key only.
+     * @param key key the items are ordered by
+     * @param number running number of the item, tells items with equal keys apart
+     */
+    private record Item(int key, int number) implements Comparable<Item>
+    {
+        /**
+         * Compares the keys of two items.
+         * @param other the other item
+         * @return int negative, 0 or positive as the key is smaller, equal or larger
+         */
+        @Override
+        public int compareTo(Item other)
+        {
+            return Integer.compare(key, other.key);
+        }
+    }
+
+    /**
+     * Runs the cases of this check only.
+     * @param args not used
+     */
+    public static void main(String[] args)
+    {
+        run();
+        Check.exit();
+    }
+
+    /**
+     * Runs the cases of this check.
+     */
+    static void run()
+    {
+        Check.run("SortedSkipList keeps positions right through random adds and removes", SortedSkipListCheck::addsAndRemoves);
+        Check.run("SortedSkipList keeps positions right after bulk loads", SortedSkipListCheck::bulkLoads);
+        Check.run("SortedSkipList removes every element down to an empty list", SortedSkipListCheck::removesEverything);
+        Check.run("SortedSkipList rejects positions outside the list", SortedSkipListCheck::rejectsBadPositions);
+    }
+
+    /**
+     * Thousands of adds and removes of keys with many duplicates, the list is compared with the expected list after every step.
+     */
+    private static void addsAndRemoves()
+    {
+        Random random = new Random(2002);
+        SortedSkipList<Item> list = new SortedSkipList<Item>();
+        List<Item> expected = new ArrayList<Item>();
+        int number = 0;
+        for (int step = 0; step < 3000; step++)
+        {
+            Item item = new Item(random.nextInt(200), number++);
+            if (random.nextInt(3) == 0 && !expected.isEmpty())
+            {
+                boolean removed = list.remove(item);
+                Check.equal(removeFirstEqual(expected, item), removed, "result of removing key " + item.key());
+            }
+            else
+            {
+                list.add(item);
+                expected.add(upperBound(expected, item.key()), item);
+            }
+            compare(expected, list, step % 100 == 0 ? 200 : 3);
+        }
+    }
+
+    /**
+     * Bulk loads with {@link SortedSkipList#addAllSorted(java.util.Collection) addAllSorted} and {@link SortedSkipList#addAllPresorted(Comparable[], int) addAllPresorted}
+     * into empty and filled lists, followed by single adds and removes.
+     */
+    private static void bulkLoads()
+    {
+        Random random = new Random(2003);
+        SortedSkipList<Item> list = new SortedSkipList<Item>();
+        List<Item> expected = new ArrayList<Item>();
+        int number = 0;
+        for (int round = 0; round < 20; round++)
+        {
+            List<Item> batch = new ArrayList<Item>();
+            for (int i = random.nextInt(300); i > 0; i--)
+            {
+                batch.add(new Item(random.nextInt(500), number++));
+            }
+            if (round % 2 == 0)
+            {
+                list.addAllSorted(batch);
+            }
+            else
+            {
+                //presorted input, the sort keeps items with equal keys in their order
+                List<Item> sorted = new ArrayList<Item>(batch);
+                Collections.sort(sorted);
+                list.addAllPresorted(sorted.toArray(new Item[0]), sorted.size());
+            }
+            //elements of the list come before added elements with equal keys
+            expected.addAll(batch);
+            Collections.sort(expected);
+            compare(expected, list, 500);
+            for (int i = 0; i < 20; i++)
+            {
+                Item item = new Item(random.nextInt(500), number++);
+                list.add(item);
+                expected.add(upperBound(expected, item.key()), item);
+                Item removed = new Item(random.nextInt(500), -1);
+                Check.equal(removeFirstEqual(expected, removed), list.remove(removed), "result of removing key " + removed.key());
+            }
+            compare(expected, list, 500);
+        }
+    }
+
+    /**
+     * Every element is removed in random order, positions stay right until the list is empty, and the list can be filled again.
+     */
+    private static void removesEverything()
+    {
+        Random random = new Random(2004);
+        SortedSkipList<Item> list = new SortedSkipList<Item>();
+        List<Item> expected = new ArrayList<Item>();
+        for (int i = 0; i < 1000; i++)
+        {
+            Item item = new Item(random.nextInt(1000), i);
+            list.add(item);
+            expected.add(upperBound(expected, item.key()), item);
+        }
+        List<Item> order = new ArrayList<Item>(expected);
+        Collections.shuffle(order, random);
+        for (int i = 0; i < order.size(); i++)
+        {
+            Check.equal(true, list.remove(order.get(i)), "result of removing key " + order.get(i).key());
+            removeFirstEqual(expected, order.get(i));
+            compare(expected, list, i % 50 == 0 ? 1000 : 2);
+        }
+        Check.equal(0, list.size(), "size of the emptied list");
+        Check.equal(false, list.remove(new Item(1, 0)), "result of removing from the empty list");
+        list.add(new Item(7, 0));
+        list.add(new Item(3, 1));
+        Check.equal(new Item(3, 1), list.get(0), "first element of the refilled list");
+        Check.equal(new Item(7, 0), list.get(1), "second element of the refilled list");
+    }
+
+    /**
+     * Positions before the first and after the last element are rejected.
+     */
+    private static void rejectsBadPositions()
+    {
+        SortedSkipList<Item> list = new SortedSkipList<Item>();
+        Check.fails(IndexOutOfBoundsException.class, () -> list.get(0), "get(0) of an empty list");
+        list.add(new Item(1, 0));
+        Check.fails(IndexOutOfBoundsException.class, () -> list.get(-1), "get(-1)");
+        Check.fails(IndexOutOfBoundsException.class, () -> list.get(1), "get(size)");
+    }
+
+    /**
+     * Fails the case if the list differs from the expected list: size, element at every position, iteration from a few positions
+     * and the lower bound of a few keys.
+     * @param expected expected elements in order
+     * @param list the list
+     * @param keys keys from 0 to this number are looked up with lowerBound
+     */
+    private static void compare(List<Item> expected, SortedSkipList<Item> list, int keys)
+    {
+        Check.equal(expected.size(), list.size(), "size");
+        for (int i = 0; i < expected.size(); i++)
+        {
+            //equals of records compares the numbers too, so equal keys in the wrong order are found
+            Check.equal(expected.get(i), list.get(i), "element at position " + i);
+        }
+        Check.equal(expected, new ArrayList<Item>(list), "elements in iteration order");
+        for (int from : new int[]{0, expected.size() / 3, expected.size() - 1, expected.size()})
+        {
+            if (from < 0)
+            {
+                continue;
+            }
+            Iterator<Item> iterator = list.iterator(from);
+            for (int i = from; i < expected.size(); i++)
+            {
+                Check.equal(expected.get(i), iterator.next(), "element " + i + " iterated from position " + from);
+            }
+            Check.equal(false, iterator.hasNext(), "more elements after iterating from position " + from);
+        }
+        for (int key = 0; key <= keys; key += Math.max(1, keys / 50))
+        {
+            Check.equal(lowerBound(expected, key), list.lowerBound(new Item(key, -1)), "lower bound of key " + key);
+        }
+    }
+
+    /**
+     * Finds the position of the first item with a key not smaller than a key.
+     * @param items items in order
+     * @param key the key
+     * @return int the position, the number of items if all keys are smaller
+     */
+    private static int lowerBound(List<Item> items, int key)
+    {
+        int position = 0;
+        while (position < items.size() && items.get(position).key() < key)
+        {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Finds the position after the last item with a key not larger than a key, where an equal item is added.
+     * @param items items in order
+     * @param key the key
+     * @return int the position
+     */
+    private static int upperBound(List<Item> items, int key)
+    {
+        int position = lowerBound(items, key);
+        while (position < items.size() && items.get(position).key() == key)
+        {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Removes the first item with the key of an item, as {@link SortedSkipList#remove(Object)} does.
+     * @param items items in order
+     * @param item item with the key
+     * @return boolean true if an item was removed
+     */
+    private static boolean removeFirstEqual(List<Item> items, Item item)
+    {
+        int position = lowerBound(items, item.key());
+        if (position < items.size() && items.get(position).key() == item.key())
+        {
+            items.remove(position);
+            return true;
+        }
+        return false;
+    }
+}
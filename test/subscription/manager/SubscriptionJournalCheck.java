@@ -0,0 +1,341 @@
+package subscription.manager;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that a {@link SubscriptionJournal} recovers balances and subscriptions after a crash:
+ * a record torn at the end of the last segment is cut off, segments written after the snapshot are replayed,
+ * a damaged record in an earlier segment stops the recovery and a half-written snapshot never replaces the last complete one.
+ * <p>Every case starts a program with an input file of three subscribers and two meal types in its own temporary data directory,
+ * changes subscriptions through a {@link SubscriptionEngine} with the journal, and recovers the state into a new registry the way a restart does.
+ * @author Robert Petecki
+ * @version 1.1 Date created: 18/10/2026
+ */
+public class SubscriptionJournalCheck {
+    //Fields
+    /**
+     * Subscribers of the input file.
+     */
+    private static final String[] SUBSCRIBERS = {"Amy Lee", "Bob Lee", "Ted Smith"};
+
+    /**
+     * A registry loaded from the input file, with an engine writing the journal of a data directory.
+     * @param registry registry of the program
+     * @param engine engine changing subscriptions
+     * @param journal journal of the data directory
+     */
+    record Program(SubscriptionRegistry registry, SubscriptionEngine engine, SubscriptionJournal journal)
+    {
+    }
+
+    /**
+     * Runs the cases of this check only.
+     * @param args not used
+     */
+    public static void main(String[] args)
+    {
+        run();
+        Check.exit();
+    }
+
+    /**
+     * Runs the cases of this check.
+     */
+    static void run()
+    {
+        Check.run("SubscriptionJournal replays the last segment without a snapshot", SubscriptionJournalCheck::replaysWithoutSnapshot);
+        Check.run("SubscriptionJournal cuts off a record torn at the end of the last segment", SubscriptionJournalCheck::cutsOffTornRecord);
+        Check.run("SubscriptionJournal replays the segments written after the snapshot", SubscriptionJournalCheck::replaysSegmentsAfterSnapshot);
+        Check.run("SubscriptionJournal stops at a damaged record in an earlier segment", SubscriptionJournalCheck::stopsAtDamagedEarlierSegment);
+        Check.run("SubscriptionJournal ignores a half-written snapshot and renames the next one over it", SubscriptionJournalCheck::ignoresHalfWrittenSnapshot);
+        Check.run("SubscriptionJournal keeps a full balance from overflowing when meals are returned", SubscriptionJournalCheck::keepsFullBalance);
+    }
+
+    /**
+     * Changes are recovered from the journal alone after the program stopped without a snapshot.
+     * @throws Exception when the case fails
+     */
+    private static void replaysWithoutSnapshot() throws Exception
+    {
+        Path directory = Check.temporaryDirectory("journal-check");
+        try
+        {
+            Program program = start(directory);
+            program.engine().addMealSubscription("Amy", "Lee", "Curry", 3);
+            program.engine().addMealSubscription("Bob", "Lee", "Pho", 5);
+            program.engine().removeMealSubscription("Amy", "Lee", "Curry", 1);
+            program.journal().close();
+
+            assertState(recover(directory), 2, 2, 5, 8, 15);
+        }
+        finally
+        {
+            Check.delete(directory);
+        }
+    }
+
+    /**
+     * A segment cut off in the middle of its last record, as a crash during a write leaves it, recovers every record before the torn one,
+     * and the segment is truncated to the end of the last whole record.
+     * @throws Exception when the case fails
+     */
+    private static void cutsOffTornRecord() throws Exception
+    {
+        Path directory = Check.temporaryDirectory("journal-check");
+        try
+        {
+            Program program = start(directory);
+            program.engine().addMealSubscription("Amy", "Lee", "Curry", 3);
+            program.engine().addMealSubscription("Bob", "Lee", "Pho", 5);
+            Path segment = lastSegment(directory);
+            long wholeRecords = Files.size(segment);
+            program.engine().addMealSubscription("Ted", "Smith", "Curry", 4);
+            program.journal().close();
+            long withLastRecord = Files.size(segment);
+            Check.isTrue(withLastRecord > wholeRecords, "the last change was written to the segment");
+            //the crash left only part of the last record
+            truncate(segment, wholeRecords + (withLastRecord - wholeRecords) / 2);
+
+            Program restarted = start(directory);
+            assertState(restarted.registry(), 2, 3, 5, 7, 15);
+            Check.equal(0, restarted.registry().getQuantity(restarted.registry().subscriberId("Ted", "Smith"), restarted.registry().mealId("Curry")), "Ted Smith's Curry");
+            Check.equal(wholeRecords, Files.size(segment), "size of the segment with the torn record cut off");
+            //the new segment continues after the truncated one, the next restart replays both
+            restarted.engine().addMealSubscription("Ted", "Smith", "Pho", 2);
+            restarted.journal().close();
+            SubscriptionRegistry again = recover(directory);
+            assertState(again, 3, 3, 5, 7, 13);
+            Check.equal(2, again.getQuantity(again.subscriberId("Ted", "Smith"), again.mealId("Pho")), "Ted Smith's Pho");
+        }
+        finally
+        {
+            Check.delete(directory);
+        }
+    }
+
+    /**
+     * Changes before a snapshot are recovered from the snapshot, changes after it from the segment started by the snapshot,
+     * segments contained in the snapshot are deleted.
+     * @throws Exception when the case fails
+     */
+    private static void replaysSegmentsAfterSnapshot() throws Exception
+    {
+        Path directory = Check.temporaryDirectory("journal-check");
+        try
+        {
+            Program program = start(directory);
+            program.engine().addMealSubscription("Amy", "Lee", "Curry", 3);
+            program.engine().addMealSubscription("Bob", "Lee", "Pho", 5);
+            program.engine().snapshot();
+            Check.equal(1, segments(directory).size(), "number of segments after the snapshot");
+            program.engine().addMealSubscription("Ted", "Smith", "Curry", 4);
+            program.engine().removeMealSubscription("Bob", "Lee", "Pho", 5);
+            program.journal().close();
+
+            SubscriptionRegistry recovered = recover(directory);
+            assertState(recovered, 2, 3, 0, 3, 20);
+            Check.equal(4, recovered.getQuantity(recovered.subscriberId("Ted", "Smith"), recovered.mealId("Curry")), "Ted Smith's Curry");
+            Check.isTrue(!Files.exists(directory.resolve("snapshot.tmp")), "no temporary snapshot is left");
+            Check.isTrue(new String(Files.readAllBytes(directory.resolve("snapshot.bin")), StandardCharsets.ISO_8859_1).startsWith("SMSN"), "the snapshot file starts with SMSN");
+        }
+        finally
+        {
+            Check.delete(directory);
+        }
+    }
+
+    /**
+     * A damaged record in a segment that isn't the last one can't be a torn write, the recovery stops instead of dropping the records after it.
+     * @throws Exception when the case fails
+     */
+    private static void stopsAtDamagedEarlierSegment() throws Exception
+    {
+        Path directory = Check.temporaryDirectory("journal-check");
+        try
+        {
+            Program program = start(directory);
+            program.engine().addMealSubscription("Amy", "Lee", "Curry", 3);
+            program.journal().close();
+            Path damaged = lastSegment(directory);
+            //the restart starts another segment, so the damaged one isn't the last
+            recover(directory);
+            truncate(damaged, Files.size(damaged) - 1);
+
+            Check.fails(IOException.class, () -> recover(directory), "recovering a damaged earlier segment");
+        }
+        finally
+        {
+            Check.delete(directory);
+        }
+    }
+
+    /**
+     * A snapshot.tmp left by a crash while a snapshot was written is not read, the recovery uses the last complete snapshot,
+     * and the next snapshot is written over the temporary file and renamed to snapshot.bin.
+     * @throws Exception when the case fails
+     */
+    private static void ignoresHalfWrittenSnapshot() throws Exception
+    {
+        Path directory = Check.temporaryDirectory("journal-check");
+        try
+        {
+            Program program = start(directory);
+            program.engine().addMealSubscription("Amy", "Lee", "Curry", 3);
+            program.engine().snapshot();
+            program.journal().close();
+            Files.write(directory.resolve("snapshot.tmp"), new byte[]{'S', 'M', 'S'});
+
+            Program restarted = start(directory);
+            assertState(restarted.registry(), 1, 3, 0, 7, 20);
+            restarted.engine().addMealSubscription("Bob", "Lee", "Pho", 5);
+            restarted.engine().snapshot();
+            restarted.journal().close();
+            Check.isTrue(!Files.exists(directory.resolve("snapshot.tmp")), "the temporary snapshot was renamed");
+
+            assertState(recover(directory), 2, 3, 5, 7, 15);
+        }
+        finally
+        {
+            Check.delete(directory);
+        }
+    }
+
+    /**
+     * Meals returned to a balance restocked to Integer.MAX_VALUE keep it there, in the running program and when the journal is replayed,
+     * instead of turning it negative so no meal can be reserved anymore.
+     * @throws Exception when the case fails
+     */
+    private static void keepsFullBalance() throws Exception
+    {
+        Path directory = Check.temporaryDirectory("journal-check");
+        try
+        {
+            Program program = start(directory);
+            program.engine().addMealSubscription("Amy", "Lee", "Curry", 3);
+            program.engine().restock("Curry", Integer.MAX_VALUE);
+            Check.equal(Integer.MAX_VALUE, program.registry().getMeal("Curry").getMealBalance(), "balance of Curry after the restock");
+            program.engine().removeMealSubscription("Amy", "Lee", "Curry", 3);
+            Check.equal(Integer.MAX_VALUE, program.registry().getMeal("Curry").getMealBalance(), "balance of Curry after the meals were returned");
+            program.journal().close();
+
+            Program restarted = start(directory);
+            Check.equal(Integer.MAX_VALUE, restarted.registry().getMeal("Curry").getMealBalance(), "recovered balance of Curry");
+            restarted.engine().addMealSubscription("Bob", "Lee", "Curry", 2);
+            Check.equal(2, restarted.registry().getQuantity(restarted.registry().subscriberId("Bob", "Lee"), restarted.registry().mealId("Curry")), "Bob Lee's Curry");
+            restarted.journal().close();
+        }
+        finally
+        {
+            Check.delete(directory);
+        }
+    }
+
+    /**
+     * Starts a program the way {@link MainProgram} does with "--data-dir": loads the input file and recovers the journal of the data directory.
+     * The input file is written to the data directory the first time, with the subscribers Amy Lee, Bob Lee and Ted Smith,
+     * 10 meals of Curry and 20 of Pho. Other checks start their programs with it too.
+     * @param directory the data directory
+     * @return Program with the recovered state, changes wait until they are on disk
+     * @throws IOException when the input file or the journal can't be read
+     */
+    static Program start(Path directory) throws IOException
+    {
+        Path input = directory.resolve("input.txt");
+        if (!Files.exists(input))
+        {
+            Check.writeInput(input, SUBSCRIBERS, "Curry", 10, "Pho", 20);
+        }
+        SubscriptionRegistry registry = new SubscriptionRegistry();
+        new InputDataLoader(input).load(registry);
+        SubscriptionJournal journal = SubscriptionJournal.open(directory, registry);
+        SubscriptionEngine engine = new SubscriptionEngine(registry);
+        engine.setJournal(journal, true);
+        return new Program(registry, engine, journal);
+    }
+
+    /**
+     * Recovers the state of a data directory like a restart and closes the journal again.
+     * @param directory the data directory
+     * @return SubscriptionRegistry with the recovered state
+     * @throws IOException when the input file or the journal can't be read
+     */
+    private static SubscriptionRegistry recover(Path directory) throws IOException
+    {
+        Program program = start(directory);
+        program.journal().close();
+        return program.registry();
+    }
+
+    /**
+     * Fails the case if the recovered state differs from the expected one.
+     * @param registry the recovered registry
+     * @param subscriptions expected number of subscriptions
+     * @param amyCurry expected quantity of Amy Lee's Curry
+     * @param bobPho expected quantity of Bob Lee's Pho
+     * @param curryBalance expected balance of Curry
+     * @param phoBalance expected balance of Pho
+     */
+    private static void assertState(SubscriptionRegistry registry, int subscriptions, int amyCurry, int bobPho, int curryBalance, int phoBalance)
+    {
+        Check.equal(subscriptions, registry.getSubscriptionCount(), "number of subscriptions");
+        Check.equal(amyCurry, registry.getQuantity(registry.subscriberId("Amy", "Lee"), registry.mealId("Curry")), "Amy Lee's Curry");
+        Check.equal(bobPho, registry.getQuantity(registry.subscriberId("Bob", "Lee"), registry.mealId("Pho")), "Bob Lee's Pho");
+        Check.equal(curryBalance, registry.getMeal("Curry").getMealBalance(), "balance of Curry");
+        Check.equal(phoBalance, registry.getMeal("Pho").getMealBalance(), "balance of Pho");
+    }
+
+    /**
+     * Lists the journal segments of a data directory.
+     * @param directory the data directory
+     * @return List of paths of the segments in the order they were written
+     * @throws IOException when the directory can't be read
+     */
+    private static List<Path> segments(Path directory) throws IOException
+    {
+        List<Path> segments = new ArrayList<Path>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "journal-*.log"))
+        {
+            for (Path file : files)
+            {
+                segments.add(file);
+            }
+        }
+        //numbers have leading zeros, so names sort in the order segments were written
+        segments.sort(null);
+        return segments;
+    }
+
+    /**
+     * Finds the segment written last.
+     * @param directory the data directory
+     * @return Path of the last segment
+     * @throws IOException when the directory can't be read
+     */
+    private static Path lastSegment(Path directory) throws IOException
+    {
+        List<Path> segments = segments(directory);
+        return segments.get(segments.size() - 1);
+    }
+
+    /**
+     * Cuts a file off at a length, as a crash during a write leaves it.
+     * @param file the file
+     * @param length length the file is cut to
+     * @throws IOException when the file can't be written
+     */
+    private static void truncate(Path file, long length) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE))
+        {
+            channel.truncate(length);
+        }
+    }
+}